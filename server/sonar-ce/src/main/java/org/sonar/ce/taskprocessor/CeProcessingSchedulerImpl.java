@@ -23,8 +23,11 @@ import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListenableScheduledFuture;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.picocontainer.Startable;
@@ -35,14 +38,26 @@ import org.sonar.ce.configuration.CeConfiguration;
 import static com.google.common.util.concurrent.Futures.addCallback;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
+/**
+ * Schedules the {@link CeWorker}s.
+ * <p>
+ * When the queue is empty, only one of the idle workers (the "poller") polls it with the regular delay, the other
+ * idle workers poll it with a delay which doubles each time they find no task, up to
+ * {@link #MAX_DELAY_BETWEEN_IDLE_POLLS}. As soon as a worker picks a task, and again once it has processed it, the
+ * waiting idle workers are woken up so that they poll the queue without delay. A burst of tasks is therefore
+ * dispatched to all the workers without waiting for the end of their delay.
+ * </p>
+ */
 public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startable {
   private static final Logger LOG = Loggers.get(CeProcessingSchedulerImpl.class);
   private static final long DELAY_BETWEEN_DISABLED_TASKS = 30 * 1000L; // 30 seconds
+  private static final long MAX_DELAY_BETWEEN_IDLE_POLLS = 30 * 1000L; // 30 seconds
 
   private final CeProcessingSchedulerExecutorService executorService;
   private final long delayBetweenEnabledTasks;
   private final TimeUnit timeUnit;
   private final ChainingCallback[] chainingCallbacks;
+  private final AtomicReference<ChainingCallback> poller = new AtomicReference<>();
 
   public CeProcessingSchedulerImpl(CeConfiguration ceConfiguration,
     CeProcessingSchedulerExecutorService processingExecutorService, CeWorkerFactory ceCeWorkerFactory) {
@@ -54,8 +69,7 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startab
     int threadWorkerCount = ceConfiguration.getWorkerMaxCount();
     this.chainingCallbacks = new ChainingCallback[threadWorkerCount];
     for (int i = 0; i < threadWorkerCount; i++) {
-      CeWorker worker = ceCeWorkerFactory.create(i);
-      chainingCallbacks[i] = new ChainingCallback(worker);
+      chainingCallbacks[i] = new ChainingCallback(ceCeWorkerFactory, i);
     }
   }
 
@@ -79,32 +93,50 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startab
     }
   }
 
+  /**
+   * Makes the idle workers, other than the specified one, poll the queue without waiting for the end of their delay.
+   */
+  private void wakeUpIdleWorkers(ChainingCallback source) {
+    for (ChainingCallback chainingCallback : chainingCallbacks) {
+      if (chainingCallback != source) {
+        chainingCallback.wakeUp();
+      }
+    }
+  }
+
   private class ChainingCallback implements FutureCallback<CeWorker.Result> {
     private final AtomicBoolean keepRunning = new AtomicBoolean(true);
     private final CeWorker worker;
+    private final IdlePoll idlePoll;
+    private long idleDelay;
 
     @CheckForNull
-    private ListenableFuture<CeWorker.Result> workerFuture;
+    private volatile ListenableFuture<CeWorker.Result> workerFuture;
 
-    public ChainingCallback(CeWorker worker) {
-      this.worker = worker;
+    public ChainingCallback(CeWorkerFactory ceWorkerFactory, int ordinal) {
+      this.worker = ceWorkerFactory.create(ordinal, task -> wakeUpIdleWorkers(this));
+      this.idlePoll = new IdlePoll(worker);
+      this.idleDelay = delayBetweenEnabledTasks;
     }
 
     @Override
     public void onSuccess(@Nullable CeWorker.Result result) {
       if (result == null) {
-        chainWithEnabledTaskDelay();
+        chainWithIdleDelay();
       } else {
         switch (result) {
           case DISABLED:
+            releasePoller();
             chainWithDisabledTaskDelay();
             break;
           case NO_TASK:
-            chainWithEnabledTaskDelay();
+            chainWithIdleDelay();
             break;
           case TASK_PROCESSED:
           default:
+            releasePoller();
             chainWithoutDelay();
+            wakeUpIdleWorkers(this);
         }
       }
     }
@@ -114,6 +146,10 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startab
       if (t instanceof Error) {
         LOG.error("Compute Engine execution failed. Scheduled processing interrupted.", t);
       } else {
+        // a CancellationException means the worker has been woken up or stopped
+        if (!(t instanceof CancellationException)) {
+          releasePoller();
+        }
         chainWithoutDelay();
       }
     }
@@ -125,9 +161,21 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startab
       addCallback();
     }
 
-    private void chainWithEnabledTaskDelay() {
+    /**
+     * The poller polls with the regular delay, the other idle workers back off.
+     */
+    private void chainWithIdleDelay() {
+      long delay;
+      if (poller.compareAndSet(null, this) || poller.get() == this) {
+        idleDelay = delayBetweenEnabledTasks;
+        delay = delayBetweenEnabledTasks;
+      } else {
+        idleDelay = Math.max(delayBetweenEnabledTasks, Math.min(idleDelay * 2, MAX_DELAY_BETWEEN_IDLE_POLLS));
+        delay = idleDelay;
+      }
       if (keepRunning()) {
-        workerFuture = executorService.schedule(worker, delayBetweenEnabledTasks, timeUnit);
+        idlePoll.pending.set(true);
+        workerFuture = executorService.schedule(idlePoll, delay, timeUnit);
       }
       addCallback();
     }
@@ -145,15 +193,58 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startab
       }
     }
 
+    private void releasePoller() {
+      idleDelay = delayBetweenEnabledTasks;
+      poller.compareAndSet(this, null);
+    }
+
+    /**
+     * Cancelling the delayed poll of an idle worker chains a poll without delay, see {@link #onFailure(Throwable)}.
+     * The delayed poll is cancelled only if it has not started yet, so that the worker never runs twice concurrently.
+     */
+    private void wakeUp() {
+      ListenableFuture<CeWorker.Result> future = this.workerFuture;
+      if (future != null && keepRunning() && idlePoll.pending.compareAndSet(true, false)) {
+        future.cancel(false);
+      }
+    }
+
     private boolean keepRunning() {
       return keepRunning.get();
     }
 
     public void stop() {
       this.keepRunning.set(false);
+      releasePoller();
       if (workerFuture != null) {
         workerFuture.cancel(false);
       }
     }
   }
+
+  /**
+   * Delayed poll of an idle worker. Either it starts the worker or it is claimed by a wake up, but not both.
+   */
+  static final class IdlePoll implements Callable<CeWorker.Result> {
+    private final CeWorker worker;
+    private final AtomicBoolean pending = new AtomicBoolean(false);
+
+    private IdlePoll(CeWorker worker) {
+      this.worker = worker;
+    }
+
+    CeWorker getWorker() {
+      return worker;
+    }
+
+    @Override
+    @CheckForNull
+    public CeWorker.Result call() throws Exception {
+      if (!pending.compareAndSet(true, false)) {
+        // claimed by a wake up, which cancels this poll and chains a new one
+        return null;
+      }
+      return worker.call();
+    }
+  }
 }
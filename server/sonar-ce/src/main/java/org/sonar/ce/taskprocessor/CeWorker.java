@@ -38,6 +38,16 @@ public interface CeWorker extends Callable<CeWorker.Result> {
     TASK_PROCESSED
   }
 
+  /**
+   * Listener of the tasks executed by a {@link CeWorker}.
+   */
+  interface ExecutionListener {
+    /**
+     * Called when the worker has picked a task in the queue, before processing it.
+     */
+    void onStart(CeTask task);
+  }
+
   /**
    * Position of the current CeWorker among all the running workers, starts with 0.
    */
@@ -29,9 +29,10 @@ public interface CeWorkerFactory {
    * Create a new CeWorker object with the specified ordinal.
    * Each {@link CeWorker} returned by this method will have a different UUID from the others and all of these UUIDS will be returned by {@link #getWorkerUUIDs()}.
    *
+   * @param executionListener notified each time the created {@link CeWorker} picks a task
    * @return the CeWorker
    */
-  CeWorker create(int ordinal);
+  CeWorker create(int ordinal, CeWorker.ExecutionListener executionListener);
 
   /**
    * @return  the UUIDs of each {@link CeWorker} object returned by {@link #create}.
@@ -46,10 +46,10 @@ public class CeWorkerFactoryImpl implements CeWorkerFactory {
   }
 
   @Override
-  public CeWorker create(int ordinal) {
+  public CeWorker create(int ordinal, CeWorker.ExecutionListener executionListener) {
     String uuid = uuidFactory.create();
     ceWorkerUUIDs.add(uuid);
-    return new CeWorkerImpl(ordinal, uuid, queue, ceLogging, taskProcessorRepository, enabledCeWorkerController);
+    return new CeWorkerImpl(ordinal, uuid, queue, ceLogging, taskProcessorRepository, enabledCeWorkerController, executionListener);
   }
 
   @Override
@@ -48,16 +48,18 @@ public class CeWorkerImpl implements CeWorker {
   private final CeLogging ceLogging;
   private final CeTaskProcessorRepository taskProcessorRepository;
   private final EnabledCeWorkerController enabledCeWorkerController;
+  private final ExecutionListener executionListener;
 
   public CeWorkerImpl(int ordinal, String uuid,
     InternalCeQueue queue, CeLogging ceLogging, CeTaskProcessorRepository taskProcessorRepository,
-    EnabledCeWorkerController enabledCeWorkerController) {
+    EnabledCeWorkerController enabledCeWorkerController, ExecutionListener executionListener) {
     this.ordinal = checkOrdinal(ordinal);
     this.uuid = uuid;
     this.queue = queue;
     this.ceLogging = ceLogging;
     this.taskProcessorRepository = taskProcessorRepository;
     this.enabledCeWorkerController = enabledCeWorkerController;
+    this.executionListener = executionListener;
   }
 
   private static int checkOrdinal(int ordinal) {
@@ -79,6 +81,7 @@ public class CeWorkerImpl implements CeWorker {
       return NO_TASK;
     }
 
+    notifyStart(ceTask.get());
     try {
       executeTask(ceTask.get());
     } catch (Exception e) {
@@ -87,6 +90,14 @@ public class CeWorkerImpl implements CeWorker {
     return TASK_PROCESSED;
   }
 
+  private void notifyStart(CeTask task) {
+    try {
+      executionListener.onStart(task);
+    } catch (Exception e) {
+      LOG.error(format("Failed to notify start of task with uuid '%s'", task.getUuid()), e);
+    }
+  }
+
   private <T> T withCustomizedThreadName(Supplier<T> supplier) {
     Thread currentThread = Thread.currentThread();
     String oldName = currentThread.getName();
@@ -48,6 +48,7 @@ import org.junit.rules.DisableOnDebug;
 import org.junit.rules.TestRule;
 import org.junit.rules.Timeout;
 import org.sonar.ce.configuration.CeConfigurationRule;
+import org.sonar.ce.queue.CeTask;
 
 import static com.google.common.collect.ImmutableList.copyOf;
 import static java.util.Collections.emptySet;
@@ -232,10 +233,113 @@ public class CeProcessingSchedulerImplTest {
     }
     verify(listenableScheduledFuture, times(workerCount)).addListener(any(Runnable.class), eq(processingExecutorService));
     for (int i = 0; i < workerCount; i++) {
-      verify(ceWorkerFactory).create(i);
+      verify(ceWorkerFactory).create(eq(i), any(CeWorker.ExecutionListener.class));
     }
   }
 
+  @Test
+  public void only_one_idle_worker_polls_with_regular_delay_others_back_off() throws Exception {
+    CeWorker ceWorker2 = mock(CeWorker.class);
+    when(ceWorker.call())
+      .thenReturn(NO_TASK)
+      .thenReturn(NO_TASK)
+      .thenReturn(NO_TASK)
+      .thenThrow(ERROR_TO_INTERRUPT_CHAINING);
+    when(ceWorker2.call())
+      .thenReturn(NO_TASK)
+      .thenReturn(NO_TASK)
+      .thenReturn(NO_TASK)
+      .thenThrow(ERROR_TO_INTERRUPT_CHAINING);
+    ceConfiguration.setWorkerThreadCount(2);
+    underTest = new CeProcessingSchedulerImpl(ceConfiguration, processingExecutorService, new TestCeWorkerFactory(ceWorker, ceWorker2));
+
+    startSchedulingAndRun();
+
+    assertThat(processingExecutorService.getSchedulerCalls()).containsExactly(
+      regularDelayedPoll,
+      new SchedulerCall(ceWorker2, 2000L, MILLISECONDS),
+      regularDelayedPoll,
+      new SchedulerCall(ceWorker2, 4000L, MILLISECONDS),
+      regularDelayedPoll,
+      new SchedulerCall(ceWorker2, 8000L, MILLISECONDS),
+      regularDelayedPoll,
+      new SchedulerCall(ceWorker2, 16000L, MILLISECONDS));
+  }
+
+  @Test
+  public void idle_workers_poll_without_delay_when_a_task_is_processed() throws Exception {
+    CeWorker ceWorker2 = mock(CeWorker.class);
+    when(ceWorker.call())
+      .thenReturn(NO_TASK)
+      .thenReturn(TASK_PROCESSED)
+      .thenThrow(ERROR_TO_INTERRUPT_CHAINING);
+    when(ceWorker2.call())
+      .thenReturn(NO_TASK)
+      .thenThrow(ERROR_TO_INTERRUPT_CHAINING);
+    ceConfiguration.setWorkerThreadCount(2);
+    underTest = new CeProcessingSchedulerImpl(ceConfiguration, processingExecutorService, new TestCeWorkerFactory(ceWorker, ceWorker2));
+
+    startSchedulingAndRun();
+
+    assertThat(processingExecutorService.getSchedulerCalls()).containsExactly(
+      regularDelayedPoll,
+      new SchedulerCall(ceWorker2, 2000L, MILLISECONDS),
+      regularDelayedPoll,
+      new SchedulerCall(ceWorker2, 4000L, MILLISECONDS),
+      notDelayedPoll,
+      new SchedulerCall(ceWorker2));
+  }
+
+  @Test
+  public void idle_workers_poll_without_delay_as_soon_as_a_task_is_picked() throws Exception {
+    CeWorker ceWorker2 = mock(CeWorker.class);
+    CeWorker ceWorker3 = mock(CeWorker.class);
+    TestCeWorkerFactory ceWorkerFactory = new TestCeWorkerFactory(ceWorker, ceWorker2, ceWorker3);
+    // three tasks are enqueued at once while the three workers are idle
+    when(ceWorker.call())
+      .thenReturn(NO_TASK)
+      .thenAnswer(invocation -> {
+        ceWorkerFactory.executionListeners.get(0).onStart(mock(CeTask.class));
+        // the other workers poll the queue before the task picked by the first one is processed
+        assertThat(processingExecutorService.getSchedulerCalls()).contains(new SchedulerCall(ceWorker2), new SchedulerCall(ceWorker3));
+        return TASK_PROCESSED;
+      })
+      .thenThrow(ERROR_TO_INTERRUPT_CHAINING);
+    when(ceWorker2.call())
+      .thenReturn(NO_TASK)
+      .thenAnswer(invocation -> {
+        ceWorkerFactory.executionListeners.get(1).onStart(mock(CeTask.class));
+        return TASK_PROCESSED;
+      })
+      .thenThrow(ERROR_TO_INTERRUPT_CHAINING);
+    when(ceWorker3.call())
+      .thenReturn(NO_TASK)
+      .thenAnswer(invocation -> {
+        ceWorkerFactory.executionListeners.get(2).onStart(mock(CeTask.class));
+        return TASK_PROCESSED;
+      })
+      .thenThrow(ERROR_TO_INTERRUPT_CHAINING);
+    ceConfiguration.setWorkerThreadCount(3);
+    underTest = new CeProcessingSchedulerImpl(ceConfiguration, processingExecutorService, ceWorkerFactory);
+
+    startSchedulingAndRun();
+
+    assertThat(processingExecutorService.getSchedulerCalls()).containsExactly(
+      regularDelayedPoll,
+      new SchedulerCall(ceWorker2, 2000L, MILLISECONDS),
+      new SchedulerCall(ceWorker3, 2000L, MILLISECONDS),
+      regularDelayedPoll,
+      new SchedulerCall(ceWorker2, 4000L, MILLISECONDS),
+      new SchedulerCall(ceWorker3, 4000L, MILLISECONDS),
+      // woken up when the first worker picks its task
+      new SchedulerCall(ceWorker2),
+      new SchedulerCall(ceWorker3),
+      // chained once the tasks are processed
+      new SchedulerCall(ceWorker3),
+      new SchedulerCall(ceWorker2),
+      notDelayedPoll);
+  }
+
   private void startSchedulingAndRun() throws ExecutionException, InterruptedException {
     underTest.startScheduling();
 
@@ -245,13 +349,15 @@ public class CeProcessingSchedulerImplTest {
 
   private class TestCeWorkerFactory implements CeWorkerFactory {
     private final Iterator<CeWorker> ceWorkers;
+    private final List<CeWorker.ExecutionListener> executionListeners = new ArrayList<>();
 
     private TestCeWorkerFactory(CeWorker... ceWorkers) {
       this.ceWorkers = copyOf(ceWorkers).iterator();
     }
 
     @Override
-    public CeWorker create(int ordinal) {
+    public CeWorker create(int ordinal, CeWorker.ExecutionListener executionListener) {
+      executionListeners.add(executionListener);
       // This will throw an NoSuchElementException if there are too many calls
       return ceWorkers.next();
     }
@@ -557,7 +663,7 @@ public class CeProcessingSchedulerImplTest {
     private final TimeUnit unit;
 
     private SchedulerCall(Callable<?> callable, long delay, TimeUnit unit) {
-      this.callable = callable;
+      this.callable = callable instanceof CeProcessingSchedulerImpl.IdlePoll ? ((CeProcessingSchedulerImpl.IdlePoll) callable).getWorker() : callable;
       this.delay = delay;
       this.unit = unit;
     }
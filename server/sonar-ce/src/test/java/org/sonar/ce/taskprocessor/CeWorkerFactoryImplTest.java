@@ -34,12 +34,13 @@ import static org.mockito.Mockito.mock;
 
 public class CeWorkerFactoryImplTest {
   private int randomOrdinal = new Random().nextInt(20);
+  private CeWorker.ExecutionListener executionListener = mock(CeWorker.ExecutionListener.class);
   private CeWorkerFactoryImpl underTest = new CeWorkerFactoryImpl(mock(InternalCeQueue.class), mock(CeLogging.class),
     mock(CeTaskProcessorRepository.class), UuidFactoryImpl.INSTANCE, mock(EnabledCeWorkerController.class));
 
   @Test
   public void create_return_CeWorker_object_with_specified_ordinal() {
-    CeWorker ceWorker = underTest.create(randomOrdinal);
+    CeWorker ceWorker = underTest.create(randomOrdinal, executionListener);
 
     assertThat(ceWorker.getOrdinal()).isEqualTo(randomOrdinal);
   }
@@ -47,7 +48,7 @@ public class CeWorkerFactoryImplTest {
   @Test
   public void create_allows_multiple_calls_with_same_ordinal() {
     IntStream.range(0, new Random().nextInt(50)).forEach(ignored -> {
-      CeWorker ceWorker = underTest.create(randomOrdinal);
+      CeWorker ceWorker = underTest.create(randomOrdinal, executionListener);
 
       assertThat(ceWorker.getOrdinal()).isEqualTo(randomOrdinal);
     });
@@ -59,7 +60,7 @@ public class CeWorkerFactoryImplTest {
     Set<String> ceWorkerUUIDs = new HashSet<>();
 
     for (int i = 0; i < 10; i++) {
-      CeWorker ceWorker = underTest.create(i);
+      CeWorker ceWorker = underTest.create(i, executionListener);
       ceWorkers.add(ceWorker);
       ceWorkerUUIDs.add(ceWorker.getUUID());
     }
@@ -70,7 +71,7 @@ public class CeWorkerFactoryImplTest {
 
   @Test
   public void ceworker_created_by_factory_must_contain_uuid() {
-    CeWorker ceWorker = underTest.create(randomOrdinal);
+    CeWorker ceWorker = underTest.create(randomOrdinal, executionListener);
     assertThat(ceWorker.getUUID()).isNotEmpty();
   }
 
@@ -84,7 +85,7 @@ public class CeWorkerFactoryImplTest {
     Set<String> ceWorkerUUIDs = new HashSet<>();
 
     for (int i = 0; i < 10; i++) {
-      ceWorkerUUIDs.add(underTest.create(i).getUUID());
+      ceWorkerUUIDs.add(underTest.create(i, executionListener).getUUID());
     }
 
     assertThat(underTest.getWorkerUUIDs()).isEqualTo(ceWorkerUUIDs);
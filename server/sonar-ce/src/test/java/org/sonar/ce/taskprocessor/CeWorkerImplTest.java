@@ -69,11 +69,12 @@ public class CeWorkerImplTest {
   private ReportTaskProcessor taskProcessor = mock(ReportTaskProcessor.class);
   private CeLogging ceLogging = spy(CeLogging.class);
   private EnabledCeWorkerController enabledCeWorkerController = mock(EnabledCeWorkerController.class);
+  private CeWorker.ExecutionListener executionListener = mock(CeWorker.ExecutionListener.class);
   private ArgumentCaptor<String> workerUuidCaptor = ArgumentCaptor.forClass(String.class);
   private int randomOrdinal = new Random().nextInt(50);
   private String workerUuid = UUID.randomUUID().toString();
-  private CeWorker underTest = new CeWorkerImpl(randomOrdinal, workerUuid, queue, ceLogging, taskProcessorRepository, enabledCeWorkerController);
-  private InOrder inOrder = Mockito.inOrder(ceLogging, taskProcessor, queue);
+  private CeWorker underTest = new CeWorkerImpl(randomOrdinal, workerUuid, queue, ceLogging, taskProcessorRepository, enabledCeWorkerController, executionListener);
+  private InOrder inOrder = Mockito.inOrder(executionListener, ceLogging, taskProcessor, queue);
 
   @Before
   public void setUp() throws Exception {
@@ -85,13 +86,13 @@ public class CeWorkerImplTest {
     expectedException.expect(IllegalArgumentException.class);
     expectedException.expectMessage("Ordinal must be >= 0");
 
-    new CeWorkerImpl(-1 - new Random().nextInt(20), workerUuid, queue, ceLogging, taskProcessorRepository, enabledCeWorkerController);
+    new CeWorkerImpl(-1 - new Random().nextInt(20), workerUuid, queue, ceLogging, taskProcessorRepository, enabledCeWorkerController, executionListener);
   }
 
   @Test
   public void getUUID_must_return_the_uuid_of_constructor() {
     String uuid = UUID.randomUUID().toString();
-    CeWorker underTest = new CeWorkerImpl(randomOrdinal, uuid, queue, ceLogging, taskProcessorRepository, enabledCeWorkerController);
+    CeWorker underTest = new CeWorkerImpl(randomOrdinal, uuid, queue, ceLogging, taskProcessorRepository, enabledCeWorkerController, executionListener);
     assertThat(underTest.getUUID()).isEqualTo(uuid);
   }
 
@@ -111,7 +112,33 @@ public class CeWorkerImplTest {
 
     assertThat(underTest.call()).isEqualTo(NO_TASK);
 
-    verifyZeroInteractions(taskProcessor, ceLogging);
+    verifyZeroInteractions(taskProcessor, ceLogging, executionListener);
+  }
+
+  @Test
+  public void execution_listener_is_notified_before_task_is_processed() throws Exception {
+    CeTask task = createCeTask(null);
+    taskProcessorRepository.setProcessorForTask(task.getType(), taskProcessor);
+    when(queue.peek(anyString())).thenReturn(Optional.of(task));
+
+    assertThat(underTest.call()).isEqualTo(TASK_PROCESSED);
+
+    inOrder.verify(executionListener).onStart(task);
+    inOrder.verify(taskProcessor).process(task);
+    inOrder.verify(queue).remove(task, CeActivityDto.Status.SUCCESS, null, null);
+  }
+
+  @Test
+  public void task_is_processed_even_if_execution_listener_fails() throws Exception {
+    CeTask task = createCeTask(null);
+    taskProcessorRepository.setProcessorForTask(task.getType(), taskProcessor);
+    when(queue.peek(anyString())).thenReturn(Optional.of(task));
+    doThrow(new IllegalStateException("Simulate listener failure")).when(executionListener).onStart(task);
+
+    assertThat(underTest.call()).isEqualTo(TASK_PROCESSED);
+
+    verify(taskProcessor).process(task);
+    assertThat(logTester.logs(LoggerLevel.ERROR)).contains("Failed to notify start of task with uuid '" + task.getUuid() + "'");
   }
 
   @Test
@@ -67,6 +67,7 @@ import org.sonar.db.user.UserDao;
 import org.sonar.db.user.UserGroupDao;
 import org.sonar.db.user.UserTokenDao;
 import org.sonar.db.webhook.WebhookDeliveryDao;
+import org.sonar.db.webhook.WebhookQueueDao;
 
 public class DbClient {
 
@@ -119,6 +120,7 @@ public class DbClient {
   private final WebhookDeliveryDao webhookDeliveryDao;
   private final DefaultQProfileDao defaultQProfileDao;
   private final EsQueueDao esQueueDao;
+  private final WebhookQueueDao webhookQueueDao;
 
   public DbClient(Database database, MyBatis myBatis, DBSessions dbSessions, Dao... daos) {
     this.database = database;
@@ -175,6 +177,7 @@ public class DbClient {
     webhookDeliveryDao = getDao(map, WebhookDeliveryDao.class);
     defaultQProfileDao = getDao(map, DefaultQProfileDao.class);
     esQueueDao = getDao(map, EsQueueDao.class);
+    webhookQueueDao = getDao(map, WebhookQueueDao.class);
   }
 
   public DbSession openSession(boolean batch) {
@@ -369,6 +372,10 @@ public class DbClient {
     return esQueueDao;
   }
 
+  public WebhookQueueDao webhookQueueDao() {
+    return webhookQueueDao;
+  }
+
   protected <K extends Dao> K getDao(Map<Class, Dao> map, Class<K> clazz) {
     return (K) map.get(clazz);
   }
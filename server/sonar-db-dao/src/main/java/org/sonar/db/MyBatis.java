@@ -118,6 +118,7 @@ import org.sonar.db.user.UserTokenCount;
 import org.sonar.db.user.UserTokenDto;
 import org.sonar.db.user.UserTokenMapper;
 import org.sonar.db.webhook.WebhookDeliveryMapper;
+import org.sonar.db.webhook.WebhookQueueMapper;
 
 public class MyBatis implements Startable {
 
@@ -228,7 +229,8 @@ public class MyBatis implements Startable {
       UserMapper.class,
       UserPermissionMapper.class,
       UserTokenMapper.class,
-      WebhookDeliveryMapper.class
+      WebhookDeliveryMapper.class,
+      WebhookQueueMapper.class
     };
     confBuilder.loadMappers(mappers);
 
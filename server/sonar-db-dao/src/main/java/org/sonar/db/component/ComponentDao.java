@@ -41,6 +41,7 @@ import org.sonar.db.RowNotFoundException;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
 import static java.util.Objects.requireNonNull;
 import static org.apache.commons.lang.StringUtils.isBlank;
 import static org.sonar.db.DaoDatabaseUtils.buildLikeValue;
@@ -143,6 +144,20 @@ public class ComponentDao implements Dao {
     return mapper(session).selectEnabledFilesFromProject(rootComponentUuid);
   }
 
+  /**
+   * Same as {@link #selectEnabledDescendantFiles(DbSession, String)}, but files are not loaded in memory
+   */
+  public void scrollEnabledDescendantFiles(DbSession session, String rootComponentUuid, ResultHandler<FilePathWithHashDto> handler) {
+    mapper(session).scrollDescendantFiles(rootComponentUuid, Scopes.FILE, true, handler);
+  }
+
+  /**
+   * Same as {@link #selectEnabledFilesFromProject(DbSession, String)}, but files are not loaded in memory
+   */
+  public void scrollEnabledFilesFromProject(DbSession session, String rootComponentUuid, ResultHandler<FilePathWithHashDto> handler) {
+    mapper(session).scrollEnabledFilesFromProject(rootComponentUuid, handler);
+  }
+
   public List<ComponentDto> selectByIds(DbSession session, Collection<Long> ids) {
     return executeLargeInputs(ids, mapper(session)::selectByIds);
   }
@@ -240,6 +255,16 @@ public class ComponentDao implements Dao {
     return mapper(dbSession).selectAllRootsByOrganization(organizationUuid);
   }
 
+  /**
+   * Select the uuids of the enabled root components (projects, views, applications...) with the given qualifiers.
+   */
+  public List<String> selectEnabledRootUuidsByQualifiers(DbSession dbSession, Collection<String> qualifiers) {
+    if (qualifiers.isEmpty()) {
+      return emptyList();
+    }
+    return mapper(dbSession).selectEnabledRootUuidsByQualifiers(qualifiers);
+  }
+
   /**
    * Select a page of provisioned (root) components. Results are ordered by ascending name.
    * @param dbSession
@@ -280,7 +305,17 @@ public class ComponentDao implements Dao {
    * @param handler the action to be applied to every result
    */
   public void scrollForIndexing(DbSession session, @Nullable String projectUuid, ResultHandler<ComponentDto> handler) {
-    mapper(session).scrollForIndexing(projectUuid, handler);
+    mapper(session).scrollForIndexing(projectUuid == null ? null : singletonList(projectUuid), handler);
+  }
+
+  /**
+   * Same as {@link #scrollForIndexing(DbSession, String, ResultHandler)}, for several projects at once. The number
+   * of projects must not exceed the maximum size of a SQL IN clause.
+   */
+  public void scrollForIndexingByProjectUuids(DbSession session, Collection<String> projectUuids, ResultHandler<ComponentDto> handler) {
+    if (!projectUuids.isEmpty()) {
+      mapper(session).scrollForIndexing(projectUuids, handler);
+    }
   }
 
   /**
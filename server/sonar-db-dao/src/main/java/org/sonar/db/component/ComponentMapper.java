@@ -80,6 +80,8 @@ public interface ComponentMapper {
 
   List<ComponentDto> selectAllRootsByOrganization(@Param("organizationUuid") String organizationUuid);
 
+  List<String> selectEnabledRootUuidsByQualifiers(@Param("qualifiers") Collection<String> qualifiers);
+
   /**
    * Return all descendant modules (including itself) from a given component uuid and scope
    */
@@ -97,6 +99,11 @@ public interface ComponentMapper {
   List<FilePathWithHashDto> selectDescendantFiles(@Param("moduleUuid") String moduleUuid, @Param(value = "scope") String scope,
     @Param(value = "excludeDisabled") boolean excludeDisabled);
 
+  void scrollEnabledFilesFromProject(@Param("projectUuid") String projectUuid, ResultHandler<FilePathWithHashDto> handler);
+
+  void scrollDescendantFiles(@Param("moduleUuid") String moduleUuid, @Param(value = "scope") String scope,
+    @Param(value = "excludeDisabled") boolean excludeDisabled, ResultHandler<FilePathWithHashDto> handler);
+
   /**
    * Return uuids and project uuids from list of qualifiers
    * <p/>
@@ -130,7 +137,7 @@ public interface ComponentMapper {
 
   List<ComponentDto> selectProjectsByNameQuery(@Param("nameQuery") @Nullable String nameQuery, @Param("includeModules") boolean includeModules);
 
-  void scrollForIndexing(@Param("projectUuid") @Nullable String projectUuid, ResultHandler<ComponentDto> handler);
+  void scrollForIndexing(@Param("projectUuids") @Nullable Collection<String> projectUuids, ResultHandler<ComponentDto> handler);
 
   void insert(ComponentDto componentDto);
 
@@ -25,6 +25,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -44,6 +45,8 @@ import org.sonar.core.util.CloseableIterator;
 import org.sonar.db.DatabaseUtils;
 import org.sonar.db.DbSession;
 
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
 import static org.sonar.api.measures.CoreMetrics.ALERT_STATUS_KEY;
 import static org.sonar.api.measures.CoreMetrics.NCLOC_LANGUAGE_DISTRIBUTION_KEY;
 import static org.sonar.api.utils.KeyValueFormat.parseStringInt;
@@ -72,7 +75,7 @@ public class ProjectMeasuresIndexerIterator extends CloseableIterator<ProjectMea
     "LEFT OUTER JOIN snapshots s ON s.component_uuid=p.uuid AND s.islast=? " +
     "WHERE p.enabled=? AND p.scope=? AND p.qualifier=?";
 
-  private static final String PROJECT_FILTER = " AND p.uuid=?";
+  private static final String PROJECT_FILTER = " AND p.uuid IN ({projectUuids})";
 
   private static final String SQL_MEASURES = "SELECT m.name, pm.value, pm.variation_value_1, pm.text_value FROM project_measures pm " +
     "INNER JOIN metrics m ON m.id = pm.metric_id " +
@@ -96,8 +99,19 @@ public class ProjectMeasuresIndexerIterator extends CloseableIterator<ProjectMea
   }
 
   public static ProjectMeasuresIndexerIterator create(DbSession session, @Nullable String projectUuid) {
+    return doCreate(session, projectUuid == null ? null : singletonList(projectUuid));
+  }
+
+  /**
+   * Iterates over the given projects only. Their number must not exceed the maximum size of a SQL IN clause.
+   */
+  public static ProjectMeasuresIndexerIterator createForProjects(DbSession session, Collection<String> projectUuids) {
+    return doCreate(session, projectUuids);
+  }
+
+  private static ProjectMeasuresIndexerIterator doCreate(DbSession session, @Nullable Collection<String> projectUuids) {
     try {
-      List<Project> projects = selectProjects(session, projectUuid);
+      List<Project> projects = projectUuids != null && projectUuids.isEmpty() ? emptyList() : selectProjects(session, projectUuids);
       PreparedStatement projectsStatement = createMeasuresStatement(session);
       return new ProjectMeasuresIndexerIterator(projectsStatement, projects);
     } catch (SQLException e) {
@@ -105,9 +119,9 @@ public class ProjectMeasuresIndexerIterator extends CloseableIterator<ProjectMea
     }
   }
 
-  private static List<Project> selectProjects(DbSession session, @Nullable String projectUuid) {
+  private static List<Project> selectProjects(DbSession session, @Nullable Collection<String> projectUuids) {
     List<Project> projects = new ArrayList<>();
-    try (PreparedStatement stmt = createProjectsStatement(session, projectUuid);
+    try (PreparedStatement stmt = createProjectsStatement(session, projectUuids);
       ResultSet rs = stmt.executeQuery()) {
       while (rs.next()) {
         String orgUuid = rs.getString(1);
@@ -126,19 +140,20 @@ public class ProjectMeasuresIndexerIterator extends CloseableIterator<ProjectMea
     }
   }
 
-  private static PreparedStatement createProjectsStatement(DbSession session, @Nullable String projectUuid) {
+  private static PreparedStatement createProjectsStatement(DbSession session, @Nullable Collection<String> projectUuids) {
     try {
       StringBuilder sql = new StringBuilder(SQL_PROJECTS);
-      if (projectUuid != null) {
-        sql.append(PROJECT_FILTER);
+      if (projectUuids != null) {
+        sql.append(StringUtils.replace(PROJECT_FILTER, "{projectUuids}", projectUuids.stream().map(x -> "?").collect(Collectors.joining(","))));
       }
       PreparedStatement stmt = session.getConnection().prepareStatement(sql.toString());
       stmt.setBoolean(1, true);
       stmt.setBoolean(2, true);
       stmt.setString(3, Scopes.PROJECT);
       stmt.setString(4, Qualifiers.PROJECT);
-      if (projectUuid != null) {
-        stmt.setString(5, projectUuid);
+      if (projectUuids != null) {
+        AtomicInteger index = new AtomicInteger(5);
+        projectUuids.forEach(DatabaseUtils.setStrings(stmt, index::getAndIncrement));
       }
       return stmt;
     } catch (SQLException e) {
@@ -21,10 +21,13 @@ package org.sonar.db.notification;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.stream.Collectors;
 import org.sonar.db.Dao;
 import org.sonar.db.DbSession;
 import org.sonar.db.MyBatis;
 
+import static org.sonar.db.DatabaseUtils.executeLargeUpdates;
+
 public class NotificationQueueDao implements Dao {
 
   private final MyBatis mybatis;
@@ -44,11 +47,9 @@ public class NotificationQueueDao implements Dao {
   }
 
   public void delete(List<NotificationQueueDto> dtos) {
-    try (DbSession session = mybatis.openSession(true)) {
-      NotificationQueueMapper mapper = session.getMapper(NotificationQueueMapper.class);
-      for (NotificationQueueDto dto : dtos) {
-        mapper.delete(dto.getId());
-      }
+    List<Long> ids = dtos.stream().map(NotificationQueueDto::getId).collect(Collectors.toList());
+    try (DbSession session = mybatis.openSession(false)) {
+      executeLargeUpdates(ids, session.getMapper(NotificationQueueMapper.class)::deleteByIds);
       session.commit();
     }
   }
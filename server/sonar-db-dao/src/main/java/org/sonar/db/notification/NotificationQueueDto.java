@@ -20,21 +20,22 @@
 package org.sonar.db.notification;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import org.apache.commons.io.IOUtils;
+import java.util.Map;
+import javax.annotation.CheckForNull;
 import org.apache.commons.lang.builder.ToStringBuilder;
 import org.apache.commons.lang.builder.ToStringStyle;
 import org.sonar.api.notifications.Notification;
-import org.sonar.api.utils.SonarException;
+import org.sonar.db.protobuf.DbNotifications;
 
 /**
  * @since 3.7.1
  */
 public class NotificationQueueDto {
 
+  private static final byte[] JAVA_SERIALIZATION_MAGIC = {(byte) 0xAC, (byte) 0xED};
+
   private Long id;
   private byte[] data;
 
@@ -61,35 +62,50 @@ public class NotificationQueueDto {
     return ToStringBuilder.reflectionToString(this, ToStringStyle.SHORT_PREFIX_STYLE);
   }
 
+  /**
+   * Notifications are stored in a compact protobuf format. Only the type and the fields of the notification are kept,
+   * so the notification is read back as a plain {@link Notification}.
+   */
   public static NotificationQueueDto toNotificationQueueDto(Notification notification) {
-    ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-    try {
-      ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream);
-      objectOutputStream.writeObject(notification);
-      objectOutputStream.close();
-      return new NotificationQueueDto().setData(byteArrayOutputStream.toByteArray());
-
-    } catch (IOException e) {
-      throw new SonarException("Unable to write notification", e);
-
-    } finally {
-      IOUtils.closeQuietly(byteArrayOutputStream);
+    DbNotifications.Notification.Builder builder = DbNotifications.Notification.newBuilder()
+      .setType(notification.getType());
+    DbNotifications.Field.Builder fieldBuilder = DbNotifications.Field.newBuilder();
+    for (Map.Entry<String, String> field : notification.getFieldValues().entrySet()) {
+      fieldBuilder.clear().setKey(field.getKey());
+      if (field.getValue() != null) {
+        fieldBuilder.setValue(field.getValue());
+      }
+      builder.addField(fieldBuilder);
     }
+    return new NotificationQueueDto().setData(builder.build().toByteArray());
   }
 
+  @CheckForNull
   public Notification toNotification() throws IOException, ClassNotFoundException {
     if (this.data == null) {
       return null;
     }
-    ByteArrayInputStream byteArrayInputStream = null;
-    try {
-      byteArrayInputStream = new ByteArrayInputStream(this.data);
-      ObjectInputStream objectInputStream = new ObjectInputStream(byteArrayInputStream);
-      Object result = objectInputStream.readObject();
-      objectInputStream.close();
-      return (Notification) result;
-    } finally {
-      IOUtils.closeQuietly(byteArrayInputStream);
+    if (isJavaSerialization(this.data)) {
+      return fromJavaSerialization(this.data);
+    }
+    DbNotifications.Notification dbNotification = DbNotifications.Notification.parseFrom(this.data);
+    Notification notification = new Notification(dbNotification.getType());
+    for (DbNotifications.Field field : dbNotification.getFieldList()) {
+      notification.setFieldValue(field.getKey(), field.hasValue() ? field.getValue() : null);
+    }
+    return notification;
+  }
+
+  /**
+   * Notifications enqueued before the upgrade to 6.6 were stored with Java serialization
+   */
+  private static boolean isJavaSerialization(byte[] data) {
+    return data.length >= 2 && data[0] == JAVA_SERIALIZATION_MAGIC[0] && data[1] == JAVA_SERIALIZATION_MAGIC[1];
+  }
+
+  private static Notification fromJavaSerialization(byte[] data) throws IOException, ClassNotFoundException {
+    try (ObjectInputStream objectInputStream = new ObjectInputStream(new ByteArrayInputStream(data))) {
+      return (Notification) objectInputStream.readObject();
     }
   }
 
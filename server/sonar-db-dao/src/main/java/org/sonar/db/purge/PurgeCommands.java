@@ -284,4 +284,11 @@ class PurgeCommands {
     session.commit();
     profiler.stop();
   }
+
+  void deleteWebhookQueue(String rootUuid) {
+    profiler.start("deleteWebhookQueue (webhook_queue)");
+    purgeMapper.deleteWebhookQueueByProjectUuid(rootUuid);
+    session.commit();
+    profiler.stop();
+  }
 }
@@ -95,4 +95,6 @@ public interface PurgeMapper {
   void deleteCeQueueByProjectUuid(@Param("projectUuid") String projectUuid);
 
   void deleteWebhookDeliveriesByProjectUuid(@Param("projectUuid") String projectUuid);
+
+  void deleteWebhookQueueByProjectUuid(@Param("projectUuid") String projectUuid);
 }
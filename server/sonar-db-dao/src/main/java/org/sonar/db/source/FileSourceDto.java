@@ -20,7 +20,9 @@
 package org.sonar.db.source;
 
 import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.ExtensionRegistryLite;
 import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.WireFormat;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -122,6 +124,37 @@ public class FileSourceDto {
     }
   }
 
+  /**
+   * Decodes the lines of {@link #getBinaryData()} up to line {@code toInclusive}. As lines are stored
+   * in ascending order, the following ones are neither decompressed nor parsed.
+   *
+   * @return the lines up to {@code toInclusive}, all the lines if the file is shorter
+   */
+  public List<DbFileSources.Line> decodeSourceLines(int toInclusive) {
+    try (LZ4BlockInputStream lz4Input = new LZ4BlockInputStream(new ByteArrayInputStream(binaryData))) {
+      CodedInputStream input = CodedInputStream.newInstance(lz4Input);
+      input.setSizeLimit(Integer.MAX_VALUE);
+      List<DbFileSources.Line> lines = new ArrayList<>();
+      int tag;
+      while ((tag = input.readTag()) != 0) {
+        if (WireFormat.getTagFieldNumber(tag) != DbFileSources.Data.LINES_FIELD_NUMBER) {
+          input.skipField(tag);
+          continue;
+        }
+        DbFileSources.Line line = input.readMessage(DbFileSources.Line.parser(), ExtensionRegistryLite.getEmptyRegistry());
+        lines.add(line);
+        if (line.hasLine() && line.getLine() >= toInclusive) {
+          break;
+        }
+      }
+      return lines;
+    } catch (IOException e) {
+      throw new IllegalStateException(
+        format("Fail to decompress and deserialize source data [id=%s,fileUuid=%s,projectUuid=%s]", id, fileUuid, projectUuid),
+        e);
+    }
+  }
+
   /**
    * Serialize and compress protobuf message {@link org.sonar.db.protobuf.DbFileSources.Data}
    * in the column BINARY_DATA.
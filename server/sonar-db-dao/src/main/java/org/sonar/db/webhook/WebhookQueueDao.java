@@ -0,0 +1,59 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.webhook;
+
+import java.util.List;
+import org.sonar.db.Dao;
+import org.sonar.db.DbSession;
+
+import static org.sonar.db.DatabaseUtils.executeLargeUpdates;
+
+public class WebhookQueueDao implements Dao {
+
+  public void insert(DbSession dbSession, WebhookQueueDto dto) {
+    mapper(dbSession).insert(dto);
+  }
+
+  /**
+   * The calls which can be sent at the specified date. Results are ordered by ascending date of next attempt.
+   */
+  public List<WebhookQueueDto> selectDue(DbSession dbSession, long now, int limit) {
+    return mapper(dbSession).selectDue(now, limit);
+  }
+
+  /**
+   * Updates the number of attempts and the date of next attempt of a call, unless its date of next attempt
+   * has been changed since it has been loaded. That allows several processes to share the queue without
+   * sending the same call twice.
+   *
+   * @return {@code true} if the call has been updated
+   */
+  public boolean updateNextAttempt(DbSession dbSession, WebhookQueueDto dto, int attempts, long nextAttemptAt) {
+    return mapper(dbSession).updateNextAttempt(dto.getUuid(), attempts, nextAttemptAt, dto.getNextAttemptAt()) == 1;
+  }
+
+  public void deleteByUuids(DbSession dbSession, List<String> uuids) {
+    executeLargeUpdates(uuids, mapper(dbSession)::deleteByUuids);
+  }
+
+  private static WebhookQueueMapper mapper(DbSession dbSession) {
+    return dbSession.getMapper(WebhookQueueMapper.class);
+  }
+}
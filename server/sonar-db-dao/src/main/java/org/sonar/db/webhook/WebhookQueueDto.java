@@ -0,0 +1,151 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.webhook;
+
+import org.apache.commons.lang.builder.ToStringBuilder;
+
+/**
+ * Call of a webhook which has not been sent yet, or which failed and must be retried
+ */
+public class WebhookQueueDto {
+  /** Technical unique identifier, can't be null */
+  private String uuid;
+  /** Component UUID, can't be null */
+  private String componentUuid;
+  /** Compute Engine task UUID, can't be null */
+  private String ceTaskUuid;
+  /** Name, can't be null */
+  private String name;
+  /** URL, can't be null */
+  private String url;
+  /** Key of the project, sent as HTTP header. Can't be null */
+  private String projectKey;
+  /** The JSON payload to send, can't be null */
+  private String payload;
+  /** Number of calls already sent */
+  private int attempts;
+  /** The call must not be sent before this date */
+  private long nextAttemptAt;
+  private long createdAt;
+
+  public String getUuid() {
+    return uuid;
+  }
+
+  public WebhookQueueDto setUuid(String s) {
+    this.uuid = s;
+    return this;
+  }
+
+  public String getComponentUuid() {
+    return componentUuid;
+  }
+
+  public WebhookQueueDto setComponentUuid(String s) {
+    this.componentUuid = s;
+    return this;
+  }
+
+  public String getCeTaskUuid() {
+    return ceTaskUuid;
+  }
+
+  public WebhookQueueDto setCeTaskUuid(String s) {
+    this.ceTaskUuid = s;
+    return this;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public WebhookQueueDto setName(String s) {
+    this.name = s;
+    return this;
+  }
+
+  public String getUrl() {
+    return url;
+  }
+
+  public WebhookQueueDto setUrl(String s) {
+    this.url = s;
+    return this;
+  }
+
+  public String getProjectKey() {
+    return projectKey;
+  }
+
+  public WebhookQueueDto setProjectKey(String s) {
+    this.projectKey = s;
+    return this;
+  }
+
+  public String getPayload() {
+    return payload;
+  }
+
+  public WebhookQueueDto setPayload(String s) {
+    this.payload = s;
+    return this;
+  }
+
+  public int getAttempts() {
+    return attempts;
+  }
+
+  public WebhookQueueDto setAttempts(int i) {
+    this.attempts = i;
+    return this;
+  }
+
+  public long getNextAttemptAt() {
+    return nextAttemptAt;
+  }
+
+  public WebhookQueueDto setNextAttemptAt(long l) {
+    this.nextAttemptAt = l;
+    return this;
+  }
+
+  public long getCreatedAt() {
+    return createdAt;
+  }
+
+  public WebhookQueueDto setCreatedAt(long l) {
+    this.createdAt = l;
+    return this;
+  }
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this)
+      .append("uuid", uuid)
+      .append("componentUuid", componentUuid)
+      .append("ceTaskUuid", ceTaskUuid)
+      .append("name", name)
+      .append("url", url)
+      .append("attempts", attempts)
+      .append("nextAttemptAt", nextAttemptAt)
+      .append("createdAt", createdAt)
+      .toString();
+  }
+}
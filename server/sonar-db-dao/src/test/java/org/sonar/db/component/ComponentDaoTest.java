@@ -488,6 +488,26 @@ public class ComponentDaoTest {
     assertThat(underTest.selectEnabledFilesFromProject(dbSession, "unknown")).isEmpty();
   }
 
+  @Test
+  public void scroll_enabled_files_from_project_and_from_module() {
+    db.prepareDbUnit(getClass(), "select_module_files_tree.xml");
+
+    List<FilePathWithHashDto> files = new ArrayList<>();
+    underTest.scrollEnabledFilesFromProject(dbSession, "ABCD", context -> files.add(context.getResultObject()));
+    assertThat(files).extracting("uuid").containsOnly("EFGHI", "HIJK");
+
+    files.clear();
+    underTest.scrollEnabledDescendantFiles(dbSession, "FGHI", context -> files.add(context.getResultObject()));
+    assertThat(files).extracting("uuid").containsOnly("HIJK");
+    assertThat(files).extracting("srcHash").containsOnly("srcHIJK");
+    assertThat(files).extracting("revision").containsOnly("123456789");
+
+    files.clear();
+    underTest.scrollEnabledFilesFromProject(dbSession, "EFGH", context -> files.add(context.getResultObject()));
+    underTest.scrollEnabledDescendantFiles(dbSession, "unknown", context -> files.add(context.getResultObject()));
+    assertThat(files).isEmpty();
+  }
+
   @Test
   public void select_all_components_from_project() {
     db.prepareDbUnit(getClass(), "multi-modules.xml");
@@ -535,6 +555,25 @@ public class ComponentDaoTest {
     assertThat(underTest.selectProjectsFromView(dbSession, "Unknown", "Unknown")).isEmpty();
   }
 
+  @Test
+  public void select_enabled_root_uuids_by_qualifiers() {
+    OrganizationDto organization = db.organizations().insert();
+    ComponentDto project = db.components().insertPrivateProject(organization);
+    ComponentDto module = db.components().insertComponent(newModuleDto(project));
+    db.components().insertComponent(newFileDto(module));
+    db.components().insertComponent(ComponentTesting.newPrivateProjectDto(organization).setEnabled(false));
+    ComponentDto view = db.components().insertView(organization);
+    db.components().insertSubView(view, dto -> {
+    });
+    ComponentDto application = db.components().insertApplication(organization);
+
+    assertThat(underTest.selectEnabledRootUuidsByQualifiers(dbSession, singletonList(Qualifiers.PROJECT)))
+      .containsExactlyInAnyOrder(project.uuid());
+    assertThat(underTest.selectEnabledRootUuidsByQualifiers(dbSession, asList(Qualifiers.PROJECT, Qualifiers.VIEW, Qualifiers.APP)))
+      .containsExactlyInAnyOrder(project.uuid(), view.uuid(), application.uuid());
+    assertThat(underTest.selectEnabledRootUuidsByQualifiers(dbSession, emptyList())).isEmpty();
+  }
+
   @Test
   public void select_projects() {
     OrganizationDto organization = db.organizations().insert();
@@ -670,6 +709,19 @@ public class ComponentDaoTest {
       .containsOnly("U1", "U2", "U3", "U4");
   }
 
+  @Test
+  public void selectForIndexing_several_projects() {
+    db.prepareDbUnit(getClass(), "selectForIndexing.xml");
+
+    List<ComponentDto> components = new ArrayList<>();
+    underTest.scrollForIndexingByProjectUuids(dbSession, asList("U1", "U5"), context -> components.add(context.getResultObject()));
+    assertThat(components).extracting(ComponentDto::uuid).containsOnly("U1", "U2", "U3", "U4", "U5", "U6");
+
+    components.clear();
+    underTest.scrollForIndexingByProjectUuids(dbSession, emptyList(), context -> components.add(context.getResultObject()));
+    assertThat(components).isEmpty();
+  }
+
   private ListAssert<String> assertSelectForIndexing(@Nullable String projectUuid) {
     db.prepareDbUnit(getClass(), "selectForIndexing.xml");
 
@@ -19,6 +19,7 @@
  */
 package org.sonar.db.measure;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import java.util.Map;
 import javax.annotation.Nullable;
@@ -38,6 +39,8 @@ import org.sonar.db.metric.MetricDto;
 import org.sonar.db.metric.MetricTesting;
 import org.sonar.db.organization.OrganizationDto;
 
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.entry;
 import static org.sonar.api.measures.Metric.Level.ERROR;
@@ -247,6 +250,21 @@ public class ProjectMeasuresIndexerIteratorTest {
     assertThat(doc.getProject().getAnalysisDate()).isNotNull().isEqualTo(analysis.getCreatedAt());
   }
 
+  @Test
+  public void return_only_docs_from_given_projects() {
+    OrganizationDto organizationDto = dbTester.organizations().insert();
+    ComponentDto project1 = dbTester.components().insertPrivateProject(organizationDto);
+    ComponentDto project2 = dbTester.components().insertPrivateProject(organizationDto);
+    dbTester.components().insertPrivateProject(organizationDto);
+
+    try (ProjectMeasuresIndexerIterator it = ProjectMeasuresIndexerIterator.createForProjects(dbTester.getSession(), asList(project1.uuid(), project2.uuid(), "UNKNOWN"))) {
+      assertThat(Lists.newArrayList(it)).extracting(pm -> pm.getProject().getUuid()).containsOnly(project1.uuid(), project2.uuid());
+    }
+    try (ProjectMeasuresIndexerIterator it = ProjectMeasuresIndexerIterator.createForProjects(dbTester.getSession(), emptyList())) {
+      assertThat(it.hasNext()).isFalse();
+    }
+  }
+
   @Test
   public void return_nothing_on_unknown_project() throws Exception {
     dbTester.components().insertProjectAndSnapshot(ComponentTesting.newPrivateProjectDto(dbTester.getDefaultOrganization()));
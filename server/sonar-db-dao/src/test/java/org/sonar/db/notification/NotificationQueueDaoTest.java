@@ -19,6 +19,8 @@
  */
 package org.sonar.db.notification;
 
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
 import java.util.Arrays;
 import java.util.Collection;
 import org.junit.Rule;
@@ -46,6 +48,34 @@ public class NotificationQueueDaoTest {
     assertThat(dao.selectOldest(1).get(0).toNotification().getType()).isEqualTo("email");
   }
 
+  @Test
+  public void should_restore_type_and_fields_of_notification() throws Exception {
+    Notification notification = new Notification("issue-changes")
+      .setFieldValue("key", "ABCDE")
+      .setFieldValue("old.severity", null)
+      .setDefaultMessage("message");
+
+    dao.insert(Arrays.asList(NotificationQueueDto.toNotificationQueueDto(notification)));
+
+    Notification restored = dao.selectOldest(1).get(0).toNotification();
+    assertThat(restored).isEqualTo(notification);
+    assertThat(restored.getFieldValues()).containsKey("old.severity");
+    assertThat(restored.getFieldValue("old.severity")).isNull();
+  }
+
+  @Test
+  public void should_read_notification_serialized_with_java_serialization() throws Exception {
+    Notification notification = new Notification("email").setFieldValue("foo", "bar");
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+      output.writeObject(notification);
+    }
+
+    dao.insert(Arrays.asList(new NotificationQueueDto().setData(bytes.toByteArray())));
+
+    assertThat(dao.selectOldest(1).get(0).toNotification()).isEqualTo(notification);
+  }
+
   @Test
   public void should_count_notification_queue() {
     NotificationQueueDto notificationQueueDto = NotificationQueueDto.toNotificationQueueDto(new Notification("email"));
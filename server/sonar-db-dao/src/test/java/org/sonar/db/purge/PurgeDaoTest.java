@@ -64,7 +64,9 @@ import static org.sonar.db.component.ComponentTesting.newDirectory;
 import static org.sonar.db.component.ComponentTesting.newFileDto;
 import static org.sonar.db.component.ComponentTesting.newProjectCopy;
 import static org.sonar.db.webhook.WebhookDbTesting.newWebhookDeliveryDto;
+import static org.sonar.db.webhook.WebhookDbTesting.newWebhookQueueDto;
 import static org.sonar.db.webhook.WebhookDbTesting.selectAllDeliveryUuids;
+import static org.sonar.db.webhook.WebhookDbTesting.selectAllQueueUuids;
 
 public class PurgeDaoTest {
 
@@ -298,6 +300,17 @@ public class PurgeDaoTest {
     assertThat(selectAllDeliveryUuids(dbTester, dbSession)).containsOnly("D2");
   }
 
+  @Test
+  public void deleteProject_deletes_webhook_queue() {
+    ComponentDto project = dbTester.components().insertPublicProject();
+    dbClient.webhookQueueDao().insert(dbSession, newWebhookQueueDto().setComponentUuid(project.uuid()).setUuid("Q1"));
+    dbClient.webhookQueueDao().insert(dbSession, newWebhookQueueDto().setComponentUuid("P2").setUuid("Q2"));
+
+    underTest.deleteRootComponent(dbSession, project.uuid());
+
+    assertThat(selectAllQueueUuids(dbTester, dbSession)).containsOnly("Q2");
+  }
+
   @Test
   public void deleteNonRootComponents_has_no_effect_when_parameter_is_empty() {
     DbSession dbSession = mock(DbSession.class);
@@ -54,6 +54,27 @@ public class FileSourceDtoTest {
     assertThat(underTest.getTestData().get(0).getName()).isEqualTo("name#1");
   }
 
+  @Test
+  public void decodeSourceLines_stops_after_requested_line() {
+    DbFileSources.Data.Builder data = DbFileSources.Data.newBuilder();
+    for (int i = 1; i <= 10; i++) {
+      data.addLinesBuilder().setLine(i).setSource("line " + i);
+    }
+    FileSourceDto underTest = new FileSourceDto().setSourceData(data.build());
+
+    assertThat(underTest.decodeSourceLines(3)).extracting(DbFileSources.Line::getSource).containsExactly("line 1", "line 2", "line 3");
+    assertThat(underTest.decodeSourceLines(Integer.MAX_VALUE)).isEqualTo(data.getLinesList());
+    assertThat(underTest.decodeSourceLines(20)).hasSize(10);
+  }
+
+  @Test
+  public void decodeSourceLines_reads_Data_object_bigger_than_default_size_limit() {
+    DbFileSources.Data build = createOver64MBDataStructure();
+    FileSourceDto underTest = new FileSourceDto().setSourceData(build);
+
+    assertThat(underTest.decodeSourceLines(Integer.MAX_VALUE)).hasSize(build.getLinesCount());
+  }
+
   @Test
   public void getSourceData_throws_ISE_with_id_fileUuid_and_projectUuid_in_message_when_data_cant_be_read() {
     long id = 12L;
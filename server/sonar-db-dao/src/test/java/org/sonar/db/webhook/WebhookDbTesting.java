@@ -49,10 +49,31 @@ public class WebhookDbTesting {
       .setCreatedAt(nextLong());
   }
 
+  public static WebhookQueueDto newWebhookQueueDto() {
+    return new WebhookQueueDto()
+      .setUuid(randomAlphanumeric(40))
+      .setComponentUuid(randomAlphanumeric(40))
+      .setCeTaskUuid(randomAlphanumeric(40))
+      .setName(randomAlphanumeric(10))
+      .setUrl(randomAlphanumeric(10))
+      .setProjectKey(randomAlphanumeric(10))
+      .setPayload(randomAlphanumeric(10))
+      .setAttempts(0)
+      .setNextAttemptAt(nextLong())
+      .setCreatedAt(nextLong());
+  }
+
   public static List<String> selectAllDeliveryUuids(DbTester dbTester, DbSession dbSession) {
     return dbTester.select(dbSession, "select uuid as \"uuid\" from webhook_deliveries")
       .stream()
       .map(columns -> (String)columns.get("uuid"))
       .collect(Collectors.toList());
   }
+
+  public static List<String> selectAllQueueUuids(DbTester dbTester, DbSession dbSession) {
+    return dbTester.select(dbSession, "select uuid as \"uuid\" from webhook_queue")
+      .stream()
+      .map(columns -> (String)columns.get("uuid"))
+      .collect(Collectors.toList());
+  }
 }
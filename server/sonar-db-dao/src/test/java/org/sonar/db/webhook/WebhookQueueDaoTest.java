@@ -0,0 +1,98 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.webhook;
+
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.sonar.api.utils.System2;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.DbTester;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.db.webhook.WebhookDbTesting.newWebhookQueueDto;
+import static org.sonar.db.webhook.WebhookDbTesting.selectAllQueueUuids;
+
+public class WebhookQueueDaoTest {
+
+  private static final long NOW = 1_500_000_000L;
+
+  @Rule
+  public final DbTester dbTester = DbTester.create(System2.INSTANCE).setDisableDefaultOrganization(true);
+
+  private final DbClient dbClient = dbTester.getDbClient();
+  private final DbSession dbSession = dbTester.getSession();
+  private final WebhookQueueDao underTest = dbClient.webhookQueueDao();
+
+  @Test
+  public void insert_row_with_all_columns() {
+    WebhookQueueDto dto = newWebhookQueueDto().setAttempts(2);
+    underTest.insert(dbSession, dto);
+
+    WebhookQueueDto stored = underTest.selectDue(dbSession, dto.getNextAttemptAt(), 10).get(0);
+    assertThat(stored.getUuid()).isEqualTo(dto.getUuid());
+    assertThat(stored.getComponentUuid()).isEqualTo(dto.getComponentUuid());
+    assertThat(stored.getCeTaskUuid()).isEqualTo(dto.getCeTaskUuid());
+    assertThat(stored.getName()).isEqualTo(dto.getName());
+    assertThat(stored.getUrl()).isEqualTo(dto.getUrl());
+    assertThat(stored.getProjectKey()).isEqualTo(dto.getProjectKey());
+    assertThat(stored.getPayload()).isEqualTo(dto.getPayload());
+    assertThat(stored.getAttempts()).isEqualTo(2);
+    assertThat(stored.getNextAttemptAt()).isEqualTo(dto.getNextAttemptAt());
+    assertThat(stored.getCreatedAt()).isEqualTo(dto.getCreatedAt());
+  }
+
+  @Test
+  public void selectDue_returns_calls_which_can_be_sent_ordered_by_date_of_next_attempt() {
+    underTest.insert(dbSession, newWebhookQueueDto().setUuid("Q1").setNextAttemptAt(NOW - 10));
+    underTest.insert(dbSession, newWebhookQueueDto().setUuid("Q2").setNextAttemptAt(NOW - 20));
+    underTest.insert(dbSession, newWebhookQueueDto().setUuid("Q3").setNextAttemptAt(NOW));
+    underTest.insert(dbSession, newWebhookQueueDto().setUuid("Q4").setNextAttemptAt(NOW + 1));
+
+    assertThat(underTest.selectDue(dbSession, NOW, 10)).extracting(WebhookQueueDto::getUuid).containsExactly("Q2", "Q1", "Q3");
+    assertThat(underTest.selectDue(dbSession, NOW, 2)).extracting(WebhookQueueDto::getUuid).containsExactly("Q2", "Q1");
+  }
+
+  @Test
+  public void updateNextAttempt_does_not_update_call_changed_concurrently() {
+    WebhookQueueDto dto = newWebhookQueueDto().setNextAttemptAt(NOW);
+    underTest.insert(dbSession, dto);
+
+    assertThat(underTest.updateNextAttempt(dbSession, dto, 1, NOW + 100)).isTrue();
+    assertThat(underTest.updateNextAttempt(dbSession, dto, 1, NOW + 200)).isFalse();
+
+    List<WebhookQueueDto> stored = underTest.selectDue(dbSession, NOW + 1_000, 10);
+    assertThat(stored).extracting(WebhookQueueDto::getAttempts).containsExactly(1);
+    assertThat(stored).extracting(WebhookQueueDto::getNextAttemptAt).containsExactly(NOW + 100);
+  }
+
+  @Test
+  public void deleteByUuids() {
+    underTest.insert(dbSession, newWebhookQueueDto().setUuid("Q1"));
+    underTest.insert(dbSession, newWebhookQueueDto().setUuid("Q2"));
+    underTest.insert(dbSession, newWebhookQueueDto().setUuid("Q3"));
+
+    underTest.deleteByUuids(dbSession, Arrays.asList("Q1", "Q3", "missing"));
+
+    assertThat(selectAllQueueUuids(dbTester, dbSession)).containsOnly("Q2");
+  }
+}
@@ -31,6 +31,7 @@ import org.sonar.server.platform.db.migration.version.v62.DbVersion62;
 import org.sonar.server.platform.db.migration.version.v63.DbVersion63;
 import org.sonar.server.platform.db.migration.version.v64.DbVersion64;
 import org.sonar.server.platform.db.migration.version.v65.DbVersion65;
+import org.sonar.server.platform.db.migration.version.v66.DbVersion66;
 
 public class MigrationConfigurationModule extends Module {
   @Override
@@ -45,6 +46,7 @@ public class MigrationConfigurationModule extends Module {
       DbVersion63.class,
       DbVersion64.class,
       DbVersion65.class,
+      DbVersion66.class,
 
       // migration steps
       MigrationStepRegistryImpl.class,
@@ -19,9 +19,15 @@
  */
 package org.sonar.server.batch;
 
+import com.google.common.net.HttpHeaders;
+import com.google.protobuf.CodedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import org.apache.commons.io.IOUtils;
 import org.sonar.api.server.ws.Request;
 import org.sonar.api.server.ws.Response;
 import org.sonar.api.server.ws.WebService;
@@ -33,12 +39,15 @@ import org.sonarqube.ws.WsBatch.WsProjectResponse.FileData.Builder;
 import static org.sonar.core.util.Protobuf.setNullable;
 import static org.sonar.server.ws.KeyExamples.KEY_PROJECT_EXAMPLE_001;
 import static org.sonar.server.ws.WsUtils.writeProtobuf;
+import static org.sonarqube.ws.MediaTypes.PROTOBUF;
 
 public class ProjectAction implements BatchWsAction {
 
   private static final String PARAM_KEY = "key";
   private static final String PARAM_PROFILE = "profile";
   private static final String PARAM_ISSUES_MODE = "issues_mode";
+  private static final String PARAM_STREAMED = "streamed";
+  private static final int FILE_DATA_CHUNK_SIZE = 1_000;
 
   private final ProjectDataLoader projectDataLoader;
 
@@ -71,17 +80,158 @@ public class ProjectAction implements BatchWsAction {
       .setDescription("Issues mode or not")
       .setDefaultValue(false)
       .setBooleanPossibleValues();
+
+    action
+      .createParam(PARAM_STREAMED)
+      .setDescription("Only for protobuf responses. If true, file data are streamed in the field 'fileDataChunks' instead " +
+        "of being returned in the field 'fileDataByModuleAndPath'")
+      .setSince("6.6")
+      .setDefaultValue(false)
+      .setBooleanPossibleValues();
   }
 
   @Override
   public void handle(Request wsRequest, Response wsResponse) throws Exception {
-    ProjectRepositories data = projectDataLoader.load(ProjectDataQuery.create()
+    ProjectDataQuery query = ProjectDataQuery.create()
       .setModuleKey(wsRequest.mandatoryParam(PARAM_KEY))
       .setProfileName(wsRequest.param(PARAM_PROFILE))
-      .setIssuesMode(wsRequest.mandatoryParamAsBoolean(PARAM_ISSUES_MODE)));
+      .setIssuesMode(wsRequest.mandatoryParamAsBoolean(PARAM_ISSUES_MODE));
+
+    if (wsRequest.mandatoryParamAsBoolean(PARAM_STREAMED) && PROTOBUF.equals(wsRequest.getMediaType())) {
+      StreamingHandler handler = new StreamingHandler(wsRequest, wsResponse);
+      try {
+        projectDataLoader.load(query, handler);
+        handler.finish();
+      } finally {
+        handler.close();
+      }
+      return;
+    }
+
+    InMemoryHandler handler = new InMemoryHandler(wsRequest, wsResponse);
+    projectDataLoader.load(query, handler);
+    if (handler.data != null) {
+      WsProjectResponse projectResponse = buildResponse(handler.data);
+      writeProtobuf(projectResponse, wsRequest, wsResponse);
+    }
+  }
+
+  /**
+   * Returns {@code false} and responds 304 if the client already has the data, else sets the ETag header.
+   */
+  private static boolean checkModified(Request wsRequest, Response wsResponse, String dataVersion) {
+    String etag = "\"" + dataVersion + "\"";
+    if (wsRequest.header(HttpHeaders.IF_NONE_MATCH).filter(etag::equals).isPresent()) {
+      wsResponse.stream().setStatus(HttpURLConnection.HTTP_NOT_MODIFIED);
+      return false;
+    }
+    wsResponse.setHeader(HttpHeaders.ETAG, etag);
+    return true;
+  }
+
+  private static class InMemoryHandler implements ProjectDataLoader.Handler {
+    private final Request wsRequest;
+    private final Response wsResponse;
+    private ProjectRepositories data;
+
+    private InMemoryHandler(Request wsRequest, Response wsResponse) {
+      this.wsRequest = wsRequest;
+      this.wsResponse = wsResponse;
+    }
+
+    @Override
+    public boolean onSettings(ProjectRepositories data, String dataVersion) {
+      if (checkModified(wsRequest, wsResponse, dataVersion)) {
+        this.data = data;
+        return true;
+      }
+      return false;
+    }
 
-    WsProjectResponse projectResponse = buildResponse(data);
-    writeProtobuf(projectResponse, wsRequest, wsResponse);
+    @Override
+    public void onFileData(String moduleKey, String path, FileData fileData) {
+      data.addFileData(moduleKey, path, fileData);
+    }
+  }
+
+  /**
+   * Writes the fields of {@link WsProjectResponse} one after the other, file data being sent by chunks
+   * of {@link #FILE_DATA_CHUNK_SIZE} files. The response is a regular {@link WsProjectResponse}.
+   */
+  private static class StreamingHandler implements ProjectDataLoader.Handler {
+    private final Request wsRequest;
+    private final Response wsResponse;
+    private OutputStream output;
+    private CodedOutputStream codedOutput;
+    private Map<String, WsProjectResponse.FileDataByPath.Builder> chunk = new HashMap<>();
+    private int chunkSize = 0;
+
+    private StreamingHandler(Request wsRequest, Response wsResponse) {
+      this.wsRequest = wsRequest;
+      this.wsResponse = wsResponse;
+    }
+
+    @Override
+    public boolean onSettings(ProjectRepositories data, String dataVersion) {
+      if (!checkModified(wsRequest, wsResponse, dataVersion)) {
+        return false;
+      }
+      WsProjectResponse.Builder response = WsProjectResponse.newBuilder();
+      setNullable(data.lastAnalysisDate(), response::setLastAnalysisDate, Date::getTime);
+      response.setTimestamp(data.timestamp());
+      response.getMutableSettingsByModule()
+        .putAll(buildSettingsByModule(data));
+
+      wsResponse.stream().setMediaType(PROTOBUF);
+      output = wsResponse.stream().output();
+      codedOutput = CodedOutputStream.newInstance(output);
+      try {
+        response.build().writeTo(codedOutput);
+      } catch (IOException e) {
+        throw new IllegalStateException("Error while writing protobuf message", e);
+      }
+      return true;
+    }
+
+    @Override
+    public void onFileData(String moduleKey, String path, FileData fileData) {
+      chunk.computeIfAbsent(moduleKey, k -> WsProjectResponse.FileDataByPath.newBuilder())
+        .getMutableFileDataByPath().put(path, toFileDataResponse(fileData));
+      chunkSize++;
+      if (chunkSize >= FILE_DATA_CHUNK_SIZE) {
+        flushChunk();
+      }
+    }
+
+    private void flushChunk() {
+      if (chunkSize == 0) {
+        return;
+      }
+      WsProjectResponse.FileDataChunk.Builder fileDataChunk = WsProjectResponse.FileDataChunk.newBuilder();
+      chunk.forEach((moduleKey, fileDataByPath) -> fileDataChunk.getMutableFileDataByModuleAndPath().put(moduleKey, fileDataByPath.build()));
+      try {
+        codedOutput.writeMessage(WsProjectResponse.FILEDATACHUNKS_FIELD_NUMBER, fileDataChunk.build());
+      } catch (IOException e) {
+        throw new IllegalStateException("Error while writing protobuf message", e);
+      }
+      chunk = new HashMap<>();
+      chunkSize = 0;
+    }
+
+    void finish() {
+      if (codedOutput != null) {
+        flushChunk();
+        try {
+          codedOutput.flush();
+        } catch (IOException e) {
+          throw new IllegalStateException("Error while writing protobuf message", e);
+        }
+      }
+    }
+
+    void close() {
+      IOUtils.closeQuietly(output);
+    }
   }
 
   private static WsProjectResponse buildResponse(ProjectRepositories data) {
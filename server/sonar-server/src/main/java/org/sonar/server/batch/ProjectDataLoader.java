@@ -23,9 +23,14 @@ import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.ibatis.session.ResultHandler;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.api.resources.Scopes;
 import org.sonar.api.server.ServerSide;
@@ -33,6 +38,7 @@ import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.component.ComponentDto;
 import org.sonar.db.component.FilePathWithHashDto;
+import org.sonar.db.component.SnapshotDto;
 import org.sonar.db.permission.OrganizationPermission;
 import org.sonar.db.property.PropertyDto;
 import org.sonar.scanner.protocol.input.FileData;
@@ -59,6 +65,16 @@ public class ProjectDataLoader {
   }
 
   public ProjectRepositories load(ProjectDataQuery query) {
+    InMemoryHandler handler = new InMemoryHandler();
+    load(query, handler);
+    return handler.data;
+  }
+
+  /**
+   * Same as {@link #load(ProjectDataQuery)}, but file data are given to the handler as soon as they are read
+   * from database, so that they are never loaded all together in memory.
+   */
+  public void load(ProjectDataQuery query, Handler handler) {
     try (DbSession session = dbClient.openSession(false)) {
       ProjectRepositories data = new ProjectRepositories();
       ComponentDto module = checkFoundWithOptional(dbClient.componentDao().selectByKey(session, query.getModuleKey()),
@@ -83,17 +99,36 @@ public class ProjectDataLoader {
       TreeModuleSettings treeModuleSettings = new TreeModuleSettings(moduleUuidsByKey, moduleIdsByKey, modulesTree, modulesTreeSettings);
 
       addSettingsToChildrenModules(data, query.getModuleKey(), Maps.<String, String>newHashMap(), treeModuleSettings, hasScanPerm);
-      List<FilePathWithHashDto> files = searchFilesWithHashAndRevision(session, module);
-      addFileData(data, modulesTree, files);
 
-      // FIXME need real value but actually only used to know if there is a previous analysis in local issue tracking mode so any value is
-      // ok
-      data.setLastAnalysisDate(new Date());
+      Optional<SnapshotDto> lastAnalysis = dbClient.snapshotDao().selectLastAnalysisByRootComponentUuid(session, project.uuid());
+      data.setLastAnalysisDate(lastAnalysis.map(analysis -> new Date(analysis.getCreatedAt())).orElse(null));
 
-      return data;
+      String dataVersion = computeDataVersion(query, lastAnalysis, modulesTree, data, hasScanPerm);
+      if (handler.onSettings(data, dataVersion)) {
+        scrollFileData(session, module, modulesTree, handler);
+      }
     }
   }
 
+  /**
+   * Files are updated only by analyses, so the last analysis of the project is enough to know if
+   * they changed. Settings, modules and dates of the response are already loaded, so they are part of the version.
+   */
+  private static String computeDataVersion(ProjectDataQuery query, Optional<SnapshotDto> lastAnalysis, List<ComponentDto> modulesTree,
+    ProjectRepositories data, boolean hasScanPerm) {
+    StringBuilder version = new StringBuilder()
+      .append(query.getModuleKey()).append('|')
+      .append(query.isIssuesMode()).append('|')
+      .append(hasScanPerm).append('|')
+      .append(data.timestamp()).append('|');
+    lastAnalysis.ifPresent(analysis -> version.append(analysis.getUuid()).append('@').append(analysis.getCreatedAt()));
+    modulesTree.stream()
+      .sorted(Comparator.comparing(ComponentDto::uuid))
+      .forEach(m -> version.append('|').append(m.uuid()).append('=').append(m.getDbKey()));
+    new TreeMap<>(data.settings()).forEach((moduleKey, settings) -> version.append('|').append(moduleKey).append(new TreeMap<>(settings)));
+    return DigestUtils.sha1Hex(version.toString());
+  }
+
   private static boolean isProjectOrModule(ComponentDto module) {
     if (!Scopes.PROJECT.equals(module.scope())) {
       return false;
@@ -101,9 +136,23 @@ public class ProjectDataLoader {
     return Qualifiers.PROJECT.equals(module.qualifier()) || Qualifiers.MODULE.equals(module.qualifier());
   }
 
-  private List<FilePathWithHashDto> searchFilesWithHashAndRevision(DbSession session, ComponentDto module) {
-    return module.isRootProject() ? dbClient.componentDao().selectEnabledFilesFromProject(session, module.uuid())
-      : dbClient.componentDao().selectEnabledDescendantFiles(session, module.uuid());
+  private void scrollFileData(DbSession session, ComponentDto module, List<ComponentDto> modulesTree, Handler handler) {
+    Map<String, String> moduleKeysByUuid = newHashMap();
+    for (ComponentDto moduleOrChild : modulesTree) {
+      moduleKeysByUuid.put(moduleOrChild.uuid(), moduleOrChild.getDbKey());
+    }
+
+    ResultHandler<FilePathWithHashDto> resultHandler = context -> {
+      FilePathWithHashDto file = context.getResultObject();
+      if (file.getPath() != null && (file.getSrcHash() != null || file.getRevision() != null)) {
+        handler.onFileData(moduleKeysByUuid.get(file.getModuleUuid()), file.getPath(), new FileData(file.getSrcHash(), file.getRevision()));
+      }
+    };
+    if (module.isRootProject()) {
+      dbClient.componentDao().scrollEnabledFilesFromProject(session, module.uuid(), resultHandler);
+    } else {
+      dbClient.componentDao().scrollEnabledDescendantFiles(session, module.uuid(), resultHandler);
+    }
   }
 
   private ComponentDto getProject(ComponentDto module, DbSession session) {
@@ -172,18 +221,6 @@ public class ProjectDataLoader {
     return !key.contains(".secured") || hasScanPerm;
   }
 
-  private static void addFileData(ProjectRepositories data, List<ComponentDto> moduleChildren, List<FilePathWithHashDto> files) {
-    Map<String, String> moduleKeysByUuid = newHashMap();
-    for (ComponentDto module : moduleChildren) {
-      moduleKeysByUuid.put(module.uuid(), module.getDbKey());
-    }
-
-    for (FilePathWithHashDto file : files) {
-      FileData fileData = new FileData(file.getSrcHash(), file.getRevision());
-      data.addFileData(moduleKeysByUuid.get(file.getModuleUuid()), file.getPath(), fileData);
-    }
-  }
-
   private static void checkPermission(boolean preview, boolean hasScanPerm, boolean hasBrowsePerm) {
     if (!hasBrowsePerm && !hasScanPerm) {
       throw new ForbiddenException(Messages.NO_PERMISSION);
@@ -213,6 +250,33 @@ public class ProjectDataLoader {
     return moduleIdsByKey;
   }
 
+  public interface Handler {
+    /**
+     * Called once settings are loaded, before file data.
+     *
+     * @param dataVersion changes as soon as the data returned for the same query may change
+     * @return {@code false} if file data must not be loaded
+     */
+    boolean onSettings(ProjectRepositories data, String dataVersion);
+
+    void onFileData(String moduleKey, String path, FileData fileData);
+  }
+
+  private static class InMemoryHandler implements Handler {
+    private ProjectRepositories data;
+
+    @Override
+    public boolean onSettings(ProjectRepositories data, String dataVersion) {
+      this.data = data;
+      return true;
+    }
+
+    @Override
+    public void onFileData(String moduleKey, String path, FileData fileData) {
+      data.addFileData(moduleKey, path, fileData);
+    }
+  }
+
   private static class TreeModuleSettings {
 
     private Map<String, Long> moduleIdsByKey;
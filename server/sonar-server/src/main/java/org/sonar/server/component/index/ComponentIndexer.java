@@ -30,6 +30,7 @@ import javax.annotation.Nullable;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
+import org.sonar.api.resources.Qualifiers;
 import org.sonar.core.util.stream.MoreCollectors;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
@@ -42,16 +43,18 @@ import org.sonar.server.es.IndexType;
 import org.sonar.server.es.IndexingResult;
 import org.sonar.server.es.OneToManyResilientIndexingListener;
 import org.sonar.server.es.ProjectIndexer;
+import org.sonar.server.es.ShardedStartupIndexer;
 import org.sonar.server.permission.index.AuthorizationScope;
 import org.sonar.server.permission.index.NeedAuthorizationIndexer;
 
 import static java.util.Collections.emptyList;
 import static org.sonar.server.component.index.ComponentIndexDefinition.INDEX_TYPE_COMPONENT;
 
-public class ComponentIndexer implements ProjectIndexer, NeedAuthorizationIndexer {
+public class ComponentIndexer implements ProjectIndexer, ShardedStartupIndexer, NeedAuthorizationIndexer {
 
   private static final AuthorizationScope AUTHORIZATION_SCOPE = new AuthorizationScope(INDEX_TYPE_COMPONENT, project -> true);
   private static final ImmutableSet<IndexType> INDEX_TYPES = ImmutableSet.of(INDEX_TYPE_COMPONENT);
+  private static final ImmutableSet<String> ROOT_QUALIFIERS = ImmutableSet.of(Qualifiers.PROJECT, Qualifiers.VIEW, Qualifiers.APP);
 
   private final DbClient dbClient;
   private final EsClient esClient;
@@ -71,6 +74,26 @@ public class ComponentIndexer implements ProjectIndexer, NeedAuthorizationIndexe
     doIndexByProjectUuid(null, Size.LARGE);
   }
 
+  @Override
+  public Set<String> getRootQualifiers() {
+    return ROOT_QUALIFIERS;
+  }
+
+  @Override
+  public void indexOnStartup(Set<IndexType> uninitializedIndexTypes, List<String> rootUuids) {
+    BulkIndexer bulk = new BulkIndexer(esClient, INDEX_TYPE_COMPONENT, Size.LARGE);
+
+    bulk.start();
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      dbClient.componentDao()
+        .scrollForIndexingByProjectUuids(dbSession, rootUuids, context -> {
+          ComponentDto dto = context.getResultObject();
+          bulk.add(newIndexRequest(toDocument(dto)));
+        });
+    }
+    bulk.stop();
+  }
+
   @Override
   public void indexOnAnalysis(String projectUuid) {
     doIndexByProjectUuid(projectUuid, Size.REGULAR);
@@ -20,6 +20,7 @@
 package org.sonar.server.computation.task.projectanalysis.batch;
 
 import java.io.File;
+import javax.annotation.CheckForNull;
 import org.sonar.ce.queue.CeTask;
 
 public interface BatchReportDirectoryHolder {
@@ -30,4 +31,11 @@ public interface BatchReportDirectoryHolder {
    */
   File getDirectory();
 
+  /**
+   * The zip file of the Batch report, if it has not been extracted. Its entries are then extracted in
+   * {@link #getDirectory()} only when they are read.
+   */
+  @CheckForNull
+  File getZipFile();
+
 }
@@ -21,10 +21,13 @@ package org.sonar.server.computation.task.projectanalysis.batch;
 
 import java.io.File;
 import java.util.Objects;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 
 public class BatchReportDirectoryHolderImpl implements MutableBatchReportDirectoryHolder {
 
   private File directory;
+  private File zipFile;
 
   @Override
   public void setDirectory(File newDirectory) {
@@ -38,4 +41,15 @@ public class BatchReportDirectoryHolderImpl implements MutableBatchReportDirecto
     }
     return this.directory;
   }
+
+  @Override
+  public void setZipFile(@Nullable File zipFile) {
+    this.zipFile = zipFile;
+  }
+
+  @Override
+  @CheckForNull
+  public File getZipFile() {
+    return zipFile;
+  }
 }
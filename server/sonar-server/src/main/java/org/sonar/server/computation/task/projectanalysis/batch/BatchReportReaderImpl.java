@@ -24,23 +24,27 @@ import com.google.common.base.Throwables;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.Parser;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.util.NoSuchElementException;
 import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.LineIterator;
+import org.picocontainer.Startable;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.core.util.LineReaderIterator;
+import org.sonar.scanner.protocol.output.FileStructure;
 import org.sonar.scanner.protocol.output.ScannerReport;
 
-public class BatchReportReaderImpl implements BatchReportReader {
+public class BatchReportReaderImpl implements BatchReportReader, Startable {
 
   private final BatchReportDirectoryHolder batchReportDirectoryHolder;
-  private org.sonar.scanner.protocol.output.ScannerReportReader delegate;
+  // read by the concurrent steps, see ConcurrentComputationStep
+  private volatile Report report;
   // caching of metadata which are read often
   private ScannerReport.Metadata metadata;
 
@@ -48,25 +52,63 @@ public class BatchReportReaderImpl implements BatchReportReader {
     this.batchReportDirectoryHolder = batchReportDirectoryHolder;
   }
 
-  private void ensureInitialized() {
-    if (this.delegate == null) {
-      this.delegate = new org.sonar.scanner.protocol.output.ScannerReportReader(batchReportDirectoryHolder.getDirectory());
+  private Report report() {
+    Report res = this.report;
+    if (res == null) {
+      synchronized (this) {
+        res = this.report;
+        if (res == null) {
+          res = createReport();
+          this.report = res;
+        }
+      }
+    }
+    return res;
+  }
+
+  private Report createReport() {
+    File zipFile = batchReportDirectoryHolder.getZipFile();
+    if (zipFile == null) {
+      return new Report(new org.sonar.scanner.protocol.output.ScannerReportReader(batchReportDirectoryHolder.getDirectory()), null);
+    }
+    ZipReportFileStructure zipFileStructure = new ZipReportFileStructure(zipFile, batchReportDirectoryHolder.getDirectory());
+    return new Report(new org.sonar.scanner.protocol.output.ScannerReportReader(zipFileStructure), zipFileStructure);
+  }
+
+  @Override
+  public void start() {
+    // nothing to do
+  }
+
+  @Override
+  public synchronized void stop() {
+    if (report != null && report.zipFileStructure != null) {
+      report.zipFileStructure.close();
+    }
+  }
+
+  /**
+   * Streams the file of the component, from the zip of the report if it has not been extracted.
+   */
+  @CheckForNull
+  private static InputStream openComponentFile(Report report, @Nullable File extractedFile, FileStructure.Domain domain, int componentRef) throws IOException {
+    if (report.zipFileStructure != null) {
+      return report.zipFileStructure.openEntry(domain, componentRef);
     }
+    return extractedFile == null ? null : FileUtils.openInputStream(extractedFile);
   }
 
   @Override
-  public ScannerReport.Metadata readMetadata() {
-    ensureInitialized();
+  public synchronized ScannerReport.Metadata readMetadata() {
     if (this.metadata == null) {
-      this.metadata = delegate.readMetadata();
+      this.metadata = report().delegate.readMetadata();
     }
     return this.metadata;
   }
 
   @Override
   public CloseableIterator<String> readScannerLogs() {
-    ensureInitialized();
-    File file = delegate.getFileStructure().analysisLog();
+    File file = report().delegate.getFileStructure().analysisLog();
     if (!file.exists()) {
       return CloseableIterator.emptyCloseableIterator();
     }
@@ -80,77 +122,67 @@ public class BatchReportReaderImpl implements BatchReportReader {
 
   @Override
   public CloseableIterator<ScannerReport.ActiveRule> readActiveRules() {
-    ensureInitialized();
-    return delegate.readActiveRules();
+    return report().delegate.readActiveRules();
   }
 
   @Override
   public CloseableIterator<ScannerReport.Measure> readComponentMeasures(int componentRef) {
-    ensureInitialized();
-    return delegate.readComponentMeasures(componentRef);
+    return report().delegate.readComponentMeasures(componentRef);
   }
 
   @Override
   @CheckForNull
   public ScannerReport.Changesets readChangesets(int componentRef) {
-    ensureInitialized();
-    return delegate.readChangesets(componentRef);
+    return report().delegate.readChangesets(componentRef);
   }
 
   @Override
   public ScannerReport.Component readComponent(int componentRef) {
-    ensureInitialized();
-    return delegate.readComponent(componentRef);
+    return report().delegate.readComponent(componentRef);
   }
 
   @Override
   public CloseableIterator<ScannerReport.Issue> readComponentIssues(int componentRef) {
-    ensureInitialized();
-    return delegate.readComponentIssues(componentRef);
+    return report().delegate.readComponentIssues(componentRef);
   }
 
   @Override
   public CloseableIterator<ScannerReport.Duplication> readComponentDuplications(int componentRef) {
-    ensureInitialized();
-    return delegate.readComponentDuplications(componentRef);
+    return report().delegate.readComponentDuplications(componentRef);
   }
 
   @Override
   public CloseableIterator<ScannerReport.CpdTextBlock> readCpdTextBlocks(int componentRef) {
-    ensureInitialized();
-    return delegate.readCpdTextBlocks(componentRef);
+    return report().delegate.readCpdTextBlocks(componentRef);
   }
 
   @Override
   public CloseableIterator<ScannerReport.Symbol> readComponentSymbols(int componentRef) {
-    ensureInitialized();
-    return delegate.readComponentSymbols(componentRef);
+    return report().delegate.readComponentSymbols(componentRef);
   }
 
   @Override
   public CloseableIterator<ScannerReport.SyntaxHighlightingRule> readComponentSyntaxHighlighting(int fileRef) {
-    ensureInitialized();
-    return delegate.readComponentSyntaxHighlighting(fileRef);
+    return report().delegate.readComponentSyntaxHighlighting(fileRef);
   }
 
   @Override
   public CloseableIterator<ScannerReport.LineCoverage> readComponentCoverage(int fileRef) {
-    ensureInitialized();
-    return delegate.readComponentCoverage(fileRef);
+    return report().delegate.readComponentCoverage(fileRef);
   }
 
   @Override
   public Optional<CloseableIterator<String>> readFileSource(int fileRef) {
-    ensureInitialized();
-    File file = delegate.readFileSource(fileRef);
-    if (file == null) {
-      return Optional.absent();
-    }
-
+    Report r = report();
+    File file = r.zipFileStructure == null ? r.delegate.readFileSource(fileRef) : null;
     try {
-      return Optional.of(new CloseableLineIterator(IOUtils.lineIterator(FileUtils.openInputStream(file), StandardCharsets.UTF_8)));
+      InputStream input = openComponentFile(r, file, FileStructure.Domain.SOURCE, fileRef);
+      if (input == null) {
+        return Optional.absent();
+      }
+      return Optional.of(new CloseableLineIterator(IOUtils.lineIterator(input, StandardCharsets.UTF_8)));
     } catch (IOException e) {
-      throw new IllegalStateException("Fail to traverse file: " + file, e);
+      throw new IllegalStateException("Fail to traverse source of file " + fileRef, e);
     }
   }
 
@@ -185,14 +217,14 @@ public class BatchReportReaderImpl implements BatchReportReader {
 
   @Override
   public CloseableIterator<ScannerReport.Test> readTests(int testFileRef) {
-    ensureInitialized();
-    File file = delegate.readTests(testFileRef);
-    if (file == null) {
-      return CloseableIterator.emptyCloseableIterator();
-    }
-
+    Report r = report();
+    File file = r.zipFileStructure == null ? r.delegate.readTests(testFileRef) : null;
     try {
-      return new ParserCloseableIterator<>(ScannerReport.Test.parser(), FileUtils.openInputStream(file));
+      InputStream input = openComponentFile(r, file, FileStructure.Domain.TESTS, testFileRef);
+      if (input == null) {
+        return CloseableIterator.emptyCloseableIterator();
+      }
+      return new ParserCloseableIterator<>(ScannerReport.Test.parser(), input);
     } catch (IOException e) {
       Throwables.propagate(e);
       // actually never reached
@@ -202,14 +234,14 @@ public class BatchReportReaderImpl implements BatchReportReader {
 
   @Override
   public CloseableIterator<ScannerReport.CoverageDetail> readCoverageDetails(int testFileRef) {
-    ensureInitialized();
-    File file = delegate.readCoverageDetails(testFileRef);
-    if (file == null) {
-      return CloseableIterator.emptyCloseableIterator();
-    }
-
+    Report r = report();
+    File file = r.zipFileStructure == null ? r.delegate.readCoverageDetails(testFileRef) : null;
     try {
-      return new ParserCloseableIterator<>(ScannerReport.CoverageDetail.parser(), FileUtils.openInputStream(file));
+      InputStream input = openComponentFile(r, file, FileStructure.Domain.COVERAGE_DETAILS, testFileRef);
+      if (input == null) {
+        return CloseableIterator.emptyCloseableIterator();
+      }
+      return new ParserCloseableIterator<>(ScannerReport.CoverageDetail.parser(), input);
     } catch (IOException e) {
       Throwables.propagate(e);
       // actually never reached
@@ -219,15 +251,29 @@ public class BatchReportReaderImpl implements BatchReportReader {
 
   @Override
   public CloseableIterator<ScannerReport.ContextProperty> readContextProperties() {
-    ensureInitialized();
-    return delegate.readContextProperties();
+    return report().delegate.readContextProperties();
+  }
+
+  /**
+   * The reader of the report and, if the report is read from its zip file, the structure of this zip file.
+   * Immutable so that it is safely published to all the threads by {@link #report}.
+   */
+  private static final class Report {
+    private final org.sonar.scanner.protocol.output.ScannerReportReader delegate;
+    @CheckForNull
+    private final ZipReportFileStructure zipFileStructure;
+
+    private Report(org.sonar.scanner.protocol.output.ScannerReportReader delegate, @Nullable ZipReportFileStructure zipFileStructure) {
+      this.delegate = delegate;
+      this.zipFileStructure = zipFileStructure;
+    }
   }
 
   private static class ParserCloseableIterator<T> extends CloseableIterator<T> {
     private final Parser<T> parser;
-    private final FileInputStream fileInputStream;
+    private final InputStream fileInputStream;
 
-    public ParserCloseableIterator(Parser<T> parser, FileInputStream fileInputStream) {
+    public ParserCloseableIterator(Parser<T> parser, InputStream fileInputStream) {
       this.parser = parser;
       this.fileInputStream = fileInputStream;
     }
@@ -20,6 +20,7 @@
 package org.sonar.server.computation.task.projectanalysis.batch;
 
 import java.io.File;
+import javax.annotation.Nullable;
 
 public interface MutableBatchReportDirectoryHolder extends BatchReportDirectoryHolder {
   /**
@@ -31,4 +32,11 @@ public interface MutableBatchReportDirectoryHolder extends BatchReportDirectoryH
    * @throws NullPointerException if {@code newDirectory} is {@code null}
    */
   void setDirectory(File newDirectory);
+
+  /**
+   * Sets the zip file of the report, which entries are extracted on demand in the directory.
+   *
+   * @param zipFile {@code null} if the report is already extracted in the directory
+   */
+  void setZipFile(@Nullable File zipFile);
 }
@@ -0,0 +1,130 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.batch;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import javax.annotation.CheckForNull;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.sonar.scanner.protocol.output.FileStructure;
+
+/**
+ * Structure of a report which is still zipped. The central directory of the zip is used as index: an entry is
+ * extracted in the report directory the first time its file is located, so entries which are never read
+ * are never written to disk.
+ * <p>
+ * Sources, tests and coverage details, which are read only once, can be streamed from the zip without
+ * being extracted, see {@link #openEntry(Domain, int)}.
+ */
+class ZipReportFileStructure extends FileStructure implements AutoCloseable {
+
+  private final ZipFile zipFile;
+  private final Set<String> locatedEntries = new HashSet<>();
+
+  ZipReportFileStructure(File zipFile, File dir) {
+    super(dir);
+    try {
+      this.zipFile = new ZipFile(zipFile);
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to open report " + zipFile, e);
+    }
+  }
+
+  @Override
+  public File metadataFile() {
+    return extract(super.metadataFile());
+  }
+
+  @Override
+  public File analysisLog() {
+    return extract(super.analysisLog());
+  }
+
+  @Override
+  public File activeRules() {
+    return extract(super.activeRules());
+  }
+
+  @Override
+  public File fileFor(Domain domain, int componentRef) {
+    return extract(super.fileFor(domain, componentRef));
+  }
+
+  @Override
+  public File segmentsFile(Domain domain) {
+    return extract(super.segmentsFile(domain));
+  }
+
+  @Override
+  public File segmentsIndexFile(Domain domain) {
+    return extract(super.segmentsIndexFile(domain));
+  }
+
+  @Override
+  public File contextProperties() {
+    return extract(super.contextProperties());
+  }
+
+  /**
+   * Streams the file of the component from the zip, without extracting it.
+   *
+   * @return {@code null} if the report does not contain this file
+   */
+  @CheckForNull
+  InputStream openEntry(Domain domain, int componentRef) {
+    String name = super.fileFor(domain, componentRef).getName();
+    ZipEntry entry = zipFile.getEntry(name);
+    if (entry == null) {
+      return null;
+    }
+    try {
+      return new BufferedInputStream(zipFile.getInputStream(entry));
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to read entry " + name + " of report " + zipFile.getName(), e);
+    }
+  }
+
+  private synchronized File extract(File file) {
+    String name = file.getName();
+    if (locatedEntries.add(name)) {
+      ZipEntry entry = zipFile.getEntry(name);
+      if (entry != null) {
+        try (InputStream input = zipFile.getInputStream(entry)) {
+          FileUtils.copyInputStreamToFile(input, file);
+        } catch (IOException e) {
+          throw new IllegalStateException("Fail to extract entry " + name + " of report " + zipFile.getName(), e);
+        }
+      }
+    }
+    return file;
+  }
+
+  @Override
+  public void close() {
+    IOUtils.closeQuietly(zipFile);
+  }
+}
@@ -36,6 +36,18 @@ public final class ComponentFunctions {
     return ToKey.INSTANCE;
   }
 
+  /**
+   * Whether the specified component is a file which has not been analyzed by an incremental analysis because it is
+   * unchanged, see {@link FileAttributes#isUnchanged()}.
+   */
+  public static boolean isUnchangedFile(Component component) {
+    if (component.getType() != Component.Type.FILE) {
+      return false;
+    }
+    FileAttributes fileAttributes = component.getFileAttributes();
+    return fileAttributes != null && fileAttributes.isUnchanged();
+  }
+
   private enum ToKey implements Function<Component, String> {
     INSTANCE;
 
@@ -34,12 +34,18 @@ public class FileAttributes {
   @CheckForNull
   private final String languageKey;
   private final int lines;
+  private final boolean unchanged;
 
   public FileAttributes(boolean unitTest, @Nullable String languageKey, int lines) {
+    this(unitTest, languageKey, lines, false);
+  }
+
+  public FileAttributes(boolean unitTest, @Nullable String languageKey, int lines, boolean unchanged) {
     this.unitTest = unitTest;
     this.languageKey = languageKey;
     checkArgument(lines > 0, "Number of lines must be greater than zero");
     this.lines = lines;
+    this.unchanged = unchanged;
   }
 
   public boolean isUnitTest() {
@@ -58,12 +64,22 @@ public class FileAttributes {
     return lines;
   }
 
+  /**
+   * Whether the file is unchanged since the previous analysis and has not been analyzed by the scanner because the
+   * analysis is incremental. The report contains no data (sources, issues, measures...) for such a file, its data is
+   * copied from the previous analysis.
+   */
+  public boolean isUnchanged() {
+    return unchanged;
+  }
+
   @Override
   public String toString() {
     return "FileAttributes{" +
       "languageKey='" + languageKey + '\'' +
       ", unitTest=" + unitTest +
       ", lines=" + lines +
+      ", unchanged=" + unchanged +
       '}';
   }
 }
@@ -0,0 +1,37 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.component;
+
+/**
+ * A {@link ComponentVisitor} which work on a {@link Component.Type#FILE} only depends on the file itself.
+ * <p>
+ * When the {@link VisitorsCrawler} is given a pool, {@link #prepareFile(Component)} is called concurrently for all
+ * the files of a directory before they are visited. The visit itself remains sequential and in the usual order, so
+ * that the visitor can load in advance whatever it needs (typically from the database) and merge it during the visit.
+ * </p>
+ * <p>
+ * {@link #prepareFile(Component)} must be thread-safe and must not rely on any other visitor. It may not be called at
+ * all, in which case the visit of the file must load the data by itself.
+ * </p>
+ */
+public interface FileLocalVisitor extends ComponentVisitor {
+
+  void prepareFile(Component file);
+}
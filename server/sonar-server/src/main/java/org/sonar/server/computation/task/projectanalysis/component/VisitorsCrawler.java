@@ -26,6 +26,9 @@ import com.google.common.collect.Maps;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import org.sonar.api.utils.log.Loggers;
@@ -37,6 +40,10 @@ import static java.util.Objects.requireNonNull;
 
 /**
  * This crawler make any number of {@link TypeAwareVisitor} or {@link PathAwareVisitor} defined in a list visit a component tree, component per component, in the order of the list
+ * <p>
+ * When a {@link ForkJoinPool} is provided, the files of each directory are prepared in parallel by the
+ * {@link FileLocalVisitor}s before the children of the directory are visited. The visit order is not changed.
+ * </p>
  */
 public class VisitorsCrawler implements ComponentCrawler {
 
@@ -44,17 +51,28 @@ public class VisitorsCrawler implements ComponentCrawler {
   private final Map<ComponentVisitor, VisitorDuration> visitorCumulativeDurations;
   private final List<VisitorWrapper> preOrderVisitorWrappers;
   private final List<VisitorWrapper> postOrderVisitorWrappers;
+  private final List<FileLocalVisitor> fileLocalVisitors;
+  @CheckForNull
+  private final ForkJoinPool pool;
 
   public VisitorsCrawler(Iterable<ComponentVisitor> visitors) {
     this(visitors, false);
   }
 
   public VisitorsCrawler(Iterable<ComponentVisitor> visitors, boolean computeDuration) {
+    this(visitors, computeDuration, null);
+  }
+
+  public VisitorsCrawler(Iterable<ComponentVisitor> visitors, boolean computeDuration, @Nullable ForkJoinPool pool) {
     List<VisitorWrapper> visitorWrappers = from(visitors).transform(ToVisitorWrapper.INSTANCE).toList();
     this.preOrderVisitorWrappers = from(visitorWrappers).filter(MathPreOrderVisitor.INSTANCE).toList();
     this.postOrderVisitorWrappers = from(visitorWrappers).filter(MatchPostOrderVisitor.INSTANCE).toList();
     this.computeDuration = computeDuration;
     this.visitorCumulativeDurations = computeDuration ? from(visitors).toMap(VisitorWrapperToInitialDuration.INSTANCE) : Collections.emptyMap();
+    this.fileLocalVisitors = from(visitors).filter(FileLocalVisitor.class)
+      .filter(visitor -> visitor.getMaxDepth().isSameAs(Component.Type.FILE))
+      .toList();
+    this.pool = pool;
   }
 
   public Map<ComponentVisitor, Long> getCumulativeDurations() {
@@ -106,11 +124,48 @@ public class VisitorsCrawler implements ComponentCrawler {
   }
 
   private void visitChildren(Component component) {
+    prepareFiles(component);
     for (Component child : component.getChildren()) {
       visit(child);
     }
   }
 
+  private void prepareFiles(Component component) {
+    if (pool == null || fileLocalVisitors.isEmpty()) {
+      return;
+    }
+    List<Component> files = from(component.getChildren()).filter(child -> child.getType() == Component.Type.FILE).toList();
+    if (!files.isEmpty()) {
+      pool.invoke(new PrepareFiles(fileLocalVisitors, files));
+    }
+  }
+
+  /**
+   * Splits the files of a directory in halves until a single file remains, so that idle workers of the pool can
+   * steal the preparation of the remaining files.
+   */
+  private static final class PrepareFiles extends RecursiveAction {
+    private final List<FileLocalVisitor> visitors;
+    private final List<Component> files;
+
+    private PrepareFiles(List<FileLocalVisitor> visitors, List<Component> files) {
+      this.visitors = visitors;
+      this.files = files;
+    }
+
+    @Override
+    protected void compute() {
+      int size = files.size();
+      if (size == 1) {
+        Component file = files.get(0);
+        visitors.forEach(visitor -> visitor.prepareFile(file));
+        return;
+      }
+      int middle = size / 2;
+      invokeAll(new PrepareFiles(visitors, files.subList(0, middle)), new PrepareFiles(visitors, files.subList(middle, size)));
+    }
+  }
+
   private void visitNode(Component component, VisitorWrapper visitor) {
     Profiler profiler = Profiler.create(Loggers.get(visitor.getWrappedVisitor().getClass()))
       .startTrace("Visiting component {}", component.getKey());
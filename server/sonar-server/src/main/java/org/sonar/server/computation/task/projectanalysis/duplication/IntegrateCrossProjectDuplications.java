@@ -22,10 +22,11 @@ package org.sonar.server.computation.task.projectanalysis.duplication;
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Iterables;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.annotation.Nonnull;
 import org.sonar.api.config.Configuration;
 import org.sonar.api.utils.log.Logger;
@@ -55,7 +56,7 @@ public class IntegrateCrossProjectDuplications {
   private final Configuration config;
   private final DuplicationRepository duplicationRepository;
 
-  private Map<String, NumberOfUnitsNotLessThan> numberOfUnitsByLanguage = new HashMap<>();
+  private final Map<String, NumberOfUnitsNotLessThan> numberOfUnitsByLanguage = new ConcurrentHashMap<>();
 
   public IntegrateCrossProjectDuplications(Configuration config, DuplicationRepository duplicationRepository) {
     this.config = config;
@@ -63,13 +64,27 @@ public class IntegrateCrossProjectDuplications {
   }
 
   public void computeCpd(Component component, Collection<Block> originBlocks, Collection<Block> duplicationBlocks) {
+    add(component, detect(component, originBlocks, duplicationBlocks));
+  }
+
+  /**
+   * Detects the duplications of a file with the blocks of other projects, without adding them to the
+   * {@link DuplicationRepository}. Unlike {@link #add(Component, List)}, it can be called concurrently.
+   */
+  public List<Duplication> detect(Component component, Collection<Block> originBlocks, Collection<Block> duplicationBlocks) {
     CloneIndex duplicationIndex = new PackedMemoryCloneIndex();
     populateIndex(duplicationIndex, originBlocks);
     populateIndex(duplicationIndex, duplicationBlocks);
 
     List<CloneGroup> duplications = SuffixTreeCloneDetectionAlgorithm.detect(duplicationIndex, originBlocks);
     Iterable<CloneGroup> filtered = from(duplications).filter(getNumberOfUnitsNotLessThan(component.getFileAttributes().getLanguageKey()));
-    addDuplications(component, filtered);
+    return toDuplications(component, filtered);
+  }
+
+  public void add(Component file, List<Duplication> duplications) {
+    for (Duplication duplication : duplications) {
+      duplicationRepository.add(file, duplication);
+    }
   }
 
   private static void populateIndex(CloneIndex duplicationIndex, Collection<Block> duplicationBlocks) {
@@ -78,7 +93,8 @@ public class IntegrateCrossProjectDuplications {
     }
   }
 
-  private void addDuplications(Component file, Iterable<CloneGroup> duplications) {
+  private static List<Duplication> toDuplications(Component file, Iterable<CloneGroup> duplications) {
+    List<Duplication> result = new ArrayList<>();
     int cloneGroupCount = 0;
     for (CloneGroup duplication : duplications) {
       cloneGroupCount++;
@@ -86,18 +102,13 @@ public class IntegrateCrossProjectDuplications {
         LOGGER.warn("Too many duplication groups on file {}. Keeping only the first {} groups.", file.getKey(), MAX_CLONE_GROUP_PER_FILE);
         break;
       }
-      addDuplication(file, duplication);
-    }
-  }
-
-  private void addDuplication(Component file, CloneGroup duplication) {
-    ClonePart originPart = duplication.getOriginPart();
-    Iterable<Duplicate> duplicates = convertClonePartsToDuplicates(file, duplication);
-    if (!Iterables.isEmpty(duplicates)) {
-      duplicationRepository.add(
-        file,
-        new Duplication(new TextBlock(originPart.getStartLine(), originPart.getEndLine()), duplicates));
+      ClonePart originPart = duplication.getOriginPart();
+      Iterable<Duplicate> duplicates = convertClonePartsToDuplicates(file, duplication);
+      if (!Iterables.isEmpty(duplicates)) {
+        result.add(new Duplication(new TextBlock(originPart.getStartLine(), originPart.getEndLine()), duplicates));
+      }
     }
+    return result;
   }
 
   private static Iterable<Duplicate> convertClonePartsToDuplicates(final Component file, CloneGroup duplication) {
@@ -109,12 +120,7 @@ public class IntegrateCrossProjectDuplications {
   }
 
   private NumberOfUnitsNotLessThan getNumberOfUnitsNotLessThan(String language) {
-    NumberOfUnitsNotLessThan numberOfUnitsNotLessThan = numberOfUnitsByLanguage.get(language);
-    if (numberOfUnitsNotLessThan == null) {
-      numberOfUnitsNotLessThan = new NumberOfUnitsNotLessThan(getMinimumTokens(language));
-      numberOfUnitsByLanguage.put(language, numberOfUnitsNotLessThan);
-    }
-    return numberOfUnitsNotLessThan;
+    return numberOfUnitsByLanguage.computeIfAbsent(language, l -> new NumberOfUnitsNotLessThan(getMinimumTokens(l)));
   }
 
   private int getMinimumTokens(String languageKey) {
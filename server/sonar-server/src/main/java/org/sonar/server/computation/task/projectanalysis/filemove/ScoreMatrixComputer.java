@@ -0,0 +1,275 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.filemove;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.sonar.server.computation.task.projectanalysis.filemove.FileSimilarity.File;
+import org.sonar.server.computation.task.projectanalysis.filemove.ScoreMatrix.Score;
+
+import static org.sonar.server.computation.task.projectanalysis.filemove.FileMoveDetectionStep.MIN_REQUIRED_SCORE;
+
+/**
+ * Computes the {@link ScoreMatrix} of removed (db) and added (report) files.
+ * <p>
+ * The score of a pair of files, based on the Levenshtein distance of their line hashes, is expensive to compute. It
+ * is computed only for the pairs which can reach {@link FileMoveDetectionStep#MIN_REQUIRED_SCORE}. The other pairs
+ * are excluded without loss of any match because the distance of two files is at least the number of lines of the
+ * longest one minus the number of line hashes they have in common:
+ * <ul>
+ *   <li>candidates are the pairs sharing at least one line hash in their rarest ones (prefix filtering), which is
+ *   always true for pairs with enough line hashes in common</li>
+ *   <li>candidates without enough line hashes in common are excluded before their score is computed</li>
+ * </ul>
+ * Removed files are split into slices which are scored in parallel.
+ * </p>
+ */
+final class ScoreMatrixComputer {
+  private final FileSimilarity fileSimilarity;
+  private final int threads;
+
+  ScoreMatrixComputer(FileSimilarity fileSimilarity) {
+    this(fileSimilarity, Runtime.getRuntime().availableProcessors());
+  }
+
+  ScoreMatrixComputer(FileSimilarity fileSimilarity, int threads) {
+    this.fileSimilarity = fileSimilarity;
+    this.threads = Math.max(1, threads);
+  }
+
+  public ScoreMatrix compute(Map<String, File> dbFilesByKey, Map<String, File> reportFilesByKey) {
+    Map<String, Integer> lineHashIds = new HashMap<>();
+    List<IndexedFile> dbFiles = index(dbFilesByKey, lineHashIds);
+    List<IndexedFile> reportFiles = index(reportFilesByKey, lineHashIds);
+
+    // number of files in which each line hash appears, rarest line hashes are used for prefix filtering
+    int[] fileCounts = new int[lineHashIds.size()];
+    countFiles(dbFiles, fileCounts);
+    countFiles(reportFiles, fileCounts);
+
+    Map<Long, List<Integer>> reportFilesByPrefixToken = new HashMap<>();
+    for (int i = 0; i < reportFiles.size(); i++) {
+      for (long token : reportFiles.get(i).prefixTokens(fileCounts)) {
+        reportFilesByPrefixToken.computeIfAbsent(token, k -> new ArrayList<>()).add(i);
+      }
+    }
+
+    List<Callable<List<Score>>> slices = new ArrayList<>();
+    int sliceCount = Math.min(threads, Math.max(1, dbFiles.size()));
+    int sliceSize = (dbFiles.size() + sliceCount - 1) / sliceCount;
+    for (int start = 0; start < dbFiles.size(); start += sliceSize) {
+      List<IndexedFile> slice = dbFiles.subList(start, Math.min(dbFiles.size(), start + sliceSize));
+      slices.add(() -> score(slice, reportFiles, reportFilesByPrefixToken, fileCounts));
+    }
+    return new ScoreMatrix(execute(slices));
+  }
+
+  private List<Score> score(List<IndexedFile> dbFiles, List<IndexedFile> reportFiles, Map<Long, List<Integer>> reportFilesByPrefixToken,
+    int[] fileCounts) {
+    List<Score> scores = new ArrayList<>();
+    // dbFileStamps[i] == stamp when report file i is already a candidate of the current db file
+    int[] dbFileStamps = new int[reportFiles.size()];
+    int stamp = 0;
+    List<Integer> candidates = new ArrayList<>();
+    for (IndexedFile dbFile : dbFiles) {
+      stamp++;
+      candidates.clear();
+      for (long token : dbFile.prefixTokens(fileCounts)) {
+        for (int candidate : reportFilesByPrefixToken.getOrDefault(token, Collections.emptyList())) {
+          if (dbFileStamps[candidate] != stamp) {
+            dbFileStamps[candidate] = stamp;
+            candidates.add(candidate);
+          }
+        }
+      }
+      // keep order of report files
+      candidates.sort(Comparator.naturalOrder());
+      for (int candidate : candidates) {
+        IndexedFile reportFile = reportFiles.get(candidate);
+        if (mayReachMinRequiredScore(dbFile, reportFile)) {
+          int score = fileSimilarity.score(dbFile.file, reportFile.file);
+          if (score >= MIN_REQUIRED_SCORE) {
+            scores.add(new Score(dbFile.key, reportFile.key, score));
+          }
+        }
+      }
+    }
+    return scores;
+  }
+
+  private static boolean mayReachMinRequiredScore(IndexedFile file1, IndexedFile file2) {
+    int maxSize = Math.max(file1.size(), file2.size());
+    int minCommonLines = maxSize - maxDistance(maxSize);
+    return Math.min(file1.size(), file2.size()) >= minCommonLines
+      && commonLines(file1.lineHashIds, file2.lineHashIds) >= minCommonLines;
+  }
+
+  private List<Score> execute(List<Callable<List<Score>>> slices) {
+    if (slices.size() <= 1) {
+      return slices.isEmpty() ? Collections.emptyList() : call(slices.get(0));
+    }
+    ExecutorService executorService = Executors.newFixedThreadPool(slices.size(),
+      new ThreadFactoryBuilder()
+        .setNameFormat("FileMoveDetection-%d")
+        .setDaemon(true)
+        .build());
+    try {
+      List<Score> scores = new ArrayList<>();
+      for (Future<List<Score>> future : executorService.invokeAll(slices)) {
+        scores.addAll(future.get());
+      }
+      return scores;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while computing scores of files", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Failed to compute scores of files", e.getCause());
+    } finally {
+      executorService.shutdownNow();
+    }
+  }
+
+  private static List<Score> call(Callable<List<Score>> slice) {
+    try {
+      return slice.call();
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IllegalStateException("Failed to compute scores of files", e);
+    }
+  }
+
+  /**
+   * Greatest Levenshtein distance of files, the biggest one having {@code size} lines, which gives a score greater
+   * than or equal to {@link FileMoveDetectionStep#MIN_REQUIRED_SCORE}.
+   */
+  static int maxDistance(int size) {
+    int distance = (int) ((long) size * (100 - MIN_REQUIRED_SCORE) / 100);
+    while (distance < size && SourceSimilarityImpl.score(distance + 1, size) >= MIN_REQUIRED_SCORE) {
+      distance++;
+    }
+    while (distance > 0 && SourceSimilarityImpl.score(distance, size) < MIN_REQUIRED_SCORE) {
+      distance--;
+    }
+    return distance;
+  }
+
+  /**
+   * Size of the intersection of the specified sorted multisets.
+   */
+  private static int commonLines(int[] lineHashIds1, int[] lineHashIds2) {
+    int common = 0;
+    int i = 0;
+    int j = 0;
+    while (i < lineHashIds1.length && j < lineHashIds2.length) {
+      if (lineHashIds1[i] == lineHashIds2[j]) {
+        common++;
+        i++;
+        j++;
+      } else if (lineHashIds1[i] < lineHashIds2[j]) {
+        i++;
+      } else {
+        j++;
+      }
+    }
+    return common;
+  }
+
+  /**
+   * Empty files are ignored as their score is always 0.
+   */
+  private static List<IndexedFile> index(Map<String, File> filesByKey, Map<String, Integer> lineHashIds) {
+    List<IndexedFile> res = new ArrayList<>(filesByKey.size());
+    for (Map.Entry<String, File> entry : filesByKey.entrySet()) {
+      List<String> lineHashes = entry.getValue().getLineHashes();
+      if (!lineHashes.isEmpty()) {
+        int[] ids = new int[lineHashes.size()];
+        for (int i = 0; i < ids.length; i++) {
+          ids[i] = lineHashIds.computeIfAbsent(lineHashes.get(i), k -> lineHashIds.size());
+        }
+        Arrays.sort(ids);
+        res.add(new IndexedFile(entry.getKey(), entry.getValue(), ids));
+      }
+    }
+    return res;
+  }
+
+  private static void countFiles(List<IndexedFile> files, int[] fileCounts) {
+    for (IndexedFile file : files) {
+      int[] ids = file.lineHashIds;
+      for (int i = 0; i < ids.length; i++) {
+        if (i == 0 || ids[i] != ids[i - 1]) {
+          fileCounts[ids[i]]++;
+        }
+      }
+    }
+  }
+
+  private static final class IndexedFile {
+    private final String key;
+    private final File file;
+    /**
+     * sorted ids of the line hashes of the file, with duplicates
+     */
+    private final int[] lineHashIds;
+
+    private IndexedFile(String key, File file, int[] lineHashIds) {
+      this.key = key;
+      this.file = file;
+      this.lineHashIds = lineHashIds;
+    }
+
+    private int size() {
+      return lineHashIds.length;
+    }
+
+    /**
+     * A token is a line hash and its occurrence in the file, so that line hashes in common are counted like by
+     * {@link #commonLines(int[], int[])}. Tokens are sorted from the rarest line hash to the most common one and
+     * only the first ones are returned: two files have enough tokens in common to reach the min required score only
+     * if they share one of these.
+     */
+    private long[] prefixTokens(int[] fileCounts) {
+      Long[] tokens = new Long[lineHashIds.length];
+      int occurrence = 0;
+      for (int i = 0; i < lineHashIds.length; i++) {
+        occurrence = i > 0 && lineHashIds[i] == lineHashIds[i - 1] ? (occurrence + 1) : 0;
+        tokens[i] = ((long) lineHashIds[i] << 32) | occurrence;
+      }
+      Arrays.sort(tokens, Comparator.<Long>comparingInt(token -> fileCounts[(int) (token >>> 32)]).thenComparing(Comparator.naturalOrder()));
+      long[] prefix = new long[Math.min(tokens.length, maxDistance(tokens.length) + 1)];
+      for (int i = 0; i < prefix.length; i++) {
+        prefix[i] = tokens[i];
+      }
+      return prefix;
+    }
+  }
+}
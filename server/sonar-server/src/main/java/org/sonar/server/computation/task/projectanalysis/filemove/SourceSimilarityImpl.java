@@ -32,7 +32,15 @@ public class SourceSimilarityImpl implements SourceSimilarity {
       return 0;
     }
     int distance = levenshteinDistance(left, right);
-    return (int) (100 * (1.0 - ((double) distance) / (max(left.size(), right.size()))));
+    return score(distance, max(left.size(), right.size()));
+  }
+
+  /**
+   * Score of two lists, the longest one having {@code maxSize} elements, separated by the specified Levenshtein
+   * distance. Score decreases when distance increases.
+   */
+  static int score(int distance, int maxSize) {
+    return (int) (100 * (1.0 - ((double) distance) / maxSize));
   }
 
   private static <T> int levenshteinDistance(List<T> left, List<T> right) {
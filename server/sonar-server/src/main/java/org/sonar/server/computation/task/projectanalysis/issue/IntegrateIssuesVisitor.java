@@ -21,19 +21,25 @@ package org.sonar.server.computation.task.projectanalysis.issue;
 
 import com.google.common.base.Optional;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
 import org.sonar.core.issue.DefaultIssue;
+import org.sonar.core.issue.tracking.Input;
 import org.sonar.core.issue.tracking.Tracking;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.CrawlerDepthLimit;
+import org.sonar.server.computation.task.projectanalysis.component.FileLocalVisitor;
 import org.sonar.server.computation.task.projectanalysis.component.TypeAwareVisitorAdapter;
 import org.sonar.server.computation.task.projectanalysis.filemove.MovedFilesRepository;
-import org.sonar.server.util.cache.DiskCache;
+import org.sonar.server.util.cache.DiskCache.CacheAppender;
 
+import static org.sonar.server.computation.task.projectanalysis.component.ComponentFunctions.isUnchangedFile;
 import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.POST_ORDER;
 
-public class IntegrateIssuesVisitor extends TypeAwareVisitorAdapter {
+public class IntegrateIssuesVisitor extends TypeAwareVisitorAdapter implements FileLocalVisitor {
 
   private final TrackerExecution tracker;
   private final IssueCache issueCache;
@@ -44,6 +50,10 @@ public class IntegrateIssuesVisitor extends TypeAwareVisitorAdapter {
   private final MovedFilesRepository movedFilesRepository;
 
   private final List<DefaultIssue> componentIssues = new ArrayList<>();
+  /**
+   * Base data of the files of the directory being visited, loaded concurrently by {@link #prepareFile(Component)}
+   */
+  private final Map<String, Input<DefaultIssue>> preparedBaseInputs = new ConcurrentHashMap<>();
 
   public IntegrateIssuesVisitor(TrackerExecution tracker, IssueCache issueCache, IssueLifecycle issueLifecycle, IssueVisitors issueVisitors,
     ComponentsWithUnprocessedIssues componentsWithUnprocessedIssues, MutableComponentIssuesRepository componentIssuesRepository, MovedFilesRepository movedFilesRepository) {
@@ -57,6 +67,11 @@ public class IntegrateIssuesVisitor extends TypeAwareVisitorAdapter {
     this.movedFilesRepository = movedFilesRepository;
   }
 
+  @Override
+  public void prepareFile(Component file) {
+    preparedBaseInputs.put(file.getUuid(), tracker.loadBaseInput(file));
+  }
+
   @Override
   public void visitAny(Component component) {
     componentIssues.clear();
@@ -71,13 +86,18 @@ public class IntegrateIssuesVisitor extends TypeAwareVisitorAdapter {
   }
 
   private void processIssues(Component component) {
-    DiskCache<DefaultIssue>.DiskAppender cacheAppender = issueCache.newAppender();
+    CacheAppender<DefaultIssue> cacheAppender = issueCache.newAppender();
+    Input<DefaultIssue> baseInput = preparedBaseInputs.remove(component.getUuid());
     try {
-      Tracking<DefaultIssue, DefaultIssue> tracking = tracker.track(component);
       issueVisitors.beforeComponent(component);
-      fillNewOpenIssues(component, tracking, cacheAppender);
-      fillExistingOpenIssues(component, tracking, cacheAppender);
-      closeUnmatchedBaseIssues(component, tracking, cacheAppender);
+      if (isUnchangedFile(component)) {
+        copyExistingOpenIssues(component, baseInput, cacheAppender);
+      } else {
+        Tracking<DefaultIssue, DefaultIssue> tracking = baseInput == null ? tracker.track(component) : tracker.track(component, baseInput);
+        fillNewOpenIssues(component, tracking, cacheAppender);
+        fillExistingOpenIssues(component, tracking, cacheAppender);
+        closeUnmatchedBaseIssues(component, tracking, cacheAppender);
+      }
       issueVisitors.afterComponent(component);
     } catch (Exception e) {
       throw new IllegalStateException(String.format("Fail to process issues of component '%s'", component.getKey()), e);
@@ -86,14 +106,14 @@ public class IntegrateIssuesVisitor extends TypeAwareVisitorAdapter {
     }
   }
 
-  private void fillNewOpenIssues(Component component, Tracking<DefaultIssue, DefaultIssue> tracking, DiskCache<DefaultIssue>.DiskAppender cacheAppender) {
+  private void fillNewOpenIssues(Component component, Tracking<DefaultIssue, DefaultIssue> tracking, CacheAppender<DefaultIssue> cacheAppender) {
     for (DefaultIssue issue : tracking.getUnmatchedRaws()) {
       issueLifecycle.initNewOpenIssue(issue);
       process(component, issue, cacheAppender);
     }
   }
 
-  private void fillExistingOpenIssues(Component component, Tracking<DefaultIssue, DefaultIssue> tracking, DiskCache<DefaultIssue>.DiskAppender cacheAppender) {
+  private void fillExistingOpenIssues(Component component, Tracking<DefaultIssue, DefaultIssue> tracking, CacheAppender<DefaultIssue> cacheAppender) {
     for (Map.Entry<DefaultIssue, DefaultIssue> entry : tracking.getMatchedRaws().entrySet()) {
       DefaultIssue raw = entry.getKey();
       DefaultIssue base = entry.getValue();
@@ -102,7 +122,17 @@ public class IntegrateIssuesVisitor extends TypeAwareVisitorAdapter {
     }
   }
 
-  private void closeUnmatchedBaseIssues(Component component, Tracking<DefaultIssue, DefaultIssue> tracking, DiskCache<DefaultIssue>.DiskAppender cacheAppender) {
+  /**
+   * Issues of files which have not been analyzed because they are unchanged are kept as they are
+   */
+  private void copyExistingOpenIssues(Component component, @Nullable Input<DefaultIssue> baseInput, CacheAppender<DefaultIssue> cacheAppender) {
+    Collection<DefaultIssue> baseIssues = baseInput == null ? tracker.loadBaseIssues(component) : baseInput.getIssues();
+    for (DefaultIssue issue : baseIssues) {
+      process(component, issue, cacheAppender);
+    }
+  }
+
+  private void closeUnmatchedBaseIssues(Component component, Tracking<DefaultIssue, DefaultIssue> tracking, CacheAppender<DefaultIssue> cacheAppender) {
     for (DefaultIssue issue : tracking.getUnmatchedBases()) {
       // TODO should replace flag "beingClosed" by express call to transition "automaticClose"
       issue.setBeingClosed(true);
@@ -111,7 +141,7 @@ public class IntegrateIssuesVisitor extends TypeAwareVisitorAdapter {
     }
   }
 
-  private void process(Component component, DefaultIssue issue, DiskCache<DefaultIssue>.DiskAppender cacheAppender) {
+  private void process(Component component, DefaultIssue issue, CacheAppender<DefaultIssue> cacheAppender) {
     issueLifecycle.doAutomaticTransition(issue);
     issueVisitors.onIssue(component, issue);
     cacheAppender.append(issue);
@@ -87,7 +87,10 @@ public class RuleRepositoryImpl implements RuleRepository {
     requireNonNull(key, "RuleKey can not be null");
   }
 
-  private void ensureInitialized() {
+  /**
+   * Synchronized as base issues of files may be loaded concurrently, see {@link IntegrateIssuesVisitor#prepareFile}.
+   */
+  private synchronized void ensureInitialized() {
     if (rulesByKey == null) {
       try (DbSession dbSession = dbClient.openSession(false)) {
         loadRulesFromDb(dbSession);
@@ -19,11 +19,15 @@
  */
 package org.sonar.server.computation.task.projectanalysis.issue;
 
+import java.util.Collection;
 import org.sonar.core.issue.DefaultIssue;
+import org.sonar.core.issue.tracking.Input;
 import org.sonar.core.issue.tracking.Tracker;
 import org.sonar.core.issue.tracking.Tracking;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 
+import static org.sonar.server.computation.task.projectanalysis.component.ComponentFunctions.isUnchangedFile;
+
 public class TrackerExecution {
 
   private final TrackerBaseInputFactory baseInputFactory;
@@ -38,6 +42,34 @@ public class TrackerExecution {
   }
 
   public Tracking<DefaultIssue, DefaultIssue> track(Component component) {
-    return tracker.track(rawInputFactory.create(component), baseInputFactory.create(component));
+    return track(component, baseInputFactory.create(component));
+  }
+
+  /**
+   * Same as {@link #track(Component)} with base data which have already been loaded by {@link #loadBaseInput(Component)}.
+   */
+  public Tracking<DefaultIssue, DefaultIssue> track(Component component, Input<DefaultIssue> baseInput) {
+    return tracker.track(rawInputFactory.create(component), baseInput);
+  }
+
+  /**
+   * Loads from database the base data required to process the issues of the component: the open issues and, if
+   * they have to be tracked, the line hashes of the previous analysis. Unlike {@link #track(Component)}, it only
+   * depends on the database and can be called concurrently.
+   */
+  public Input<DefaultIssue> loadBaseInput(Component component) {
+    Input<DefaultIssue> baseInput = baseInputFactory.create(component);
+    Collection<DefaultIssue> issues = baseInput.getIssues();
+    if (!isUnchangedFile(component) && !issues.isEmpty()) {
+      baseInput.getLineHashSequence();
+    }
+    return baseInput;
+  }
+
+  /**
+   * Open issues of the previous analysis of the component, without tracking them against the issues of the report.
+   */
+  public Collection<DefaultIssue> loadBaseIssues(Component component) {
+    return baseInputFactory.create(component).getIssues();
   }
 }
@@ -0,0 +1,315 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.measure;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.SetMultimap;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.Developer;
+import org.sonar.server.computation.task.projectanalysis.measure.MapBasedRawMeasureRepository.OverridePolicy;
+import org.sonar.server.computation.task.projectanalysis.metric.Metric;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Implementation of MeasureRepository which supports only raw measures of the components of the analysis report.
+ * <p>
+ * Measures are stored in one column per metric, indexed by the ref of the component in the report. Boolean, numeric
+ * and no value measures are stored as primitives and the {@link Measure} objects are created when they are read.
+ * Other measures (String and Level values, data, QualityGate status) are stored as they are. Columns are split into
+ * pages of {@link #PAGE_SIZE} components which are allocated only when a measure is set on one of them, so that
+ * metrics set on a few components only (eg. the project) do not take memory for all the components.
+ * </p>
+ * <p>
+ * Measures of developers are rare and are stored by component ref and {@link MeasureKey}, outside the columns.
+ * </p>
+ * Intended to be used as a delegate of other MeasureRepository implementations (hence the final keyword).
+ */
+public final class ColumnarRawMeasureRepository implements MeasureRepository {
+  private static final int PAGE_SHIFT = 8;
+  private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+  private static final int PAGE_MASK = PAGE_SIZE - 1;
+  private static final Set<Measure.ValueType> PRIMITIVE_VALUE_TYPES = EnumSet.of(
+    Measure.ValueType.BOOLEAN, Measure.ValueType.INT, Measure.ValueType.LONG, Measure.ValueType.DOUBLE);
+
+  private final Map<String, Column> columnsByMetricKey = new LinkedHashMap<>();
+  private final Map<Integer, Map<MeasureKey, Measure>> developerMeasures = new HashMap<>();
+
+  /**
+   * @throws UnsupportedOperationException all the time, not supported
+   */
+  @Override
+  public Optional<Measure> getBaseMeasure(Component component, Metric metric) {
+    throw new UnsupportedOperationException("This implementation of MeasureRepository supports only raw measures");
+  }
+
+  @Override
+  public Optional<Measure> getRawMeasure(Component component, Metric metric) {
+    // fail fast
+    requireNonNull(component);
+    requireNonNull(metric);
+
+    return Optional.fromNullable(find(toRef(component), metric.getKey(), null));
+  }
+
+  @Override
+  public void add(Component component, Metric metric, Measure measure) {
+    requireNonNull(component);
+    checkValueTypeConsistency(metric, measure);
+
+    if (find(toRef(component), metric.getKey(), measure.getDeveloper()) != null) {
+      throw new UnsupportedOperationException(
+        format(
+          "a measure can be set only once for a specific Component (key=%s), Metric (key=%s). Use update method",
+          component.getKey(),
+          metric.getKey()));
+    }
+    add(component, metric, measure, OverridePolicy.OVERRIDE);
+  }
+
+  @Override
+  public void update(Component component, Metric metric, Measure measure) {
+    requireNonNull(component);
+    checkValueTypeConsistency(metric, measure);
+
+    if (find(toRef(component), metric.getKey(), measure.getDeveloper()) == null) {
+      throw new UnsupportedOperationException(
+        format(
+          "a measure can be updated only if one already exists for a specific Component (key=%s), Metric (key=%s). Use add method",
+          component.getKey(),
+          metric.getKey()));
+    }
+    add(component, metric, measure, OverridePolicy.OVERRIDE);
+  }
+
+  private static void checkValueTypeConsistency(Metric metric, Measure measure) {
+    checkArgument(
+      measure.getValueType() == Measure.ValueType.NO_VALUE || measure.getValueType() == metric.getType().getValueType(),
+      format(
+        "Measure's ValueType (%s) is not consistent with the Metric's ValueType (%s)",
+        measure.getValueType(), metric.getType().getValueType()));
+  }
+
+  @Override
+  public Set<Measure> getRawMeasures(Component component, Metric metric) {
+    requireNonNull(metric);
+    requireNonNull(component);
+    int ref = toRef(component);
+
+    ImmutableSet.Builder<Measure> builder = ImmutableSet.builder();
+    Column column = columnsByMetricKey.get(metric.getKey());
+    Measure measure = column == null ? null : column.get(ref);
+    if (measure != null) {
+      builder.add(measure);
+    }
+    Map<MeasureKey, Measure> measuresOfDevelopers = developerMeasures.get(ref);
+    if (measuresOfDevelopers != null) {
+      for (Map.Entry<MeasureKey, Measure> entry : measuresOfDevelopers.entrySet()) {
+        if (entry.getKey().getMetricKey().equals(metric.getKey())) {
+          builder.add(entry.getValue());
+        }
+      }
+    }
+    return builder.build();
+  }
+
+  @Override
+  public SetMultimap<String, Measure> getRawMeasures(Component component) {
+    int ref = toRef(component);
+
+    ImmutableSetMultimap.Builder<String, Measure> builder = ImmutableSetMultimap.builder();
+    for (Column column : columnsByMetricKey.values()) {
+      Measure measure = column.get(ref);
+      if (measure != null) {
+        builder.put(column.metricKey, measure);
+      }
+    }
+    Map<MeasureKey, Measure> measuresOfDevelopers = developerMeasures.get(ref);
+    if (measuresOfDevelopers != null) {
+      for (Map.Entry<MeasureKey, Measure> entry : measuresOfDevelopers.entrySet()) {
+        builder.put(entry.getKey().getMetricKey(), entry.getValue());
+      }
+    }
+    return builder.build();
+  }
+
+  public void add(Component component, Metric metric, Measure measure, OverridePolicy overridePolicy) {
+    requireNonNull(component);
+    requireNonNull(measure);
+    requireNonNull(overridePolicy);
+
+    int ref = toRef(component);
+    Developer developer = measure.getDeveloper();
+    if (overridePolicy == OverridePolicy.DO_NOT_OVERRIDE && find(ref, metric.getKey(), developer) != null) {
+      return;
+    }
+    if (developer == null) {
+      columnsByMetricKey.computeIfAbsent(metric.getKey(), k -> new Column(k, metric.getType().getValueType())).set(ref, measure);
+    } else {
+      developerMeasures.computeIfAbsent(ref, k -> new HashMap<>()).put(new MeasureKey(metric.getKey(), developer), measure);
+    }
+  }
+
+  @CheckForNull
+  private Measure find(int ref, String metricKey, @Nullable Developer developer) {
+    if (developer == null) {
+      Column column = columnsByMetricKey.get(metricKey);
+      return column == null ? null : column.get(ref);
+    }
+    Map<MeasureKey, Measure> measuresOfDevelopers = developerMeasures.get(ref);
+    return measuresOfDevelopers == null ? null : measuresOfDevelopers.get(new MeasureKey(metricKey, developer));
+  }
+
+  private static int toRef(Component component) {
+    return component.getReportAttributes().getRef();
+  }
+
+  private static final class Column {
+    private final String metricKey;
+    private final Measure.ValueType valueType;
+    private Page[] pages = new Page[0];
+
+    private Column(String metricKey, Measure.ValueType valueType) {
+      this.metricKey = metricKey;
+      this.valueType = valueType;
+    }
+
+    @CheckForNull
+    Measure get(int ref) {
+      int pageIndex = ref >>> PAGE_SHIFT;
+      if (pageIndex >= pages.length || pages[pageIndex] == null) {
+        return null;
+      }
+      return pages[pageIndex].get(ref & PAGE_MASK, valueType);
+    }
+
+    void set(int ref, Measure measure) {
+      int pageIndex = ref >>> PAGE_SHIFT;
+      if (pageIndex >= pages.length) {
+        pages = Arrays.copyOf(pages, Math.max(pageIndex + 1, pages.length * 2));
+      }
+      Page page = pages[pageIndex];
+      if (page == null) {
+        page = new Page();
+        pages[pageIndex] = page;
+      }
+      page.set(ref & PAGE_MASK, measure, isPrimitive(measure));
+    }
+
+    private boolean isPrimitive(Measure measure) {
+      if (measure.getData() != null || measure.hasQualityGateStatus()) {
+        return false;
+      }
+      Measure.ValueType measureValueType = measure.getValueType();
+      return measureValueType == Measure.ValueType.NO_VALUE
+        || (measureValueType == valueType && PRIMITIVE_VALUE_TYPES.contains(measureValueType));
+    }
+  }
+
+  private static final class Page {
+    private static final byte ABSENT = 0;
+    private static final byte VALUE = 1;
+    private static final byte NO_VALUE = 2;
+    private static final byte OBJECT = 3;
+    private static final byte KIND_MASK = 3;
+    private static final byte HAS_VARIATION = 4;
+
+    private final byte[] states = new byte[PAGE_SIZE];
+    private final double[] values = new double[PAGE_SIZE];
+    // allocated only when needed, as most measures have no variation and few are not primitives
+    @CheckForNull
+    private double[] variations;
+    @CheckForNull
+    private Measure[] objects;
+
+    @CheckForNull
+    Measure get(int slot, Measure.ValueType valueType) {
+      byte state = states[slot];
+      switch (state & KIND_MASK) {
+        case ABSENT:
+          return null;
+        case OBJECT:
+          return objects[slot];
+        default:
+          Double variation = (state & HAS_VARIATION) == 0 ? null : variations[slot];
+          Measure.ValueType measureValueType = (state & KIND_MASK) == NO_VALUE ? Measure.ValueType.NO_VALUE : valueType;
+          return Measure.fromPrimitive(measureValueType, values[slot], variation);
+      }
+    }
+
+    void set(int slot, Measure measure, boolean primitive) {
+      if (!primitive) {
+        if (objects == null) {
+          objects = new Measure[PAGE_SIZE];
+        }
+        objects[slot] = measure;
+        states[slot] = OBJECT;
+        return;
+      }
+
+      byte state;
+      if (measure.getValueType() == Measure.ValueType.NO_VALUE) {
+        state = NO_VALUE;
+        values[slot] = 0d;
+      } else {
+        state = VALUE;
+        values[slot] = primitiveValueOf(measure);
+      }
+      if (measure.hasVariation()) {
+        if (variations == null) {
+          variations = new double[PAGE_SIZE];
+        }
+        variations[slot] = measure.getVariation();
+        state |= HAS_VARIATION;
+      }
+      if (objects != null) {
+        objects[slot] = null;
+      }
+      states[slot] = state;
+    }
+
+    private static double primitiveValueOf(Measure measure) {
+      switch (measure.getValueType()) {
+        case BOOLEAN:
+          return measure.getBooleanValue() ? 1.0d : 0.0d;
+        case INT:
+          return measure.getIntValue();
+        case LONG:
+          return measure.getLongValue();
+        case DOUBLE:
+          return measure.getDoubleValue();
+        default:
+          throw new IllegalArgumentException("Unsupported primitive ValueType " + measure.getValueType());
+      }
+    }
+  }
+}
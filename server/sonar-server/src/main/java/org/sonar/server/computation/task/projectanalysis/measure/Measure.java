@@ -100,6 +100,15 @@ public final class Measure {
     return new UpdateMeasureBuilder(measure);
   }
 
+  /**
+   * Recreates a measure without data, developer nor QualityGate status from the primitive value it has been stored
+   * with by {@link ColumnarRawMeasureRepository}. Unlike {@link NewMeasureBuilder#create(double, int)}, the value
+   * is not scaled again.
+   */
+  static Measure fromPrimitive(ValueType valueType, double value, @Nullable Double variation) {
+    return new Measure(valueType, null, valueType == ValueType.NO_VALUE ? null : value, null, null, null, variation);
+  }
+
   public static final class NewMeasureBuilder {
     private Developer developer;
     private QualityGateStatus qualityGateStatus;
@@ -21,8 +21,11 @@ package org.sonar.server.computation.task.projectanalysis.measure;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.SetMultimap;
-import java.util.HashSet;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
+import javax.annotation.CheckForNull;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
@@ -31,27 +34,38 @@ import org.sonar.db.measure.MeasureQuery;
 import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReader;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.CrawlerDepthLimit;
+import org.sonar.server.computation.task.projectanalysis.component.DepthTraversalTypeAwareCrawler;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
+import org.sonar.server.computation.task.projectanalysis.component.TypeAwareVisitorAdapter;
 import org.sonar.server.computation.task.projectanalysis.measure.MapBasedRawMeasureRepository.OverridePolicy;
 import org.sonar.server.computation.task.projectanalysis.metric.Metric;
 import org.sonar.server.computation.task.projectanalysis.metric.MetricRepository;
 import org.sonar.server.computation.task.projectanalysis.metric.ReportMetricValidator;
 
 import static java.util.Objects.requireNonNull;
-import static org.sonar.server.computation.task.projectanalysis.component.ComponentFunctions.toReportRef;
+import static org.sonar.server.computation.task.projectanalysis.component.ComponentFunctions.isUnchangedFile;
+import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.PRE_ORDER;
 
 public class MeasureRepositoryImpl implements MeasureRepository {
-  private final MapBasedRawMeasureRepository<Integer> delegate = new MapBasedRawMeasureRepository<>(toReportRef());
+  private final ColumnarRawMeasureRepository delegate = new ColumnarRawMeasureRepository();
   private final DbClient dbClient;
   private final BatchReportReader reportReader;
   private final BatchMeasureToMeasure batchMeasureToMeasure;
   private final MetricRepository metricRepository;
   private final ReportMetricValidator reportMetricValidator;
+  private final TreeRootHolder treeRootHolder;
 
   private MeasureDtoToMeasure underTest = new MeasureDtoToMeasure();
-  private final Set<Integer> loadedComponents = new HashSet<>();
+  private final BitSet loadedComponents = new BitSet();
+  private boolean unchangedFilesLoaded = false;
+  @CheckForNull
+  private Map<Integer, Metric> reportMetricsById;
 
-  public MeasureRepositoryImpl(DbClient dbClient, BatchReportReader reportReader, MetricRepository metricRepository, ReportMetricValidator reportMetricValidator) {
+  public MeasureRepositoryImpl(DbClient dbClient, BatchReportReader reportReader, MetricRepository metricRepository, ReportMetricValidator reportMetricValidator,
+    TreeRootHolder treeRootHolder) {
     this.dbClient = dbClient;
+    this.treeRootHolder = treeRootHolder;
     this.reportReader = reportReader;
     this.reportMetricValidator = reportMetricValidator;
     this.batchMeasureToMeasure = new BatchMeasureToMeasure();
@@ -109,21 +123,81 @@ public class MeasureRepositoryImpl implements MeasureRepository {
   }
 
   private void loadBatchMeasuresForComponent(Component component) {
-    if (loadedComponents.contains(component.getReportAttributes().getRef())) {
+    int ref = component.getReportAttributes().getRef();
+    if (loadedComponents.get(ref)) {
       return;
     }
 
-    try (CloseableIterator<ScannerReport.Measure> readIt = reportReader.readComponentMeasures(component.getReportAttributes().getRef())) {
-      while (readIt.hasNext()) {
-        ScannerReport.Measure batchMeasure = readIt.next();
-        String metricKey = batchMeasure.getMetricKey();
-        if (reportMetricValidator.validate(metricKey)) {
-          Metric metric = metricRepository.getByKey(metricKey);
-          delegate.add(component, metric, batchMeasureToMeasure.toMeasure(batchMeasure, metric).get(), OverridePolicy.DO_NOT_OVERRIDE);
+    if (isUnchangedFile(component)) {
+      loadPreviousMeasuresOfUnchangedFiles();
+    } else {
+      try (CloseableIterator<ScannerReport.Measure> readIt = reportReader.readComponentMeasures(ref)) {
+        while (readIt.hasNext()) {
+          ScannerReport.Measure batchMeasure = readIt.next();
+          String metricKey = batchMeasure.getMetricKey();
+          if (reportMetricValidator.validate(metricKey)) {
+            Metric metric = metricRepository.getByKey(metricKey);
+            delegate.add(component, metric, batchMeasureToMeasure.toMeasure(batchMeasure, metric).get(), OverridePolicy.DO_NOT_OVERRIDE);
+          }
         }
       }
     }
-    loadedComponents.add(component.getReportAttributes().getRef());
+    loadedComponents.set(ref);
+  }
+
+  /**
+   * Files which are unchanged are not analyzed by incremental analyses, so the report contains none of their measures.
+   * Measures of the previous analysis are used instead, for the metrics which are computed by the scanner. They are
+   * loaded for all the unchanged files at once, the first time the measures of one of them are requested.
+   */
+  private void loadPreviousMeasuresOfUnchangedFiles() {
+    if (unchangedFilesLoaded) {
+      return;
+    }
+    unchangedFilesLoaded = true;
+    Map<String, Component> unchangedFilesByUuid = new HashMap<>();
+    new DepthTraversalTypeAwareCrawler(
+      new TypeAwareVisitorAdapter(CrawlerDepthLimit.FILE, PRE_ORDER) {
+        @Override
+        public void visitFile(Component file) {
+          if (isUnchangedFile(file)) {
+            unchangedFilesByUuid.put(file.getUuid(), file);
+            loadedComponents.set(file.getReportAttributes().getRef());
+          }
+        }
+      }).visit(treeRootHolder.getRoot());
+
+    Map<Integer, Metric> metricsById = getReportMetricsById();
+    if (metricsById.isEmpty() || unchangedFilesByUuid.isEmpty()) {
+      return;
+    }
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      MeasureQuery query = MeasureQuery.builder()
+        .setComponentUuids(treeRootHolder.getRoot().getUuid(), unchangedFilesByUuid.keySet())
+        .setMetricIds(metricsById.keySet())
+        .build();
+      for (MeasureDto measureDto : dbClient.measureDao().selectByQuery(dbSession, query)) {
+        Metric metric = metricsById.get(measureDto.getMetricId());
+        // variations are computed again by the current analysis
+        measureDto.setVariation(null);
+        Optional<Measure> measure = underTest.toMeasure(measureDto, metric);
+        if (measure.isPresent()) {
+          delegate.add(unchangedFilesByUuid.get(measureDto.getComponentUuid()), metric, measure.get(), OverridePolicy.DO_NOT_OVERRIDE);
+        }
+      }
+    }
+  }
+
+  private Map<Integer, Metric> getReportMetricsById() {
+    if (reportMetricsById == null) {
+      reportMetricsById = new HashMap<>();
+      for (Metric metric : metricRepository.getAll()) {
+        if (reportMetricValidator.validate(metric.getKey())) {
+          reportMetricsById.put(metric.getId(), metric);
+        }
+      }
+    }
+    return reportMetricsById;
   }
 
 }
@@ -20,20 +20,29 @@
 package org.sonar.server.computation.task.projectanalysis.source;
 
 import com.google.common.base.Optional;
+import java.util.List;
 import org.sonar.core.util.CloseableIterator;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.protobuf.DbFileSources;
+import org.sonar.db.source.FileSourceDto;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReader;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static java.util.Objects.requireNonNull;
+import static org.sonar.core.util.stream.MoreCollectors.toList;
 import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.FILE;
+import static org.sonar.server.computation.task.projectanalysis.component.ComponentFunctions.isUnchangedFile;
 
 public class SourceLinesRepositoryImpl implements SourceLinesRepository {
 
+  private final DbClient dbClient;
   private final BatchReportReader reportReader;
 
-  public SourceLinesRepositoryImpl(BatchReportReader reportReader) {
+  public SourceLinesRepositoryImpl(DbClient dbClient, BatchReportReader reportReader) {
+    this.dbClient = dbClient;
     this.reportReader = reportReader;
   }
 
@@ -43,6 +52,10 @@ public class SourceLinesRepositoryImpl implements SourceLinesRepository {
     checkArgument(file.getType() == FILE, "Component '%s' is not a file", file);
 
     Optional<CloseableIterator<String>> linesIteratorOptional = reportReader.readFileSource(file.getReportAttributes().getRef());
+    if (!linesIteratorOptional.isPresent() && isUnchangedFile(file)) {
+      // source of unchanged files is not published by incremental analyses
+      linesIteratorOptional = readLinesOfPreviousAnalysis(file);
+    }
 
     checkState(linesIteratorOptional.isPresent(), "File '%s' has no source code", file);
     CloseableIterator<String> lineIterator = linesIteratorOptional.get();
@@ -50,6 +63,19 @@ public class SourceLinesRepositoryImpl implements SourceLinesRepository {
     return new ComponentLinesCloseableIterator(file, lineIterator, file.getFileAttributes().getLines());
   }
 
+  private Optional<CloseableIterator<String>> readLinesOfPreviousAnalysis(Component file) {
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      FileSourceDto fileSource = dbClient.fileSourceDao().selectSourceByFileUuid(dbSession, file.getUuid());
+      if (fileSource == null) {
+        return Optional.absent();
+      }
+      List<String> lines = fileSource.getSourceData().getLinesList().stream()
+        .map(DbFileSources.Line::getSource)
+        .collect(toList());
+      return Optional.of(CloseableIterator.from(lines.iterator()));
+    }
+  }
+
   private static class ComponentLinesCloseableIterator extends CloseableIterator<String> {
     private static final String EXTRA_END_LINE = "";
 
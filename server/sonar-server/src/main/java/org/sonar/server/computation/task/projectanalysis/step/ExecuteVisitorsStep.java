@@ -21,6 +21,7 @@ package org.sonar.server.computation.task.projectanalysis.step;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor;
@@ -31,6 +32,10 @@ import org.sonar.server.computation.task.step.ComputationStep;
 public class ExecuteVisitorsStep implements ComputationStep {
 
   private static final Logger LOGGER = Loggers.get(ExecuteVisitorsStep.class);
+  /**
+   * Preparation of files mostly waits for the database, hence a fixed number of threads rather than the number of cores.
+   */
+  private static final int PREPARATION_THREADS = 4;
 
   private final TreeRootHolder treeRootHolder;
   private final List<ComponentVisitor> visitors;
@@ -47,9 +52,14 @@ public class ExecuteVisitorsStep implements ComputationStep {
 
   @Override
   public void execute() {
-    VisitorsCrawler visitorsCrawler = new VisitorsCrawler(visitors, LOGGER.isDebugEnabled());
-    visitorsCrawler.visit(treeRootHolder.getRoot());
-    logVisitorExecutionDurations(visitors, visitorsCrawler);
+    ForkJoinPool pool = new ForkJoinPool(PREPARATION_THREADS);
+    try {
+      VisitorsCrawler visitorsCrawler = new VisitorsCrawler(visitors, LOGGER.isDebugEnabled(), pool);
+      visitorsCrawler.visit(treeRootHolder.getRoot());
+      logVisitorExecutionDurations(visitors, visitorsCrawler);
+    } finally {
+      pool.shutdown();
+    }
   }
 
   private static void logVisitorExecutionDurations(List<ComponentVisitor> visitors, VisitorsCrawler visitorsCrawler) {
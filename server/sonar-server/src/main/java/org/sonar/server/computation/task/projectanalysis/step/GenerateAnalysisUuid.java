@@ -19,11 +19,15 @@
  */
 package org.sonar.server.computation.task.projectanalysis.step;
 
+import com.google.common.collect.ImmutableSet;
+import java.util.Collections;
+import java.util.Set;
 import org.sonar.core.util.UuidFactory;
+import org.sonar.server.computation.task.projectanalysis.analysis.AnalysisMetadataHolder;
 import org.sonar.server.computation.task.projectanalysis.analysis.MutableAnalysisMetadataHolder;
-import org.sonar.server.computation.task.step.ComputationStep;
+import org.sonar.server.computation.task.step.ConcurrentComputationStep;
 
-public class GenerateAnalysisUuid implements ComputationStep {
+public class GenerateAnalysisUuid implements ConcurrentComputationStep {
 
   private final UuidFactory uuidFactory;
   private final MutableAnalysisMetadataHolder analysisMetadataHolder;
@@ -33,6 +37,16 @@ public class GenerateAnalysisUuid implements ComputationStep {
     this.analysisMetadataHolder = analysisMetadataHolder;
   }
 
+  @Override
+  public Set<Class<?>> reads() {
+    return Collections.emptySet();
+  }
+
+  @Override
+  public Set<Class<?>> writes() {
+    return ImmutableSet.of(AnalysisMetadataHolder.class);
+  }
+
   @Override
   public void execute() {
     analysisMetadataHolder.setUuid(uuidFactory.create());
@@ -20,8 +20,18 @@
 package org.sonar.server.computation.task.projectanalysis.step;
 
 import com.google.common.base.Function;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
@@ -39,6 +49,7 @@ import org.sonar.server.computation.task.projectanalysis.component.DepthTraversa
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
 import org.sonar.server.computation.task.projectanalysis.component.TypeAwareVisitorAdapter;
 import org.sonar.server.computation.task.projectanalysis.duplication.CrossProjectDuplicationStatusHolder;
+import org.sonar.server.computation.task.projectanalysis.duplication.Duplication;
 import org.sonar.server.computation.task.projectanalysis.duplication.IntegrateCrossProjectDuplications;
 import org.sonar.server.computation.task.projectanalysis.analysis.Analysis;
 import org.sonar.server.computation.task.step.ComputationStep;
@@ -53,11 +64,21 @@ import static org.sonar.server.computation.task.projectanalysis.component.Compon
  * Blocks can be empty if :
  * - The file is excluded from the analysis using {@link org.sonar.api.CoreProperties#CPD_EXCLUSIONS}
  * - On Java, if the number of statements of the file is too small, nothing will be sent.
+ *
+ * Files are processed by batches: the duplicated blocks of all the files of a batch are selected by a single query per
+ * language, then duplications of the files are detected in parallel and added to the repository in the order of the
+ * files. Blocks of the hashes already selected are kept in a bounded cache during the whole step.
  */
 public class LoadCrossProjectDuplicationsRepositoryStep implements ComputationStep {
 
   private static final Logger LOGGER = Loggers.get(LoadCrossProjectDuplicationsRepositoryStep.class);
 
+  /**
+   * Minimal number of hashes of the files of a batch
+   */
+  private static final int BATCH_HASHES = 5_000;
+  private static final int MAX_CACHED_HASHES = 100_000;
+
   private final TreeRootHolder treeRootHolder;
   private final BatchReportReader reportReader;
   private final AnalysisMetadataHolder analysisMetadataHolder;
@@ -79,7 +100,9 @@ public class LoadCrossProjectDuplicationsRepositoryStep implements ComputationSt
   @Override
   public void execute() {
     if (crossProjectDuplicationStatusHolder.isEnabled()) {
-      new DepthTraversalTypeAwareCrawler(new CrossProjectDuplicationVisitor()).visit(treeRootHolder.getRoot());
+      CrossProjectDuplicationVisitor visitor = new CrossProjectDuplicationVisitor();
+      new DepthTraversalTypeAwareCrawler(visitor).visit(treeRootHolder.getRoot());
+      visitor.processBatch();
     }
   }
 
@@ -89,6 +112,9 @@ public class LoadCrossProjectDuplicationsRepositoryStep implements ComputationSt
   }
 
   private class CrossProjectDuplicationVisitor extends TypeAwareVisitorAdapter {
+    private final CandidateBlocksCache candidateBlocksCache = new CandidateBlocksCache();
+    private final List<FileBlocks> batch = new ArrayList<>();
+    private int batchHashes = 0;
 
     private CrossProjectDuplicationVisitor() {
       super(CrawlerDepthLimit.FILE, PRE_ORDER);
@@ -102,25 +128,121 @@ public class LoadCrossProjectDuplicationsRepositoryStep implements ComputationSt
         return;
       }
 
-      Collection<String> hashes = from(cpdTextBlocks).transform(CpdTextBlockToHash.INSTANCE).toList();
-      List<DuplicationUnitDto> dtos = selectDuplicates(file, hashes);
-      if (dtos.isEmpty()) {
-        return;
-      }
-
-      Collection<Block> duplicatedBlocks = from(dtos).transform(DtoToBlock.INSTANCE).toList();
+      Set<String> hashes = from(cpdTextBlocks).transform(CpdTextBlockToHash.INSTANCE).copyInto(new LinkedHashSet<>());
       Collection<Block> originBlocks = from(cpdTextBlocks).transform(new CpdTextBlockToBlock(file.getKey())).toList();
-      LOGGER.trace("Found {} duplicated cpd blocks on file {}", duplicatedBlocks.size(), file.getKey());
+      batch.add(new FileBlocks(file, hashes, originBlocks));
+      batchHashes += hashes.size();
+      if (batchHashes >= BATCH_HASHES) {
+        processBatch();
+      }
+    }
 
-      integrateCrossProjectDuplications.computeCpd(file, originBlocks, duplicatedBlocks);
+    private void processBatch() {
+      if (batch.isEmpty()) {
+        return;
+      }
+      Map<String, List<Block>> duplicatedBlocksByHash = selectDuplicatedBlocks();
+      List<FileBlocks> duplicatedFiles = batch.stream()
+        .filter(fileBlocks -> fileBlocks.setDuplicatedBlocks(duplicatedBlocksByHash))
+        .collect(Collectors.toList());
+      // detection is the costly part, duplications are then added in the order of the files
+      List<List<Duplication>> duplicationsByFile = duplicatedFiles.parallelStream()
+        .map(fileBlocks -> integrateCrossProjectDuplications.detect(fileBlocks.file, fileBlocks.originBlocks, fileBlocks.duplicatedBlocks))
+        .collect(Collectors.toList());
+      for (int i = 0; i < duplicatedFiles.size(); i++) {
+        integrateCrossProjectDuplications.add(duplicatedFiles.get(i).file, duplicationsByFile.get(i));
+      }
+      batch.clear();
+      batchHashes = 0;
     }
 
-    private List<DuplicationUnitDto> selectDuplicates(Component file, Collection<String> hashes) {
+    private Map<String, List<Block>> selectDuplicatedBlocks() {
+      Map<String, List<Block>> duplicatedBlocksByHash = new HashMap<>();
+      Map<String, Set<String>> missingHashesByLanguage = new HashMap<>();
+      for (FileBlocks fileBlocks : batch) {
+        String language = fileBlocks.file.getFileAttributes().getLanguageKey();
+        for (String hash : fileBlocks.hashes) {
+          List<Block> cached = candidateBlocksCache.get(language, hash);
+          if (cached == null) {
+            missingHashesByLanguage.computeIfAbsent(language, l -> new HashSet<>()).add(hash);
+          } else {
+            duplicatedBlocksByHash.put(languageAndHash(language, hash), cached);
+          }
+        }
+      }
+      if (missingHashesByLanguage.isEmpty()) {
+        return duplicatedBlocksByHash;
+      }
+
       try (DbSession dbSession = dbClient.openSession(false)) {
         Analysis projectAnalysis = analysisMetadataHolder.getBaseAnalysis();
         String analysisUuid = projectAnalysis == null ? null : projectAnalysis.getUuid();
-        return dbClient.duplicationDao().selectCandidates(dbSession, analysisUuid, file.getFileAttributes().getLanguageKey(), hashes);
+        missingHashesByLanguage.forEach((language, hashes) -> {
+          Map<String, List<Block>> blocksByHash = new HashMap<>();
+          for (DuplicationUnitDto dto : dbClient.duplicationDao().selectCandidates(dbSession, analysisUuid, language, hashes)) {
+            blocksByHash.computeIfAbsent(dto.getHash(), h -> new ArrayList<>()).add(DtoToBlock.INSTANCE.apply(dto));
+          }
+          for (String hash : hashes) {
+            List<Block> blocks = blocksByHash.getOrDefault(hash, Collections.emptyList());
+            candidateBlocksCache.put(language, hash, blocks);
+            duplicatedBlocksByHash.put(languageAndHash(language, hash), blocks);
+          }
+        });
       }
+      return duplicatedBlocksByHash;
+    }
+  }
+
+  private static String languageAndHash(String language, String hash) {
+    return language + ':' + hash;
+  }
+
+  private static class FileBlocks {
+    private final Component file;
+    private final Set<String> hashes;
+    private final Collection<Block> originBlocks;
+    private Collection<Block> duplicatedBlocks;
+
+    private FileBlocks(Component file, Set<String> hashes, Collection<Block> originBlocks) {
+      this.file = file;
+      this.hashes = hashes;
+      this.originBlocks = originBlocks;
+    }
+
+    /**
+     * @return whether some blocks of other files have the same hash as blocks of this file
+     */
+    private boolean setDuplicatedBlocks(Map<String, List<Block>> duplicatedBlocksByHash) {
+      String language = file.getFileAttributes().getLanguageKey();
+      List<Block> blocks = new ArrayList<>();
+      for (String hash : hashes) {
+        blocks.addAll(duplicatedBlocksByHash.get(languageAndHash(language, hash)));
+      }
+      LOGGER.trace("Found {} duplicated cpd blocks on file {}", blocks.size(), file.getKey());
+      this.duplicatedBlocks = blocks;
+      return !blocks.isEmpty();
+    }
+  }
+
+  /**
+   * Blocks of other projects by language and hash, including hashes which have no such block. Least recently used
+   * hashes are evicted first.
+   */
+  private static class CandidateBlocksCache {
+    private final Map<String, List<Block>> blocksByLanguageAndHash = new LinkedHashMap<String, List<Block>>(16, 0.75F, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, List<Block>> eldest) {
+        return size() > MAX_CACHED_HASHES;
+      }
+    };
+
+    @CheckForNull
+    private List<Block> get(String language, String hash) {
+      return blocksByLanguageAndHash.get(languageAndHash(language, hash));
+    }
+
+    private void put(String language, String hash, List<Block> blocks) {
+      blocksByLanguageAndHash.put(languageAndHash(language, hash), blocks);
     }
   }
 
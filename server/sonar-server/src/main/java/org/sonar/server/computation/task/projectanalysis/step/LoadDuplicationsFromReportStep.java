@@ -20,7 +20,21 @@
 package org.sonar.server.computation.task.projectanalysis.step;
 
 import com.google.common.base.Function;
+import com.google.common.base.Optional;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import org.codehaus.staxmate.SMInputFactory;
+import org.codehaus.staxmate.in.SMHierarchicCursor;
+import org.codehaus.staxmate.in.SMInputCursor;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReader;
@@ -29,6 +43,7 @@ import org.sonar.server.computation.task.projectanalysis.component.CrawlerDepthL
 import org.sonar.server.computation.task.projectanalysis.component.DepthTraversalTypeAwareCrawler;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
 import org.sonar.server.computation.task.projectanalysis.component.TypeAwareVisitorAdapter;
+import org.sonar.server.computation.task.projectanalysis.duplication.CrossProjectDuplicate;
 import org.sonar.server.computation.task.projectanalysis.duplication.DetailedTextBlock;
 import org.sonar.server.computation.task.projectanalysis.duplication.Duplicate;
 import org.sonar.server.computation.task.projectanalysis.duplication.Duplication;
@@ -36,24 +51,40 @@ import org.sonar.server.computation.task.projectanalysis.duplication.Duplication
 import org.sonar.server.computation.task.projectanalysis.duplication.InProjectDuplicate;
 import org.sonar.server.computation.task.projectanalysis.duplication.InnerDuplicate;
 import org.sonar.server.computation.task.projectanalysis.duplication.TextBlock;
+import org.sonar.server.computation.task.projectanalysis.measure.Measure;
+import org.sonar.server.computation.task.projectanalysis.measure.MeasureRepository;
+import org.sonar.server.computation.task.projectanalysis.metric.MetricRepository;
 import org.sonar.server.computation.task.step.ComputationStep;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.collect.FluentIterable.from;
+import static java.lang.String.format;
+import static org.sonar.api.measures.CoreMetrics.DUPLICATIONS_DATA_KEY;
+import static org.sonar.server.computation.task.projectanalysis.component.ComponentFunctions.isUnchangedFile;
 import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.POST_ORDER;
 
 /**
  * Loads duplication information from the report and loads them into the {@link DuplicationRepository}.
+ * <p>
+ * Files left unchanged by an incremental analysis have no duplication in the report: their duplications with other
+ * unchanged files are read back from the {@code duplications_data} measure of the previous analysis, and their
+ * duplications with changed files are deduced from the duplications of the changed files in the report.
+ * </p>
  */
 public class LoadDuplicationsFromReportStep implements ComputationStep {
   private final TreeRootHolder treeRootHolder;
   private final BatchReportReader batchReportReader;
   private final DuplicationRepository duplicationRepository;
+  private final MeasureRepository measureRepository;
+  private final MetricRepository metricRepository;
 
-  public LoadDuplicationsFromReportStep(TreeRootHolder treeRootHolder, BatchReportReader batchReportReader, DuplicationRepository duplicationRepository) {
+  public LoadDuplicationsFromReportStep(TreeRootHolder treeRootHolder, BatchReportReader batchReportReader, DuplicationRepository duplicationRepository,
+    MeasureRepository measureRepository, MetricRepository metricRepository) {
     this.treeRootHolder = treeRootHolder;
     this.batchReportReader = batchReportReader;
     this.duplicationRepository = duplicationRepository;
+    this.measureRepository = measureRepository;
+    this.metricRepository = metricRepository;
   }
 
   @Override
@@ -63,15 +94,23 @@ public class LoadDuplicationsFromReportStep implements ComputationStep {
 
   @Override
   public void execute() {
+    List<Component> unchangedFiles = new ArrayList<>();
+    // duplicates of the blocks of unchanged files in changed files, by key of unchanged file
+    Map<String, Map<TextBlock, List<Duplicate>>> duplicatesInChangedFiles = new HashMap<>();
     new DepthTraversalTypeAwareCrawler(
       new TypeAwareVisitorAdapter(CrawlerDepthLimit.FILE, POST_ORDER) {
         @Override
         public void visitFile(Component file) {
+          if (isUnchangedFile(file)) {
+            unchangedFiles.add(file);
+            return;
+          }
           CloseableIterator<ScannerReport.Duplication> duplications = batchReportReader.readComponentDuplications(file.getReportAttributes().getRef());
           try {
             int idGenerator = 1;
             while (duplications.hasNext()) {
-              loadDuplications(file, duplications.next(), idGenerator);
+              Duplication duplication = loadDuplications(file, duplications.next(), idGenerator);
+              collectDuplicatesInChangedFile(file, duplication, duplicatesInChangedFiles);
               idGenerator++;
             }
           } finally {
@@ -79,14 +118,110 @@ public class LoadDuplicationsFromReportStep implements ComputationStep {
           }
         }
       }).visit(treeRootHolder.getRoot());
+
+    for (Component unchangedFile : unchangedFiles) {
+      loadUnchangedFileDuplications(unchangedFile, duplicatesInChangedFiles.getOrDefault(unchangedFile.getKey(), Collections.emptyMap()));
+    }
+  }
+
+  private Duplication loadDuplications(Component file, ScannerReport.Duplication duplication, int id) {
+    Duplication res = new Duplication(
+      convert(duplication.getOriginPosition(), id),
+      from(duplication.getDuplicateList())
+        .transform(new BatchDuplicateToCeDuplicate(file)));
+    duplicationRepository.add(file, res);
+    return res;
+  }
+
+  /**
+   * The duplication of a block of a changed file in an unchanged file is also a duplication of the block of the
+   * unchanged file in the changed file.
+   */
+  private static void collectDuplicatesInChangedFile(Component changedFile, Duplication duplication,
+    Map<String, Map<TextBlock, List<Duplicate>>> duplicatesInChangedFiles) {
+    TextBlock original = new TextBlock(duplication.getOriginal().getStart(), duplication.getOriginal().getEnd());
+    for (Duplicate duplicate : duplication.getDuplicates()) {
+      if (duplicate instanceof InProjectDuplicate && isUnchangedFile(((InProjectDuplicate) duplicate).getFile())) {
+        duplicatesInChangedFiles
+          .computeIfAbsent(((InProjectDuplicate) duplicate).getFile().getKey(), k -> new LinkedHashMap<>())
+          .computeIfAbsent(duplicate.getTextBlock(), k -> new ArrayList<>())
+          .add(new InProjectDuplicate(changedFile, original));
+      }
+    }
+  }
+
+  private void loadUnchangedFileDuplications(Component file, Map<TextBlock, List<Duplicate>> duplicatesInChangedFiles) {
+    Map<TextBlock, List<Duplicate>> duplicatesByOriginal = new LinkedHashMap<>();
+    loadPreviousDuplicates(file, duplicatesByOriginal);
+    duplicatesInChangedFiles.forEach((original, duplicates) -> duplicatesByOriginal.computeIfAbsent(original, k -> new ArrayList<>()).addAll(duplicates));
+
+    int idGenerator = 1;
+    for (Map.Entry<TextBlock, List<Duplicate>> entry : duplicatesByOriginal.entrySet()) {
+      TextBlock original = entry.getKey();
+      duplicationRepository.add(file, new Duplication(new DetailedTextBlock(idGenerator, original.getStart(), original.getEnd()), entry.getValue()));
+      idGenerator++;
+    }
+  }
+
+  private void loadPreviousDuplicates(Component file, Map<TextBlock, List<Duplicate>> duplicatesByOriginal) {
+    Optional<Measure> duplicationsData = measureRepository.getBaseMeasure(file, metricRepository.getByKey(DUPLICATIONS_DATA_KEY));
+    if (!duplicationsData.isPresent() || duplicationsData.get().getData() == null) {
+      return;
+    }
+    try {
+      SMHierarchicCursor root = initStax().rootElementCursor(new StringReader(duplicationsData.get().getData()));
+      // <duplications>
+      root.advance();
+      SMInputCursor groups = root.childElementCursor("g");
+      while (groups.getNext() != null) {
+        SMInputCursor blocks = groups.childElementCursor("b");
+        TextBlock original = null;
+        List<Duplicate> duplicates = new ArrayList<>();
+        while (blocks.getNext() != null) {
+          int start = Integer.parseInt(blocks.getAttrValue("s"));
+          int end = start + Integer.parseInt(blocks.getAttrValue("l")) - 1;
+          if (original == null) {
+            original = new TextBlock(start, end);
+          } else {
+            Duplicate duplicate = toPreviousDuplicate(file, blocks.getAttrValue("r"), new TextBlock(start, end));
+            if (duplicate != null) {
+              duplicates.add(duplicate);
+            }
+          }
+        }
+        if (original != null && !duplicates.isEmpty()) {
+          duplicatesByOriginal.computeIfAbsent(original, k -> new ArrayList<>()).addAll(duplicates);
+        }
+      }
+    } catch (XMLStreamException e) {
+      throw new IllegalStateException(format("Can not read duplications of previous analysis of file '%s'", file.getKey()), e);
+    }
+  }
+
+  /**
+   * Duplicates in files which changed since the previous analysis are ignored: their lines may have moved. The
+   * duplications with changed files are read from the report, see {@link #collectDuplicatesInChangedFile}.
+   */
+  @CheckForNull
+  private Duplicate toPreviousDuplicate(Component file, String componentKey, TextBlock textBlock) {
+    if (componentKey.equals(file.getKey())) {
+      return new InnerDuplicate(textBlock);
+    }
+    if (treeRootHolder.hasComponentWithKey(componentKey)) {
+      Component otherFile = treeRootHolder.getComponentByKey(componentKey);
+      return isUnchangedFile(otherFile) ? new InProjectDuplicate(otherFile, textBlock) : null;
+    }
+    return new CrossProjectDuplicate(componentKey, textBlock);
   }
 
-  private void loadDuplications(Component file, ScannerReport.Duplication duplication, int id) {
-    duplicationRepository.add(file,
-      new Duplication(
-        convert(duplication.getOriginPosition(), id),
-        from(duplication.getDuplicateList())
-          .transform(new BatchDuplicateToCeDuplicate(file))));
+  private static SMInputFactory initStax() {
+    XMLInputFactory xmlFactory = XMLInputFactory.newInstance();
+    xmlFactory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+    xmlFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+    // just so it won't try to load DTD in if there's DOCTYPE
+    xmlFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+    xmlFactory.setProperty(XMLInputFactory.IS_VALIDATING, Boolean.FALSE);
+    return new SMInputFactory(xmlFactory);
   }
 
   private static TextBlock convert(ScannerReport.TextRange textRange) {
@@ -21,10 +21,17 @@ package org.sonar.server.computation.task.projectanalysis.step;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.apache.commons.codec.digest.DigestUtils;
@@ -58,10 +65,21 @@ import org.sonar.server.computation.task.projectanalysis.source.SourceLinesRepos
 import org.sonar.server.computation.task.projectanalysis.source.SymbolsLineReader;
 import org.sonar.server.computation.task.step.ComputationStep;
 
+import static org.sonar.server.computation.task.projectanalysis.component.ComponentFunctions.isUnchangedFile;
 import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.PRE_ORDER;
 
+/**
+ * Not a {@link org.sonar.server.computation.task.step.ConcurrentComputationStep}: {@link ScmInfoRepository} and the
+ * source hash repository it relies on are caches loaded lazily when read, which are not thread-safe.
+ */
 public class PersistFileSourcesStep implements ComputationStep {
 
+  private static final int ENCODER_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+  // maximum number of files which are encoded or waiting to be written
+  private static final int MAX_ENCODED_FILES = 2 * ENCODER_THREADS;
+  // size of the data inserted or updated since the last commit
+  private static final long MAX_PENDING_BYTES = 8L * 1024 * 1024;
+
   private final DbClient dbClient;
   private final System2 system2;
   private final TreeRootHolder treeRootHolder;
@@ -83,23 +101,37 @@ public class PersistFileSourcesStep implements ComputationStep {
 
   @Override
   public void execute() {
-    // Don't use batch insert for file_sources since keeping all data in memory can produce OOM for big files
-    try (DbSession dbSession = dbClient.openSession(false)) {
-      new DepthTraversalTypeAwareCrawler(new FileSourceVisitor(dbSession))
-        .visit(treeRootHolder.getRoot());
+    // Batch session flushes statements every MAX_BATCH_SIZE rows, FileSourceVisitor commits when the size of the
+    // pending data exceeds MAX_PENDING_BYTES, so that memory is bounded even for big files
+    ExecutorService encoders = Executors.newFixedThreadPool(ENCODER_THREADS,
+      new ThreadFactoryBuilder()
+        .setNameFormat("PersistFileSources-%d")
+        .setDaemon(true)
+        .build());
+    try (DbSession dbSession = dbClient.openSession(true)) {
+      FileSourceVisitor visitor = new FileSourceVisitor(dbSession, encoders);
+      new DepthTraversalTypeAwareCrawler(visitor).visit(treeRootHolder.getRoot());
+      visitor.writeAll();
+    } finally {
+      encoders.shutdownNow();
     }
   }
 
   private class FileSourceVisitor extends TypeAwareVisitorAdapter {
 
     private final DbSession session;
+    private final ExecutorService encoders;
+    // files being encoded, in the order of the crawler
+    private final Deque<Future<FileSourceDto>> encodedFiles = new ArrayDeque<>();
 
     private Map<String, FileSourceDto> previousFileSourcesByUuid = new HashMap<>();
     private String projectUuid;
+    private long pendingBytes = 0L;
 
-    private FileSourceVisitor(DbSession session) {
+    private FileSourceVisitor(DbSession session, ExecutorService encoders) {
       super(CrawlerDepthLimit.FILE, PRE_ORDER);
       this.session = session;
+      this.encoders = encoders;
     }
 
     @Override
@@ -114,21 +146,70 @@ public class PersistFileSourcesStep implements ComputationStep {
 
     @Override
     public void visitFile(Component file) {
+      if (isUnchangedFile(file)) {
+        // sources of the previous analysis are kept as they are
+        return;
+      }
       CloseableIterator<String> linesIterator = sourceLinesRepository.readLines(file);
       LineReaders lineReaders = new LineReaders(reportReader, scmInfoRepository, duplicationRepository, file);
       try {
         ComputeFileSourceData computeFileSourceData = new ComputeFileSourceData(linesIterator, lineReaders.readers(), file.getFileAttributes().getLines());
         ComputeFileSourceData.Data fileSourceData = computeFileSourceData.compute();
-        persistSource(fileSourceData, file.getUuid(), lineReaders.getLatestChange());
+        Changeset latestChange = lineReaders.getLatestChange();
+        // encoding is done while the previous files are written
+        encodedFiles.add(encoders.submit(() -> encode(fileSourceData, file, latestChange)));
       } catch (Exception e) {
         throw new IllegalStateException(String.format("Cannot persist sources of %s", file.getKey()), e);
       } finally {
         linesIterator.close();
         lineReaders.close();
       }
+      while (encodedFiles.size() > MAX_ENCODED_FILES) {
+        writeNext();
+      }
+    }
+
+    void writeAll() {
+      while (!encodedFiles.isEmpty()) {
+        writeNext();
+      }
+      session.commit();
+    }
+
+    private void writeNext() {
+      FileSourceDto dto = waitFor(encodedFiles.removeFirst());
+      if (dto == null) {
+        // sources have not changed
+        return;
+      }
+      if (dto.getId() == null) {
+        dbClient.fileSourceDao().insert(session, dto);
+      } else {
+        dbClient.fileSourceDao().update(session, dto);
+      }
+      pendingBytes += dto.getBinaryData().length + (dto.getLineHashes() == null ? 0 : dto.getLineHashes().length());
+      if (pendingBytes >= MAX_PENDING_BYTES) {
+        session.commit();
+        pendingBytes = 0L;
+      }
     }
 
-    private void persistSource(ComputeFileSourceData.Data fileSourceData, String componentUuid, @Nullable Changeset latestChange) {
+    /**
+     * Executed by encoder threads. Previous sources are only read by the other threads.
+     *
+     * @return {@code null} if sources are unchanged
+     */
+    @CheckForNull
+    private FileSourceDto encode(ComputeFileSourceData.Data fileSourceData, Component file, @Nullable Changeset latestChange) {
+      try {
+        return toDto(fileSourceData, file.getUuid(), latestChange);
+      } catch (Exception e) {
+        throw new IllegalStateException(String.format("Cannot persist sources of %s", file.getKey()), e);
+      }
+    }
+
+    @CheckForNull
+    private FileSourceDto toDto(ComputeFileSourceData.Data fileSourceData, String componentUuid, @Nullable Changeset latestChange) {
       DbFileSources.Data fileData = fileSourceData.getFileSourceData();
 
       byte[] data = FileSourceDto.encodeSourceData(fileData);
@@ -138,7 +219,7 @@ public class PersistFileSourcesStep implements ComputationStep {
       FileSourceDto previousDto = previousFileSourcesByUuid.get(componentUuid);
 
       if (previousDto == null) {
-        FileSourceDto dto = new FileSourceDto()
+        return new FileSourceDto()
           .setProjectUuid(projectUuid)
           .setFileUuid(componentUuid)
           .setDataType(Type.SOURCE)
@@ -149,26 +230,22 @@ public class PersistFileSourcesStep implements ComputationStep {
           .setCreatedAt(system2.now())
           .setUpdatedAt(system2.now())
           .setRevision(computeRevision(latestChange));
-        dbClient.fileSourceDao().insert(session, dto);
-        session.commit();
-      } else {
-        // Update only if data_hash has changed or if src_hash is missing or revision is missing (progressive migration)
-        boolean binaryDataUpdated = !dataHash.equals(previousDto.getDataHash());
-        boolean srcHashUpdated = !srcHash.equals(previousDto.getSrcHash());
-        String revision = computeRevision(latestChange);
-        boolean revisionUpdated = !ObjectUtils.equals(revision, previousDto.getRevision());
-        if (binaryDataUpdated || srcHashUpdated || revisionUpdated) {
-          previousDto
-            .setBinaryData(data)
-            .setDataHash(dataHash)
-            .setSrcHash(srcHash)
-            .setLineHashes(lineHashes)
-            .setRevision(revision)
-            .setUpdatedAt(system2.now());
-          dbClient.fileSourceDao().update(session, previousDto);
-          session.commit();
-        }
       }
+      // Update only if data_hash has changed or if src_hash is missing or revision is missing (progressive migration)
+      boolean binaryDataUpdated = !dataHash.equals(previousDto.getDataHash());
+      boolean srcHashUpdated = !srcHash.equals(previousDto.getSrcHash());
+      String revision = computeRevision(latestChange);
+      boolean revisionUpdated = !ObjectUtils.equals(revision, previousDto.getRevision());
+      if (binaryDataUpdated || srcHashUpdated || revisionUpdated) {
+        return previousDto
+          .setBinaryData(data)
+          .setDataHash(dataHash)
+          .setSrcHash(srcHash)
+          .setLineHashes(lineHashes)
+          .setRevision(revision)
+          .setUpdatedAt(system2.now());
+      }
+      return null;
     }
 
     @CheckForNull
@@ -180,6 +257,21 @@ public class PersistFileSourcesStep implements ComputationStep {
     }
   }
 
+  @CheckForNull
+  private static FileSourceDto waitFor(Future<FileSourceDto> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while persisting sources", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException("Cannot persist sources", e.getCause());
+    }
+  }
+
   private static class LineReaders {
     private final List<LineReader> readers = new ArrayList<>();
     private final List<CloseableIterator<?>> closeables = new ArrayList<>();
@@ -19,16 +19,19 @@
  */
 package org.sonar.server.computation.task.projectanalysis.step;
 
+import com.google.common.collect.ImmutableSet;
+import java.util.Collections;
+import java.util.Set;
 import org.sonar.ce.queue.CeTask;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReader;
-import org.sonar.server.computation.task.step.ComputationStep;
+import org.sonar.server.computation.task.step.ConcurrentComputationStep;
 
 import static java.util.Collections.singleton;
 
-public class PersistScannerContextStep implements ComputationStep {
+public class PersistScannerContextStep implements ConcurrentComputationStep {
   private final BatchReportReader reportReader;
   private final DbClient dbClient;
   private final CeTask ceTask;
@@ -44,6 +47,16 @@ public class PersistScannerContextStep implements ComputationStep {
     return "Persist scanner context";
   }
 
+  @Override
+  public Set<Class<?>> reads() {
+    return ImmutableSet.of(BatchReportReader.class);
+  }
+
+  @Override
+  public Set<Class<?>> writes() {
+    return Collections.emptySet();
+  }
+
   @Override
   public void execute() {
     try (CloseableIterator<String> logsIterator = reportReader.readScannerLogs()) {
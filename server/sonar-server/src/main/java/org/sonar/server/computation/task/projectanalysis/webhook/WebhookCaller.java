@@ -19,6 +19,8 @@
  */
 package org.sonar.server.computation.task.projectanalysis.webhook;
 
+import java.util.function.Consumer;
+
 public interface WebhookCaller {
 
   /**
@@ -31,4 +33,13 @@ public interface WebhookCaller {
    */
   WebhookDelivery call(Webhook webhook, WebhookPayload payload);
 
+  /**
+   * Same as {@link #call(Webhook, WebhookPayload)}, except that the request is sent asynchronously.
+   * The number of requests sent concurrently, in total and to a same host, is limited.
+   * <br/>
+   * The delivery is given to {@code callback} once the request has been executed, from a thread of
+   * the HTTP client. Its duration includes the time spent waiting for a connection to the host.
+   */
+  void callAsync(Webhook webhook, WebhookPayload payload, Consumer<WebhookDelivery> callback);
+
 }
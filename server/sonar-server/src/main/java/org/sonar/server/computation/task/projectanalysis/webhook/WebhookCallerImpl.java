@@ -19,7 +19,13 @@
  */
 package org.sonar.server.computation.task.projectanalysis.webhook;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Dispatcher;
 import okhttp3.HttpUrl;
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
@@ -40,6 +46,8 @@ public class WebhookCallerImpl implements WebhookCaller {
 
   private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
   private static final String PROJECT_KEY_HEADER = "X-SonarQube-Project";
+  private static final int MAX_CONCURRENT_REQUESTS = 20;
+  private static final int MAX_CONCURRENT_REQUESTS_PER_HOST = 2;
 
   private final System2 system;
   private final OkHttpClient okHttpClient;
@@ -51,16 +59,15 @@ public class WebhookCallerImpl implements WebhookCaller {
 
   @Override
   public WebhookDelivery call(Webhook webhook, WebhookPayload payload) {
-    WebhookDelivery.Builder builder = new WebhookDelivery.Builder();
     long startedAt = system.now();
-    builder
+    WebhookDelivery.Builder builder = new WebhookDelivery.Builder()
       .setAt(startedAt)
       .setPayload(payload)
       .setWebhook(webhook);
 
     try {
       Request request = buildHttpRequest(webhook, payload);
-      try (Response response = execute(request)) {
+      try (Response response = followRedirect(okHttpClient.newCall(request).execute())) {
         builder.setHttpStatus(response.code());
         builder.setDurationInMs((int) (system.now() - startedAt));
       }
@@ -70,6 +77,41 @@ public class WebhookCallerImpl implements WebhookCaller {
     return builder.build();
   }
 
+  @Override
+  public void callAsync(Webhook webhook, WebhookPayload payload, Consumer<WebhookDelivery> callback) {
+    long startedAt = system.now();
+    WebhookDelivery.Builder builder = new WebhookDelivery.Builder()
+      .setAt(startedAt)
+      .setPayload(payload)
+      .setWebhook(webhook);
+
+    Request request;
+    try {
+      request = buildHttpRequest(webhook, payload);
+    } catch (Exception e) {
+      callback.accept(builder.setError(e).build());
+      return;
+    }
+    okHttpClient.newCall(request).enqueue(new Callback() {
+      @Override
+      public void onFailure(Call call, IOException e) {
+        callback.accept(builder.setError(e).build());
+      }
+
+      @Override
+      public void onResponse(Call call, Response response) {
+        // redirects are rare, they are followed synchronously by the thread of the HTTP client
+        try (Response finalResponse = followRedirect(response)) {
+          builder.setHttpStatus(finalResponse.code());
+          builder.setDurationInMs((int) (system.now() - startedAt));
+        } catch (Exception e) {
+          builder.setError(e);
+        }
+        callback.accept(builder.build());
+      }
+    });
+  }
+
   private static Request buildHttpRequest(Webhook webhook, WebhookPayload payload) {
     Request.Builder request = new Request.Builder();
     request.url(webhook.getUrl());
@@ -79,8 +121,7 @@ public class WebhookCallerImpl implements WebhookCaller {
     return request.build();
   }
 
-  private Response execute(Request request) throws IOException {
-    Response response = okHttpClient.newCall(request).execute();
+  private Response followRedirect(Response response) throws IOException {
     switch (response.code()) {
       case HTTP_MOVED_PERM:
       case HTTP_MOVED_TEMP:
@@ -120,7 +161,15 @@ public class WebhookCallerImpl implements WebhookCaller {
   }
 
   private static OkHttpClient newClientWithoutRedirect(OkHttpClient client) {
+    Dispatcher dispatcher = new Dispatcher(Executors.newCachedThreadPool(
+      new ThreadFactoryBuilder()
+        .setNameFormat("Webhook-%d")
+        .setDaemon(true)
+        .build()));
+    dispatcher.setMaxRequests(MAX_CONCURRENT_REQUESTS);
+    dispatcher.setMaxRequestsPerHost(MAX_CONCURRENT_REQUESTS_PER_HOST);
     return client.newBuilder()
+      .dispatcher(dispatcher)
       .followRedirects(false)
       .followSslRedirects(false)
       .build();
@@ -20,6 +20,8 @@
 package org.sonar.server.computation.task.projectanalysis.webhook;
 
 import com.google.common.base.Throwables;
+import java.util.Collection;
+import java.util.Collections;
 import org.sonar.api.ce.ComputeEngineSide;
 import org.sonar.api.utils.System2;
 import org.sonar.core.util.UuidFactory;
@@ -47,9 +49,19 @@ public class WebhookDeliveryStorage {
   }
 
   public void persist(WebhookDelivery delivery) {
+    persist(Collections.singletonList(delivery));
+  }
+
+  /**
+   * Persist the deliveries in a single transaction
+   */
+  public void persist(Collection<WebhookDelivery> deliveries) {
+    if (deliveries.isEmpty()) {
+      return;
+    }
     WebhookDeliveryDao dao = dbClient.webhookDeliveryDao();
-    try (DbSession dbSession = dbClient.openSession(false)) {
-      dao.insert(dbSession, toDto(delivery));
+    try (DbSession dbSession = dbClient.openSession(true)) {
+      deliveries.forEach(delivery -> dao.insert(dbSession, toDto(delivery)));
       dbSession.commit();
     }
   }
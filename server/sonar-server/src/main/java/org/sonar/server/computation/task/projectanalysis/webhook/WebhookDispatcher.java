@@ -0,0 +1,36 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.webhook;
+
+import java.util.List;
+
+/**
+ * Sends webhooks asynchronously, so that Compute Engine workers do not wait for the responses of
+ * the remote servers.
+ */
+public interface WebhookDispatcher {
+
+  /**
+   * Persists the calls of the webhooks with the specified payload, so that they are sent even if the
+   * Compute Engine is restarted. Failed calls are retried later.
+   */
+  void enqueue(List<Webhook> webhooks, WebhookPayload payload);
+
+}
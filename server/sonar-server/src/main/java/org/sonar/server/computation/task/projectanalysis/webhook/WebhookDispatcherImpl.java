@@ -0,0 +1,262 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.webhook;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.sonar.api.Startable;
+import org.sonar.api.ce.ComputeEngineSide;
+import org.sonar.api.utils.System2;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.core.util.UuidFactory;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.webhook.WebhookQueueDto;
+
+/**
+ * Webhook calls are persisted in table WEBHOOK_QUEUE, then sent by a single background thread
+ * through {@link WebhookCaller#callAsync(Webhook, WebhookPayload, java.util.function.Consumer)}.
+ * Responses are handled by the same background thread, which persists the deliveries in batch
+ * and either deletes the calls or schedules a new attempt.
+ * <br/>
+ * A call is claimed in database before being sent. If the Compute Engine stops before the response
+ * is handled, then the call is sent again once {@link #SENDING_TIMEOUT_MS} is over. Webhooks are
+ * consequently delivered at least once.
+ */
+@ComputeEngineSide
+public class WebhookDispatcherImpl implements WebhookDispatcher, Startable {
+
+  private static final Logger LOGGER = Loggers.get(WebhookDispatcherImpl.class);
+  private static final long POLLING_DELAY_MS = 10_000L;
+  private static final long SENDING_TIMEOUT_MS = 10L * 60 * 1000;
+  private static final long FIRST_RETRY_DELAY_MS = 30_000L;
+  private static final int TOO_MANY_REQUESTS = 429;
+  @VisibleForTesting
+  static final int MAX_ATTEMPTS = 5;
+  @VisibleForTesting
+  static final int MAX_CALLS_IN_PROGRESS = 100;
+
+  private final DbClient dbClient;
+  private final System2 system;
+  private final UuidFactory uuidFactory;
+  private final WebhookCaller caller;
+  private final WebhookDeliveryStorage deliveryStorage;
+  private final ScheduledExecutorService executorService;
+  private final BlockingQueue<Result> results = new LinkedBlockingQueue<>();
+  private final AtomicInteger callsInProgress = new AtomicInteger();
+  private final AtomicBoolean wakeUpRequested = new AtomicBoolean();
+
+  public WebhookDispatcherImpl(DbClient dbClient, System2 system, UuidFactory uuidFactory, WebhookCaller caller,
+    WebhookDeliveryStorage deliveryStorage) {
+    this(dbClient, system, uuidFactory, caller, deliveryStorage, Executors.newSingleThreadScheduledExecutor(
+      new ThreadFactoryBuilder()
+        .setNameFormat("WebhookDispatcher-%d")
+        .setDaemon(true)
+        .build()));
+  }
+
+  @VisibleForTesting
+  WebhookDispatcherImpl(DbClient dbClient, System2 system, UuidFactory uuidFactory, WebhookCaller caller,
+    WebhookDeliveryStorage deliveryStorage, ScheduledExecutorService executorService) {
+    this.dbClient = dbClient;
+    this.system = system;
+    this.uuidFactory = uuidFactory;
+    this.caller = caller;
+    this.deliveryStorage = deliveryStorage;
+    this.executorService = executorService;
+  }
+
+  @Override
+  public void start() {
+    executorService.scheduleWithFixedDelay(this::processQueue, POLLING_DELAY_MS, POLLING_DELAY_MS, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public void stop() {
+    try {
+      executorService.shutdown();
+      executorService.awaitTermination(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      LOGGER.error("Unable to stop webhook dispatcher in timely fashion", e);
+      executorService.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public void enqueue(List<Webhook> webhooks, WebhookPayload payload) {
+    if (webhooks.isEmpty()) {
+      return;
+    }
+    long now = system.now();
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      for (Webhook webhook : webhooks) {
+        dbClient.webhookQueueDao().insert(dbSession, new WebhookQueueDto()
+          .setUuid(uuidFactory.create())
+          .setComponentUuid(webhook.getComponentUuid())
+          .setCeTaskUuid(webhook.getCeTaskUuid())
+          .setName(webhook.getName())
+          .setUrl(webhook.getUrl())
+          .setProjectKey(payload.getProjectKey())
+          .setPayload(payload.getJson())
+          .setAttempts(0)
+          .setNextAttemptAt(now)
+          .setCreatedAt(now));
+      }
+      dbSession.commit();
+    }
+    wakeUp();
+  }
+
+  @VisibleForTesting
+  void processQueue() {
+    wakeUpRequested.set(false);
+    try {
+      saveResults();
+      sendDueCalls();
+    } catch (Exception e) {
+      LOGGER.error("Fail to process queue of webhooks", e);
+    }
+  }
+
+  private void wakeUp() {
+    if (wakeUpRequested.compareAndSet(false, true)) {
+      try {
+        executorService.execute(this::processQueue);
+      } catch (RejectedExecutionException e) {
+        // dispatcher is stopped, calls are sent on next startup
+        LOGGER.debug("Webhook dispatcher is stopped", e);
+      }
+    }
+  }
+
+  private void sendDueCalls() {
+    int capacity = MAX_CALLS_IN_PROGRESS - callsInProgress.get();
+    if (capacity <= 0) {
+      return;
+    }
+    long now = system.now();
+    List<WebhookQueueDto> claimed = new ArrayList<>();
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      for (WebhookQueueDto dto : dbClient.webhookQueueDao().selectDue(dbSession, now, capacity)) {
+        int attempts = dto.getAttempts() + 1;
+        long timeoutAt = now + SENDING_TIMEOUT_MS;
+        if (dbClient.webhookQueueDao().updateNextAttempt(dbSession, dto, attempts, timeoutAt)) {
+          claimed.add(dto.setAttempts(attempts).setNextAttemptAt(timeoutAt));
+        }
+      }
+      dbSession.commit();
+    }
+
+    for (WebhookQueueDto dto : claimed) {
+      callsInProgress.incrementAndGet();
+      Webhook webhook = new Webhook(dto.getComponentUuid(), dto.getCeTaskUuid(), dto.getName(), dto.getUrl());
+      WebhookPayload payload = new WebhookPayload(dto.getProjectKey(), dto.getPayload());
+      caller.callAsync(webhook, payload, delivery -> {
+        results.add(new Result(dto, delivery));
+        wakeUp();
+      });
+    }
+  }
+
+  private void saveResults() {
+    List<Result> done = new ArrayList<>();
+    results.drainTo(done);
+    if (done.isEmpty()) {
+      return;
+    }
+    callsInProgress.addAndGet(-done.size());
+
+    List<WebhookDelivery> deliveries = new ArrayList<>(done.size());
+    for (Result result : done) {
+      log(result.delivery);
+      deliveries.add(result.delivery);
+    }
+    deliveryStorage.persist(deliveries);
+
+    long now = system.now();
+    List<String> uuidsToDelete = new ArrayList<>();
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      for (Result result : done) {
+        WebhookQueueDto dto = result.call;
+        if (isRetryable(result.delivery) && dto.getAttempts() < MAX_ATTEMPTS) {
+          dbClient.webhookQueueDao().updateNextAttempt(dbSession, dto, dto.getAttempts(), now + retryDelay(dto.getAttempts()));
+        } else {
+          uuidsToDelete.add(dto.getUuid());
+        }
+      }
+      dbClient.webhookQueueDao().deleteByUuids(dbSession, uuidsToDelete);
+      dbSession.commit();
+    }
+  }
+
+  /**
+   * Connection failures, server errors and throttling may be temporary. Other responses would not change
+   * if the call was sent again.
+   */
+  private static boolean isRetryable(WebhookDelivery delivery) {
+    if (delivery.getError().isPresent()) {
+      return true;
+    }
+    int status = delivery.getHttpStatus().orElse(0);
+    return status >= 500 || status == TOO_MANY_REQUESTS;
+  }
+
+  /**
+   * Exponential backoff: 30s, 1min, 2min, 4min...
+   */
+  @VisibleForTesting
+  static long retryDelay(int attempts) {
+    return FIRST_RETRY_DELAY_MS << (attempts - 1);
+  }
+
+  private static void log(WebhookDelivery delivery) {
+    Optional<String> error = delivery.getErrorMessage();
+    if (error.isPresent()) {
+      LOGGER.debug("Failed to send webhook '{}' | url={} | message={}",
+        delivery.getWebhook().getName(), delivery.getWebhook().getUrl(), error.get());
+    } else {
+      LOGGER.debug("Sent webhook '{}' | url={} | time={}ms | status={}",
+        delivery.getWebhook().getName(), delivery.getWebhook().getUrl(), delivery.getDurationInMs().orElse(-1), delivery.getHttpStatus().orElse(-1));
+    }
+  }
+
+  private static class Result {
+    private final WebhookQueueDto call;
+    private final WebhookDelivery delivery;
+
+    private Result(WebhookQueueDto call, WebhookDelivery delivery) {
+      this.call = call;
+      this.delivery = delivery;
+    }
+  }
+}
@@ -19,14 +19,35 @@
  */
 package org.sonar.server.computation.task.step;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
+import org.slf4j.MDC;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.core.util.logs.Profiler;
 
+/**
+ * Executes the {@link ComputationStep} returned by {@link ComputationSteps#instances()}.
+ * <p>
+ * Steps are executed in the order of {@link ComputationSteps#instances()}, except for adjacent
+ * {@link ConcurrentComputationStep} which are executed concurrently on a bounded pool of threads, each step waiting
+ * only for the preceding steps it conflicts with.
+ * </p>
+ */
 public final class ComputationStepExecutor {
   private static final Logger LOGGER = Loggers.get(ComputationStepExecutor.class);
+  private static final int MAX_CONCURRENT_STEPS = 4;
 
   private final ComputationSteps steps;
   @CheckForNull
@@ -46,10 +67,9 @@ public final class ComputationStepExecutor {
   }
 
   public void execute() {
-    Profiler stepProfiler = Profiler.create(LOGGER);
     boolean allStepsExecuted = false;
     try {
-      executeSteps(stepProfiler);
+      executeSteps();
       allStepsExecuted = true;
     } finally {
       if (listener != null) {
@@ -58,12 +78,150 @@ public final class ComputationStepExecutor {
     }
   }
 
-  private void executeSteps(Profiler stepProfiler) {
-    for (ComputationStep step : steps.instances()) {
-      stepProfiler.start();
-      step.execute();
-      stepProfiler.stopDebug(step.getDescription());
+  private void executeSteps() {
+    List<List<ComputationStep>> groups = groupSteps(steps.instances());
+    int poolSize = groups.stream().mapToInt(List::size).max().orElse(1);
+    ExecutorService executorService = poolSize > 1 ? createExecutorService(Math.min(poolSize, MAX_CONCURRENT_STEPS)) : null;
+    try {
+      for (List<ComputationStep> group : groups) {
+        if (group.size() == 1) {
+          executeStep(group.get(0));
+        } else {
+          executeConcurrently(group, executorService);
+        }
+      }
+    } finally {
+      if (executorService != null) {
+        executorService.shutdownNow();
+      }
+    }
+  }
+
+  /**
+   * Splits steps into groups of adjacent {@link ConcurrentComputationStep}, any other step being alone in its group.
+   */
+  private static List<List<ComputationStep>> groupSteps(Iterable<ComputationStep> steps) {
+    List<List<ComputationStep>> groups = new ArrayList<>();
+    List<ComputationStep> concurrentGroup = new ArrayList<>();
+    for (ComputationStep step : steps) {
+      if (step instanceof ConcurrentComputationStep) {
+        concurrentGroup.add(step);
+      } else {
+        addGroup(groups, concurrentGroup);
+        concurrentGroup = new ArrayList<>();
+        groups.add(Collections.singletonList(step));
+      }
+    }
+    addGroup(groups, concurrentGroup);
+    return groups;
+  }
+
+  private static void addGroup(List<List<ComputationStep>> groups, List<ComputationStep> group) {
+    if (!group.isEmpty()) {
+      groups.add(group);
+    }
+  }
+
+  private static ExecutorService createExecutorService(int threads) {
+    return Executors.newFixedThreadPool(threads,
+      new ThreadFactoryBuilder()
+        .setNameFormat("ComputationStepExecutor-%d")
+        .setDaemon(true)
+        .build());
+  }
+
+  private static void executeStep(ComputationStep step) {
+    Profiler stepProfiler = Profiler.create(LOGGER).start();
+    step.execute();
+    stepProfiler.stopDebug(step.getDescription());
+  }
+
+  /**
+   * Executes the steps of the specified group, a step being submitted as soon as all the preceding steps it
+   * conflicts with are done. When a step fails, no other step is submitted but the running ones are waited for,
+   * then the first failure is thrown as is.
+   */
+  private static void executeConcurrently(List<ComputationStep> group, ExecutorService executorService) {
+    int size = group.size();
+    int[] remainingPredecessors = new int[size];
+    List<List<Integer>> successors = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      successors.add(new ArrayList<>());
+      for (int j = 0; j < i; j++) {
+        if (conflict((ConcurrentComputationStep) group.get(j), (ConcurrentComputationStep) group.get(i))) {
+          successors.get(j).add(i);
+          remainingPredecessors[i]++;
+        }
+      }
+    }
+
+    CompletionService<Integer> completionService = new ExecutorCompletionService<>(executorService);
+    Map<String, String> mdc = MDC.getCopyOfContextMap();
+    int running = 0;
+    for (int i = 0; i < size; i++) {
+      if (remainingPredecessors[i] == 0) {
+        completionService.submit(task(i, group.get(i), mdc));
+        running++;
+      }
+    }
+
+    Throwable failure = null;
+    while (running > 0) {
+      try {
+        int done = completionService.take().get();
+        running--;
+        if (failure == null) {
+          for (int successor : successors.get(done)) {
+            remainingPredecessors[successor]--;
+            if (remainingPredecessors[successor] == 0) {
+              completionService.submit(task(successor, group.get(successor), mdc));
+              running++;
+            }
+          }
+        }
+      } catch (ExecutionException e) {
+        running--;
+        if (failure == null) {
+          failure = e.getCause();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while executing computation steps", e);
+      }
+    }
+    if (failure != null) {
+      throw propagate(failure);
+    }
+  }
+
+  private static boolean conflict(ConcurrentComputationStep a, ConcurrentComputationStep b) {
+    return !Collections.disjoint(a.writes(), b.reads())
+      || !Collections.disjoint(a.writes(), b.writes())
+      || !Collections.disjoint(a.reads(), b.writes());
+  }
+
+  private static Callable<Integer> task(int index, ComputationStep step, @Nullable Map<String, String> mdc) {
+    return () -> {
+      if (mdc != null) {
+        MDC.setContextMap(mdc);
+      }
+      try {
+        executeStep(step);
+        return index;
+      } finally {
+        MDC.clear();
+      }
+    };
+  }
+
+  private static RuntimeException propagate(Throwable failure) {
+    if (failure instanceof RuntimeException) {
+      return (RuntimeException) failure;
+    }
+    if (failure instanceof Error) {
+      throw (Error) failure;
     }
+    return new IllegalStateException(failure);
   }
 
   private void executeListener(boolean allStepsExecuted) {
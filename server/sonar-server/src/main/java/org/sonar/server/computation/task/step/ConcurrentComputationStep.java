@@ -0,0 +1,47 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.step;
+
+import java.util.Set;
+
+/**
+ * A {@link ComputationStep} which declares the holders and repositories it reads and writes, so that
+ * {@link ComputationStepExecutor} can execute it at the same time as the adjacent steps it does not conflict with.
+ * <p>
+ * Two steps conflict when one of them writes a holder or repository which the other one reads or writes. Holders
+ * and repositories are identified by their read-only interface (eg. {@code AnalysisMetadataHolder.class}, even
+ * when the step uses {@code MutableAnalysisMetadataHolder}). Database tables are not declared: each step uses its
+ * own {@code DbSession}.
+ * </p>
+ * <p>
+ * Every holder and repository the step is constructed with must be declared. A step must not implement this interface
+ * when one of them is not thread-safe on read, for example a cache loaded lazily.
+ * </p>
+ * <p>
+ * Steps which do not implement this interface are always executed alone.
+ * </p>
+ */
+public interface ConcurrentComputationStep extends ComputationStep {
+
+  Set<Class<?>> reads();
+
+  Set<Class<?>> writes();
+
+}
@@ -20,19 +20,20 @@
 package org.sonar.server.es;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.elasticsearch.action.ActionRequest;
 import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
 import org.elasticsearch.action.admin.indices.settings.put.UpdateSettingsRequestBuilder;
-import org.elasticsearch.action.bulk.BackoffPolicy;
 import org.elasticsearch.action.bulk.BulkItemResponse;
-import org.elasticsearch.action.bulk.BulkProcessor;
-import org.elasticsearch.action.bulk.BulkProcessor.Listener;
 import org.elasticsearch.action.bulk.BulkRequest;
 import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.delete.DeleteRequestBuilder;
@@ -42,6 +43,8 @@ import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.common.unit.ByteSizeUnit;
 import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.rest.RestStatus;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.SearchHitField;
 import org.elasticsearch.search.sort.SortOrder;
@@ -54,7 +57,9 @@ import static java.lang.String.format;
 /**
  * Helper to bulk requests in an efficient way :
  * <ul>
- *   <li>bulk request is sent on the wire when its size is higher than 5Mb</li>
+ *   <li>bulk request is sent on the wire when its size is higher than 1Mb, or than the size tuned by {@link Size#ADAPTIVE}</li>
+ *   <li>bulk requests can be sent concurrently, while next requests are being added</li>
+ *   <li>requests rejected by Elasticsearch because it is overloaded are retried with an exponential backoff</li>
  *   <li>on large table indexing, replicas and automatic refresh can be temporarily disabled</li>
  * </ul>
  */
@@ -62,16 +67,23 @@ public class BulkIndexer {
 
   private static final Logger LOGGER = Loggers.get(BulkIndexer.class);
   private static final ByteSizeValue FLUSH_BYTE_SIZE = new ByteSizeValue(1, ByteSizeUnit.MB);
-  private static final int FLUSH_ACTIONS = -1;
   private static final String REFRESH_INTERVAL_SETTING = "index.refresh_interval";
   private static final int DEFAULT_NUMBER_OF_SHARDS = 5;
+  private static final int MAX_RETRIES = 8;
+  private static final long INITIAL_BACKOFF_MS = 50L;
+  private static final int DELETION_SCROLL_SIZE = 1_000;
+  private static final LargeIndexings LARGE_INDEXINGS = new LargeIndexings();
 
   private final EsClient client;
   private final IndexType indexType;
-  private final BulkProcessor bulkProcessor;
   private final IndexingResult result = new IndexingResult();
   private final IndexingListener indexingListener;
   private final SizeHandler sizeHandler;
+  private final InFlightRequests inFlightRequests = new InFlightRequests();
+  private BulkRequest pendingRequest = new BulkRequest();
+  @CheckForNull
+  private ExecutorService executorService;
+  private long startNanos;
 
   public BulkIndexer(EsClient client, IndexType indexType, Size size) {
     this(client, indexType, size, IndexingListener.NOOP);
@@ -82,13 +94,6 @@ public class BulkIndexer {
     this.indexType = indexType;
     this.sizeHandler = size.createHandler(Runtime2.INSTANCE);
     this.indexingListener = indexingListener;
-    BulkProcessorListener bulkProcessorListener = new BulkProcessorListener();
-    this.bulkProcessor = BulkProcessor.builder(client.nativeClient(), bulkProcessorListener)
-      .setBackoffPolicy(BackoffPolicy.exponentialBackoff())
-      .setBulkSize(FLUSH_BYTE_SIZE)
-      .setBulkActions(FLUSH_ACTIONS)
-      .setConcurrentRequests(sizeHandler.getConcurrentRequests())
-      .build();
   }
 
   public IndexType getIndexType() {
@@ -97,6 +102,7 @@ public class BulkIndexer {
 
   public void start() {
     result.clear();
+    startNanos = System.nanoTime();
     sizeHandler.beforeStart(this);
   }
 
@@ -105,12 +111,15 @@ public class BulkIndexer {
    */
   public IndexingResult stop() {
     try {
-      bulkProcessor.awaitClose(1, TimeUnit.MINUTES);
-    } catch (InterruptedException e) {
-      Thread.currentThread().interrupt();
-      throw new IllegalStateException("Elasticsearch bulk requests still being executed after 1 minute", e);
+      flush();
+      awaitInFlightRequests();
+    } finally {
+      if (executorService != null) {
+        executorService.shutdownNow();
+        executorService = null;
+      }
     }
-    client.prepareRefresh(indexType.getIndex()).get();
+    result.setDurationMs(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
     sizeHandler.afterStop(this);
     indexingListener.onFinish(result);
     return result;
@@ -118,22 +127,23 @@ public class BulkIndexer {
 
   public void add(ActionRequest request) {
     result.incrementRequests();
-    bulkProcessor.add(request);
+    pendingRequest.add(request);
+    if (pendingRequest.estimatedSizeInBytes() >= sizeHandler.getFlushBytes()) {
+      flush();
+    }
   }
 
   public void addDeletion(SearchRequestBuilder searchRequest) {
-    // TODO to be replaced by delete_by_query that is back in ES5
+    // delete_by_query is not available in the core of Elasticsearch 2.x
     searchRequest
       .addSort("_doc", SortOrder.ASC)
       .setScroll(TimeValue.timeValueMinutes(5))
-      .setSize(100)
+      .setSize(DELETION_SCROLL_SIZE)
       // load only doc ids, not _source fields
       .setFetchSource(false);
 
-    // this search is synchronous. An optimization would be to be non-blocking,
-    // but it requires to tracking pending requests in close().
-    // Same semaphore can't be reused because of potential deadlock (requires to acquire
-    // two locks)
+    // this search is synchronous. Deletions are sent by bulk requests, possibly concurrently
+    // with the next scroll requests.
     SearchResponse searchResponse = searchRequest.get();
 
     while (true) {
@@ -164,6 +174,26 @@ public class BulkIndexer {
     add(client.prepareDelete(indexType, id).setRouting(routing).request());
   }
 
+  /**
+   * Disables replicas and automatic refresh of the index, as done by the bulk indexers of size {@link Size#LARGE},
+   * until {@link #stopLargeIndexing(EsClient, String)} is called. Meanwhile, the bulk indexers of size {@link Size#LARGE}
+   * or {@link Size#ADAPTIVE} of this index, possibly executed concurrently, do not change the settings of the index,
+   * nor refresh it when they are stopped.
+   */
+  public static void startLargeIndexing(EsClient client, String index) {
+    LARGE_INDEXINGS.start(client, index);
+  }
+
+  /**
+   * Refreshes and optimizes the index, then restores its settings, unless other large indexings of this index have
+   * been started and are not stopped yet.
+   *
+   * @see #startLargeIndexing(EsClient, String)
+   */
+  public static void stopLargeIndexing(EsClient client, String index) {
+    LARGE_INDEXINGS.stop(client, index);
+  }
+
   /**
    * Delete all the documents matching the given search request. This method is blocking.
    * Index is refreshed, so docs are not searchable as soon as method is executed.
@@ -177,29 +207,151 @@ public class BulkIndexer {
     return bulk.stop();
   }
 
-  private final class BulkProcessorListener implements Listener {
-    @Override
-    public void beforeBulk(long executionId, BulkRequest request) {
-      // no action required
+  /**
+   * Sends the pending requests. The bulk request is executed in the calling thread when concurrent requests are
+   * not allowed, else the calling thread waits only if the max number of concurrent requests is reached.
+   */
+  private void flush() {
+    if (pendingRequest.numberOfActions() == 0) {
+      return;
     }
+    BulkRequest bulkRequest = pendingRequest;
+    pendingRequest = new BulkRequest();
 
-    @Override
-    public void afterBulk(long executionId, BulkRequest request, BulkResponse response) {
-      List<DocId> successDocIds = new ArrayList<>();
-      for (BulkItemResponse item : response.getItems()) {
-        if (item.isFailed()) {
-          LOGGER.error("index [{}], type [{}], id [{}], message [{}]", item.getIndex(), item.getType(), item.getId(), item.getFailureMessage());
-        } else {
-          result.incrementSuccess();
-          successDocIds.add(new DocId(item.getIndex(), item.getType(), item.getId()));
+    int concurrentRequests = sizeHandler.getConcurrentRequests();
+    if (concurrentRequests == 0) {
+      execute(bulkRequest);
+      return;
+    }
+    try {
+      inFlightRequests.acquire(concurrentRequests);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for Elasticsearch bulk requests", e);
+    }
+    try {
+      executorService().execute(() -> {
+        try {
+          execute(bulkRequest);
+        } finally {
+          inFlightRequests.release();
+        }
+      });
+    } catch (RuntimeException e) {
+      inFlightRequests.release();
+      throw e;
+    }
+  }
+
+  private ExecutorService executorService() {
+    if (executorService == null) {
+      executorService = Executors.newFixedThreadPool(sizeHandler.getMaxConcurrentRequests(),
+        new ThreadFactoryBuilder()
+          .setNameFormat("BulkIndexer-%d")
+          .setDaemon(true)
+          .build());
+    }
+    return executorService;
+  }
+
+  private void awaitInFlightRequests() {
+    try {
+      if (!inFlightRequests.awaitNone(TimeUnit.MINUTES.toMillis(1))) {
+        throw new IllegalStateException("Elasticsearch bulk requests still being executed after 1 minute");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Elasticsearch bulk requests still being executed after 1 minute", e);
+    }
+  }
+
+  /**
+   * Executes the bulk request, then retries the items rejected because Elasticsearch is overloaded.
+   */
+  private void execute(BulkRequest bulkRequest) {
+    BulkRequest toSend = bulkRequest;
+    for (int attempt = 0; toSend.numberOfActions() > 0; attempt++) {
+      boolean lastAttempt = attempt == MAX_RETRIES;
+      long startMs = System.currentTimeMillis();
+      try {
+        BulkResponse response = client.nativeClient().bulk(toSend).actionGet();
+        toSend = onResponse(toSend, response, lastAttempt);
+        sizeHandler.onBulk(System.currentTimeMillis() - startMs, toSend.numberOfActions() > 0);
+      } catch (EsRejectedExecutionException e) {
+        sizeHandler.onBulk(System.currentTimeMillis() - startMs, true);
+        if (lastAttempt) {
+          LOGGER.error("Fail to execute bulk index request: " + toSend, e);
+          return;
         }
+      } catch (RuntimeException e) {
+        LOGGER.error("Fail to execute bulk index request: " + toSend, e);
+        return;
+      }
+      if (toSend.numberOfActions() > 0 && !sleep(INITIAL_BACKOFF_MS << attempt)) {
+        return;
       }
-      indexingListener.onSuccess(successDocIds);
     }
+  }
 
-    @Override
-    public void afterBulk(long executionId, BulkRequest req, Throwable e) {
-      LOGGER.error("Fail to execute bulk index request: " + req, e);
+  private static boolean sleep(long delayMs) {
+    try {
+      Thread.sleep(delayMs);
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      LOGGER.error("Interrupted while waiting to retry Elasticsearch bulk request", e);
+      return false;
+    }
+  }
+
+  /**
+   * @return the requests which have been rejected and must be retried
+   */
+  private synchronized BulkRequest onResponse(BulkRequest request, BulkResponse response, boolean lastAttempt) {
+    BulkRequest rejected = new BulkRequest();
+    List<DocId> successDocIds = new ArrayList<>();
+    for (BulkItemResponse item : response.getItems()) {
+      if (!item.isFailed()) {
+        result.incrementSuccess();
+        successDocIds.add(new DocId(item.getIndex(), item.getType(), item.getId()));
+      } else if (!lastAttempt && item.getFailure().getStatus() == RestStatus.TOO_MANY_REQUESTS) {
+        rejected.add(request.requests().get(item.getItemId()));
+      } else {
+        LOGGER.error("index [{}], type [{}], id [{}], message [{}]", item.getIndex(), item.getType(), item.getId(), item.getFailureMessage());
+      }
+    }
+    indexingListener.onSuccess(successDocIds);
+    return rejected;
+  }
+
+  /**
+   * Number of bulk requests being executed by other threads than the one adding requests.
+   */
+  private static final class InFlightRequests {
+    private int count = 0;
+
+    synchronized void acquire(int max) throws InterruptedException {
+      while (count >= max) {
+        wait();
+      }
+      count++;
+    }
+
+    synchronized void release() {
+      count--;
+      notifyAll();
+    }
+
+    synchronized boolean awaitNone(long timeoutMs) throws InterruptedException {
+      long deadline = System.currentTimeMillis() + timeoutMs;
+      while (count > 0) {
+        long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0) {
+          return false;
+        }
+        wait(remaining);
+      }
+      return true;
     }
   }
 
@@ -222,6 +374,18 @@ public class BulkIndexer {
       SizeHandler createHandler(Runtime2 runtime2) {
         return new LargeSizeHandler(runtime2);
       }
+    },
+
+    /**
+     * Same as {@link #LARGE}, but the size of bulk requests and the number of concurrent requests are tuned
+     * from the latency of Elasticsearch and from the requests it rejects. At least one request is always sent
+     * concurrently, so that reading documents to be indexed is not blocked by Elasticsearch.
+     */
+    ADAPTIVE {
+      @Override
+      SizeHandler createHandler(Runtime2 runtime2) {
+        return new AdaptiveSizeHandler(runtime2);
+      }
     };
 
     abstract SizeHandler createHandler(Runtime2 runtime2);
@@ -238,25 +402,40 @@ public class BulkIndexer {
 
   static class SizeHandler {
     /**
-     * @see BulkProcessor.Builder#setConcurrentRequests(int)
+     * Number of bulk requests which can be executed while new requests are being added. Zero means
+     * that requests are executed in the thread adding requests.
      */
     int getConcurrentRequests() {
       // in the same thread by default
       return 0;
     }
 
+    int getMaxConcurrentRequests() {
+      return getConcurrentRequests();
+    }
+
+    long getFlushBytes() {
+      return FLUSH_BYTE_SIZE.bytes();
+    }
+
+    /**
+     * Called after the execution of each bulk request, possibly concurrently.
+     */
+    void onBulk(long latencyMs, boolean rejected) {
+      // nothing to do, to be overridden if needed
+    }
+
     void beforeStart(BulkIndexer bulkIndexer) {
       // nothing to do, to be overridden if needed
     }
 
     void afterStop(BulkIndexer bulkIndexer) {
-      // nothing to do, to be overridden if needed
+      bulkIndexer.client.prepareRefresh(bulkIndexer.indexType.getIndex()).get();
     }
   }
 
   static class LargeSizeHandler extends SizeHandler {
 
-    private final Map<String, Object> initialSettings = new HashMap<>();
     private final Runtime2 runtime2;
     private ProgressLogger progress;
 
@@ -277,39 +456,158 @@ public class BulkIndexer {
       this.progress = new ProgressLogger(format("Progress[BulkIndexer[%s]]", bulkIndexer.indexType.getIndex()), bulkIndexer.result.total, LOGGER)
         .setPluralLabel("requests");
       this.progress.start();
+      startLargeIndexing(bulkIndexer.client, bulkIndexer.indexType.getIndex());
+    }
+
+    @Override
+    void afterStop(BulkIndexer bulkIndexer) {
+      stopLargeIndexing(bulkIndexer.client, bulkIndexer.indexType.getIndex());
+      this.progress.stop();
+    }
+  }
+
+  /**
+   * The large indexings in progress, by index. Several bulk indexers can index the same index concurrently, so the
+   * initial settings of the index are saved by the first one to start, and restored by the last one to stop.
+   */
+  private static final class LargeIndexings {
+    private final Map<String, LargeIndexing> byIndex = new HashMap<>();
+
+    synchronized void start(EsClient client, String index) {
+      LargeIndexing indexing = byIndex.get(index);
+      if (indexing == null) {
+        indexing = new LargeIndexing(disableReplicasAndRefresh(client, index));
+        byIndex.put(index, indexing);
+      }
+      indexing.count++;
+    }
+
+    synchronized void stop(EsClient client, String index) {
+      LargeIndexing indexing = byIndex.get(index);
+      if (indexing == null) {
+        throw new IllegalStateException(format("Large indexing of index %s is not started", index));
+      }
+      indexing.count--;
+      if (indexing.count == 0) {
+        byIndex.remove(index);
+        client.prepareRefresh(index).get();
+        // optimize lucene segments and revert index settings
+        // Optimization must be done before re-applying replicas:
+        // http://www.elasticsearch.org/blog/performance-considerations-elasticsearch-indexing/
+        client.prepareForceMerge(index).get();
+        updateSettings(client, index, indexing.initialSettings);
+      }
+    }
+
+    /**
+     * @return the initial values of the changed settings
+     */
+    private static Map<String, Object> disableReplicasAndRefresh(EsClient client, String index) {
+      Map<String, Object> initialSettings = new HashMap<>();
       Map<String, Object> temporarySettings = new HashMap<>();
-      GetSettingsResponse settingsResp = bulkIndexer.client.nativeClient().admin().indices().prepareGetSettings(bulkIndexer.indexType.getIndex()).get();
+      GetSettingsResponse settingsResp = client.nativeClient().admin().indices().prepareGetSettings(index).get();
 
       // deactivate replicas
-      int initialReplicas = Integer.parseInt(settingsResp.getSetting(bulkIndexer.indexType.getIndex(), IndexMetaData.SETTING_NUMBER_OF_REPLICAS));
+      int initialReplicas = Integer.parseInt(settingsResp.getSetting(index, IndexMetaData.SETTING_NUMBER_OF_REPLICAS));
       if (initialReplicas > 0) {
         initialSettings.put(IndexMetaData.SETTING_NUMBER_OF_REPLICAS, initialReplicas);
         temporarySettings.put(IndexMetaData.SETTING_NUMBER_OF_REPLICAS, 0);
       }
 
       // deactivate periodical refresh
-      String refreshInterval = settingsResp.getSetting(bulkIndexer.indexType.getIndex(), REFRESH_INTERVAL_SETTING);
+      String refreshInterval = settingsResp.getSetting(index, REFRESH_INTERVAL_SETTING);
       initialSettings.put(REFRESH_INTERVAL_SETTING, refreshInterval);
       temporarySettings.put(REFRESH_INTERVAL_SETTING, "-1");
 
-      updateSettings(bulkIndexer, temporarySettings);
+      updateSettings(client, index, temporarySettings);
+      return initialSettings;
+    }
+
+    private static void updateSettings(EsClient client, String index, Map<String, Object> settings) {
+      UpdateSettingsRequestBuilder req = client.nativeClient().admin().indices().prepareUpdateSettings(index);
+      req.setSettings(settings);
+      req.get();
+    }
+  }
+
+  private static final class LargeIndexing {
+    private final Map<String, Object> initialSettings;
+    private int count = 0;
+
+    private LargeIndexing(Map<String, Object> initialSettings) {
+      this.initialSettings = initialSettings;
+    }
+  }
+
+  /**
+   * Additive increase, multiplicative decrease of the size of bulk requests, then of the number of
+   * concurrent requests:
+   * <ul>
+   *   <li>when a request is rejected, size and concurrency are halved</li>
+   *   <li>when a request is much slower than {@link #TARGET_LATENCY_MS}, size is decreased by 25%</li>
+   *   <li>after {@link #STABLE_REQUESTS} requests faster than {@link #TARGET_LATENCY_MS}, size is increased by
+   *   50% up to {@link #MAX_FLUSH_BYTES}, then concurrency is increased by one up to one request per
+   *   {@link #DEFAULT_NUMBER_OF_SHARDS} cores (see SONAR-8075)</li>
+   * </ul>
+   */
+  static class AdaptiveSizeHandler extends LargeSizeHandler {
+    static final long MIN_FLUSH_BYTES = new ByteSizeValue(256, ByteSizeUnit.KB).bytes();
+    static final long MAX_FLUSH_BYTES = new ByteSizeValue(10, ByteSizeUnit.MB).bytes();
+    static final long TARGET_LATENCY_MS = 1_000L;
+    static final int STABLE_REQUESTS = 5;
+
+    private final int maxConcurrentRequests;
+    private long flushBytes = FLUSH_BYTE_SIZE.bytes();
+    private int concurrentRequests = 1;
+    private int stableRequests = 0;
+
+    AdaptiveSizeHandler(Runtime2 runtime2) {
+      super(runtime2);
+      this.maxConcurrentRequests = Math.max(1, runtime2.getCores() / DEFAULT_NUMBER_OF_SHARDS);
+    }
+
+    @Override
+    synchronized int getConcurrentRequests() {
+      return concurrentRequests;
     }
 
     @Override
-    void afterStop(BulkIndexer bulkIndexer) {
-      // optimize lucene segments and revert index settings
-      // Optimization must be done before re-applying replicas:
-      // http://www.elasticsearch.org/blog/performance-considerations-elasticsearch-indexing/
-      bulkIndexer.client.prepareForceMerge(bulkIndexer.indexType.getIndex()).get();
+    int getMaxConcurrentRequests() {
+      return maxConcurrentRequests;
+    }
 
-      updateSettings(bulkIndexer, initialSettings);
-      this.progress.stop();
+    @Override
+    synchronized long getFlushBytes() {
+      return flushBytes;
     }
 
-    private static void updateSettings(BulkIndexer bulkIndexer, Map<String, Object> settings) {
-      UpdateSettingsRequestBuilder req = bulkIndexer.client.nativeClient().admin().indices().prepareUpdateSettings(bulkIndexer.indexType.getIndex());
-      req.setSettings(settings);
-      req.get();
+    @Override
+    synchronized void onBulk(long latencyMs, boolean rejected) {
+      if (rejected) {
+        stableRequests = 0;
+        flushBytes = Math.max(MIN_FLUSH_BYTES, flushBytes / 2);
+        concurrentRequests = Math.max(1, concurrentRequests / 2);
+      } else if (latencyMs > 2 * TARGET_LATENCY_MS) {
+        stableRequests = 0;
+        flushBytes = Math.max(MIN_FLUSH_BYTES, flushBytes * 3 / 4);
+      } else if (latencyMs < TARGET_LATENCY_MS) {
+        stableRequests++;
+        if (stableRequests >= STABLE_REQUESTS) {
+          stableRequests = 0;
+          if (flushBytes < MAX_FLUSH_BYTES) {
+            flushBytes = Math.min(MAX_FLUSH_BYTES, flushBytes * 3 / 2);
+          } else if (concurrentRequests < maxConcurrentRequests) {
+            concurrentRequests++;
+          }
+        }
+      }
+    }
+
+    @Override
+    void afterStop(BulkIndexer bulkIndexer) {
+      super.afterStop(bulkIndexer);
+      LOGGER.info("Indexed {} documents into {} at {} docs/s (bulk size: {}, concurrent requests: {})", bulkIndexer.result.getSuccess(),
+        bulkIndexer.indexType.getIndex(), Math.round(bulkIndexer.result.getSuccessPerSecond()), new ByteSizeValue(getFlushBytes()), getConcurrentRequests());
     }
   }
 }
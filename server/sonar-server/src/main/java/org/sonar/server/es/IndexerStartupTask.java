@@ -19,7 +19,24 @@
  */
 package org.sonar.server.es;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.stream.Collectors;
 import org.elasticsearch.action.admin.cluster.health.ClusterHealthAction;
 import org.elasticsearch.action.admin.indices.close.CloseIndexAction;
@@ -31,44 +48,179 @@ import org.sonar.api.config.Configuration;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.api.utils.log.Profiler;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.server.property.InternalProperties;
 
-import static java.util.Arrays.stream;
+import static java.util.Comparator.comparing;
+import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toSet;
+import static org.sonar.server.property.InternalProperties.ES_INDEX_INITIALIZING_PREFIX;
 
+/**
+ * Indexes the types which have never been fully indexed, for example because the Elasticsearch data
+ * directory has been deleted or is corrupted.
+ * <p>
+ * Indexers are executed concurrently by a pool of {@link #PROPERTY_THREADS} threads. The documents of
+ * {@link ShardedStartupIndexer}s are indexed by ranges of root components, and the last range which has been
+ * indexed is saved in the internal properties so that indexing resumes from there when the server is restarted.
+ * </p>
+ * <p>
+ * When {@link #PROPERTY_ASYNC} is enabled, indexing is done in background. Web server is then available, but
+ * search results are not complete and web services can't be used to change data until indexing is done
+ * (see {@link StartupIndexingFilter}).
+ * </p>
+ */
 public class IndexerStartupTask {
 
+  static final String PROPERTY_THREADS = "sonar.search.startupIndexing.threads";
+  static final String PROPERTY_ASYNC = "sonar.search.startupIndexing.async";
+  @VisibleForTesting
+  static final int ROOTS_PER_SHARD = 100;
+
   private static final Logger LOG = Loggers.get(IndexerStartupTask.class);
   private static final String SETTING_PREFIX_INITIAL_INDEXING_FINISHED = "sonarqube_initial_indexing_finished.";
+  private static final String SETTING_INDEX_UUID = "index.uuid";
+  private static final int DEFAULT_THREADS = 4;
+  private static final String CHECKPOINT_SEPARATOR = ",";
 
+  private final DbClient dbClient;
   private final EsClient esClient;
   private final Configuration config;
+  private final InternalProperties internalProperties;
   private final StartupIndexer[] indexers;
+  private volatile boolean indexing = false;
 
-  public IndexerStartupTask(EsClient esClient, Configuration config, StartupIndexer... indexers) {
+  public IndexerStartupTask(DbClient dbClient, EsClient esClient, Configuration config, InternalProperties internalProperties, StartupIndexer... indexers) {
+    this.dbClient = dbClient;
     this.esClient = esClient;
     this.config = config;
+    this.internalProperties = internalProperties;
     this.indexers = indexers;
   }
 
-  public void execute() {
-    if (indexesAreEnabled()) {
-      stream(indexers)
-        .forEach(this::indexUninitializedTypes);
+  /**
+   * @return a future completed when all types are indexed. It is already completed when returned, unless indexing is
+   *         done in background.
+   */
+  public CompletableFuture<Void> execute() {
+    if (!indexesAreEnabled()) {
+      return CompletableFuture.completedFuture(null);
+    }
+    Map<StartupIndexer, Set<IndexType>> uninitializedTypesByIndexer = new LinkedHashMap<>();
+    for (StartupIndexer indexer : indexers) {
+      Set<IndexType> uninitializedTypes = getUninitializedTypes(indexer);
+      if (!uninitializedTypes.isEmpty()) {
+        uninitializedTypesByIndexer.put(indexer, uninitializedTypes);
+      }
+    }
+    if (uninitializedTypesByIndexer.isEmpty()) {
+      return CompletableFuture.completedFuture(null);
+    }
+    if (!config.getBoolean(PROPERTY_ASYNC).orElse(false)) {
+      indexUninitializedTypes(uninitializedTypesByIndexer);
+      return CompletableFuture.completedFuture(null);
     }
+
+    LOG.info("Indexing in background. Web services are read-only until indexing is done.");
+    indexing = true;
+    return CompletableFuture
+      .runAsync(() -> indexUninitializedTypes(uninitializedTypesByIndexer), task -> newThreadFactory("StartupIndexing").newThread(task).start())
+      .whenComplete((result, failure) -> {
+        if (failure == null) {
+          indexing = false;
+          LOG.info("Indexing done. Web services are no longer read-only.");
+        } else {
+          LOG.error("Indexing failed. Web services stay read-only until server is restarted.", failure);
+        }
+      });
+  }
+
+  /**
+   * Whether types are being indexed in background.
+   */
+  public boolean isIndexing() {
+    return indexing;
   }
 
   private boolean indexesAreEnabled() {
     return !config.getBoolean("sonar.internal.es.disableIndexes").orElse(false);
   }
 
-  private void indexUninitializedTypes(StartupIndexer indexer) {
-    Set<IndexType> uninizializedTypes = getUninitializedTypes(indexer);
-    if (!uninizializedTypes.isEmpty()) {
-      Profiler profiler = Profiler.create(LOG);
-      profiler.startInfo(getLogMessage(uninizializedTypes, "..."));
-      indexer.indexOnStartup(uninizializedTypes);
-      uninizializedTypes.forEach(this::setInitialized);
-      profiler.stopInfo(getLogMessage(uninizializedTypes, "done"));
+  private void indexUninitializedTypes(Map<StartupIndexer, Set<IndexType>> uninitializedTypesByIndexer) {
+    int threads = Math.max(1, config.getInt(PROPERTY_THREADS).orElse(DEFAULT_THREADS));
+    ExecutorService executor = Executors.newFixedThreadPool(threads, newThreadFactory("StartupIndexer-%d"));
+    List<ShardedIndexing> shardedIndexings = new ArrayList<>();
+    Set<String> largeIndices = new HashSet<>();
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      Map<Set<String>, List<String>> rootUuidsByQualifiers = new HashMap<>();
+      for (Map.Entry<StartupIndexer, Set<IndexType>> entry : uninitializedTypesByIndexer.entrySet()) {
+        if (entry.getKey() instanceof ShardedStartupIndexer) {
+          ShardedStartupIndexer indexer = (ShardedStartupIndexer) entry.getKey();
+          List<String> rootUuids = rootUuidsByQualifiers.computeIfAbsent(indexer.getRootQualifiers(), this::selectSortedRootUuids);
+          shardedIndexings.add(new ShardedIndexing(indexer, entry.getValue(), rootUuids));
+        } else {
+          // indexers which can't be split are started first, as they are likely to take the longest
+          futures.add(executor.submit(() -> indexAll(entry.getKey(), entry.getValue())));
+        }
+      }
+      // replicas and refresh are disabled once for all the shards of an index, and the index is refreshed
+      // and optimized only when all of them are indexed
+      for (String index : shardedIndexings.stream().flatMap(s -> s.types.stream()).map(IndexType::getIndex).collect(toSet())) {
+        BulkIndexer.startLargeIndexing(esClient, index);
+        largeIndices.add(index);
+      }
+      submitShardsInTurn(shardedIndexings, executor, futures);
+      futures.forEach(IndexerStartupTask::waitFor);
+    } finally {
+      executor.shutdownNow();
+      largeIndices.forEach(index -> BulkIndexer.stopLargeIndexing(esClient, index));
+    }
+
+    // index settings are changed only once nothing is being indexed, as indices are closed meanwhile
+    uninitializedTypesByIndexer.values().stream().flatMap(Set::stream).forEach(this::setInitialized);
+    shardedIndexings.forEach(ShardedIndexing::clearCheckpoint);
+  }
+
+  private static void indexAll(StartupIndexer indexer, Set<IndexType> uninitializedTypes) {
+    Profiler profiler = Profiler.create(LOG);
+    profiler.startInfo(getLogMessage(uninitializedTypes, "..."));
+    indexer.indexOnStartup(uninitializedTypes);
+    profiler.stopInfo(getLogMessage(uninitializedTypes, "done"));
+  }
+
+  /**
+   * Shards of the different indexers are interleaved, so that all types progress at the same pace.
+   */
+  private static void submitShardsInTurn(List<ShardedIndexing> shardedIndexings, ExecutorService executor, List<Future<?>> futures) {
+    List<Iterator<Runnable>> shardIterators = shardedIndexings.stream().map(s -> s.shardTasks().iterator()).collect(toList());
+    boolean submitted = true;
+    while (submitted) {
+      submitted = false;
+      for (Iterator<Runnable> shardIterator : shardIterators) {
+        if (shardIterator.hasNext()) {
+          futures.add(executor.submit(shardIterator.next()));
+          submitted = true;
+        }
+      }
+    }
+  }
+
+  private static void waitFor(Future<?> future) {
+    try {
+      future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while indexing", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Fail to index", e.getCause());
+    }
+  }
+
+  private List<String> selectSortedRootUuids(Set<String> qualifiers) {
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      return dbClient.componentDao().selectEnabledRootUuidsByQualifiers(dbSession, qualifiers).stream().sorted().collect(toList());
     }
   }
 
@@ -125,9 +277,91 @@ public class IndexerStartupTask {
     return "index." + SETTING_PREFIX_INITIAL_INDEXING_FINISHED + indexType.getType();
   }
 
-  private String getLogMessage(Set<IndexType> emptyTypes, String suffix) {
+  private static String getLogMessage(Set<IndexType> emptyTypes, String suffix) {
     String s = emptyTypes.size() == 1 ? "" : "s";
     String typeList = emptyTypes.stream().map(Object::toString).collect(Collectors.joining(","));
     return String.format("Indexing of type%s %s %s", s, typeList, suffix);
   }
+
+  private static ThreadFactory newThreadFactory(String nameFormat) {
+    return new ThreadFactoryBuilder().setNameFormat(nameFormat).setDaemon(true).build();
+  }
+
+  /**
+   * Indexing of the types of a {@link ShardedStartupIndexer}, split into ranges of {@link #ROOTS_PER_SHARD}
+   * root components. The last root component of the contiguous ranges which are indexed is saved as a
+   * checkpoint, along with the uuid of the Elasticsearch index, as documents are lost when the index is re-created.
+   */
+  private class ShardedIndexing {
+    private final ShardedStartupIndexer indexer;
+    private final Set<IndexType> types;
+    private final String checkpointKey;
+    private final String indexUuid;
+    private final List<List<String>> shards;
+    private final boolean[] indexedShards;
+    private final Profiler profiler = Profiler.create(LOG);
+    private int firstNotIndexedShard = 0;
+
+    ShardedIndexing(ShardedStartupIndexer indexer, Set<IndexType> types, List<String> sortedRootUuids) {
+      this.indexer = indexer;
+      this.types = types;
+      IndexType checkpointType = types.stream().min(comparing(IndexType::format)).get();
+      this.checkpointKey = ES_INDEX_INITIALIZING_PREFIX + checkpointType.format();
+      this.indexUuid = esClient.nativeClient().admin().indices().prepareGetSettings(checkpointType.getIndex()).get()
+        .getSetting(checkpointType.getIndex(), SETTING_INDEX_UUID);
+
+      List<String> remainingRootUuids = sortedRootUuids;
+      Optional<String> lastIndexedRootUuid = readCheckpoint();
+      if (lastIndexedRootUuid.isPresent()) {
+        remainingRootUuids = sortedRootUuids.stream().filter(uuid -> uuid.compareTo(lastIndexedRootUuid.get()) > 0).collect(toList());
+        LOG.info("Resume indexing of {} after {} already indexed components", types, sortedRootUuids.size() - remainingRootUuids.size());
+      }
+      this.shards = Lists.partition(remainingRootUuids, ROOTS_PER_SHARD);
+      this.indexedShards = new boolean[shards.size()];
+      profiler.startInfo(getLogMessage(types, "..."));
+      if (shards.isEmpty()) {
+        profiler.stopInfo(getLogMessage(types, "done"));
+      }
+    }
+
+    List<Runnable> shardTasks() {
+      List<Runnable> tasks = new ArrayList<>(shards.size());
+      for (int i = 0; i < shards.size(); i++) {
+        int shard = i;
+        tasks.add(() -> {
+          indexer.indexOnStartup(types, shards.get(shard));
+          onShardIndexed(shard);
+        });
+      }
+      return tasks;
+    }
+
+    private synchronized void onShardIndexed(int shard) {
+      indexedShards[shard] = true;
+      int previous = firstNotIndexedShard;
+      while (firstNotIndexedShard < indexedShards.length && indexedShards[firstNotIndexedShard]) {
+        firstNotIndexedShard++;
+      }
+      if (firstNotIndexedShard == previous) {
+        return;
+      }
+      List<String> lastShard = shards.get(firstNotIndexedShard - 1);
+      internalProperties.write(checkpointKey, indexUuid + CHECKPOINT_SEPARATOR + lastShard.get(lastShard.size() - 1));
+      if (firstNotIndexedShard == indexedShards.length) {
+        profiler.stopInfo(getLogMessage(types, "done"));
+      } else if (firstNotIndexedShard * 10 / indexedShards.length > previous * 10 / indexedShards.length) {
+        LOG.info("Indexing of {}: {}% done", types, firstNotIndexedShard * 100 / indexedShards.length);
+      }
+    }
+
+    private Optional<String> readCheckpoint() {
+      return internalProperties.read(checkpointKey)
+        .filter(checkpoint -> checkpoint.startsWith(indexUuid + CHECKPOINT_SEPARATOR))
+        .map(checkpoint -> checkpoint.substring(indexUuid.length() + CHECKPOINT_SEPARATOR.length()));
+    }
+
+    void clearCheckpoint() {
+      internalProperties.write(checkpointKey, null);
+    }
+  }
 }
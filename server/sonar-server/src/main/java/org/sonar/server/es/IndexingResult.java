@@ -27,10 +27,12 @@ public class IndexingResult {
   // FIXME should be private
   AtomicLong total = new AtomicLong(0L);
   private long successes = 0L;
+  private long durationMs = 0L;
 
   IndexingResult clear() {
     total.set(0L);
     successes = 0L;
+    durationMs = 0L;
     return this;
   }
 
@@ -46,6 +48,23 @@ public class IndexingResult {
   public void add(IndexingResult other) {
     total.addAndGet(other.total.get());
     successes += other.successes;
+    durationMs += other.durationMs;
+  }
+
+  IndexingResult setDurationMs(long durationMs) {
+    this.durationMs = durationMs;
+    return this;
+  }
+
+  public long getDurationMs() {
+    return durationMs;
+  }
+
+  /**
+   * Throughput of successfully indexed documents, or zero if duration is unknown.
+   */
+  public double getSuccessPerSecond() {
+    return durationMs == 0L ? 0.0 : ((1000.0 * successes) / durationMs);
   }
 
   public long getFailures() {
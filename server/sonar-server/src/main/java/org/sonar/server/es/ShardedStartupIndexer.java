@@ -0,0 +1,48 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A {@link StartupIndexer} which documents all belong to a root component (project, view, application...).
+ * Indexing on startup can then be split into ranges of root components, which are indexed
+ * concurrently and which progress is saved, so that a restart does not index them again.
+ */
+public interface ShardedStartupIndexer extends StartupIndexer {
+
+  /**
+   * Qualifiers of the root components which documents are indexed. Only the enabled root components
+   * with these qualifiers are given to {@link #indexOnStartup(Set, List)}.
+   */
+  Set<String> getRootQualifiers();
+
+  /**
+   * Indexes the documents of the given root components only, with a single bulk indexer of size
+   * {@link BulkIndexer.Size#LARGE} or {@link BulkIndexer.Size#ADAPTIVE}. Calling this method once
+   * for all the root components must give the same result as {@link #indexOnStartup(Set)}.
+   *
+   * @param rootUuids at most {@link org.sonar.db.DatabaseUtils#PARTITION_SIZE_FOR_ORACLE} root components, so
+   *                  that they can be selected by a single SQL request
+   */
+  void indexOnStartup(Set<IndexType> uninitializedIndexTypes, List<String> rootUuids);
+
+}
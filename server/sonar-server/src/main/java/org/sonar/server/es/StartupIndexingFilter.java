@@ -0,0 +1,86 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import java.io.IOException;
+import java.io.Writer;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.sonar.api.utils.text.JsonWriter;
+import org.sonar.api.web.ServletFilter;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.sonarqube.ws.MediaTypes.JSON;
+
+/**
+ * Makes web services read-only while {@link IndexerStartupTask} indexes in background: only GET requests
+ * are accepted, except for authentication and system web services.
+ */
+public class StartupIndexingFilter extends ServletFilter {
+
+  private final IndexerStartupTask indexerStartupTask;
+
+  public StartupIndexingFilter(IndexerStartupTask indexerStartupTask) {
+    this.indexerStartupTask = indexerStartupTask;
+  }
+
+  @Override
+  public UrlPattern doGetPattern() {
+    return UrlPattern.builder()
+      .includes("/api/*")
+      .excludes("/api/authentication/*", "/api/system/*")
+      .build();
+  }
+
+  @Override
+  public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain chain) throws IOException, ServletException {
+    HttpServletRequest request = (HttpServletRequest) servletRequest;
+    if (!indexerStartupTask.isIndexing() || "GET".equals(request.getMethod())) {
+      chain.doFilter(servletRequest, servletResponse);
+      return;
+    }
+    HttpServletResponse response = (HttpServletResponse) servletResponse;
+    response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+    response.setContentType(JSON);
+    response.setCharacterEncoding(UTF_8.name());
+    try (Writer writer = response.getWriter(); JsonWriter json = JsonWriter.of(writer)) {
+      json.beginObject()
+        .name("errors").beginArray()
+        .beginObject().prop("msg", "Server is indexing data. Changes are not allowed until indexing is done.").endObject()
+        .endArray()
+        .endObject();
+    }
+  }
+
+  @Override
+  public void init(FilterConfig filterConfig) throws ServletException {
+    // Nothing to do
+  }
+
+  @Override
+  public void destroy() {
+    // Nothing to do
+  }
+}
@@ -46,6 +46,7 @@ import org.sonar.server.es.IndexingResult;
 import org.sonar.server.es.OneToManyResilientIndexingListener;
 import org.sonar.server.es.OneToOneResilientIndexingListener;
 import org.sonar.server.es.ProjectIndexer;
+import org.sonar.server.es.ShardedStartupIndexer;
 import org.sonar.server.permission.index.AuthorizationScope;
 import org.sonar.server.permission.index.NeedAuthorizationIndexer;
 
@@ -55,7 +56,7 @@ import static org.elasticsearch.index.query.QueryBuilders.termQuery;
 import static org.sonar.server.issue.index.IssueIndexDefinition.FIELD_ISSUE_PROJECT_UUID;
 import static org.sonar.server.issue.index.IssueIndexDefinition.INDEX_TYPE_ISSUE;
 
-public class IssueIndexer implements ProjectIndexer, NeedAuthorizationIndexer {
+public class IssueIndexer implements ProjectIndexer, ShardedStartupIndexer, NeedAuthorizationIndexer {
 
   /**
    * Indicates that es_queue.doc_id references an issue. Only this issue must be indexed.
@@ -68,6 +69,7 @@ public class IssueIndexer implements ProjectIndexer, NeedAuthorizationIndexer {
   private static final Logger LOGGER = Loggers.get(IssueIndexer.class);
   private static final AuthorizationScope AUTHORIZATION_SCOPE = new AuthorizationScope(INDEX_TYPE_ISSUE, project -> Qualifiers.PROJECT.equals(project.getQualifier()));
   private static final ImmutableSet<IndexType> INDEX_TYPES = ImmutableSet.of(INDEX_TYPE_ISSUE);
+  private static final ImmutableSet<String> ROOT_QUALIFIERS = ImmutableSet.of(Qualifiers.PROJECT);
 
   private final EsClient esClient;
   private final DbClient dbClient;
@@ -92,7 +94,19 @@ public class IssueIndexer implements ProjectIndexer, NeedAuthorizationIndexer {
   @Override
   public void indexOnStartup(Set<IndexType> uninitializedIndexTypes) {
     try (IssueIterator issues = issueIteratorFactory.createForAll()) {
-      doIndex(issues, Size.LARGE, IndexingListener.NOOP);
+      doIndex(issues, Size.ADAPTIVE, IndexingListener.NOOP);
+    }
+  }
+
+  @Override
+  public Set<String> getRootQualifiers() {
+    return ROOT_QUALIFIERS;
+  }
+
+  @Override
+  public void indexOnStartup(Set<IndexType> uninitializedIndexTypes, List<String> rootUuids) {
+    try (IssueIterator issues = issueIteratorFactory.createForProjects(rootUuids)) {
+      doIndex(issues, Size.ADAPTIVE, IndexingListener.NOOP);
     }
   }
 
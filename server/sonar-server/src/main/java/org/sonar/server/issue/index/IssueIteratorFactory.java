@@ -23,6 +23,8 @@ import java.util.Collection;
 import javax.annotation.Nullable;
 import org.sonar.db.DbClient;
 
+import static java.util.Collections.singletonList;
+
 public class IssueIteratorFactory {
 
   private final DbClient dbClient;
@@ -36,7 +38,14 @@ public class IssueIteratorFactory {
   }
 
   public IssueIterator createForProject(@Nullable String projectUuid) {
-    return new IssueIteratorForSingleChunk(dbClient, projectUuid, null);
+    return new IssueIteratorForSingleChunk(dbClient, projectUuid == null ? null : singletonList(projectUuid), null);
+  }
+
+  /**
+   * @param projectUuids between 1 and {@link org.sonar.db.DatabaseUtils#PARTITION_SIZE_FOR_ORACLE} project uuids
+   */
+  public IssueIterator createForProjects(Collection<String> projectUuids) {
+    return new IssueIteratorForSingleChunk(dbClient, projectUuids, null);
   }
 
   public IssueIterator createForIssueKeys(Collection<String> issueKeys) {
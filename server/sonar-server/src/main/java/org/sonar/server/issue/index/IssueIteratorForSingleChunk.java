@@ -86,7 +86,8 @@ class IssueIteratorForSingleChunk implements IssueIterator {
     "inner join projects p on p.uuid=i.component_uuid " +
     "inner join projects root on root.uuid=i.project_uuid";
 
-  private static final String PROJECT_FILTER = " AND root.uuid=?";
+  private static final String PROJECT_FILTER_PREFIX = " AND root.uuid IN (";
+  private static final String PROJECT_FILTER_SUFFIX = ")";
   private static final String ISSUE_KEY_FILTER_PREFIX = " AND i.kee IN (";
   private static final String ISSUE_KEY_FILTER_SUFFIX = ")";
 
@@ -96,7 +97,7 @@ class IssueIteratorForSingleChunk implements IssueIterator {
   private final DbSession session;
 
   @CheckForNull
-  private final String projectUuid;
+  private final Collection<String> projectUuids;
 
   @CheckForNull
   private final Collection<String> issueKeys;
@@ -104,10 +105,12 @@ class IssueIteratorForSingleChunk implements IssueIterator {
   private final PreparedStatement stmt;
   private final ResultSetIterator<IssueDoc> iterator;
 
-  IssueIteratorForSingleChunk(DbClient dbClient, @Nullable String projectUuid, @Nullable Collection<String> issueKeys) {
+  IssueIteratorForSingleChunk(DbClient dbClient, @Nullable Collection<String> projectUuids, @Nullable Collection<String> issueKeys) {
+    checkArgument(projectUuids == null || (!projectUuids.isEmpty() && projectUuids.size() <= DatabaseUtils.PARTITION_SIZE_FOR_ORACLE),
+      "Between 1 and " + DatabaseUtils.PARTITION_SIZE_FOR_ORACLE + " project uuids must be provided.");
     checkArgument(issueKeys == null || issueKeys.size() <= DatabaseUtils.PARTITION_SIZE_FOR_ORACLE,
       "Cannot search for more than " + DatabaseUtils.PARTITION_SIZE_FOR_ORACLE + " issue keys at once. Please provide the keys in smaller chunks.");
-    this.projectUuid = projectUuid;
+    this.projectUuids = projectUuids;
     this.issueKeys = issueKeys;
     this.session = dbClient.openSession(false);
 
@@ -143,7 +146,11 @@ class IssueIteratorForSingleChunk implements IssueIterator {
 
   private String createSql() {
     String sql = SQL_ALL;
-    sql += projectUuid == null ? "" : PROJECT_FILTER;
+    if (projectUuids != null) {
+      sql += PROJECT_FILTER_PREFIX;
+      sql += IntStream.range(0, projectUuids.size()).mapToObj(i -> "?").collect(Collectors.joining(","));
+      sql += PROJECT_FILTER_SUFFIX;
+    }
     if (issueKeys != null && !issueKeys.isEmpty()) {
       sql += ISSUE_KEY_FILTER_PREFIX;
       sql += IntStream.range(0, issueKeys.size()).mapToObj(i -> "?").collect(Collectors.joining(","));
@@ -154,9 +161,11 @@ class IssueIteratorForSingleChunk implements IssueIterator {
 
   private void setParameters(PreparedStatement stmt) throws SQLException {
     int index = 1;
-    if (projectUuid != null) {
-      stmt.setString(index, projectUuid);
-      index++;
+    if (projectUuids != null) {
+      for (String projectUuid : projectUuids) {
+        stmt.setString(index, projectUuid);
+        index++;
+      }
     }
     if (issueKeys != null) {
       for (String key : issueKeys) {
@@ -26,6 +26,7 @@ import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Function;
 import javax.annotation.Nullable;
 import org.elasticsearch.action.index.IndexRequest;
 import org.sonar.api.resources.Qualifiers;
@@ -43,15 +44,17 @@ import org.sonar.server.es.IndexingListener;
 import org.sonar.server.es.IndexingResult;
 import org.sonar.server.es.OneToOneResilientIndexingListener;
 import org.sonar.server.es.ProjectIndexer;
+import org.sonar.server.es.ShardedStartupIndexer;
 import org.sonar.server.permission.index.AuthorizationScope;
 import org.sonar.server.permission.index.NeedAuthorizationIndexer;
 
 import static org.sonar.server.measure.index.ProjectMeasuresIndexDefinition.INDEX_TYPE_PROJECT_MEASURES;
 
-public class ProjectMeasuresIndexer implements ProjectIndexer, NeedAuthorizationIndexer {
+public class ProjectMeasuresIndexer implements ProjectIndexer, ShardedStartupIndexer, NeedAuthorizationIndexer {
 
   private static final AuthorizationScope AUTHORIZATION_SCOPE = new AuthorizationScope(INDEX_TYPE_PROJECT_MEASURES, project -> Qualifiers.PROJECT.equals(project.getQualifier()));
   private static final ImmutableSet<IndexType> INDEX_TYPES = ImmutableSet.of(INDEX_TYPE_PROJECT_MEASURES);
+  private static final ImmutableSet<String> ROOT_QUALIFIERS = ImmutableSet.of(Qualifiers.PROJECT);
 
   private final DbClient dbClient;
   private final EsClient esClient;
@@ -76,6 +79,16 @@ public class ProjectMeasuresIndexer implements ProjectIndexer, NeedAuthorization
     return AUTHORIZATION_SCOPE;
   }
 
+  @Override
+  public Set<String> getRootQualifiers() {
+    return ROOT_QUALIFIERS;
+  }
+
+  @Override
+  public void indexOnStartup(Set<IndexType> uninitializedIndexTypes, List<String> rootUuids) {
+    doIndexProjects(Size.LARGE, dbSession -> ProjectMeasuresIndexerIterator.createForProjects(dbSession, rootUuids));
+  }
+
   @Override
   public void indexOnAnalysis(String projectUuid) {
     doIndex(Size.REGULAR, projectUuid);
@@ -134,8 +147,12 @@ public class ProjectMeasuresIndexer implements ProjectIndexer, NeedAuthorization
   }
 
   private void doIndex(Size size, @Nullable String projectUuid) {
+    doIndexProjects(size, dbSession -> ProjectMeasuresIndexerIterator.create(dbSession, projectUuid));
+  }
+
+  private void doIndexProjects(Size size, Function<DbSession, ProjectMeasuresIndexerIterator> iteratorFactory) {
     try (DbSession dbSession = dbClient.openSession(false);
-         ProjectMeasuresIndexerIterator rowIt = ProjectMeasuresIndexerIterator.create(dbSession, projectUuid)) {
+         ProjectMeasuresIndexerIterator rowIt = iteratorFactory.apply(dbSession)) {
 
       BulkIndexer bulkIndexer = createBulkIndexer(size, IndexingListener.NOOP);
       bulkIndexer.start();
@@ -0,0 +1,43 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.notification;
+
+import java.util.List;
+import java.util.Map;
+import org.sonar.api.notifications.Notification;
+import org.sonar.api.notifications.NotificationChannel;
+
+/**
+ * Implemented by the {@link NotificationChannel}s which can deliver many notifications at once more efficiently
+ * than one after the other, for example by reusing the same connection to a remote server.
+ * <p>
+ * Implementing this interface also opts in to parallel delivery: {@link #deliverAll(Map)} can be called concurrently,
+ * from several threads, for different users.
+ */
+public interface BatchNotificationChannel {
+
+  /**
+   * Delivers the notifications to each of the users. Errors are handled by the channel, so that a failure
+   * on a notification does not prevent the other ones from being delivered.
+   *
+   * @param notificationsByUser notifications to deliver, by login of the recipient
+   */
+  void deliverAll(Map<String, List<Notification>> notificationsByUser);
+}
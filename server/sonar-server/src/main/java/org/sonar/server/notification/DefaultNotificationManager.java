@@ -26,18 +26,20 @@ import com.google.common.collect.Multimap;
 import com.google.common.collect.SetMultimap;
 import java.io.IOException;
 import java.io.InvalidClassException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.sonar.api.notifications.Notification;
 import org.sonar.api.notifications.NotificationChannel;
-import org.sonar.api.utils.SonarException;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.db.notification.NotificationQueueDao;
 import org.sonar.db.notification.NotificationQueueDto;
 import org.sonar.db.property.PropertiesDao;
 
+import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
 
 public class DefaultNotificationManager implements NotificationManager {
@@ -77,23 +79,37 @@ public class DefaultNotificationManager implements NotificationManager {
     notificationQueueDao.insert(singletonList(dto));
   }
   /**
-   * Give the notification queue so that it can be processed
+   * Give the oldest notifications of the queue so that they can be processed. They are removed from the queue.
+   * Notifications which can't be read are ignored, so the returned list is empty only when the queue is empty.
    */
-  public Notification getFromQueue() {
-    int batchSize = 1;
-    List<NotificationQueueDto> notificationDtos = notificationQueueDao.selectOldest(batchSize);
-    if (notificationDtos.isEmpty()) {
-      return null;
-    }
-    notificationQueueDao.delete(notificationDtos);
+  public List<Notification> getFromQueue(int batchSize) {
+    List<Notification> notifications;
+    do {
+      List<NotificationQueueDto> notificationDtos = notificationQueueDao.selectOldest(batchSize);
+      if (notificationDtos.isEmpty()) {
+        return emptyList();
+      }
+      notificationQueueDao.delete(notificationDtos);
+      notifications = convertToNotifications(notificationDtos);
+    } while (notifications.isEmpty());
+    return notifications;
+  }
 
-    return convertToNotification(notificationDtos);
+  private List<Notification> convertToNotifications(List<NotificationQueueDto> notificationDtos) {
+    List<Notification> notifications = new ArrayList<>(notificationDtos.size());
+    for (NotificationQueueDto notificationDto : notificationDtos) {
+      Notification notification = convertToNotification(notificationDto);
+      if (notification != null) {
+        notifications.add(notification);
+      }
+    }
+    return notifications;
   }
 
-  private Notification convertToNotification(List<NotificationQueueDto> notifications) {
+  @CheckForNull
+  private Notification convertToNotification(NotificationQueueDto notificationDto) {
     try {
-      // If batchSize is increased then we should return a list instead of a single element
-      return notifications.get(0).toNotification();
+      return notificationDto.toNotification();
     } catch (InvalidClassException e) {
       // SONAR-4739
       if (!alreadyLoggedDeserializationIssue) {
@@ -102,7 +118,9 @@ public class DefaultNotificationManager implements NotificationManager {
       }
       return null;
     } catch (IOException | ClassNotFoundException e) {
-      throw new SonarException(UNABLE_TO_READ_NOTIFICATION, e);
+      // the notification has already been removed from the queue, the other ones of the batch must not be lost
+      LOG.error(UNABLE_TO_READ_NOTIFICATION, e);
+      return null;
     }
   }
 
@@ -34,7 +34,8 @@ import org.sonar.api.notifications.NotificationChannel;
 public interface NotificationManager {
 
   /**
-   * Receives a notification and stores it so that it is processed by the notification service.
+   * Receives a notification and stores it so that it is processed by the notification service. Only the type and
+   * the fields of the notification are stored, so it is delivered as a plain {@link Notification}.
    *
    * @param notification the notification.
    */
@@ -22,14 +22,25 @@ package org.sonar.server.notification;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.SetMultimap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
+import org.picocontainer.Startable;
 import org.sonar.api.ce.ComputeEngineSide;
 import org.sonar.api.notifications.Notification;
 import org.sonar.api.notifications.NotificationChannel;
@@ -38,14 +49,20 @@ import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.db.DbClient;
 
+import static java.util.Collections.singletonList;
+
 @ServerSide
 @ComputeEngineSide
-public class NotificationService {
+public class NotificationService implements Startable {
 
   private static final Logger LOG = Loggers.get(NotificationService.class);
+  private static final String THREAD_NAME_PREFIX = "sq-notification-delivery-";
+  private static final int DELIVERY_THREADS = 4;
+  private static final int USERS_PER_DELIVERY_TASK = 10;
 
   private final List<NotificationDispatcher> dispatchers;
   private final DbClient dbClient;
+  private final Map<NotificationChannel, ExecutorService> executors = new ConcurrentHashMap<>();
 
   public NotificationService(DbClient dbClient, NotificationDispatcher[] dispatchers) {
     this.dbClient = dbClient;
@@ -60,6 +77,51 @@ public class NotificationService {
   }
 
   public void deliver(Notification notification) {
+    deliver(singletonList(notification));
+  }
+
+  /**
+   * Notifications are first dispatched to find their recipients, then they are grouped by channel and by recipient.
+   * Channels which implement {@link BatchNotificationChannel} deliver the notifications of their recipients in parallel,
+   * using their own pool of threads. Other channels, including the ones of plugins, are not expected to be thread-safe,
+   * so they deliver in the calling thread, one recipient after the other.
+   * This method returns when all the notifications have been delivered.
+   */
+  public void deliver(Collection<Notification> notifications) {
+    Map<NotificationChannel, Map<String, List<Notification>>> notificationsByChannelAndUser = new LinkedHashMap<>();
+    for (Notification notification : notifications) {
+      for (Map.Entry<String, NotificationChannel> recipient : dispatch(notification).entries()) {
+        notificationsByChannelAndUser
+          .computeIfAbsent(recipient.getValue(), c -> new LinkedHashMap<>())
+          .computeIfAbsent(recipient.getKey(), u -> new ArrayList<>())
+          .add(notification);
+      }
+    }
+
+    List<DeliveryTask> parallelTasks = new ArrayList<>();
+    List<DeliveryTask> sequentialTasks = new ArrayList<>();
+    notificationsByChannelAndUser.forEach((channel, notificationsByUser) -> {
+      if (channel instanceof BatchNotificationChannel) {
+        for (List<Map.Entry<String, List<Notification>>> users : Iterables.partition(notificationsByUser.entrySet(), USERS_PER_DELIVERY_TASK)) {
+          parallelTasks.add(new DeliveryTask(channel, users));
+        }
+      } else {
+        sequentialTasks.add(new DeliveryTask(channel, new ArrayList<>(notificationsByUser.entrySet())));
+      }
+    });
+    if (parallelTasks.size() == 1) {
+      sequentialTasks.addAll(parallelTasks);
+      parallelTasks.clear();
+    }
+    List<Future<?>> futures = new ArrayList<>(parallelTasks.size());
+    for (DeliveryTask task : parallelTasks) {
+      futures.add(executorOf(task.channel).submit(task));
+    }
+    sequentialTasks.forEach(DeliveryTask::run);
+    waitFor(futures);
+  }
+
+  private SetMultimap<String, NotificationChannel> dispatch(Notification notification) {
     SetMultimap<String, NotificationChannel> recipients = HashMultimap.create();
     for (NotificationDispatcher dispatcher : dispatchers) {
       NotificationDispatcher.Context context = new ContextImpl(recipients);
@@ -70,25 +132,46 @@ public class NotificationService {
         LOG.warn(String.format("Unable to dispatch notification %s using %s", notification, dispatcher), e);
       }
     }
-    dispatch(notification, recipients);
+    return recipients;
   }
 
-  private static void dispatch(Notification notification, SetMultimap<String, NotificationChannel> recipients) {
-    for (Map.Entry<String, Collection<NotificationChannel>> entry : recipients.asMap().entrySet()) {
-      String username = entry.getKey();
-      Collection<NotificationChannel> userChannels = entry.getValue();
-      LOG.debug("For user {} via {}", username, userChannels);
-      for (NotificationChannel channel : userChannels) {
-        try {
-          channel.deliver(notification, username);
-        } catch (Exception e) {
-          // catch all exceptions in order to deliver via other channels
-          LOG.warn("Unable to deliver notification " + notification + " for user " + username + " via " + channel, e);
-        }
+  private ExecutorService executorOf(NotificationChannel channel) {
+    return executors.computeIfAbsent(channel, c -> {
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(DELIVERY_THREADS, DELIVERY_THREADS, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+        new ThreadFactoryBuilder()
+          .setNameFormat(THREAD_NAME_PREFIX + c.getKey() + "-%d")
+          .setDaemon(true)
+          .build());
+      executor.allowCoreThreadTimeOut(true);
+      return executor;
+    });
+  }
+
+  private static void waitFor(List<Future<?>> futures) {
+    for (Future<?> future : futures) {
+      try {
+        future.get();
+      } catch (InterruptedException e) {
+        LOG.warn("Interrupted while delivering notifications", e);
+        Thread.currentThread().interrupt();
+        return;
+      } catch (ExecutionException e) {
+        LOG.warn("Unable to deliver notifications", e.getCause());
       }
     }
   }
 
+  @Override
+  public void start() {
+    // delivery pools are created when needed
+  }
+
+  @Override
+  public void stop() {
+    executors.values().forEach(ExecutorService::shutdown);
+    executors.clear();
+  }
+
   @VisibleForTesting
   List<NotificationDispatcher> getDispatchers() {
     return dispatchers;
@@ -123,4 +206,41 @@ public class NotificationService {
       }
     }
   }
+
+  private static class DeliveryTask implements Runnable {
+    private final NotificationChannel channel;
+    private final List<Map.Entry<String, List<Notification>>> notificationsByUser;
+
+    DeliveryTask(NotificationChannel channel, List<Map.Entry<String, List<Notification>>> notificationsByUser) {
+      this.channel = channel;
+      this.notificationsByUser = notificationsByUser;
+    }
+
+    @Override
+    public void run() {
+      if (channel instanceof BatchNotificationChannel) {
+        Map<String, List<Notification>> notifications = new LinkedHashMap<>();
+        notificationsByUser.forEach(entry -> notifications.put(entry.getKey(), entry.getValue()));
+        try {
+          ((BatchNotificationChannel) channel).deliverAll(notifications);
+        } catch (Exception e) {
+          // catch all exceptions in order to deliver via other channels
+          LOG.warn("Unable to deliver notifications for users " + notifications.keySet() + " via " + channel, e);
+        }
+        return;
+      }
+      for (Map.Entry<String, List<Notification>> entry : notificationsByUser) {
+        String username = entry.getKey();
+        LOG.debug("For user {} via {}", username, channel);
+        for (Notification notification : entry.getValue()) {
+          try {
+            channel.deliver(notification, username);
+          } catch (Exception e) {
+            // catch all exceptions in order to deliver via other channels
+            LOG.warn("Unable to deliver notification " + notification + " for user " + username + " via " + channel, e);
+          }
+        }
+      }
+    }
+  }
 }
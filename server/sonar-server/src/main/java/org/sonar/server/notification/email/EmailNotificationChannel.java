@@ -21,6 +21,12 @@ package org.sonar.server.notification.email;
 
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import javax.mail.MessagingException;
+import javax.mail.Transport;
+import javax.mail.internet.MimeMessage;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.mail.EmailException;
 import org.apache.commons.mail.SimpleEmail;
@@ -32,9 +38,13 @@ import org.sonar.api.user.UserFinder;
 import org.sonar.api.utils.SonarException;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
+import org.sonar.server.notification.BatchNotificationChannel;
 import org.sonar.plugins.emailnotifications.api.EmailMessage;
 import org.sonar.plugins.emailnotifications.api.EmailTemplate;
 
+import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
+
 /**
  * References:
  * <ul>
@@ -45,7 +55,7 @@ import org.sonar.plugins.emailnotifications.api.EmailTemplate;
  *
  * @since 2.10
  */
-public class EmailNotificationChannel extends NotificationChannel {
+public class EmailNotificationChannel extends NotificationChannel implements BatchNotificationChannel {
 
   private static final Logger LOG = Loggers.get(EmailNotificationChannel.class);
 
@@ -94,16 +104,32 @@ public class EmailNotificationChannel extends NotificationChannel {
 
   @Override
   public void deliver(Notification notification, String username) {
-    User user = userFinder.findByLogin(username);
-    if (user == null || StringUtils.isBlank(user.email())) {
-      LOG.debug("User does not exist or has no email: {}", username);
-      return;
-    }
-    EmailMessage emailMessage = format(notification);
-    if (emailMessage != null) {
-      emailMessage.setTo(user.email());
-      deliver(emailMessage);
+    deliverAll(singletonMap(username, singletonList(notification)));
+  }
+
+  /**
+   * Users are loaded once, whatever the number of notifications they receive, and all the emails
+   * are sent through the same connection to the SMTP server.
+   */
+  @Override
+  public void deliverAll(Map<String, List<Notification>> notificationsByUser) {
+    List<EmailMessage> emailMessages = new ArrayList<>();
+    for (Map.Entry<String, List<Notification>> entry : notificationsByUser.entrySet()) {
+      String username = entry.getKey();
+      User user = userFinder.findByLogin(username);
+      if (user == null || StringUtils.isBlank(user.email())) {
+        LOG.debug("User does not exist or has no email: {}", username);
+        continue;
+      }
+      for (Notification notification : entry.getValue()) {
+        EmailMessage emailMessage = format(notification);
+        if (emailMessage != null) {
+          emailMessage.setTo(user.email());
+          emailMessages.add(emailMessage);
+        }
+      }
     }
+    deliver(emailMessages);
   }
 
   private EmailMessage format(Notification notification) {
@@ -121,70 +147,126 @@ public class EmailNotificationChannel extends NotificationChannel {
    * Visibility has been relaxed for tests.
    */
   void deliver(EmailMessage emailMessage) {
+    deliver(singletonList(emailMessage));
+  }
+
+  private void deliver(List<EmailMessage> emailMessages) {
+    if (emailMessages.isEmpty()) {
+      return;
+    }
     if (StringUtils.isBlank(configuration.getSmtpHost())) {
       LOG.debug("SMTP host was not configured - email will not be sent");
       return;
     }
-    try {
-      send(emailMessage);
-    } catch (EmailException e) {
-      LOG.error("Unable to send email", e);
-    }
-  }
-
-  private void send(EmailMessage emailMessage) throws EmailException {
     // Trick to correctly initialize javax.mail library
     ClassLoader classloader = Thread.currentThread().getContextClassLoader();
     Thread.currentThread().setContextClassLoader(getClass().getClassLoader());
 
     try {
-      LOG.debug("Sending email: {}", emailMessage);
-      String host = null;
-      try {
-        host = new URL(configuration.getServerBaseURL()).getHost();
-      } catch (MalformedURLException e) {
-        // ignore
+      List<SimpleEmail> emails = new ArrayList<>(emailMessages.size());
+      for (EmailMessage emailMessage : emailMessages) {
+        try {
+          SimpleEmail email = createEmail(emailMessage);
+          email.buildMimeMessage();
+          emails.add(email);
+        } catch (EmailException e) {
+          LOG.error("Unable to send email", e);
+        }
       }
+      send(emails);
+    } finally {
+      Thread.currentThread().setContextClassLoader(classloader);
+    }
+  }
 
-      SimpleEmail email = new SimpleEmail();
-      if (StringUtils.isNotBlank(host)) {
-        /*
-         * Set headers for proper threading: GMail will not group messages, even if they have same subject, but don't have "In-Reply-To" and
-         * "References" headers. TODO investigate threading in other clients like KMail, Thunderbird, Outlook
-         */
-        if (StringUtils.isNotEmpty(emailMessage.getMessageId())) {
-          String messageId = "<" + emailMessage.getMessageId() + "@" + host + ">";
-          email.addHeader(IN_REPLY_TO_HEADER, messageId);
-          email.addHeader(REFERENCES_HEADER, messageId);
+  private static void send(List<SimpleEmail> emails) {
+    if (emails.isEmpty()) {
+      return;
+    }
+    Transport transport;
+    try {
+      // all the emails share the same SMTP configuration
+      transport = emails.get(0).getMailSession().getTransport();
+      transport.connect();
+    } catch (EmailException | MessagingException e) {
+      LOG.error("Unable to send email", e);
+      return;
+    }
+    try {
+      for (SimpleEmail email : emails) {
+        MimeMessage message = email.getMimeMessage();
+        try {
+          message.saveChanges();
+          transport.sendMessage(message, message.getAllRecipients());
+        } catch (MessagingException e) {
+          LOG.error("Unable to send email", e);
         }
-        // Set headers for proper filtering
-        email.addHeader(LIST_ID_HEADER, "SonarQube <sonar." + host + ">");
-        email.addHeader(LIST_ARCHIVE_HEADER, configuration.getServerBaseURL());
       }
-      // Set general information
-      email.setCharset("UTF-8");
-      String from = StringUtils.isBlank(emailMessage.getFrom()) ? FROM_NAME_DEFAULT : (emailMessage.getFrom() + " (SonarQube)");
-      email.setFrom(configuration.getFrom(), from);
-      email.addTo(emailMessage.getTo(), " ");
-      String subject = StringUtils.defaultIfBlank(StringUtils.trimToEmpty(configuration.getPrefix()) + " ", "")
-        + StringUtils.defaultString(emailMessage.getSubject(), SUBJECT_DEFAULT);
-      email.setSubject(subject);
-      email.setMsg(emailMessage.getMessage());
-      // Send
-      email.setHostName(configuration.getSmtpHost());
-      configureSecureConnection(email);
-      if (StringUtils.isNotBlank(configuration.getSmtpUsername()) || StringUtils.isNotBlank(configuration.getSmtpPassword())) {
-        email.setAuthentication(configuration.getSmtpUsername(), configuration.getSmtpPassword());
+    } finally {
+      try {
+        transport.close();
+      } catch (MessagingException e) {
+        LOG.debug("Unable to close connection to SMTP server", e);
       }
-      email.setSocketConnectionTimeout(SOCKET_TIMEOUT);
-      email.setSocketTimeout(SOCKET_TIMEOUT);
-      email.send();
+    }
+  }
 
+  private void send(EmailMessage emailMessage) throws EmailException {
+    // Trick to correctly initialize javax.mail library
+    ClassLoader classloader = Thread.currentThread().getContextClassLoader();
+    Thread.currentThread().setContextClassLoader(getClass().getClassLoader());
+
+    try {
+      createEmail(emailMessage).send();
     } finally {
       Thread.currentThread().setContextClassLoader(classloader);
     }
   }
 
+  private SimpleEmail createEmail(EmailMessage emailMessage) throws EmailException {
+    LOG.debug("Sending email: {}", emailMessage);
+    String host = null;
+    try {
+      host = new URL(configuration.getServerBaseURL()).getHost();
+    } catch (MalformedURLException e) {
+      // ignore
+    }
+
+    SimpleEmail email = new SimpleEmail();
+    if (StringUtils.isNotBlank(host)) {
+      /*
+       * Set headers for proper threading: GMail will not group messages, even if they have same subject, but don't have "In-Reply-To" and
+       * "References" headers. TODO investigate threading in other clients like KMail, Thunderbird, Outlook
+       */
+      if (StringUtils.isNotEmpty(emailMessage.getMessageId())) {
+        String messageId = "<" + emailMessage.getMessageId() + "@" + host + ">";
+        email.addHeader(IN_REPLY_TO_HEADER, messageId);
+        email.addHeader(REFERENCES_HEADER, messageId);
+      }
+      // Set headers for proper filtering
+      email.addHeader(LIST_ID_HEADER, "SonarQube <sonar." + host + ">");
+      email.addHeader(LIST_ARCHIVE_HEADER, configuration.getServerBaseURL());
+    }
+    // Set general information
+    email.setCharset("UTF-8");
+    String from = StringUtils.isBlank(emailMessage.getFrom()) ? FROM_NAME_DEFAULT : (emailMessage.getFrom() + " (SonarQube)");
+    email.setFrom(configuration.getFrom(), from);
+    email.addTo(emailMessage.getTo(), " ");
+    String subject = StringUtils.defaultIfBlank(StringUtils.trimToEmpty(configuration.getPrefix()) + " ", "")
+      + StringUtils.defaultString(emailMessage.getSubject(), SUBJECT_DEFAULT);
+    email.setSubject(subject);
+    email.setMsg(emailMessage.getMessage());
+    // Send
+    email.setHostName(configuration.getSmtpHost());
+    configureSecureConnection(email);
+    if (StringUtils.isNotBlank(configuration.getSmtpUsername()) || StringUtils.isNotBlank(configuration.getSmtpPassword())) {
+      email.setAuthentication(configuration.getSmtpUsername(), configuration.getSmtpPassword());
+    }
+    email.setSocketConnectionTimeout(SOCKET_TIMEOUT);
+    email.setSocketTimeout(SOCKET_TIMEOUT);
+    return email;
+  }
+
   private void configureSecureConnection(SimpleEmail email) {
     if (StringUtils.equalsIgnoreCase(configuration.getSecureConnection(), "ssl")) {
       email.setSSLOnConnect(true);
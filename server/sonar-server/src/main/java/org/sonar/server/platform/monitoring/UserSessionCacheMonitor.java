@@ -0,0 +1,58 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.monitoring;
+
+import com.google.common.cache.CacheStats;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.sonar.server.user.UserSessionCache;
+
+/**
+ * Efficiency of {@link UserSessionCache}
+ */
+public class UserSessionCacheMonitor implements Monitor {
+
+  private final UserSessionCache cache;
+
+  public UserSessionCacheMonitor(UserSessionCache cache) {
+    this.cache = cache;
+  }
+
+  @Override
+  public String name() {
+    return "User Session Cache";
+  }
+
+  @Override
+  public Map<String, Object> attributes() {
+    Map<String, Object> attributes = new LinkedHashMap<>();
+    completeAttributes(attributes, "Users", cache.getUserStats(), cache.getUserSize());
+    completeAttributes(attributes, "Project Permissions", cache.getProjectPermissionStats(), cache.getProjectPermissionSize());
+    return attributes;
+  }
+
+  private static void completeAttributes(Map<String, Object> attributes, String prefix, CacheStats stats, long size) {
+    attributes.put(prefix + " Size", size);
+    attributes.put(prefix + " Hits", stats.hitCount());
+    attributes.put(prefix + " Misses", stats.missCount());
+    attributes.put(prefix + " Hit Rate (%)", Math.round(stats.hitRate() * 100));
+    attributes.put(prefix + " Evictions", stats.evictionCount());
+  }
+}
@@ -19,8 +19,13 @@
  */
 package org.sonar.server.platform.platformlevel;
 
+import com.google.common.annotations.VisibleForTesting;
+import java.util.concurrent.CompletableFuture;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
 import org.sonar.server.app.ProcessCommandWrapper;
 import org.sonar.server.es.IndexerStartupTask;
+import org.sonar.server.es.StartupIndexingFilter;
 import org.sonar.server.notification.NotificationModule;
 import org.sonar.server.organization.DefaultOrganizationEnforcer;
 import org.sonar.server.platform.ServerLifecycleNotifier;
@@ -45,6 +50,8 @@ import org.sonar.server.user.DoPrivileged;
 import org.sonar.server.user.ThreadLocalUserSession;
 
 public class PlatformLevelStartup extends PlatformLevel {
+  private static final Logger LOG = Loggers.get(PlatformLevelStartup.class);
+
   public PlatformLevelStartup(PlatformLevel parent) {
     super("startup tasks", parent);
   }
@@ -57,6 +64,7 @@ public class PlatformLevelStartup extends PlatformLevel {
 
     addIfStartupLeader(
       IndexerStartupTask.class,
+      StartupIndexingFilter.class,
       RegisterMetrics.class,
       RegisterQualityGates.class,
       RegisterRules.class);
@@ -86,13 +94,30 @@ public class PlatformLevelStartup extends PlatformLevel {
       @Override
       protected void doPrivileged() {
         PlatformLevelStartup.super.start();
-        getOptional(IndexerStartupTask.class).ifPresent(IndexerStartupTask::execute);
+        CompletableFuture<Void> indexing = getOptional(IndexerStartupTask.class)
+          .map(IndexerStartupTask::execute)
+          .orElseGet(() -> CompletableFuture.completedFuture(null));
         get(ServerLifecycleNotifier.class).notifyStart();
-        get(ProcessCommandWrapper.class).notifyOperational();
+        // when indexing is done in background, Compute Engine must not start processing reports before it's done
+        notifyOperationalWhenIndexed(indexing, get(ProcessCommandWrapper.class));
         get(WebServerRuleFinder.class).stopCaching();
       }
     });
 
     return this;
   }
+
+  /**
+   * Notifies that the server is operational once indexing is done, even if it failed: nothing is being indexed
+   * anymore and the types which failed are indexed again at next startup.
+   */
+  @VisibleForTesting
+  static void notifyOperationalWhenIndexed(CompletableFuture<Void> indexing, ProcessCommandWrapper processCommandWrapper) {
+    indexing.whenComplete((result, failure) -> {
+      if (failure != null) {
+        LOG.warn("Server is operational although indexing failed. Types which are not indexed will be indexed at next startup.");
+      }
+      processCommandWrapper.notifyOperational();
+    });
+  }
 }
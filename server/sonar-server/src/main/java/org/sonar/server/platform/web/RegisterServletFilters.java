@@ -19,9 +19,14 @@
  */
 package org.sonar.server.platform.web;
 
-import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
 import javax.servlet.ServletException;
 import org.sonar.api.web.ServletFilter;
+import org.sonar.server.es.StartupIndexingFilter;
+
+import static java.util.Arrays.stream;
+import static java.util.stream.Collectors.toList;
 
 /**
  * @since 3.5
@@ -42,7 +47,17 @@ public class RegisterServletFilters {
       // Probably a database upgrade. MasterSlaveFilter was instantiated by the servlet container
       // while picocontainer was not completely up.
       // See https://jira.sonarsource.com/browse/SONAR-3612
-      MasterServletFilter.INSTANCE.initFilters(Arrays.asList(filters));
+      MasterServletFilter.INSTANCE.initFilters(sortFilters());
     }
   }
+
+  /**
+   * {@link StartupIndexingFilter} rejects requests, so it must be executed before the filters which serve them.
+   */
+  private List<ServletFilter> sortFilters() {
+    return Stream.concat(
+      stream(filters).filter(StartupIndexingFilter.class::isInstance),
+      stream(filters).filter(filter -> !(filter instanceof StartupIndexingFilter)))
+      .collect(toList());
+  }
 }
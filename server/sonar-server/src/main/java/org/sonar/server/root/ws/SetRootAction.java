@@ -27,6 +27,7 @@ import org.sonar.db.DbSession;
 import org.sonar.db.user.UserDto;
 import org.sonar.server.exceptions.NotFoundException;
 import org.sonar.server.user.UserSession;
+import org.sonar.server.user.UserSessionCache;
 
 import static java.lang.String.format;
 import static org.sonar.server.user.AbstractUserSession.insufficientPrivilegesException;
@@ -36,10 +37,12 @@ public class SetRootAction implements RootsWsAction {
 
   private final UserSession userSession;
   private final DbClient dbClient;
+  private final UserSessionCache userSessionCache;
 
-  public SetRootAction(UserSession userSession, DbClient dbClient) {
+  public SetRootAction(UserSession userSession, DbClient dbClient, UserSessionCache userSessionCache) {
     this.userSession = userSession;
     this.dbClient = dbClient;
+    this.userSessionCache = userSessionCache;
   }
 
   @Override
@@ -73,6 +76,7 @@ public class SetRootAction implements RootsWsAction {
       if (!userDto.isRoot()) {
         dbClient.userDao().setRoot(dbSession, login, true);
         dbSession.commit();
+        userSessionCache.invalidateUser(login);
       }
     }
     response.noContent();
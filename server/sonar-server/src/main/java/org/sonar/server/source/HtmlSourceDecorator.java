@@ -19,7 +19,6 @@
  */
 package org.sonar.server.source;
 
-import java.util.List;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.apache.commons.lang.StringUtils;
@@ -39,16 +38,7 @@ public class HtmlSourceDecorator {
       decorationDataHolder.loadLineSymbolReferences(symbols);
     }
     HtmlTextDecorator textDecorator = new HtmlTextDecorator();
-    List<String> decoratedSource = textDecorator.decorateTextWithHtml(sourceLine, decorationDataHolder, 1, 1);
-    if (decoratedSource == null) {
-      return null;
-    } else {
-      if (decoratedSource.isEmpty()) {
-        return "";
-      } else {
-        return decoratedSource.get(0);
-      }
-    }
+    return textDecorator.decorateFirstLineWithHtml(sourceLine, decorationDataHolder);
   }
 
 }
@@ -25,6 +25,7 @@ import java.io.IOException;
 import java.io.StringReader;
 import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 import javax.annotation.Nullable;
 import org.sonar.api.utils.log.Loggers;
 
@@ -46,9 +47,26 @@ class HtmlTextDecorator {
   }
 
   List<String> decorateTextWithHtml(String text, DecorationDataHolder decorationDataHolder, @Nullable Integer from, @Nullable Integer to) {
+    List<String> decoratedHtmlLines = newArrayList();
+    decorateTextWithHtml(text, decorationDataHolder, from, to, decoratedHtmlLines::add);
+    return decoratedHtmlLines;
+  }
+
+  /**
+   * Same as {@code decorateTextWithHtml(text, decorationDataHolder, 1, 1)}, without allocating a list for the single line.
+   *
+   * @return the first decorated line, an empty string if text is empty
+   */
+  String decorateFirstLineWithHtml(String text, DecorationDataHolder decorationDataHolder) {
+    StringBuilder firstLine = new StringBuilder();
+    decorateTextWithHtml(text, decorationDataHolder, 1, 1, firstLine::append);
+    return firstLine.toString();
+  }
+
+  private void decorateTextWithHtml(String text, DecorationDataHolder decorationDataHolder, @Nullable Integer from, @Nullable Integer to,
+    Consumer<String> decoratedHtmlLines) {
 
     StringBuilder currentHtmlLine = new StringBuilder();
-    List<String> decoratedHtmlLines = newArrayList();
     int currentLine = 1;
 
     BufferedReader stringBuffer = null;
@@ -63,7 +81,7 @@ class HtmlTextDecorator {
         }
         if (shouldStartNewLine(charsReader)) {
           if (canAddLine(currentLine, from)) {
-            decoratedHtmlLines.add(currentHtmlLine.toString());
+            decoratedHtmlLines.accept(currentHtmlLine.toString());
           }
           currentLine++;
           currentHtmlLine = new StringBuilder();
@@ -88,8 +106,6 @@ class HtmlTextDecorator {
     } finally {
       Closeables.closeQuietly(stringBuffer);
     }
-
-    return decoratedHtmlLines;
   }
 
   private void addCharToCurrentLine(CharactersReader charsReader, StringBuilder currentHtmlLine, DecorationDataHolder decorationDataHolder) {
@@ -111,13 +127,13 @@ class HtmlTextDecorator {
 
     if (shouldAppendCharToHtmlOutput(charsReader)) {
       char currentChar = (char) charsReader.getCurrentValue();
-      currentHtmlLine.append(normalize(currentChar));
+      appendNormalized(currentChar, currentHtmlLine);
     }
   }
 
-  private static void addLine(List<String> decoratedHtmlLines, String line, int currentLine, @Nullable Integer from, @Nullable Integer to) {
+  private static void addLine(Consumer<String> decoratedHtmlLines, String line, int currentLine, @Nullable Integer from, @Nullable Integer to) {
     if (canAddLine(currentLine, from) && !shouldStop(currentLine, to)) {
-      decoratedHtmlLines.add(line);
+      decoratedHtmlLines.accept(line);
     }
   }
 
@@ -129,18 +145,16 @@ class HtmlTextDecorator {
     return to != null && to < currentLine;
   }
 
-  private char[] normalize(char currentChar) {
-    char[] normalizedChars;
+  private static void appendNormalized(char currentChar, StringBuilder currentHtmlLine) {
     if (currentChar == HTML_OPENING) {
-      normalizedChars = ENCODED_HTML_OPENING.toCharArray();
+      currentHtmlLine.append(ENCODED_HTML_OPENING);
     } else if (currentChar == HTML_CLOSING) {
-      normalizedChars = ENCODED_HTML_CLOSING.toCharArray();
+      currentHtmlLine.append(ENCODED_HTML_CLOSING);
     } else if (currentChar == AMPERSAND) {
-      normalizedChars = ENCODED_AMPERSAND.toCharArray();
+      currentHtmlLine.append(ENCODED_AMPERSAND);
     } else {
-      normalizedChars = new char[] {currentChar};
+      currentHtmlLine.append(currentChar);
     }
-    return normalizedChars;
   }
 
   private boolean shouldAppendCharToHtmlOutput(CharactersReader charsReader) {
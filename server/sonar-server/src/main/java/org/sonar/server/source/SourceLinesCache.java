@@ -0,0 +1,105 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.source;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import javax.annotation.CheckForNull;
+import org.sonar.db.protobuf.DbFileSources;
+
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * LRU cache of the lines decoded from the sources stored in db. Entries are keyed by the data hash of the sources,
+ * so that the lines of a file which has been analyzed again are never returned. Only the lines which have been
+ * requested so far are decoded, the following ones are decoded again if they are requested later.
+ * <p>
+ * The size of the cache is bounded by the serialized size of the lines it contains.
+ * </p>
+ */
+class SourceLinesCache {
+
+  static final long DEFAULT_MAX_SIZE = 32L * 1024 * 1024;
+
+  private final long maxSize;
+  private final LinkedHashMap<String, Entry> entriesByDataHash = new LinkedHashMap<>(16, 0.75F, true);
+  private long size = 0L;
+
+  SourceLinesCache() {
+    this(DEFAULT_MAX_SIZE);
+  }
+
+  SourceLinesCache(long maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * @return the cached lines, or {@code null} if they are not cached up to line {@code toInclusive}
+   */
+  @CheckForNull
+  synchronized List<DbFileSources.Line> get(String dataHash, int toInclusive) {
+    Entry entry = entriesByDataHash.get(dataHash);
+    if (entry == null || !entry.contains(toInclusive)) {
+      return null;
+    }
+    return entry.lines;
+  }
+
+  /**
+   * @param lines the lines decoded up to line {@code toInclusive}
+   */
+  synchronized void put(String dataHash, List<DbFileSources.Line> lines, int toInclusive) {
+    Entry entry = new Entry(lines, toInclusive);
+    Entry previous = entry.size > maxSize ? entriesByDataHash.remove(dataHash) : entriesByDataHash.put(dataHash, entry);
+    if (previous != null) {
+      size -= previous.size;
+    }
+    if (entry.size > maxSize) {
+      return;
+    }
+    size += entry.size;
+    Iterator<Entry> eldestEntries = entriesByDataHash.values().iterator();
+    while (size > maxSize) {
+      size -= eldestEntries.next().size;
+      eldestEntries.remove();
+    }
+  }
+
+  private static class Entry {
+    private final List<DbFileSources.Line> lines;
+    private final int lastDecodedLine;
+    private final boolean complete;
+    private final long size;
+
+    Entry(List<DbFileSources.Line> lines, int toInclusive) {
+      this.lines = unmodifiableList(lines);
+      DbFileSources.Line lastLine = lines.isEmpty() ? null : lines.get(lines.size() - 1);
+      // decoding stops on the requested line, so it reached the end of the file if this line has not been decoded
+      this.complete = lastLine == null || !lastLine.hasLine() || lastLine.getLine() < toInclusive;
+      this.lastDecodedLine = lastLine == null ? 0 : lastLine.getLine();
+      this.size = lines.stream().mapToLong(DbFileSources.Line::getSerializedSize).sum();
+    }
+
+    boolean contains(int toInclusive) {
+      return complete || lastDecodedLine >= toInclusive;
+    }
+  }
+}
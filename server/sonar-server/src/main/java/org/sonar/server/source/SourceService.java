@@ -19,6 +19,7 @@
  */
 package org.sonar.server.source;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.function.Function;
 import org.sonar.core.util.stream.MoreCollectors;
@@ -33,6 +34,7 @@ public class SourceService {
 
   private final DbClient dbClient;
   private final HtmlSourceDecorator htmlDecorator;
+  private final SourceLinesCache linesCache = new SourceLinesCache();
 
   public SourceService(DbClient dbClient, HtmlSourceDecorator htmlDecorator) {
     this.dbClient = dbClient;
@@ -63,17 +65,35 @@ public class SourceService {
   private <E> Optional<Iterable<E>> getLines(DbSession dbSession, String fileUuid, int from, int toInclusive, Function<DbFileSources.Line, E> function) {
     verifyLine(from);
     checkArgument(toInclusive >= from, String.format("Line number must greater than or equal to %d, got %d", from, toInclusive));
-    FileSourceDto dto = dbClient.fileSourceDao().selectSourceByFileUuid(dbSession, fileUuid);
-    if (dto == null) {
-      return Optional.empty();
-    }
-    return Optional.of(dto.getSourceData().getLinesList().stream()
+    Optional<List<DbFileSources.Line>> lines = getDecodedLines(dbSession, fileUuid, toInclusive);
+    return lines.map(l -> l.stream()
       .filter(line -> line.hasLine() && line.getLine() >= from)
       .limit((toInclusive - from) + 1L)
       .map(function)
       .collect(MoreCollectors.toList()));
   }
 
+  /**
+   * Lines are decoded up to the requested one only, and kept in cache as long as the sources of the file
+   * don't change. The data of the sources is loaded from db only when the lines are not in cache.
+   */
+  private Optional<List<DbFileSources.Line>> getDecodedLines(DbSession dbSession, String fileUuid, int toInclusive) {
+    String dataHash = dbClient.fileSourceDao().selectSourceDataHashByFileUuid(dbSession, fileUuid);
+    List<DbFileSources.Line> lines = dataHash == null ? null : linesCache.get(dataHash, toInclusive);
+    if (lines != null) {
+      return Optional.of(lines);
+    }
+    FileSourceDto dto = dbClient.fileSourceDao().selectSourceByFileUuid(dbSession, fileUuid);
+    if (dto == null) {
+      return Optional.empty();
+    }
+    lines = dto.decodeSourceLines(toInclusive);
+    if (dto.getDataHash() != null) {
+      linesCache.put(dto.getDataHash(), lines, toInclusive);
+    }
+    return Optional.of(lines);
+  }
+
   private static void verifyLine(int line) {
     checkArgument(line >= 1, String.format("Line number must start at 1, got %d", line));
   }
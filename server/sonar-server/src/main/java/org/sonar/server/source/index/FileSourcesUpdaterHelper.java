@@ -23,7 +23,9 @@ import com.google.common.base.Joiner;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 import org.elasticsearch.action.update.UpdateRequest;
 import org.sonar.db.DbClient;
@@ -32,7 +34,8 @@ import org.sonar.db.DbSession;
 public class FileSourcesUpdaterHelper {
 
   private static final String SQL_ALL = "SELECT %s FROM file_sources WHERE data_type='%s' ";
-  private static final String PROJECT_FILTER = " AND project_uuid=?";
+  private static final String PROJECT_FILTER_PREFIX = " AND project_uuid IN (";
+  private static final String PROJECT_FILTER_SUFFIX = ")";
 
   private static final String[] FIELDS = {
     "project_uuid",
@@ -46,21 +49,30 @@ public class FileSourcesUpdaterHelper {
     // only static stuff
   }
 
-  public static PreparedStatement preparedStatementToSelectFileSources(DbClient dbClient, DbSession session, String dataType, @Nullable String projectUuid)
-    throws SQLException {
-    String sql = createSQL(dataType, projectUuid);
+  /**
+   * @param projectUuids the projects to select, or {@code null} to select all the file sources of the given type
+   */
+  public static PreparedStatement preparedStatementToSelectFileSources(DbClient dbClient, DbSession session, String dataType,
+    @Nullable Collection<String> projectUuids) throws SQLException {
+    String sql = createSQL(dataType, projectUuids);
     // rows are big, so they are scrolled once at a time (one row in memory at a time)
     PreparedStatement stmt = dbClient.getMyBatis().newScrollingSingleRowSelectStatement(session, sql);
-    if (projectUuid != null) {
-      stmt.setString(1, projectUuid);
+    if (projectUuids != null) {
+      int index = 1;
+      for (String projectUuid : projectUuids) {
+        stmt.setString(index, projectUuid);
+        index++;
+      }
     }
     return stmt;
   }
 
-  private static String createSQL(String dataType, @Nullable String projectUuid) {
+  private static String createSQL(String dataType, @Nullable Collection<String> projectUuids) {
     StringBuilder sql = new StringBuilder(String.format(SQL_ALL, FIELDS_ONE_LINE, dataType));
-    if (projectUuid != null) {
-      sql.append(PROJECT_FILTER);
+    if (projectUuids != null) {
+      sql.append(PROJECT_FILTER_PREFIX)
+        .append(projectUuids.stream().map(x -> "?").collect(Collectors.joining(",")))
+        .append(PROJECT_FILTER_SUFFIX);
     }
     return sql.toString();
   }
@@ -27,6 +27,7 @@ import java.util.List;
 import java.util.Set;
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
+import org.sonar.api.resources.Qualifiers;
 import org.sonar.core.util.stream.MoreCollectors;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
@@ -39,6 +40,7 @@ import org.sonar.server.es.IndexingListener;
 import org.sonar.server.es.IndexingResult;
 import org.sonar.server.es.OneToManyResilientIndexingListener;
 import org.sonar.server.es.ProjectIndexer;
+import org.sonar.server.es.ShardedStartupIndexer;
 import org.sonar.server.source.index.FileSourcesUpdaterHelper;
 
 import static java.util.Collections.emptyList;
@@ -51,7 +53,7 @@ import static org.sonar.server.test.index.TestIndexDefinition.INDEX_TYPE_TEST;
  * <p>
  * This indexer is not resilient by itself since it's called by Compute Engine
  */
-public class TestIndexer implements ProjectIndexer {
+public class TestIndexer implements ProjectIndexer, ShardedStartupIndexer {
 
   private final DbClient dbClient;
   private final EsClient esClient;
@@ -78,6 +80,23 @@ public class TestIndexer implements ProjectIndexer {
     }
   }
 
+  @Override
+  public Set<String> getRootQualifiers() {
+    return ImmutableSet.of(Qualifiers.PROJECT);
+  }
+
+  @Override
+  public void indexOnStartup(Set<IndexType> uninitializedIndexTypes, List<String> rootUuids) {
+    try (DbSession dbSession = dbClient.openSession(false);
+         TestResultSetIterator rowIt = TestResultSetIterator.createForProjects(dbClient, dbSession, rootUuids)) {
+
+      BulkIndexer bulkIndexer = new BulkIndexer(esClient, TestIndexDefinition.INDEX_TYPE_TEST, Size.LARGE);
+      bulkIndexer.start();
+      addTestsToBulkIndexer(rowIt, bulkIndexer);
+      bulkIndexer.stop();
+    }
+  }
+
   @Override
   public void indexOnAnalysis(String projectUuid) {
     BulkIndexer bulkIndexer = new BulkIndexer(esClient, TestIndexDefinition.INDEX_TYPE_TEST, Size.REGULAR);
@@ -26,6 +26,7 @@ import java.nio.charset.StandardCharsets;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
@@ -42,6 +43,8 @@ import org.sonar.server.es.EsUtils;
 import org.sonar.server.source.index.FileSourcesUpdaterHelper;
 import org.sonar.server.source.index.FileSourcesUpdaterHelper.Row;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Collections.singletonList;
 import static org.sonar.server.test.index.TestIndexDefinition.FIELD_COVERED_FILES;
 import static org.sonar.server.test.index.TestIndexDefinition.FIELD_COVERED_FILE_LINES;
 import static org.sonar.server.test.index.TestIndexDefinition.FIELD_COVERED_FILE_UUID;
@@ -67,8 +70,20 @@ public class TestResultSetIterator extends ResultSetIterator<Row> {
   }
 
   public static TestResultSetIterator create(DbClient dbClient, DbSession session, @Nullable String projectUuid) {
+    return doCreate(dbClient, session, projectUuid == null ? null : singletonList(projectUuid));
+  }
+
+  /**
+   * @param projectUuids between 1 and {@link org.sonar.db.DatabaseUtils#PARTITION_SIZE_FOR_ORACLE} project uuids
+   */
+  public static TestResultSetIterator createForProjects(DbClient dbClient, DbSession session, Collection<String> projectUuids) {
+    checkArgument(!projectUuids.isEmpty(), "At least one project uuid must be provided");
+    return doCreate(dbClient, session, projectUuids);
+  }
+
+  private static TestResultSetIterator doCreate(DbClient dbClient, DbSession session, @Nullable Collection<String> projectUuids) {
     try {
-      return new TestResultSetIterator(FileSourcesUpdaterHelper.preparedStatementToSelectFileSources(dbClient, session, FileSourceDto.Type.TEST, projectUuid));
+      return new TestResultSetIterator(FileSourcesUpdaterHelper.preparedStatementToSelectFileSources(dbClient, session, FileSourceDto.Type.TEST, projectUuids));
     } catch (SQLException e) {
       throw new IllegalStateException("Fail to prepare SQL request to select all tests", e);
     }
@@ -53,6 +53,7 @@ public class ServerUserSession extends AbstractUserSession {
   private final DbClient dbClient;
   private final OrganizationFlags organizationFlags;
   private final DefaultOrganizationProvider defaultOrganizationProvider;
+  private final UserSessionCache userSessionCache;
   private final Supplier<Collection<GroupDto>> groups = Suppliers.memoize(this::loadGroups);
   private final Supplier<Boolean> isSystemAdministratorSupplier = Suppliers.memoize(this::loadIsSystemAdministrator);
   private final Map<String, String> projectUuidByComponentUuid = newHashMap();
@@ -60,10 +61,11 @@ public class ServerUserSession extends AbstractUserSession {
   private Map<String, Set<String>> permissionsByProjectUuid;
 
   ServerUserSession(DbClient dbClient, OrganizationFlags organizationFlags,
-    DefaultOrganizationProvider defaultOrganizationProvider, @Nullable UserDto userDto) {
+    DefaultOrganizationProvider defaultOrganizationProvider, UserSessionCache userSessionCache, @Nullable UserDto userDto) {
     this.dbClient = dbClient;
     this.organizationFlags = organizationFlags;
     this.defaultOrganizationProvider = defaultOrganizationProvider;
+    this.userSessionCache = userSessionCache;
     this.userDto = userDto;
   }
 
@@ -159,13 +161,17 @@ public class ServerUserSession extends AbstractUserSession {
   }
 
   private Set<String> loadProjectPermissions(String projectUuid) {
+    return userSessionCache.getProjectPermissions(getUserId(), projectUuid, () -> loadProjectPermissionsFromDb(projectUuid));
+  }
+
+  private Set<String> loadProjectPermissionsFromDb(String projectUuid) {
     try (DbSession dbSession = dbClient.openSession(false)) {
       com.google.common.base.Optional<ComponentDto> component = dbClient.componentDao().selectByUuid(dbSession, projectUuid);
       if (!component.isPresent()) {
         return Collections.emptySet();
       }
       if (component.get().isPrivate()) {
-        return loadDbPermissions(dbSession, projectUuid);
+        return ImmutableSet.copyOf(loadDbPermissions(dbSession, projectUuid));
       }
       ImmutableSet.Builder<String> builder = ImmutableSet.builder();
       builder.addAll(ProjectPermissions.PUBLIC_PERMISSIONS);
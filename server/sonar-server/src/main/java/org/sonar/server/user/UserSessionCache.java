@@ -0,0 +1,183 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.user;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import org.sonar.api.ce.ComputeEngineSide;
+import org.sonar.api.server.ServerSide;
+import org.sonar.db.user.UserDto;
+
+/**
+ * Short-lived cache of the data loaded by each authenticated HTTP request: the active user
+ * of the JWT session and the permissions of users on projects. It is shared by all the requests
+ * of the web server.
+ * <br/>
+ * Entries are invalidated by the components which change users, permissions and group memberships.
+ * These invalidations are local to the web server, so in cluster mode the other nodes see the
+ * changes once entries expire, after {@link #TTL_IN_SECONDS} seconds.
+ * <br/>
+ * Cached {@link UserDto} are shared by concurrent requests and must not be modified.
+ */
+@ServerSide
+@ComputeEngineSide
+public class UserSessionCache {
+
+  static final long TTL_IN_SECONDS = 30L;
+  private static final long MAX_USERS = 10_000L;
+  private static final long MAX_PROJECT_PERMISSIONS = 100_000L;
+
+  private final Cache<String, Optional<UserDto>> activeUsersByLogin;
+  private final Cache<ProjectPermissionsKey, Set<String>> projectPermissions;
+  // incremented by each invalidation, to detect the values which are loaded concurrently
+  private final AtomicLong usersGeneration = new AtomicLong();
+  private final AtomicLong permissionsGeneration = new AtomicLong();
+
+  public UserSessionCache() {
+    this(Ticker.systemTicker());
+  }
+
+  @VisibleForTesting
+  UserSessionCache(Ticker ticker) {
+    this.activeUsersByLogin = newCache(ticker, MAX_USERS);
+    this.projectPermissions = newCache(ticker, MAX_PROJECT_PERMISSIONS);
+  }
+
+  private static <K, V> Cache<K, V> newCache(Ticker ticker, long maxSize) {
+    return CacheBuilder.newBuilder()
+      .ticker(ticker)
+      .expireAfterWrite(TTL_IN_SECONDS, TimeUnit.SECONDS)
+      .maximumSize(maxSize)
+      .recordStats()
+      .build();
+  }
+
+  /**
+   * @param loader loads the active user with the specified login, if it exists
+   */
+  public Optional<UserDto> getActiveUser(String login, Supplier<Optional<UserDto>> loader) {
+    return get(activeUsersByLogin, usersGeneration, login, loader);
+  }
+
+  /**
+   * @param userId id of user, or {@code null} for anonymous
+   * @param loader loads the permissions of the user on the project
+   */
+  public Set<String> getProjectPermissions(@Nullable Integer userId, String projectUuid, Supplier<Set<String>> loader) {
+    return get(projectPermissions, permissionsGeneration, new ProjectPermissionsKey(userId, projectUuid), loader);
+  }
+
+  /**
+   * To be called when the user is created, updated, deactivated, or when its root flag is changed
+   */
+  public void invalidateUser(String login) {
+    usersGeneration.incrementAndGet();
+    activeUsersByLogin.invalidate(login);
+  }
+
+  /**
+   * To be called when permissions, permission templates, project visibilities or group memberships
+   * are changed. As such changes may impact many users, all the cached permissions are dropped.
+   */
+  public void invalidatePermissions() {
+    permissionsGeneration.incrementAndGet();
+    projectPermissions.invalidateAll();
+  }
+
+  public CacheStats getUserStats() {
+    return activeUsersByLogin.stats();
+  }
+
+  public long getUserSize() {
+    return activeUsersByLogin.size();
+  }
+
+  public CacheStats getProjectPermissionStats() {
+    return projectPermissions.stats();
+  }
+
+  public long getProjectPermissionSize() {
+    return projectPermissions.size();
+  }
+
+  /**
+   * {@link Cache#get(Object, java.util.concurrent.Callable)} stores the loaded value even if the key is invalidated
+   * while it is being loaded. As invalidations increment the generation of the cache before dropping entries, a
+   * value is removed from the cache if the generation changed since its loading started: either the invalidation
+   * already happened and the value may be stale, or it will happen after the value is stored and will drop it.
+   * Some valid values may also be removed, which only costs a reload.
+   */
+  private static <K, V> V get(Cache<K, V> cache, AtomicLong generation, K key, Supplier<V> loader) {
+    long loadGeneration = generation.get();
+    V value;
+    try {
+      value = cache.get(key, loader::get);
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    }
+    if (generation.get() != loadGeneration) {
+      cache.asMap().remove(key, value);
+    }
+    return value;
+  }
+
+  @Immutable
+  private static final class ProjectPermissionsKey {
+    @Nullable
+    private final Integer userId;
+    private final String projectUuid;
+
+    private ProjectPermissionsKey(@Nullable Integer userId, String projectUuid) {
+      this.userId = userId;
+      this.projectUuid = projectUuid;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      ProjectPermissionsKey that = (ProjectPermissionsKey) o;
+      return Objects.equals(userId, that.userId) && projectUuid.equals(that.projectUuid);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(userId, projectUuid);
+    }
+  }
+}
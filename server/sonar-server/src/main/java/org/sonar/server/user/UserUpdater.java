@@ -79,9 +79,11 @@ public class UserUpdater {
   private final OrganizationCreation organizationCreation;
   private final DefaultGroupFinder defaultGroupFinder;
   private final Configuration config;
+  private final UserSessionCache userSessionCache;
 
   public UserUpdater(NewUserNotifier newUserNotifier, DbClient dbClient, UserIndexer userIndexer, OrganizationFlags organizationFlags,
-    DefaultOrganizationProvider defaultOrganizationProvider, OrganizationCreation organizationCreation, DefaultGroupFinder defaultGroupFinder, Configuration config) {
+    DefaultOrganizationProvider defaultOrganizationProvider, OrganizationCreation organizationCreation, DefaultGroupFinder defaultGroupFinder, Configuration config,
+    UserSessionCache userSessionCache) {
     this.newUserNotifier = newUserNotifier;
     this.dbClient = dbClient;
     this.userIndexer = userIndexer;
@@ -90,6 +92,7 @@ public class UserUpdater {
     this.organizationCreation = organizationCreation;
     this.defaultGroupFinder = defaultGroupFinder;
     this.config = config;
+    this.userSessionCache = userSessionCache;
   }
 
   public UserDto createAndCommit(DbSession dbSession, NewUser newUser, Consumer<UserDto> beforeCommit) {
@@ -102,6 +105,9 @@ public class UserUpdater {
     }
     beforeCommit.accept(userDto);
     userIndexer.commitAndIndex(dbSession, userDto);
+    userSessionCache.invalidateUser(login);
+    // new users are members of the default group
+    userSessionCache.invalidatePermissions();
 
     notifyNewUser(userDto.getLogin(), userDto.getName(), newUser.email());
     return userDto;
@@ -136,6 +142,7 @@ public class UserUpdater {
       updateUser(dbSession, dto);
       beforeCommit.accept(dto);
       userIndexer.commitAndIndex(dbSession, dto);
+      userSessionCache.invalidateUser(dto.getLogin());
       notifyNewUser(dto.getLogin(), dto.getName(), dto.getEmail());
     } else {
       // no changes but still execute the consumer
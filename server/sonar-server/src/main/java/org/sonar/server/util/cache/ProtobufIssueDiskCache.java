@@ -0,0 +1,335 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.util.cache;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.Date;
+import java.util.Map;
+import java.util.function.Consumer;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.SerializationUtils;
+import org.sonar.api.issue.IssueComment;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rules.RuleType;
+import org.sonar.api.utils.Duration;
+import org.sonar.api.utils.KeyValueFormat;
+import org.sonar.api.utils.System2;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.core.issue.DefaultIssueComment;
+import org.sonar.core.issue.FieldDiffs;
+import org.sonar.core.util.CloseableIterator;
+import org.sonar.db.protobuf.DbIssues;
+
+/**
+ * Store issues on disk as length-delimited protobuf messages. Compared to Java serialization,
+ * the format does not repeat class descriptors, so that files are smaller and faster to read.
+ */
+public class ProtobufIssueDiskCache implements DiskCache<DefaultIssue> {
+
+  private final File file;
+  private final System2 system2;
+
+  public ProtobufIssueDiskCache(File file, System2 system2) {
+    this.file = file;
+    this.system2 = system2;
+    OutputStream output = null;
+    boolean threw = true;
+    try {
+      // truncates the file, so that it can be traversed even if nothing is appended
+      output = new FileOutputStream(file);
+      threw = false;
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to write into file: " + file, e);
+    } finally {
+      if (threw) {
+        // do not hide initial exception
+        IOUtils.closeQuietly(output);
+      } else {
+        // raise an exception if can't close
+        system2.close(output);
+      }
+    }
+  }
+
+  @Override
+  public CacheAppender<DefaultIssue> newAppender() {
+    return new ProtoCacheAppender();
+  }
+
+  @Override
+  public CloseableIterator<DefaultIssue> traverse() {
+    try {
+      return new ProtoIssueIterator(new BufferedInputStream(FileUtils.openInputStream(file)));
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to traverse file: " + file, e);
+    }
+  }
+
+  private class ProtoCacheAppender implements CacheAppender<DefaultIssue> {
+    private final OutputStream output;
+
+    private ProtoCacheAppender() {
+      try {
+        this.output = new BufferedOutputStream(new FileOutputStream(file, true));
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to open file " + file, e);
+      }
+    }
+
+    @Override
+    public CacheAppender<DefaultIssue> append(DefaultIssue issue) {
+      try {
+        toProto(issue).writeDelimitedTo(output);
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to write into file " + file, e);
+      }
+      return this;
+    }
+
+    @Override
+    public void close() {
+      system2.close(output);
+    }
+  }
+
+  private static class ProtoIssueIterator extends CloseableIterator<DefaultIssue> {
+    private final InputStream input;
+
+    private ProtoIssueIterator(InputStream input) {
+      this.input = input;
+    }
+
+    @Override
+    @CheckForNull
+    protected DefaultIssue doNext() {
+      try {
+        CeIssueCache.Issue issue = CeIssueCache.Issue.parseDelimitedFrom(input);
+        return issue == null ? null : toDefaultIssue(issue);
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to read issue from file", e);
+      }
+    }
+
+    @Override
+    protected void doClose() {
+      IOUtils.closeQuietly(input);
+    }
+  }
+
+  static CeIssueCache.Issue toProto(DefaultIssue issue) {
+    CeIssueCache.Issue.Builder builder = CeIssueCache.Issue.newBuilder();
+    setIfNotNull(issue.key(), builder::setKey);
+    if (issue.type() != null) {
+      builder.setRuleType(issue.type().getDbConstant());
+    }
+    setIfNotNull(issue.componentUuid(), builder::setComponentUuid);
+    setIfNotNull(issue.componentKey(), builder::setComponentKey);
+    setIfNotNull(issue.moduleUuid(), builder::setModuleUuid);
+    setIfNotNull(issue.moduleUuidPath(), builder::setModuleUuidPath);
+    setIfNotNull(issue.projectUuid(), builder::setProjectUuid);
+    setIfNotNull(issue.projectKey(), builder::setProjectKey);
+    if (issue.ruleKey() != null) {
+      builder.setRuleKey(issue.ruleKey().toString());
+    }
+    setIfNotNull(issue.language(), builder::setLanguage);
+    setIfNotNull(issue.severity(), builder::setSeverity);
+    builder.setManualSeverity(issue.manualSeverity());
+    setIfNotNull(issue.message(), builder::setMessage);
+    setIfNotNull(issue.line(), builder::setLine);
+    setIfNotNull(issue.gap(), builder::setGap);
+    setIfNotNull(issue.effortInMinutes(), builder::setEffort);
+    setIfNotNull(issue.status(), builder::setStatus);
+    setIfNotNull(issue.resolution(), builder::setResolution);
+    setIfNotNull(issue.assignee(), builder::setAssignee);
+    setIfNotNull(issue.checksum(), builder::setChecksum);
+    if (!issue.attributes().isEmpty()) {
+      builder.setAttributes(KeyValueFormat.format(issue.attributes()));
+    }
+    setIfNotNull(issue.authorLogin(), builder::setAuthorLogin);
+    for (IssueComment comment : issue.comments()) {
+      builder.addComments(toProto((DefaultIssueComment) comment));
+    }
+    builder.addAllTags(issue.tags());
+    DbIssues.Locations locations = issue.getLocations();
+    if (locations != null) {
+      builder.setLocations(locations.toByteString());
+    }
+    setIfNotNull(issue.creationDate(), d -> builder.setCreationDate(d.getTime()));
+    setIfNotNull(issue.updateDate(), d -> builder.setUpdateDate(d.getTime()));
+    setIfNotNull(issue.closeDate(), d -> builder.setCloseDate(d.getTime()));
+    FieldDiffs currentChange = issue.currentChange();
+    if (currentChange != null) {
+      builder.setCurrentChanges(toProto(currentChange));
+    }
+    for (FieldDiffs change : issue.changes()) {
+      // current change is restored by DefaultIssue#setCurrentChange()
+      if (change != currentChange) {
+        builder.addChanges(toProto(change));
+      }
+    }
+    builder.setIsNew(issue.isNew());
+    builder.setBeingClosed(issue.isBeingClosed());
+    builder.setOnDisabledRule(issue.isOnDisabledRule());
+    builder.setIsChanged(issue.isChanged());
+    builder.setSendNotifications(issue.mustSendNotifications());
+    setIfNotNull(issue.selectedAt(), builder::setSelectedAt);
+    return builder.build();
+  }
+
+  static DefaultIssue toDefaultIssue(CeIssueCache.Issue issue) throws InvalidProtocolBufferException {
+    DefaultIssue defaultIssue = new DefaultIssue();
+    defaultIssue.setKey(issue.hasKey() ? issue.getKey() : null);
+    defaultIssue.setType(issue.hasRuleType() ? RuleType.valueOf(issue.getRuleType()) : null);
+    defaultIssue.setComponentUuid(issue.hasComponentUuid() ? issue.getComponentUuid() : null);
+    defaultIssue.setComponentKey(issue.hasComponentKey() ? issue.getComponentKey() : null);
+    defaultIssue.setModuleUuid(issue.hasModuleUuid() ? issue.getModuleUuid() : null);
+    defaultIssue.setModuleUuidPath(issue.hasModuleUuidPath() ? issue.getModuleUuidPath() : null);
+    defaultIssue.setProjectUuid(issue.hasProjectUuid() ? issue.getProjectUuid() : null);
+    defaultIssue.setProjectKey(issue.hasProjectKey() ? issue.getProjectKey() : null);
+    defaultIssue.setRuleKey(issue.hasRuleKey() ? RuleKey.parse(issue.getRuleKey()) : null);
+    defaultIssue.setLanguage(issue.hasLanguage() ? issue.getLanguage() : null);
+    defaultIssue.setSeverity(issue.hasSeverity() ? issue.getSeverity() : null);
+    defaultIssue.setManualSeverity(issue.getManualSeverity());
+    defaultIssue.setMessage(issue.hasMessage() ? issue.getMessage() : null);
+    defaultIssue.setLine(issue.hasLine() ? issue.getLine() : null);
+    defaultIssue.setGap(issue.hasGap() ? issue.getGap() : null);
+    defaultIssue.setEffort(issue.hasEffort() ? Duration.create(issue.getEffort()) : null);
+    if (issue.hasStatus()) {
+      defaultIssue.setStatus(issue.getStatus());
+    }
+    defaultIssue.setResolution(issue.hasResolution() ? issue.getResolution() : null);
+    defaultIssue.setAssignee(issue.hasAssignee() ? issue.getAssignee() : null);
+    defaultIssue.setChecksum(issue.hasChecksum() ? issue.getChecksum() : null);
+    if (issue.hasAttributes()) {
+      defaultIssue.setAttributes(KeyValueFormat.parse(issue.getAttributes()));
+    }
+    defaultIssue.setAuthorLogin(issue.hasAuthorLogin() ? issue.getAuthorLogin() : null);
+    issue.getCommentsList().forEach(c -> defaultIssue.addComment(toDefaultIssueComment(c)));
+    if (issue.getTagsCount() > 0) {
+      defaultIssue.setTags(issue.getTagsList());
+    }
+    if (issue.hasLocations()) {
+      defaultIssue.setLocations(DbIssues.Locations.parseFrom(issue.getLocations()));
+    }
+    defaultIssue.setCreationDate(issue.hasCreationDate() ? new Date(issue.getCreationDate()) : null);
+    defaultIssue.setUpdateDate(issue.hasUpdateDate() ? new Date(issue.getUpdateDate()) : null);
+    defaultIssue.setCloseDate(issue.hasCloseDate() ? new Date(issue.getCloseDate()) : null);
+    issue.getChangesList().forEach(c -> defaultIssue.addChange(toFieldDiffs(c)));
+    if (issue.hasCurrentChanges()) {
+      defaultIssue.setCurrentChange(toFieldDiffs(issue.getCurrentChanges()));
+    }
+    defaultIssue.setNew(issue.getIsNew());
+    defaultIssue.setBeingClosed(issue.getBeingClosed());
+    defaultIssue.setOnDisabledRule(issue.getOnDisabledRule());
+    defaultIssue.setChanged(issue.getIsChanged());
+    defaultIssue.setSendNotifications(issue.getSendNotifications());
+    defaultIssue.setSelectedAt(issue.hasSelectedAt() ? issue.getSelectedAt() : null);
+    return defaultIssue;
+  }
+
+  private static CeIssueCache.Comment toProto(DefaultIssueComment comment) {
+    CeIssueCache.Comment.Builder builder = CeIssueCache.Comment.newBuilder();
+    setIfNotNull(comment.issueKey(), builder::setIssueKey);
+    setIfNotNull(comment.userLogin(), builder::setUserLogin);
+    setIfNotNull(comment.createdAt(), d -> builder.setCreatedAt(d.getTime()));
+    setIfNotNull(comment.updatedAt(), d -> builder.setUpdatedAt(d.getTime()));
+    setIfNotNull(comment.key(), builder::setKey);
+    setIfNotNull(comment.markdownText(), builder::setMarkdownText);
+    builder.setIsNew(comment.isNew());
+    return builder.build();
+  }
+
+  private static DefaultIssueComment toDefaultIssueComment(CeIssueCache.Comment comment) {
+    return new DefaultIssueComment()
+      .setIssueKey(comment.hasIssueKey() ? comment.getIssueKey() : null)
+      .setUserLogin(comment.hasUserLogin() ? comment.getUserLogin() : null)
+      .setCreatedAt(comment.hasCreatedAt() ? new Date(comment.getCreatedAt()) : null)
+      .setUpdatedAt(comment.hasUpdatedAt() ? new Date(comment.getUpdatedAt()) : null)
+      .setKey(comment.hasKey() ? comment.getKey() : null)
+      .setMarkdownText(comment.hasMarkdownText() ? comment.getMarkdownText() : null)
+      .setNew(comment.getIsNew());
+  }
+
+  private static CeIssueCache.FieldDiffs toProto(FieldDiffs fieldDiffs) {
+    CeIssueCache.FieldDiffs.Builder builder = CeIssueCache.FieldDiffs.newBuilder();
+    setIfNotNull(fieldDiffs.issueKey(), builder::setIssueKey);
+    setIfNotNull(fieldDiffs.userLogin(), builder::setUserLogin);
+    setIfNotNull(fieldDiffs.creationDate(), d -> builder.setCreationDate(d.getTime()));
+    for (Map.Entry<String, FieldDiffs.Diff> entry : fieldDiffs.diffs().entrySet()) {
+      CeIssueCache.Diff.Builder diff = CeIssueCache.Diff.newBuilder().setField(entry.getKey());
+      Serializable oldValue = entry.getValue().oldValue();
+      if (oldValue instanceof String) {
+        diff.setOldValue((String) oldValue);
+      } else if (oldValue != null) {
+        diff.setOldSerializedValue(ByteString.copyFrom(SerializationUtils.serialize(oldValue)));
+      }
+      Serializable newValue = entry.getValue().newValue();
+      if (newValue instanceof String) {
+        diff.setNewValue((String) newValue);
+      } else if (newValue != null) {
+        diff.setNewSerializedValue(ByteString.copyFrom(SerializationUtils.serialize(newValue)));
+      }
+      builder.addDiffs(diff);
+    }
+    return builder.build();
+  }
+
+  private static FieldDiffs toFieldDiffs(CeIssueCache.FieldDiffs fieldDiffs) {
+    FieldDiffs result = new FieldDiffs()
+      .setIssueKey(fieldDiffs.hasIssueKey() ? fieldDiffs.getIssueKey() : null)
+      .setUserLogin(fieldDiffs.hasUserLogin() ? fieldDiffs.getUserLogin() : null)
+      .setCreationDate(fieldDiffs.hasCreationDate() ? new Date(fieldDiffs.getCreationDate()) : null);
+    for (CeIssueCache.Diff diff : fieldDiffs.getDiffsList()) {
+      result.setDiff(diff.getField(),
+        toDiffValue(diff.hasOldValue(), diff.getOldValue(), diff.hasOldSerializedValue(), diff.getOldSerializedValue()),
+        toDiffValue(diff.hasNewValue(), diff.getNewValue(), diff.hasNewSerializedValue(), diff.getNewSerializedValue()));
+    }
+    return result;
+  }
+
+  @CheckForNull
+  private static Serializable toDiffValue(boolean hasValue, String value, boolean hasSerializedValue, ByteString serializedValue) {
+    if (hasValue) {
+      return value;
+    }
+    if (hasSerializedValue) {
+      return (Serializable) SerializationUtils.deserialize(serializedValue.toByteArray());
+    }
+    return null;
+  }
+
+  private static <T> void setIfNotNull(@Nullable T value, Consumer<T> setter) {
+    if (value != null) {
+      setter.accept(value);
+    }
+  }
+}
@@ -19,6 +19,9 @@
  */
 package org.sonar.server.batch;
 
+import com.google.common.collect.ImmutableMap;
+import java.util.HashMap;
+import java.util.Map;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
@@ -26,11 +29,15 @@ import org.sonar.scanner.protocol.input.FileData;
 import org.sonar.scanner.protocol.input.ProjectRepositories;
 import org.sonar.server.ws.TestResponse;
 import org.sonar.server.ws.WsActionTester;
+import org.sonarqube.ws.MediaTypes;
 import org.sonarqube.ws.WsBatch.WsProjectResponse;
 
+import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.sonar.test.JsonAssert.assertJson;
 
@@ -52,7 +59,7 @@ public class ProjectActionTest {
     when(projectReferentials.toJson()).thenReturn("{\"settingsByModule\": {}}");
 
     ArgumentCaptor<ProjectDataQuery> queryArgumentCaptor = ArgumentCaptor.forClass(ProjectDataQuery.class);
-    when(projectDataLoader.load(queryArgumentCaptor.capture())).thenReturn(projectReferentials);
+    mockLoad(projectReferentials, "v1");
 
     TestResponse response = ws.newRequest()
       .setParam("key", projectKey)
@@ -61,6 +68,7 @@ public class ProjectActionTest {
       .execute();
     assertJson(response.getInput()).isSimilarTo("{\"settingsByModule\": {}}");
 
+    verify(projectDataLoader).load(queryArgumentCaptor.capture(), any(ProjectDataLoader.Handler.class));
     assertThat(queryArgumentCaptor.getValue().getModuleKey()).isEqualTo(projectKey);
     assertThat(queryArgumentCaptor.getValue().getProfileName()).isEqualTo("Default");
     assertThat(queryArgumentCaptor.getValue().isIssuesMode()).isFalse();
@@ -74,7 +82,7 @@ public class ProjectActionTest {
     String projectKey = "org.codehaus.sonar:sonar";
 
     ProjectRepositories projectRepositories = new ProjectRepositories().addFileData("module-1", null, new FileData(null, null));
-    when(projectDataLoader.load(any(ProjectDataQuery.class))).thenReturn(projectRepositories);
+    mockLoad(projectRepositories, "v1");
 
     WsProjectResponse wsProjectResponse = ws.newRequest()
       .setParam("key", projectKey)
@@ -82,4 +90,75 @@ public class ProjectActionTest {
       .executeProtobuf(WsProjectResponse.class);
     assertThat(wsProjectResponse.getFileDataByModuleAndPath()).isEmpty();
   }
+
+  @Test
+  public void stream_file_data_by_chunks() throws Exception {
+    ProjectRepositories projectRepositories = new ProjectRepositories()
+      .addSettings("module-1", ImmutableMap.of("sonar.foo", "bar"));
+    for (int i = 0; i < 2_500; i++) {
+      projectRepositories.addFileData(i % 2 == 0 ? "module-1" : "module-2", "src/File" + i + ".java", new FileData("hash" + i, "rev" + i));
+    }
+    mockLoad(projectRepositories, "v1");
+
+    WsProjectResponse streamed = ws.newRequest()
+      .setParam("key", "org.codehaus.sonar:sonar")
+      .setParam("streamed", "true")
+      .executeProtobuf(WsProjectResponse.class);
+    WsProjectResponse inMemory = ws.newRequest()
+      .setParam("key", "org.codehaus.sonar:sonar")
+      .executeProtobuf(WsProjectResponse.class);
+
+    assertThat(streamed.getFileDataByModuleAndPath()).isEmpty();
+    assertThat(streamed.getFileDataChunksList()).hasSize(3);
+    Map<String, Map<String, WsProjectResponse.FileData>> streamedFileData = new HashMap<>();
+    streamed.getFileDataChunksList().forEach(chunk -> chunk.getFileDataByModuleAndPath()
+      .forEach((module, files) -> streamedFileData.computeIfAbsent(module, m -> new HashMap<>()).putAll(files.getFileDataByPath())));
+    assertThat(streamedFileData).hasSize(2);
+    assertThat(streamedFileData.get("module-1")).isEqualTo(inMemory.getFileDataByModuleAndPath().get("module-1").getFileDataByPath());
+    assertThat(streamedFileData.get("module-2")).isEqualTo(inMemory.getFileDataByModuleAndPath().get("module-2").getFileDataByPath());
+    assertThat(streamed.getSettingsByModule()).isEqualTo(inMemory.getSettingsByModule());
+  }
+
+  @Test
+  public void return_etag_and_304_if_data_did_not_change() throws Exception {
+    mockLoad(new ProjectRepositories().addFileData("module-1", "src/Foo.java", new FileData("hash", "rev")), "v1");
+
+    TestResponse response = ws.newRequest()
+      .setParam("key", "org.codehaus.sonar:sonar")
+      .setMediaType(MediaTypes.PROTOBUF)
+      .execute();
+    assertThat(response.getHeader("ETag")).isEqualTo("\"v1\"");
+    assertThat(response.getInputObject(WsProjectResponse.class).getFileDataByModuleAndPath()).containsOnlyKeys("module-1");
+
+    for (String streamed : asList("true", "false")) {
+      TestResponse notModified = ws.newRequest()
+        .setParam("key", "org.codehaus.sonar:sonar")
+        .setParam("streamed", streamed)
+        .setHeader("If-None-Match", "\"v1\"")
+        .setMediaType(MediaTypes.PROTOBUF)
+        .execute();
+      assertThat(notModified.getStatus()).isEqualTo(304);
+      assertThat(notModified.getInput()).isEmpty();
+    }
+
+    TestResponse modified = ws.newRequest()
+      .setParam("key", "org.codehaus.sonar:sonar")
+      .setHeader("If-None-Match", "\"v0\"")
+      .setMediaType(MediaTypes.PROTOBUF)
+      .execute();
+    assertThat(modified.getStatus()).isNotEqualTo(304);
+    assertThat(modified.getInputObject(WsProjectResponse.class).getFileDataByModuleAndPath()).containsOnlyKeys("module-1");
+  }
+
+  private void mockLoad(ProjectRepositories data, String dataVersion) {
+    doAnswer(invocation -> {
+      ProjectDataLoader.Handler handler = (ProjectDataLoader.Handler) invocation.getArguments()[1];
+      ProjectRepositories settings = new ProjectRepositories();
+      data.settings().forEach(settings::addSettings);
+      if (handler.onSettings(settings, dataVersion)) {
+        data.fileDataByModuleAndPath().forEach((module, files) -> files.forEach((path, fileData) -> handler.onFileData(module, path, fileData)));
+      }
+      return null;
+    }).when(projectDataLoader).load(any(ProjectDataQuery.class), any(ProjectDataLoader.Handler.class));
+  }
 }
@@ -19,6 +19,8 @@
  */
 package org.sonar.server.batch;
 
+import java.util.ArrayList;
+import java.util.List;
 import org.junit.After;
 import org.junit.Rule;
 import org.junit.Test;
@@ -33,6 +35,8 @@ import org.sonar.db.DbSession;
 import org.sonar.db.DbTester;
 import org.sonar.db.component.ComponentDto;
 import org.sonar.db.organization.OrganizationDto;
+import org.sonar.db.property.PropertyDto;
+import org.sonar.scanner.protocol.input.FileData;
 import org.sonar.scanner.protocol.input.ProjectRepositories;
 import org.sonar.server.exceptions.BadRequestException;
 import org.sonar.server.exceptions.ForbiddenException;
@@ -181,4 +185,49 @@ public class ProjectDataLoaderTest {
 
     assertThat(repositories).isNotNull();
   }
+
+  @Test
+  public void data_version_changes_when_project_is_analyzed_or_settings_are_changed() {
+    ComponentDto project = dbTester.components().insertPrivateProject();
+    userSession.logIn().addProjectPermission(GlobalPermissions.SCAN_EXECUTION, project);
+    ProjectDataQuery query = ProjectDataQuery.create().setModuleKey(project.getDbKey());
+
+    String initialVersion = loadDataVersion(query);
+    assertThat(loadDataVersion(query)).isEqualTo(initialVersion);
+
+    dbTester.components().insertSnapshot(project, s -> s.setLast(true));
+    String analyzedVersion = loadDataVersion(query);
+    assertThat(analyzedVersion).isNotEqualTo(initialVersion);
+
+    dbTester.properties().insertProperty(new PropertyDto().setKey("sonar.foo").setValue("bar").setResourceId(project.getId()));
+    assertThat(loadDataVersion(query)).isNotEqualTo(analyzedVersion);
+  }
+
+  @Test
+  public void last_analysis_date_is_the_date_of_last_analysis() {
+    ComponentDto project = dbTester.components().insertPrivateProject();
+    userSession.logIn().addProjectPermission(GlobalPermissions.SCAN_EXECUTION, project);
+    ProjectDataQuery query = ProjectDataQuery.create().setModuleKey(project.getDbKey());
+    assertThat(underTest.load(query).lastAnalysisDate()).isNull();
+
+    dbTester.components().insertSnapshot(project, s -> s.setLast(true).setCreatedAt(1_000_000L));
+    assertThat(underTest.load(query).lastAnalysisDate().getTime()).isEqualTo(1_000_000L);
+  }
+
+  private String loadDataVersion(ProjectDataQuery query) {
+    List<String> versions = new ArrayList<>();
+    underTest.load(query, new ProjectDataLoader.Handler() {
+      @Override
+      public boolean onSettings(ProjectRepositories data, String dataVersion) {
+        versions.add(dataVersion);
+        return false;
+      }
+
+      @Override
+      public void onFileData(String moduleKey, String path, FileData fileData) {
+        fail("File data must not be loaded");
+      }
+    });
+    return versions.get(0);
+  }
 }
@@ -36,6 +36,7 @@ import org.sonar.server.es.EsTester;
 import org.sonar.server.es.IndexingResult;
 import org.sonar.server.es.ProjectIndexer;
 
+import static java.util.Arrays.asList;
 import static java.util.Collections.emptySet;
 import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -82,6 +83,18 @@ public class ComponentIndexerTest {
   }
 
 
+  @Test
+  public void indexOnStartup_with_root_uuids_indexes_components_of_these_roots_only() {
+    ComponentDto project1 = db.components().insertPrivateProject();
+    ComponentDto file1 = db.components().insertComponent(newFileDto(project1));
+    ComponentDto project2 = db.components().insertPrivateProject();
+    db.components().insertPrivateProject();
+
+    underTest.indexOnStartup(emptySet(), asList(project1.uuid(), project2.uuid()));
+
+    assertThatIndexContainsOnly(project1, file1, project2);
+  }
+
   @Test
   public void indexOnAnalysis_indexes_project() {
     ComponentDto project = db.components().insertPrivateProject();
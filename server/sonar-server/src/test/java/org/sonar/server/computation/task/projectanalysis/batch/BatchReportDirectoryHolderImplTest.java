@@ -39,4 +39,15 @@ public class BatchReportDirectoryHolderImplTest {
 
     assertThat(holder.getDirectory()).isSameAs(file);
   }
+
+  @Test
+  public void getZipFile_returns_File_set_with_setZipFile() {
+    File file = new File("report.zip");
+    BatchReportDirectoryHolderImpl holder = new BatchReportDirectoryHolderImpl();
+    assertThat(holder.getZipFile()).isNull();
+
+    holder.setZipFile(file);
+
+    assertThat(holder.getZipFile()).isSameAs(file);
+  }
 }
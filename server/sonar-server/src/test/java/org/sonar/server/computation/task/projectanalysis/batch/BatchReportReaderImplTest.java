@@ -19,12 +19,21 @@
  */
 package org.sonar.server.computation.task.projectanalysis.batch;
 
+import com.google.common.collect.Lists;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.apache.commons.io.FileUtils;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.sonar.api.utils.ZipUtils;
 import org.sonar.api.utils.internal.JUnitTempFolder;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.scanner.protocol.output.ScannerReport;
@@ -75,6 +84,7 @@ public class BatchReportReaderImplTest {
     ScannerReport.Metadata metadata = ScannerReport.Metadata.newBuilder().build();
 
     writer.writeMetadata(metadata);
+    writer.close();
 
     ScannerReport.Metadata res = underTest.readMetadata();
     assertThat(res).isEqualTo(metadata);
@@ -104,6 +114,7 @@ public class BatchReportReaderImplTest {
   @Test
   public void verify_readComponentMeasures_returns_measures() {
     writer.writeComponentMeasures(COMPONENT_REF, of(MEASURE));
+    writer.close();
 
     try (CloseableIterator<ScannerReport.Measure> measures = underTest.readComponentMeasures(COMPONENT_REF)) {
       assertThat(measures.next()).isEqualTo(MEASURE);
@@ -114,6 +125,7 @@ public class BatchReportReaderImplTest {
   @Test
   public void readComponentMeasures_is_not_cached() {
     writer.writeComponentMeasures(COMPONENT_REF, of(MEASURE));
+    writer.close();
 
     assertThat(underTest.readComponentMeasures(COMPONENT_REF)).isNotSameAs(underTest.readComponentMeasures(COMPONENT_REF));
   }
@@ -126,6 +138,7 @@ public class BatchReportReaderImplTest {
   @Test
   public void verify_readChangesets_returns_changesets() {
     writer.writeComponentChangesets(CHANGESETS);
+    writer.close();
 
     ScannerReport.Changesets res = underTest.readChangesets(COMPONENT_REF);
     assertThat(res).isEqualTo(CHANGESETS);
@@ -134,6 +147,7 @@ public class BatchReportReaderImplTest {
   @Test
   public void readChangesets_is_not_cached() {
     writer.writeComponentChangesets(CHANGESETS);
+    writer.close();
 
     assertThat(underTest.readChangesets(COMPONENT_REF)).isNotSameAs(underTest.readChangesets(COMPONENT_REF));
   }
@@ -146,6 +160,7 @@ public class BatchReportReaderImplTest {
   @Test
   public void verify_readComponent_returns_Component() {
     writer.writeComponent(COMPONENT);
+    writer.close();
 
     assertThat(underTest.readComponent(COMPONENT_REF)).isEqualTo(COMPONENT);
   }
@@ -153,6 +168,7 @@ public class BatchReportReaderImplTest {
   @Test
   public void readComponent_is_not_cached() {
     writer.writeComponent(COMPONENT);
+    writer.close();
 
     assertThat(underTest.readComponent(COMPONENT_REF)).isNotSameAs(underTest.readComponent(COMPONENT_REF));
   }
@@ -165,6 +181,7 @@ public class BatchReportReaderImplTest {
   @Test
   public void verify_readComponentIssues_returns_Issues() {
     writer.writeComponentIssues(COMPONENT_REF, of(ISSUE));
+    writer.close();
 
     try (CloseableIterator<ScannerReport.Issue> res = underTest.readComponentIssues(COMPONENT_REF)) {
       assertThat(res.next()).isEqualTo(ISSUE);
@@ -175,6 +192,7 @@ public class BatchReportReaderImplTest {
   @Test
   public void readComponentIssues_it_not_cached() {
     writer.writeComponentIssues(COMPONENT_REF, of(ISSUE));
+    writer.close();
 
     assertThat(underTest.readComponentIssues(COMPONENT_REF)).isNotSameAs(underTest.readComponentIssues(COMPONENT_REF));
   }
@@ -187,6 +205,7 @@ public class BatchReportReaderImplTest {
   @Test
   public void verify_readComponentDuplications_returns_Issues() {
     writer.writeComponentDuplications(COMPONENT_REF, of(DUPLICATION));
+    writer.close();
 
     try (CloseableIterator<ScannerReport.Duplication> res = underTest.readComponentDuplications(COMPONENT_REF)) {
       assertThat(res.next()).isEqualTo(DUPLICATION);
@@ -197,6 +216,7 @@ public class BatchReportReaderImplTest {
   @Test
   public void readComponentDuplications_it_not_cached() {
     writer.writeComponentDuplications(COMPONENT_REF, of(DUPLICATION));
+    writer.close();
 
     assertThat(underTest.readComponentDuplications(COMPONENT_REF)).isNotSameAs(underTest.readComponentDuplications(COMPONENT_REF));
   }
@@ -209,6 +229,7 @@ public class BatchReportReaderImplTest {
   @Test
   public void verify_readComponentDuplicationBlocks_returns_Issues() {
     writer.writeCpdTextBlocks(COMPONENT_REF, of(DUPLICATION_BLOCK));
+    writer.close();
 
     try (CloseableIterator<ScannerReport.CpdTextBlock> res = underTest.readCpdTextBlocks(COMPONENT_REF)) {
       assertThat(res.next()).isEqualTo(DUPLICATION_BLOCK);
@@ -219,6 +240,7 @@ public class BatchReportReaderImplTest {
   @Test
   public void readComponentDuplicationBlocks_is_not_cached() {
     writer.writeCpdTextBlocks(COMPONENT_REF, of(DUPLICATION_BLOCK));
+    writer.close();
 
     assertThat(underTest.readCpdTextBlocks(COMPONENT_REF)).isNotSameAs(underTest.readCpdTextBlocks(COMPONENT_REF));
   }
@@ -231,6 +253,7 @@ public class BatchReportReaderImplTest {
   @Test
   public void verify_readComponentSymbols_returns_Issues() {
     writer.writeComponentSymbols(COMPONENT_REF, of(SYMBOL));
+    writer.close();
 
     try (CloseableIterator<ScannerReport.Symbol> res = underTest.readComponentSymbols(COMPONENT_REF)) {
       assertThat(res.next()).isEqualTo(SYMBOL);
@@ -241,6 +264,7 @@ public class BatchReportReaderImplTest {
   @Test
   public void readComponentSymbols_it_not_cached() {
     writer.writeComponentSymbols(COMPONENT_REF, of(SYMBOL));
+    writer.close();
 
     assertThat(underTest.readComponentSymbols(COMPONENT_REF)).isNotSameAs(underTest.readComponentSymbols(COMPONENT_REF));
   }
@@ -253,6 +277,7 @@ public class BatchReportReaderImplTest {
   @Test
   public void verify_readComponentSyntaxHighlighting() {
     writer.writeComponentSyntaxHighlighting(COMPONENT_REF, of(SYNTAX_HIGHLIGHTING_1, SYNTAX_HIGHLIGHTING_2));
+    writer.close();
 
     CloseableIterator<ScannerReport.SyntaxHighlightingRule> res = underTest.readComponentSyntaxHighlighting(COMPONENT_REF);
     assertThat(res).containsExactly(SYNTAX_HIGHLIGHTING_1, SYNTAX_HIGHLIGHTING_2);
@@ -267,6 +292,7 @@ public class BatchReportReaderImplTest {
   @Test
   public void verify_readComponentCoverage() {
     writer.writeComponentCoverage(COMPONENT_REF, of(COVERAGE_1, COVERAGE_2));
+    writer.close();
 
     CloseableIterator<ScannerReport.LineCoverage> res = underTest.readComponentCoverage(COMPONENT_REF);
     assertThat(res).containsExactly(COVERAGE_1, COVERAGE_2);
@@ -296,6 +322,7 @@ public class BatchReportReaderImplTest {
   @Test
   public void verify_readTests() {
     writer.writeTests(COMPONENT_REF, of(TEST_1, TEST_2));
+    writer.close();
 
     CloseableIterator<ScannerReport.Test> res = underTest.readTests(COMPONENT_REF);
     assertThat(res).containsExactly(TEST_1, TEST_2);
@@ -310,9 +337,84 @@ public class BatchReportReaderImplTest {
   @Test
   public void verify_readCoverageDetails() {
     writer.writeCoverageDetails(COMPONENT_REF, of(COVERAGE_DETAIL_1, COVERAGE_DETAIL_2));
+    writer.close();
 
     CloseableIterator<ScannerReport.CoverageDetail> res = underTest.readCoverageDetails(COMPONENT_REF);
     assertThat(res).containsExactly(COVERAGE_DETAIL_1, COVERAGE_DETAIL_2);
     res.close();
   }
+
+  @Test
+  public void read_report_from_zip_file_by_extracting_only_the_entries_which_are_read() throws IOException {
+    writer.writeMetadata(ScannerReport.Metadata.newBuilder().setRootComponentRef(COMPONENT_REF).build());
+    writer.writeComponent(COMPONENT);
+    writer.writeComponentIssues(COMPONENT_REF, of(ISSUE));
+    writer.writeComponentMeasures(COMPONENT_REF, of(MEASURE));
+    writer.writeTests(COMPONENT_REF, of(TEST_1, TEST_2));
+    writer.writeCoverageDetails(COMPONENT_REF, of(COVERAGE_DETAIL_1));
+    FileUtils.writeLines(writer.getSourceFile(COMPONENT_REF), of("1", "2", "3"));
+    writer.close();
+    File zipFile = tempFolder.newFile();
+    ZipUtils.zipDir(writer.getFileStructure().root(), zipFile);
+
+    BatchReportDirectoryHolderImpl holder = new BatchReportDirectoryHolderImpl();
+    File dir = tempFolder.newDir();
+    holder.setDirectory(dir);
+    holder.setZipFile(zipFile);
+    underTest = new BatchReportReaderImpl(holder);
+
+    assertThat(underTest.readMetadata().getRootComponentRef()).isEqualTo(COMPONENT_REF);
+    assertThat(underTest.readComponent(COMPONENT_REF)).isEqualTo(COMPONENT);
+    assertThat(underTest.readComponentIssues(COMPONENT_REF)).containsExactly(ISSUE);
+    assertThat(underTest.readComponentIssues(2)).isEmpty();
+    assertThat(underTest.readFileSource(COMPONENT_REF).get()).containsExactly("1", "2", "3");
+    assertThat(underTest.readFileSource(2)).isAbsent();
+    assertThat(underTest.readTests(COMPONENT_REF)).containsExactly(TEST_1, TEST_2);
+    assertThat(underTest.readCoverageDetails(COMPONENT_REF)).containsExactly(COVERAGE_DETAIL_1);
+    assertThat(underTest.readCoverageDetails(2)).isEmpty();
+
+    // measures, sources, tests and coverage details are not extracted
+    assertThat(dir.list()).containsOnly("metadata.pb", "component-segments.pb", "component-segments.idx", "issues-segments.pb", "issues-segments.idx");
+    underTest.stop();
+  }
+
+  @Test
+  public void report_from_zip_file_can_be_read_by_concurrent_threads() throws Exception {
+    writer.writeComponent(COMPONENT);
+    writer.writeTests(COMPONENT_REF, of(TEST_1, TEST_2));
+    FileUtils.writeLines(writer.getSourceFile(COMPONENT_REF), of("1", "2", "3"));
+    writer.close();
+    File zipFile = tempFolder.newFile();
+    ZipUtils.zipDir(writer.getFileStructure().root(), zipFile);
+
+    BatchReportDirectoryHolderImpl holder = new BatchReportDirectoryHolderImpl();
+    holder.setDirectory(tempFolder.newDir());
+    holder.setZipFile(zipFile);
+    underTest = new BatchReportReaderImpl(holder);
+
+    int threads = 8;
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<Boolean>> results = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        boolean readSource = i % 2 == 0;
+        results.add(executor.submit((Callable<Boolean>) () -> {
+          start.await();
+          if (readSource) {
+            return Lists.newArrayList(underTest.readFileSource(COMPONENT_REF).get()).equals(of("1", "2", "3"));
+          }
+          return Lists.newArrayList(underTest.readTests(COMPONENT_REF)).equals(of(TEST_1, TEST_2))
+            && underTest.readComponent(COMPONENT_REF).equals(COMPONENT);
+        }));
+      }
+      start.countDown();
+      for (Future<Boolean> result : results) {
+        assertThat(result.get()).isTrue();
+      }
+    } finally {
+      executor.shutdownNow();
+      underTest.stop();
+    }
+  }
 }
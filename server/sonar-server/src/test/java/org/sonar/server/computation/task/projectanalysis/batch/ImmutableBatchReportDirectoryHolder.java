@@ -33,4 +33,9 @@ public class ImmutableBatchReportDirectoryHolder implements BatchReportDirectory
   public File getDirectory() {
     return directory;
   }
+
+  @Override
+  public File getZipFile() {
+    return null;
+  }
 }
@@ -489,6 +489,13 @@ public class ComponentRootBuilderTest {
     assertThat(createFileAttributes(newBuilder().setType(FILE).setLines(10).build()).getLines()).isEqualTo(10);
   }
 
+  @Test
+  public void createFileAttributes_sets_unchanged_when_status_is_SAME_in_Scanner_Component() {
+    assertThat(createFileAttributes(newBuilder().setType(FILE).setLines(1).build()).isUnchanged()).isFalse();
+    assertThat(createFileAttributes(newBuilder().setType(FILE).setLines(1).setStatus(ScannerReport.Component.FileStatus.CHANGED).build()).isUnchanged()).isFalse();
+    assertThat(createFileAttributes(newBuilder().setType(FILE).setLines(1).setStatus(ScannerReport.Component.FileStatus.SAME).build()).isUnchanged()).isTrue();
+  }
+
   @Test
   public void fail_with_IAE_when_createFileAttributes_lines_is_not_set() throws Exception {
     expectedException.expect(IllegalArgumentException.class);
@@ -73,7 +73,8 @@ public class FileAttributesTest {
 
   @Test
   public void test_toString() throws Exception {
-    assertThat(new FileAttributes(true, "java", 10).toString()).isEqualTo("FileAttributes{languageKey='java', unitTest=true, lines=10}");
-    assertThat(new FileAttributes(false, null, 1).toString()).isEqualTo("FileAttributes{languageKey='null', unitTest=false, lines=1}");
+    assertThat(new FileAttributes(true, "java", 10).toString()).isEqualTo("FileAttributes{languageKey='java', unitTest=true, lines=10, unchanged=false}");
+    assertThat(new FileAttributes(false, null, 1).toString()).isEqualTo("FileAttributes{languageKey='null', unitTest=false, lines=1, unchanged=false}");
+    assertThat(new FileAttributes(false, null, 1, true).toString()).isEqualTo("FileAttributes{languageKey='null', unitTest=false, lines=1, unchanged=true}");
   }
 }
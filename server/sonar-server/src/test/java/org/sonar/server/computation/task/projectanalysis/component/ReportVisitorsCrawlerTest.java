@@ -19,7 +19,11 @@
  */
 package org.sonar.server.computation.task.projectanalysis.component;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -119,6 +123,39 @@ public class ReportVisitorsCrawlerTest {
     assertThat(underTest.getCumulativeDurations()).hasSize(2);
   }
 
+  @Test
+  public void prepare_files_of_directory_in_pool_before_visiting_them() throws Exception {
+    Component file6 = component(FILE, 6);
+    Component file7 = component(FILE, 7);
+    Component file9 = component(FILE, 9);
+    Component tree = component(PROJECT, 1, component(DIRECTORY, 5, file6, file7), component(DIRECTORY, 8, file9));
+    TestFileLocalVisitor fileLocalVisitor = new TestFileLocalVisitor();
+    ForkJoinPool pool = new ForkJoinPool(2);
+    try {
+      new VisitorsCrawler(Arrays.asList(spyPostOrderTypeAwareVisitor, fileLocalVisitor), false, pool).visit(tree);
+    } finally {
+      pool.shutdown();
+    }
+
+    assertThat(fileLocalVisitor.prepared).containsOnly(file6, file7, file9);
+    assertThat(fileLocalVisitor.visited).containsExactly(file6, file7, file9);
+    // files of a directory are prepared before the first of them is visited, but not the files of the next directory
+    assertThat(fileLocalVisitor.preparedWhenVisited).containsExactly(2, 2, 3);
+    InOrder inOrder = inOrder(spyPostOrderTypeAwareVisitor);
+    inOrder.verify(spyPostOrderTypeAwareVisitor).visitFile(file6);
+    inOrder.verify(spyPostOrderTypeAwareVisitor).visitFile(file7);
+    inOrder.verify(spyPostOrderTypeAwareVisitor).visitFile(file9);
+  }
+
+  @Test
+  public void do_not_prepare_files_without_pool() throws Exception {
+    TestFileLocalVisitor fileLocalVisitor = new TestFileLocalVisitor();
+    new VisitorsCrawler(Arrays.asList(fileLocalVisitor)).visit(COMPONENT_TREE);
+
+    assertThat(fileLocalVisitor.prepared).isEmpty();
+    assertThat(fileLocalVisitor.visited).containsExactly(FILE_5);
+  }
+
   @Test
   public void fail_with_IAE_when_visitor_is_not_path_aware_or_type_aware() throws Exception {
     thrown.expect(IllegalArgumentException.class);
@@ -149,6 +186,27 @@ public class ReportVisitorsCrawlerTest {
     }
   }
 
+  private static class TestFileLocalVisitor extends TypeAwareVisitorAdapter implements FileLocalVisitor {
+    private final List<Component> prepared = Collections.synchronizedList(new ArrayList<>());
+    private final List<Component> visited = new ArrayList<>();
+    private final List<Integer> preparedWhenVisited = new ArrayList<>();
+
+    public TestFileLocalVisitor() {
+      super(CrawlerDepthLimit.FILE, POST_ORDER);
+    }
+
+    @Override
+    public void prepareFile(Component file) {
+      prepared.add(file);
+    }
+
+    @Override
+    public void visitFile(Component file) {
+      visited.add(file);
+      preparedWhenVisited.add(prepared.size());
+    }
+  }
+
   private static class TestPathAwareVisitor extends PathAwareVisitorAdapter<Integer> {
 
     public TestPathAwareVisitor(CrawlerDepthLimit maxDepth, ComponentVisitor.Order order) {
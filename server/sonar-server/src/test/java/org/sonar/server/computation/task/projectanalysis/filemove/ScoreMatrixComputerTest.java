@@ -0,0 +1,134 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.filemove;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+import org.sonar.server.computation.task.projectanalysis.filemove.FileSimilarity.File;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.server.computation.task.projectanalysis.filemove.FileMoveDetectionStep.MIN_REQUIRED_SCORE;
+
+public class ScoreMatrixComputerTest {
+
+  private FileSimilarity fileSimilarity = new FileSimilarityImpl(new SourceSimilarityImpl());
+
+  @Test
+  public void maxDistance_is_the_greatest_distance_reaching_min_required_score() {
+    for (int size = 1; size < 1_000; size++) {
+      int maxDistance = ScoreMatrixComputer.maxDistance(size);
+
+      assertThat(SourceSimilarityImpl.score(maxDistance, size)).isGreaterThanOrEqualTo(MIN_REQUIRED_SCORE);
+      if (maxDistance < size) {
+        assertThat(SourceSimilarityImpl.score(maxDistance + 1, size)).isLessThan(MIN_REQUIRED_SCORE);
+      }
+    }
+  }
+
+  @Test
+  public void stores_only_scores_greater_than_or_equal_to_min_required_score() {
+    Map<String, File> dbFiles = new LinkedHashMap<>();
+    dbFiles.put("A", file("a", "b", "c", "d", "e", "f", "g", "h", "i", "j"));
+    dbFiles.put("B", file("a", "b", "c", "d", "e", "f", "g", "h", "i", "j"));
+    dbFiles.put("C", file());
+    Map<String, File> reportFiles = new LinkedHashMap<>();
+    reportFiles.put("1", file("a", "b", "c", "d", "e", "f", "g", "h", "i", "z"));
+    reportFiles.put("2", file("a", "b", "c", "d", "e", "f", "g", "h", "y", "z"));
+    reportFiles.put("3", file());
+
+    ScoreMatrix scoreMatrix = new ScoreMatrixComputer(fileSimilarity, 2).compute(dbFiles, reportFiles);
+
+    assertThat(scoreMatrix.getMaxScore()).isEqualTo(90);
+    assertThat(scoreMatrix.toCsv(';')).isEqualTo("\nA;1;90\nB;1;90");
+  }
+
+  @Test
+  public void stores_same_scores_as_computing_score_of_all_pairs() {
+    Random random = new Random(42);
+    List<String> lines = new ArrayList<>();
+    for (int i = 0; i < 40; i++) {
+      lines.add("line" + i);
+    }
+    Map<String, File> dbFiles = new LinkedHashMap<>();
+    Map<String, File> reportFiles = new LinkedHashMap<>();
+    for (int i = 0; i < 60; i++) {
+      File dbFile = randomFile(random, lines);
+      dbFiles.put("db" + i, dbFile);
+      reportFiles.put("report" + i, i % 3 == 0 ? randomFile(random, lines) : mutate(random, dbFile, lines));
+    }
+
+    String expected = scoreAllPairs(dbFiles, reportFiles);
+    assertThat(expected).isNotEmpty();
+
+    assertThat(new ScoreMatrixComputer(fileSimilarity, 1).compute(dbFiles, reportFiles).toCsv(';')).isEqualTo(expected);
+    assertThat(new ScoreMatrixComputer(fileSimilarity, 4).compute(dbFiles, reportFiles).toCsv(';')).isEqualTo(expected);
+  }
+
+  private String scoreAllPairs(Map<String, File> dbFiles, Map<String, File> reportFiles) {
+    StringBuilder res = new StringBuilder();
+    dbFiles.forEach((dbKey, dbFile) -> reportFiles.forEach((reportKey, reportFile) -> {
+      int score = fileSimilarity.score(dbFile, reportFile);
+      if (score >= MIN_REQUIRED_SCORE) {
+        res.append('\n').append(dbKey).append(';').append(reportKey).append(';').append(score);
+      }
+    }));
+    return res.toString();
+  }
+
+  private static File randomFile(Random random, List<String> lines) {
+    int size = 1 + random.nextInt(30);
+    List<String> lineHashes = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      lineHashes.add(lines.get(random.nextInt(lines.size())));
+    }
+    return new File("path", lineHashes);
+  }
+
+  private static File mutate(Random random, File file, List<String> lines) {
+    List<String> lineHashes = new ArrayList<>(file.getLineHashes());
+    int changes = random.nextInt(1 + lineHashes.size() / 4);
+    for (int i = 0; i < changes; i++) {
+      int index = random.nextInt(lineHashes.size());
+      switch (random.nextInt(3)) {
+        case 0:
+          lineHashes.set(index, lines.get(random.nextInt(lines.size())));
+          break;
+        case 1:
+          lineHashes.add(index, lines.get(random.nextInt(lines.size())));
+          break;
+        default:
+          if (lineHashes.size() > 1) {
+            lineHashes.remove(index);
+          }
+      }
+    }
+    return new File("path", lineHashes);
+  }
+
+  private static File file(String... lineHashes) {
+    return new File("path", lineHashes.length == 0 ? emptyList() : asList(lineHashes));
+  }
+}
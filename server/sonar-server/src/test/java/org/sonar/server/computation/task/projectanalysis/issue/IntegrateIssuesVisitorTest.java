@@ -44,11 +44,12 @@ import org.sonar.scanner.protocol.Constants;
 import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReaderRule;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.FileAttributes;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
-import org.sonar.server.computation.task.projectanalysis.component.TypeAwareVisitor;
 import org.sonar.server.computation.task.projectanalysis.filemove.MovedFilesRepository;
 import org.sonar.server.computation.task.projectanalysis.issue.commonrule.CommonRuleEngineImpl;
 import org.sonar.server.computation.task.projectanalysis.issue.filter.IssueFilter;
+import org.sonar.server.computation.task.projectanalysis.qualityprofile.ActiveRule;
 import org.sonar.server.computation.task.projectanalysis.qualityprofile.ActiveRulesHolderRule;
 import org.sonar.server.computation.task.projectanalysis.source.SourceLinesRepositoryRule;
 
@@ -59,6 +60,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.sonar.server.computation.task.projectanalysis.component.ReportComponent.builder;
@@ -116,7 +118,7 @@ public class IntegrateIssuesVisitorTest {
   IssueVisitors issueVisitors = new IssueVisitors(new IssueVisitor[] {issueVisitor});
   ComponentsWithUnprocessedIssues componentsWithUnprocessedIssues = new ComponentsWithUnprocessedIssues();
 
-  TypeAwareVisitor underTest;
+  IntegrateIssuesVisitor underTest;
 
   @Before
   public void setUp() throws Exception {
@@ -187,6 +189,31 @@ public class IntegrateIssuesVisitorTest {
     assertThat(componentsWithUnprocessedIssues.getUuids()).isEmpty();
   }
 
+  @Test
+  public void process_existing_issue_with_base_data_loaded_by_prepareFile() throws Exception {
+    componentsWithUnprocessedIssues.setUuids(newHashSet(FILE_UUID));
+    RuleKey ruleKey = RuleTesting.XOO_X1;
+    addBaseIssue(ruleKey);
+    ScannerReport.Issue reportIssue = ScannerReport.Issue.newBuilder()
+      .setMsg("the message")
+      .setRuleRepository(ruleKey.repository())
+      .setRuleKey(ruleKey.rule())
+      .setSeverity(Constants.Severity.BLOCKER)
+      .build();
+    reportReader.putIssues(FILE_REF, asList(reportIssue));
+    fileSourceRepository.addLine(FILE_REF, "line1");
+
+    underTest.prepareFile(FILE);
+    // base data must not be loaded again from db
+    dbTester.executeUpdateSql("delete from issues");
+    underTest.visitAny(FILE);
+
+    ArgumentCaptor<DefaultIssue> baseIssueCaptor = ArgumentCaptor.forClass(DefaultIssue.class);
+    verify(issueLifecycle).mergeExistingOpenIssue(any(DefaultIssue.class), baseIssueCaptor.capture());
+    assertThat(baseIssueCaptor.getValue().key()).isEqualTo("ISSUE");
+    assertThat(newArrayList(issueCache.traverse())).hasSize(1);
+  }
+
   @Test
   public void execute_issue_visitors() throws Exception {
     componentsWithUnprocessedIssues.setUuids(Collections.<String>emptySet());
@@ -225,6 +252,33 @@ public class IntegrateIssuesVisitorTest {
     assertThat(componentsWithUnprocessedIssues.getUuids()).isEmpty();
   }
 
+  @Test
+  public void copy_existing_open_issues_of_unchanged_file() throws Exception {
+    Component unchangedFile = builder(Component.Type.FILE, FILE_REF)
+      .setKey(FILE_KEY)
+      .setUuid(FILE_UUID)
+      .setFileAttributes(new FileAttributes(false, null, 1, true))
+      .build();
+    treeRootHolder.setRoot(builder(Component.Type.PROJECT, PROJECT_REF).setKey(PROJECT_KEY).setUuid(PROJECT_UUID).addChildren(unchangedFile).build());
+    componentsWithUnprocessedIssues.setUuids(newHashSet(FILE_UUID));
+    RuleKey ruleKey = RuleTesting.XOO_X1;
+    activeRulesHolderRule.put(new ActiveRule(ruleKey, Severity.MAJOR, Collections.emptyMap(), 0L));
+    addBaseIssue(ruleKey);
+
+    underTest.visitAny(unchangedFile);
+
+    verify(issueLifecycle).doAutomaticTransition(defaultIssueCaptor.capture());
+    DefaultIssue issue = defaultIssueCaptor.getValue();
+    assertThat(issue.key()).isEqualTo("ISSUE");
+    assertThat(issue.isBeingClosed()).isFalse();
+    assertThat(issue.isChanged()).isFalse();
+    verify(issueLifecycle, never()).mergeExistingOpenIssue(any(DefaultIssue.class), any(DefaultIssue.class));
+    verify(issueVisitor).onIssue(unchangedFile, issue);
+    assertThat(newArrayList(issueCache.traverse())).hasSize(1);
+    assertThat(componentIssuesRepository.getIssues(FILE_REF)).hasSize(1);
+    assertThat(componentsWithUnprocessedIssues.getUuids()).isEmpty();
+  }
+
   @Test
   public void feed_component_issues_repo() throws Exception {
     componentsWithUnprocessedIssues.setUuids(Collections.<String>emptySet());
@@ -0,0 +1,165 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.measure;
+
+import com.google.common.collect.SetMultimap;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.Developer;
+import org.sonar.server.computation.task.projectanalysis.component.DumbDeveloper;
+import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
+import org.sonar.server.computation.task.projectanalysis.measure.MapBasedRawMeasureRepository.OverridePolicy;
+import org.sonar.server.computation.task.projectanalysis.metric.Metric;
+import org.sonar.server.computation.task.projectanalysis.metric.MetricImpl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.guava.api.Assertions.assertThat;
+import static org.sonar.server.computation.task.projectanalysis.measure.Measure.newMeasureBuilder;
+
+public class ColumnarRawMeasureRepositoryTest {
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  private static final ReportComponent FILE_COMPONENT = ReportComponent.builder(Component.Type.FILE, 1).setKey("file").build();
+  private static final ReportComponent OTHER_COMPONENT = ReportComponent.builder(Component.Type.FILE, 2).setKey("other file").build();
+  private static final ReportComponent FAR_COMPONENT = ReportComponent.builder(Component.Type.FILE, 100_000).setKey("far file").build();
+  private static final Developer SOME_DEVELOPER = new DumbDeveloper("DEV1");
+
+  private static final Metric INT_METRIC = new MetricImpl(1, "int", "Int", Metric.MetricType.INT);
+  private static final Metric LONG_METRIC = new MetricImpl(2, "long", "Long", Metric.MetricType.WORK_DUR);
+  private static final Metric DOUBLE_METRIC = new MetricImpl(3, "double", "Double", Metric.MetricType.FLOAT);
+  private static final Metric BOOLEAN_METRIC = new MetricImpl(4, "boolean", "Boolean", Metric.MetricType.BOOL);
+  private static final Metric STRING_METRIC = new MetricImpl(5, "string", "String", Metric.MetricType.STRING);
+  private static final Metric LEVEL_METRIC = new MetricImpl(6, "level", "Level", Metric.MetricType.LEVEL);
+
+  private ColumnarRawMeasureRepository underTest = new ColumnarRawMeasureRepository();
+
+  @Test
+  public void getBaseMeasure_is_not_supported() {
+    expectedException.expect(UnsupportedOperationException.class);
+
+    underTest.getBaseMeasure(FILE_COMPONENT, INT_METRIC);
+  }
+
+  @Test
+  public void primitive_measures_are_read_with_their_value_and_variation() {
+    underTest.add(FILE_COMPONENT, INT_METRIC, newMeasureBuilder().setVariation(-3d).create(12));
+    underTest.add(FILE_COMPONENT, LONG_METRIC, newMeasureBuilder().create(Long.MAX_VALUE >> 12));
+    underTest.add(FILE_COMPONENT, DOUBLE_METRIC, newMeasureBuilder().setVariation(0.5d).create(1.23456d, 4));
+    underTest.add(FILE_COMPONENT, BOOLEAN_METRIC, newMeasureBuilder().create(true));
+
+    Measure intMeasure = underTest.getRawMeasure(FILE_COMPONENT, INT_METRIC).get();
+    assertThat(intMeasure.getIntValue()).isEqualTo(12);
+    assertThat(intMeasure.getVariation()).isEqualTo(-3d);
+    Measure longMeasure = underTest.getRawMeasure(FILE_COMPONENT, LONG_METRIC).get();
+    assertThat(longMeasure.getLongValue()).isEqualTo(Long.MAX_VALUE >> 12);
+    assertThat(longMeasure.hasVariation()).isFalse();
+    Measure doubleMeasure = underTest.getRawMeasure(FILE_COMPONENT, DOUBLE_METRIC).get();
+    assertThat(doubleMeasure.getDoubleValue()).isEqualTo(1.2346d);
+    assertThat(doubleMeasure.getVariation()).isEqualTo(0.5d);
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, BOOLEAN_METRIC).get().getBooleanValue()).isTrue();
+  }
+
+  @Test
+  public void no_value_measures_are_read_with_their_variation() {
+    underTest.add(FILE_COMPONENT, INT_METRIC, newMeasureBuilder().setVariation(7d).createNoValue());
+    underTest.add(OTHER_COMPONENT, INT_METRIC, newMeasureBuilder().createNoValue());
+
+    Measure measure = underTest.getRawMeasure(FILE_COMPONENT, INT_METRIC).get();
+    assertThat(measure.getValueType()).isEqualTo(Measure.ValueType.NO_VALUE);
+    assertThat(measure.getVariation()).isEqualTo(7d);
+    assertThat(underTest.getRawMeasure(OTHER_COMPONENT, INT_METRIC).get().hasVariation()).isFalse();
+  }
+
+  @Test
+  public void measures_which_are_not_primitives_are_returned_as_added() {
+    Measure stringMeasure = newMeasureBuilder().create("some value");
+    Measure levelMeasure = newMeasureBuilder().create(Measure.Level.ERROR);
+    Measure measureWithData = newMeasureBuilder().create(5, "some data");
+    Measure measureWithQualityGateStatus = newMeasureBuilder().setQualityGateStatus(new QualityGateStatus(Measure.Level.OK)).create(3.2d, 1);
+
+    underTest.add(FILE_COMPONENT, STRING_METRIC, stringMeasure);
+    underTest.add(FILE_COMPONENT, LEVEL_METRIC, levelMeasure);
+    underTest.add(FILE_COMPONENT, INT_METRIC, measureWithData);
+    underTest.add(FILE_COMPONENT, DOUBLE_METRIC, measureWithQualityGateStatus);
+
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, STRING_METRIC).get()).isSameAs(stringMeasure);
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, LEVEL_METRIC).get()).isSameAs(levelMeasure);
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, INT_METRIC).get()).isSameAs(measureWithData);
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, DOUBLE_METRIC).get()).isSameAs(measureWithQualityGateStatus);
+  }
+
+  @Test
+  public void update_replaces_measure_stored_as_object_by_primitive_and_conversely() {
+    Measure measureWithData = newMeasureBuilder().create(5, "some data");
+    underTest.add(FILE_COMPONENT, INT_METRIC, measureWithData);
+
+    underTest.update(FILE_COMPONENT, INT_METRIC, newMeasureBuilder().create(6));
+    Measure measure = underTest.getRawMeasure(FILE_COMPONENT, INT_METRIC).get();
+    assertThat(measure.getIntValue()).isEqualTo(6);
+    assertThat(measure.getData()).isNull();
+
+    underTest.update(FILE_COMPONENT, INT_METRIC, measureWithData);
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, INT_METRIC).get()).isSameAs(measureWithData);
+  }
+
+  @Test
+  public void measures_are_stored_by_component_ref() {
+    underTest.add(FILE_COMPONENT, INT_METRIC, newMeasureBuilder().create(1));
+    underTest.add(FAR_COMPONENT, INT_METRIC, newMeasureBuilder().create(2));
+
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, INT_METRIC).get().getIntValue()).isEqualTo(1);
+    assertThat(underTest.getRawMeasure(FAR_COMPONENT, INT_METRIC).get().getIntValue()).isEqualTo(2);
+    assertThat(underTest.getRawMeasure(OTHER_COMPONENT, INT_METRIC)).isAbsent();
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, LONG_METRIC)).isAbsent();
+    assertThat(underTest.getRawMeasure(ReportComponent.builder(Component.Type.FILE, 200_000).build(), INT_METRIC)).isAbsent();
+  }
+
+  @Test
+  public void add_with_DO_NOT_OVERRIDE_policy_keeps_existing_measure() {
+    underTest.add(FILE_COMPONENT, INT_METRIC, newMeasureBuilder().create(1));
+
+    underTest.add(FILE_COMPONENT, INT_METRIC, newMeasureBuilder().create(2), OverridePolicy.DO_NOT_OVERRIDE);
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, INT_METRIC).get().getIntValue()).isEqualTo(1);
+
+    underTest.add(FILE_COMPONENT, INT_METRIC, newMeasureBuilder().create(3), OverridePolicy.OVERRIDE);
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, INT_METRIC).get().getIntValue()).isEqualTo(3);
+  }
+
+  @Test
+  public void getRawMeasures_returns_measures_of_all_metrics_and_developers_of_component() {
+    Measure stringMeasure = newMeasureBuilder().create("some value");
+    Measure devMeasure = newMeasureBuilder().forDeveloper(SOME_DEVELOPER).create(4);
+    underTest.add(FILE_COMPONENT, INT_METRIC, newMeasureBuilder().create(3));
+    underTest.add(FILE_COMPONENT, INT_METRIC, devMeasure);
+    underTest.add(FILE_COMPONENT, STRING_METRIC, stringMeasure);
+    underTest.add(OTHER_COMPONENT, LONG_METRIC, newMeasureBuilder().create(5L));
+
+    SetMultimap<String, Measure> measures = underTest.getRawMeasures(FILE_COMPONENT);
+
+    assertThat(measures.keySet()).containsOnly(INT_METRIC.getKey(), STRING_METRIC.getKey());
+    assertThat(measures.get(INT_METRIC.getKey())).hasSize(2).contains(devMeasure);
+    assertThat(measures.get(STRING_METRIC.getKey())).containsOnly(stringMeasure);
+    assertThat(underTest.getRawMeasures(FILE_COMPONENT, INT_METRIC)).hasSize(2);
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, INT_METRIC).get().getIntValue()).isEqualTo(3);
+  }
+}
@@ -44,7 +44,9 @@ import org.sonar.scanner.protocol.output.ScannerReport.Measure.StringValue;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReader;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReaderRule;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.FileAttributes;
 import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
 import org.sonar.server.computation.task.projectanalysis.metric.Metric;
 import org.sonar.server.computation.task.projectanalysis.metric.MetricImpl;
 import org.sonar.server.computation.task.projectanalysis.metric.MetricRepository;
@@ -70,6 +72,8 @@ public class MeasureRepositoryImplTest {
   public DbTester dbTester = DbTester.create(System2.INSTANCE);
   @Rule
   public BatchReportReaderRule reportReader = new BatchReportReaderRule();
+  @Rule
+  public TreeRootHolderRule treeRootHolder = new TreeRootHolderRule();
 
   private static final String FILE_COMPONENT_KEY = "file cpt key";
   private static final ReportComponent FILE_COMPONENT = ReportComponent.builder(Component.Type.FILE, 1).setKey(FILE_COMPONENT_KEY).build();
@@ -89,11 +93,11 @@ public class MeasureRepositoryImplTest {
 
   private DbClient dbClient = dbTester.getDbClient();
   private MetricRepository metricRepository = mock(MetricRepository.class);
-  private MeasureRepositoryImpl underTest = new MeasureRepositoryImpl(dbClient, reportReader, metricRepository, reportMetricValidator);
+  private MeasureRepositoryImpl underTest = new MeasureRepositoryImpl(dbClient, reportReader, metricRepository, reportMetricValidator, treeRootHolder);
 
   private DbClient mockedDbClient = mock(DbClient.class);
   private BatchReportReader mockBatchReportReader = mock(BatchReportReader.class);
-  private MeasureRepositoryImpl underTestWithMock = new MeasureRepositoryImpl(mockedDbClient, mockBatchReportReader, metricRepository, reportMetricValidator);
+  private MeasureRepositoryImpl underTestWithMock = new MeasureRepositoryImpl(mockedDbClient, mockBatchReportReader, metricRepository, reportMetricValidator, treeRootHolder);
 
   private DbSession dbSession = dbTester.getSession();
 
@@ -415,6 +419,56 @@ public class MeasureRepositoryImplTest {
     assertThat(rawMeasures.get(METRIC_KEY_2)).containsOnly(Measure.newMeasureBuilder().create("some value"));
   }
 
+  @Test
+  public void getRawMeasure_of_unchanged_file_returns_measures_of_previous_analysis_for_report_metrics_only() {
+    ReportComponent unchangedFile = ReportComponent.builder(Component.Type.FILE, 2).setKey(FILE_COMPONENT_KEY)
+      .setFileAttributes(new FileAttributes(false, null, 1, true)).build();
+    treeRootHolder.setRoot(ReportComponent.builder(Component.Type.PROJECT, 1).addChildren(unchangedFile).build());
+    dbTester.prepareDbUnit(getClass(), "shared.xml");
+    dbClient.measureDao().insert(dbSession, createMeasureDto(METRIC_ID_1, unchangedFile.getUuid(), LAST_ANALYSIS_UUID).setVariation(5d));
+    dbClient.measureDao().insert(dbSession, createMeasureDto(METRIC_ID_2, unchangedFile.getUuid(), LAST_ANALYSIS_UUID));
+    dbSession.commit();
+    when(metric1.getId()).thenReturn(METRIC_ID_1);
+    when(metric2.getId()).thenReturn(METRIC_ID_2);
+    when(metricRepository.getAll()).thenReturn(ImmutableList.of(metric1, metric2));
+    when(reportMetricValidator.validate(METRIC_KEY_1)).thenReturn(true);
+    when(reportMetricValidator.validate(METRIC_KEY_2)).thenReturn(false);
+
+    Optional<Measure> res = underTest.getRawMeasure(unchangedFile, metric1);
+
+    assertThat(res).isPresent();
+    assertThat(res.get().getStringValue()).isEqualTo(SOME_DATA);
+    assertThat(res.get().hasVariation()).isFalse();
+    // metric 2 is computed by the Compute Engine
+    assertThat(underTest.getRawMeasure(unchangedFile, metric2)).isAbsent();
+  }
+
+  @Test
+  public void measures_of_previous_analysis_are_loaded_for_all_unchanged_files_at_once() {
+    ReportComponent unchangedFile = ReportComponent.builder(Component.Type.FILE, 2).setKey(FILE_COMPONENT_KEY)
+      .setFileAttributes(new FileAttributes(false, null, 1, true)).build();
+    ReportComponent otherUnchangedFile = ReportComponent.builder(Component.Type.FILE, 3).setKey("other file key")
+      .setFileAttributes(new FileAttributes(false, null, 1, true)).build();
+    ReportComponent changedFile = ReportComponent.builder(Component.Type.FILE, 4).setKey("changed file key")
+      .setFileAttributes(new FileAttributes(false, null, 1)).build();
+    treeRootHolder.setRoot(ReportComponent.builder(Component.Type.PROJECT, 1).addChildren(unchangedFile, otherUnchangedFile, changedFile).build());
+    dbTester.prepareDbUnit(getClass(), "shared.xml");
+    dbClient.measureDao().insert(dbSession, createMeasureDto(METRIC_ID_1, unchangedFile.getUuid(), LAST_ANALYSIS_UUID));
+    dbClient.measureDao().insert(dbSession, createMeasureDto(METRIC_ID_1, otherUnchangedFile.getUuid(), LAST_ANALYSIS_UUID));
+    dbClient.measureDao().insert(dbSession, createMeasureDto(METRIC_ID_1, changedFile.getUuid(), LAST_ANALYSIS_UUID));
+    dbSession.commit();
+    when(metric1.getId()).thenReturn(METRIC_ID_1);
+    when(metricRepository.getAll()).thenReturn(ImmutableList.of(metric1));
+    when(reportMetricValidator.validate(METRIC_KEY_1)).thenReturn(true);
+
+    assertThat(underTest.getRawMeasure(unchangedFile, metric1)).isPresent();
+    dbTester.executeUpdateSql("delete from project_measures");
+
+    assertThat(underTest.getRawMeasure(otherUnchangedFile, metric1)).isPresent();
+    // measures of changed files are read from the report
+    assertThat(underTest.getRawMeasure(changedFile, metric1)).isAbsent();
+  }
+
   private static MeasureDto createMeasureDto(int metricId, String componentUuid, String analysisUuid) {
     return new MeasureDto()
       .setComponentUuid(componentUuid)
@@ -86,7 +86,7 @@ public class ScmInfoRepositoryImplTest {
   DbClient dbClient = dbTester.getDbClient();
 
   ScmInfoRepositoryImpl underTest = new ScmInfoRepositoryImpl(reportReader, analysisMetadataHolder, dbClient,
-    new SourceHashRepositoryImpl(new SourceLinesRepositoryImpl(reportReader)));
+    new SourceHashRepositoryImpl(new SourceLinesRepositoryImpl(dbTester.getDbClient(), reportReader)));
 
   @Test
   public void read_from_report() throws Exception {
@@ -22,7 +22,11 @@ package org.sonar.server.computation.task.projectanalysis.source;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.sonar.api.utils.System2;
 import org.sonar.core.util.CloseableIterator;
+import org.sonar.db.DbTester;
+import org.sonar.db.protobuf.DbFileSources;
+import org.sonar.db.source.FileSourceDto;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReaderRule;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.FileAttributes;
@@ -41,8 +45,10 @@ public class SourceLinesRepositoryImplTest {
 
   @Rule
   public BatchReportReaderRule reportReader = new BatchReportReaderRule();
+  @Rule
+  public DbTester dbTester = DbTester.create(System2.INSTANCE);
 
-  SourceLinesRepositoryImpl underTest = new SourceLinesRepositoryImpl(reportReader);
+  SourceLinesRepositoryImpl underTest = new SourceLinesRepositoryImpl(dbTester.getDbClient(), reportReader);
 
   @Test
   public void read_lines_from_report() throws Exception {
@@ -89,6 +95,35 @@ public class SourceLinesRepositoryImplTest {
       .build());
   }
 
+  @Test
+  public void read_lines_of_unchanged_file_from_previous_analysis_when_not_in_report() {
+    dbTester.getDbClient().fileSourceDao().insert(dbTester.getSession(), new FileSourceDto()
+      .setProjectUuid("PROJECT_UUID")
+      .setFileUuid(FILE_UUID)
+      .setDataType(FileSourceDto.Type.SOURCE)
+      .setSourceData(DbFileSources.Data.newBuilder()
+        .addLines(DbFileSources.Line.newBuilder().setLine(1).setSource("line1"))
+        .addLines(DbFileSources.Line.newBuilder().setLine(2).setSource("line2"))
+        .build())
+      .setCreatedAt(1_000L)
+      .setUpdatedAt(1_000L));
+    dbTester.commit();
+
+    assertThat(underTest.readLines(createUnchangedComponent(2))).containsOnly("line1", "line2");
+
+    // lines from the report are used when available
+    reportReader.putFileSourceLines(FILE_REF, "line3", "line4");
+    assertThat(underTest.readLines(createUnchangedComponent(2))).containsOnly("line3", "line4");
+  }
+
+  @Test
+  public void fail_with_ISE_when_unchanged_file_has_no_source_in_previous_analysis() {
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("File 'ReportComponent{ref=2, key='FILE_KEY', type=FILE}' has no source code");
+
+    underTest.readLines(createUnchangedComponent(1));
+  }
+
   @Test
   public void fail_with_NPE_to_read_lines_on_null_component() throws Exception {
     thrown.expect(NullPointerException.class);
@@ -113,6 +148,14 @@ public class SourceLinesRepositoryImplTest {
       .build();
   }
 
+  private static Component createUnchangedComponent(int lineCount) {
+    return builder(Component.Type.FILE, FILE_REF)
+      .setKey(FILE_KEY)
+      .setUuid(FILE_UUID)
+      .setFileAttributes(new FileAttributes(false, null, lineCount, true))
+      .build();
+  }
+
   private static void consume(CloseableIterator<String> stringCloseableIterator) {
     try {
       while (stringCloseableIterator.hasNext()) {
@@ -70,7 +70,7 @@ public class ExtractReportStepTest {
   }
 
   @Test
-  public void unzip_report() throws Exception {
+  public void copy_report_without_extracting_it() throws Exception {
     File reportFile = generateReport();
     try (InputStream input = FileUtils.openInputStream(reportFile)) {
       dbTester.getDbClient().ceTaskInputDao().insert(dbTester.getSession(), TASK_UUID, input);
@@ -80,11 +80,11 @@ public class ExtractReportStepTest {
 
     underTest.execute();
 
-    // directory contains the uncompressed report (which contains only metadata.pb in this test)
-    File unzippedDir = reportDirectoryHolder.getDirectory();
-    assertThat(unzippedDir).isDirectory().exists();
-    assertThat(unzippedDir.listFiles()).hasSize(1);
-    assertThat(new File(unzippedDir, "metadata.pb")).hasContent("{metadata}");
+    // entries are extracted on demand in the directory
+    File reportDir = reportDirectoryHolder.getDirectory();
+    assertThat(reportDir).isDirectory().exists();
+    assertThat(reportDir.listFiles()).isEmpty();
+    assertThat(FileUtils.contentEquals(reportDirectoryHolder.getZipFile(), reportFile)).isTrue();
   }
 
   private File generateReport() throws IOException {
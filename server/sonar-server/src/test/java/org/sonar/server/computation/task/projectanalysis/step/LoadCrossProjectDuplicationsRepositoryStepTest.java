@@ -30,6 +30,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.sonar.api.utils.System2;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
@@ -49,13 +50,19 @@ import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.FileAttributes;
 import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
+import org.sonar.server.computation.task.projectanalysis.duplication.CrossProjectDuplicate;
 import org.sonar.server.computation.task.projectanalysis.duplication.CrossProjectDuplicationStatusHolder;
+import org.sonar.server.computation.task.projectanalysis.duplication.Duplication;
 import org.sonar.server.computation.task.projectanalysis.duplication.IntegrateCrossProjectDuplications;
+import org.sonar.server.computation.task.projectanalysis.duplication.TextBlock;
 import org.sonar.server.computation.task.step.ComputationStep;
 
 import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyCollection;
 import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
@@ -73,16 +80,21 @@ public class LoadCrossProjectDuplicationsRepositoryStepTest {
   static final int PROJECT_REF = 1;
   static final int FILE_REF = 2;
   static final String CURRENT_FILE_KEY = "FILE_KEY";
+  static final int SECOND_FILE_REF = 3;
 
   static final Component CURRENT_FILE = ReportComponent.builder(FILE, FILE_REF)
     .setKey(CURRENT_FILE_KEY)
     .setFileAttributes(new FileAttributes(false, XOO_LANGUAGE, 1))
     .build();
+  static final Component SECOND_FILE = ReportComponent.builder(FILE, SECOND_FILE_REF)
+    .setKey("SECOND_FILE_KEY")
+    .setFileAttributes(new FileAttributes(false, XOO_LANGUAGE, 1))
+    .build();
 
   @Rule
   public TreeRootHolderRule treeRootHolder = new TreeRootHolderRule().setRoot(
     ReportComponent.builder(PROJECT, PROJECT_REF)
-      .addChildren(CURRENT_FILE).build());
+      .addChildren(CURRENT_FILE, SECOND_FILE).build());
 
   @Rule
   public BatchReportReaderRule batchReportReader = new BatchReportReaderRule();
@@ -153,7 +165,7 @@ public class LoadCrossProjectDuplicationsRepositoryStepTest {
 
     underTest.execute();
 
-    verify(integrateCrossProjectDuplications).computeCpd(CURRENT_FILE,
+    verify(integrateCrossProjectDuplications).detect(CURRENT_FILE,
       Arrays.asList(
         new Block.Builder()
           .setResourceId(CURRENT_FILE_KEY)
@@ -222,7 +234,7 @@ public class LoadCrossProjectDuplicationsRepositoryStepTest {
     ArgumentCaptor<ArrayList<Block>> originBlocks = ArgumentCaptor.forClass(listClass);
     ArgumentCaptor<ArrayList<Block>> duplicationBlocks = ArgumentCaptor.forClass(listClass);
 
-    verify(integrateCrossProjectDuplications).computeCpd(eq(CURRENT_FILE), originBlocks.capture(), duplicationBlocks.capture());
+    verify(integrateCrossProjectDuplications).detect(eq(CURRENT_FILE), originBlocks.capture(), duplicationBlocks.capture());
 
     Map<Integer, Block> originBlocksByIndex = blocksByIndexInFile(originBlocks.getValue());
     assertThat(originBlocksByIndex.get(0)).isEqualTo(
@@ -259,6 +271,55 @@ public class LoadCrossProjectDuplicationsRepositoryStepTest {
         .build());
   }
 
+  @Test
+  public void add_duplications_of_files_in_their_order_once_detected() throws Exception {
+    when(crossProjectDuplicationStatusHolder.isEnabled()).thenReturn(true);
+    analysisMetadataHolder.setBaseAnalysis(baseProjectAnalysis);
+
+    ComponentDto otherProject = createProject("OTHER_PROJECT_KEY");
+    SnapshotDto otherProjectSnapshot = createProjectSnapshot(otherProject);
+    ComponentDto otherFile = createFile("OTHER_FILE_KEY", otherProject);
+
+    String hash = "a8998353e96320ec";
+    dbClient.duplicationDao().insert(dbSession, new DuplicationUnitDto()
+      .setHash(hash)
+      .setStartLine(40)
+      .setEndLine(55)
+      .setIndexInFile(0)
+      .setAnalysisUuid(otherProjectSnapshot.getUuid())
+      .setComponentUuid(otherFile.uuid()));
+    dbSession.commit();
+
+    ScannerReport.CpdTextBlock originBlock = ScannerReport.CpdTextBlock.newBuilder()
+      .setHash(hash)
+      .setStartLine(30)
+      .setEndLine(45)
+      .setStartTokenIndex(0)
+      .setEndTokenIndex(10)
+      .build();
+    batchReportReader.putDuplicationBlocks(FILE_REF, asList(originBlock));
+    batchReportReader.putDuplicationBlocks(SECOND_FILE_REF, asList(originBlock));
+    List<Duplication> currentFileDuplications = singletonList(
+      new Duplication(new TextBlock(30, 45), singletonList(new CrossProjectDuplicate("OTHER_FILE_KEY", new TextBlock(40, 55)))));
+    List<Duplication> secondFileDuplications = singletonList(
+      new Duplication(new TextBlock(30, 45), singletonList(new CrossProjectDuplicate("OTHER_FILE_KEY", new TextBlock(40, 55)))));
+    when(integrateCrossProjectDuplications.detect(eq(CURRENT_FILE), anyCollection(), anyCollection())).thenReturn(currentFileDuplications);
+    when(integrateCrossProjectDuplications.detect(eq(SECOND_FILE), anyCollection(), anyCollection())).thenReturn(secondFileDuplications);
+
+    underTest.execute();
+
+    Block duplicatedBlock = new Block.Builder()
+      .setResourceId(otherFile.getDbKey())
+      .setBlockHash(new ByteArray(hash))
+      .setIndexInFile(0)
+      .setLines(40, 55)
+      .build();
+    verify(integrateCrossProjectDuplications).detect(eq(SECOND_FILE), anyCollection(), eq(singletonList(duplicatedBlock)));
+    InOrder inOrder = inOrder(integrateCrossProjectDuplications);
+    inOrder.verify(integrateCrossProjectDuplications).add(CURRENT_FILE, currentFileDuplications);
+    inOrder.verify(integrateCrossProjectDuplications).add(SECOND_FILE, secondFileDuplications);
+  }
+
   @Test
   public void nothing_to_do_when_cross_project_duplication_is_disabled() throws Exception {
     when(crossProjectDuplicationStatusHolder.isEnabled()).thenReturn(false);
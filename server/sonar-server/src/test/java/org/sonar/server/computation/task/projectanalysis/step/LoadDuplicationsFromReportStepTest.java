@@ -27,7 +27,9 @@ import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReaderRule;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.FileAttributes;
 import org.sonar.server.computation.task.projectanalysis.component.VisitException;
+import org.sonar.server.computation.task.projectanalysis.duplication.CrossProjectDuplicate;
 import org.sonar.server.computation.task.projectanalysis.duplication.DetailedTextBlock;
 import org.sonar.server.computation.task.projectanalysis.duplication.Duplicate;
 import org.sonar.server.computation.task.projectanalysis.duplication.Duplication;
@@ -35,8 +37,13 @@ import org.sonar.server.computation.task.projectanalysis.duplication.Duplication
 import org.sonar.server.computation.task.projectanalysis.duplication.InProjectDuplicate;
 import org.sonar.server.computation.task.projectanalysis.duplication.InnerDuplicate;
 import org.sonar.server.computation.task.projectanalysis.duplication.TextBlock;
+import org.sonar.server.computation.task.projectanalysis.measure.Measure;
+import org.sonar.server.computation.task.projectanalysis.measure.MeasureRepositoryRule;
+import org.sonar.server.computation.task.projectanalysis.metric.MetricRepositoryRule;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.api.measures.CoreMetrics.DUPLICATIONS_DATA;
+import static org.sonar.api.measures.CoreMetrics.DUPLICATIONS_DATA_KEY;
 import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.FILE;
 import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.PROJECT;
 import static org.sonar.server.computation.task.projectanalysis.component.ReportComponent.builder;
@@ -48,13 +55,15 @@ public class LoadDuplicationsFromReportStepTest {
   private static final int ROOT_REF = 1;
   private static final int FILE_1_REF = 11;
   private static final int FILE_2_REF = 12;
+  private static final int UNCHANGED_FILE_REF = 13;
 
   @Rule
   public TreeRootHolderRule treeRootHolder = new TreeRootHolderRule().setRoot(
     builder(PROJECT, ROOT_REF)
       .addChildren(
         builder(FILE, FILE_1_REF).build(),
-        builder(FILE, FILE_2_REF).build()
+        builder(FILE, FILE_2_REF).build(),
+        builder(FILE, UNCHANGED_FILE_REF).setFileAttributes(new FileAttributes(false, null, 1, true)).build()
       )
       .build()
     );
@@ -63,9 +72,14 @@ public class LoadDuplicationsFromReportStepTest {
   @Rule
   public DuplicationRepositoryRule duplicationRepository = DuplicationRepositoryRule.create(treeRootHolder);
   @Rule
+  public MetricRepositoryRule metricRepository = new MetricRepositoryRule().add(DUPLICATIONS_DATA);
+  @Rule
+  public MeasureRepositoryRule measureRepository = MeasureRepositoryRule.create(treeRootHolder, metricRepository);
+  @Rule
   public ExpectedException expectedException = ExpectedException.none();
 
-  private LoadDuplicationsFromReportStep underTest = new LoadDuplicationsFromReportStep(treeRootHolder, reportReader, duplicationRepository);
+  private LoadDuplicationsFromReportStep underTest = new LoadDuplicationsFromReportStep(treeRootHolder, reportReader, duplicationRepository, measureRepository,
+    metricRepository);
 
   @Test
   public void verify_description() {
@@ -184,6 +198,71 @@ public class LoadDuplicationsFromReportStepTest {
     underTest.execute();
   }
 
+  @Test
+  public void loads_duplications_of_unchanged_file_from_measure_of_previous_analysis() {
+    reportReader.putDuplications(UNCHANGED_FILE_REF, createDuplication(singleLineTextRange(OTHER_LINE), createInnerDuplicate(OTHER_LINE + 1)));
+    measureRepository.addBaseMeasure(UNCHANGED_FILE_REF, DUPLICATIONS_DATA_KEY, Measure.newMeasureBuilder().create("<duplications>"
+      + "<g><b s=\"2\" l=\"3\" r=\"key_13\"/><b s=\"10\" l=\"3\" r=\"key_13\"/><b s=\"5\" l=\"3\" r=\"key_11\"/></g>"
+      + "<g><b s=\"20\" l=\"1\" r=\"key_13\"/><b s=\"7\" l=\"1\" r=\"other_project:file\"/></g>"
+      + "</duplications>"));
+
+    underTest.execute();
+
+    assertThat(duplicationRepository.getDuplications(UNCHANGED_FILE_REF)).containsOnly(
+      duplication(
+        new DetailedTextBlock(1, 2, 4),
+        new InnerDuplicate(new TextBlock(10, 12))),
+      duplication(
+        singleLineDetailedTextBlock(2, 20),
+        new CrossProjectDuplicate("other_project:file", singleLineTextBlock(7))));
+  }
+
+  @Test
+  public void ignores_duplications_of_previous_analysis_which_only_refer_to_changed_files() {
+    measureRepository.addBaseMeasure(UNCHANGED_FILE_REF, DUPLICATIONS_DATA_KEY, Measure.newMeasureBuilder().create("<duplications>"
+      + "<g><b s=\"2\" l=\"3\" r=\"key_13\"/><b s=\"5\" l=\"3\" r=\"key_11\"/><b s=\"8\" l=\"3\" r=\"key_12\"/></g>"
+      + "</duplications>"));
+
+    underTest.execute();
+
+    assertNoDuplication(UNCHANGED_FILE_REF);
+  }
+
+  @Test
+  public void loads_duplications_of_unchanged_file_with_changed_files_from_report_of_changed_files() {
+    reportReader.putDuplications(FILE_1_REF, createDuplication(singleLineTextRange(LINE), createInProjectDuplicate(UNCHANGED_FILE_REF, OTHER_LINE)));
+    reportReader.putDuplications(FILE_2_REF, createDuplication(singleLineTextRange(LINE + 1), createInProjectDuplicate(UNCHANGED_FILE_REF, OTHER_LINE)));
+
+    underTest.execute();
+
+    assertDuplications(FILE_1_REF, singleLineDetailedTextBlock(1, LINE),
+      new InProjectDuplicate(treeRootHolder.getComponentByRef(UNCHANGED_FILE_REF), singleLineTextBlock(OTHER_LINE)));
+    assertDuplications(UNCHANGED_FILE_REF, singleLineDetailedTextBlock(1, OTHER_LINE),
+      new InProjectDuplicate(treeRootHolder.getComponentByRef(FILE_1_REF), singleLineTextBlock(LINE)),
+      new InProjectDuplicate(treeRootHolder.getComponentByRef(FILE_2_REF), singleLineTextBlock(LINE + 1)));
+  }
+
+  @Test
+  public void merges_duplications_of_unchanged_file_from_previous_analysis_and_from_report_of_changed_files() {
+    reportReader.putDuplications(FILE_1_REF, createDuplication(singleLineTextRange(LINE), createInProjectDuplicate(UNCHANGED_FILE_REF, 20)));
+    measureRepository.addBaseMeasure(UNCHANGED_FILE_REF, DUPLICATIONS_DATA_KEY, Measure.newMeasureBuilder().create("<duplications>"
+      + "<g><b s=\"20\" l=\"1\" r=\"key_13\"/><b s=\"30\" l=\"1\" r=\"key_13\"/><b s=\"40\" l=\"1\" r=\"key_11\"/></g>"
+      + "</duplications>"));
+
+    underTest.execute();
+
+    assertDuplications(UNCHANGED_FILE_REF, singleLineDetailedTextBlock(1, 20),
+      new InnerDuplicate(singleLineTextBlock(30)),
+      new InProjectDuplicate(treeRootHolder.getComponentByRef(FILE_1_REF), singleLineTextBlock(LINE)));
+  }
+
+  @Test
+  public void loads_no_duplications_of_unchanged_file_without_measure_of_previous_analysis() {
+    underTest.execute();
+
+    assertNoDuplication(UNCHANGED_FILE_REF);
+  }
+
   private void assertDuplications(int fileRef, TextBlock original, Duplicate... duplicates) {
     assertThat(duplicationRepository.getDuplications(fileRef)).containsExactly(duplication(original, duplicates));
   }
@@ -20,6 +20,10 @@
 package org.sonar.server.computation.task.projectanalysis.step;
 
 import com.google.common.collect.Lists;
+import java.lang.reflect.Constructor;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -27,7 +31,10 @@ import org.sonar.core.platform.ComponentContainer;
 import org.sonar.core.platform.ContainerPopulator;
 import org.sonar.server.computation.task.container.TaskContainer;
 import org.sonar.server.computation.task.container.TaskContainerImpl;
+import org.sonar.server.computation.task.step.ComputationStep;
+import org.sonar.server.computation.task.step.ConcurrentComputationStep;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
 
 public class ReportComputationStepsTest {
@@ -69,4 +76,34 @@ public class ReportComputationStepsTest {
 
     Lists.newArrayList(new ReportComputationSteps(computeEngineContainer).instances());
   }
+
+  @Test
+  public void concurrent_steps_declare_all_the_holders_and_repositories_they_are_constructed_with() throws Exception {
+    TaskContainerImpl computeEngineContainer = new TaskContainerImpl(new ComponentContainer(), new ContainerPopulator<TaskContainer>() {
+      @Override
+      public void populateContainer(TaskContainer container) {
+        // do nothing
+      }
+    });
+
+    for (Class<? extends ComputationStep> stepClass : new ReportComputationSteps(computeEngineContainer).orderedStepClasses()) {
+      if (!ConcurrentComputationStep.class.isAssignableFrom(stepClass)) {
+        continue;
+      }
+      Constructor<?> constructor = stepClass.getConstructors()[0];
+      Class<?>[] parameterTypes = constructor.getParameterTypes();
+      Object[] parameters = Arrays.stream(parameterTypes).map(type -> mock(type)).toArray();
+      ConcurrentComputationStep step = (ConcurrentComputationStep) constructor.newInstance(parameters);
+      Set<Class<?>> declared = new HashSet<>(step.reads());
+      declared.addAll(step.writes());
+
+      for (Class<?> parameterType : parameterTypes) {
+        if (parameterType.getName().startsWith("org.sonar.server.computation.task.projectanalysis.")) {
+          assertThat(declared.stream().anyMatch(c -> c.isAssignableFrom(parameterType)))
+            .as(stepClass.getSimpleName() + " must declare " + parameterType.getSimpleName())
+            .isTrue();
+        }
+      }
+    }
+  }
 }
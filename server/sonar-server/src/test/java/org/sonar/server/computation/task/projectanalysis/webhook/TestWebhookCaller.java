@@ -22,6 +22,7 @@ package org.sonar.server.computation.task.projectanalysis.webhook;
 import java.util.LinkedList;
 import java.util.Queue;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import javax.annotation.Nullable;
 
 import static java.util.Objects.requireNonNull;
@@ -55,6 +56,14 @@ public class TestWebhookCaller implements WebhookCaller {
       .build();
   }
 
+  /**
+   * The callback is executed synchronously
+   */
+  @Override
+  public void callAsync(Webhook webhook, WebhookPayload payload, Consumer<WebhookDelivery> callback) {
+    callback.accept(call(webhook, payload));
+  }
+
   public int countSent() {
     return countSent.get();
   }
@@ -19,6 +19,7 @@
  */
 package org.sonar.server.computation.task.projectanalysis.webhook;
 
+import java.util.concurrent.CompletableFuture;
 import okhttp3.HttpUrl;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
@@ -163,6 +164,62 @@ public class WebhookCallerImplTest {
       .hasMessage("Unsupported protocol in redirect of " + url + " to ftp://foo");
   }
 
+  @Test
+  public void callAsync_posts_payload_and_gives_delivery_to_callback() throws Exception {
+    Webhook webhook = new Webhook(PROJECT_UUID, CE_TASK_UUID, "my-webhook", server.url("/ping").toString());
+    server.enqueue(new MockResponse().setBody("pong").setResponseCode(201));
+
+    WebhookDelivery delivery = callAsync(webhook);
+
+    assertThat(delivery.getHttpStatus().get()).isEqualTo(201);
+    assertThat(delivery.getDurationInMs().get()).isGreaterThanOrEqualTo(0);
+    assertThat(delivery.getError()).isEmpty();
+    assertThat(delivery.getAt()).isEqualTo(NOW);
+    assertThat(delivery.getWebhook()).isSameAs(webhook);
+    assertThat(delivery.getPayload()).isSameAs(PAYLOAD);
+    takeAndVerifyPostRequest("/ping");
+  }
+
+  @Test
+  public void callAsync_follows_redirects_with_POST_method() throws Exception {
+    Webhook webhook = new Webhook(PROJECT_UUID, CE_TASK_UUID, "my-webhook", server.url("/redirect").toString());
+    server.enqueue(new MockResponse().setResponseCode(307).setHeader("Location", server.url("target")));
+    server.enqueue(new MockResponse().setResponseCode(200));
+
+    WebhookDelivery delivery = callAsync(webhook);
+
+    assertThat(delivery.getHttpStatus().get()).isEqualTo(200);
+    takeAndVerifyPostRequest("/redirect");
+    takeAndVerifyPostRequest("/target");
+  }
+
+  @Test
+  public void callAsync_gives_error_to_callback_when_external_server_does_not_answer() throws Exception {
+    Webhook webhook = new Webhook(PROJECT_UUID, CE_TASK_UUID, "my-webhook", server.url("/ping").toString());
+    server.shutdown();
+
+    WebhookDelivery delivery = callAsync(webhook);
+
+    assertThat(delivery.getHttpStatus()).isEmpty();
+    assertThat(delivery.getError()).isPresent();
+    assertThat(delivery.getWebhook()).isSameAs(webhook);
+  }
+
+  @Test
+  public void callAsync_gives_error_to_callback_when_url_is_incorrect() throws Exception {
+    Webhook webhook = new Webhook(PROJECT_UUID, CE_TASK_UUID, "my-webhook", "this_is_not_an_url");
+
+    WebhookDelivery delivery = callAsync(webhook);
+
+    assertThat(delivery.getErrorMessage().get()).isEqualTo("unexpected url: this_is_not_an_url");
+  }
+
+  private WebhookDelivery callAsync(Webhook webhook) throws Exception {
+    CompletableFuture<WebhookDelivery> result = new CompletableFuture<>();
+    newSender().callAsync(webhook, PAYLOAD, result::complete);
+    return result.get();
+  }
+
   private void takeAndVerifyPostRequest(String expectedPath) throws Exception {
     RecordedRequest redirectedRequest = server.takeRequest();
 
@@ -29,6 +29,7 @@ import org.sonar.db.DbSession;
 import org.sonar.db.DbTester;
 import org.sonar.db.webhook.WebhookDeliveryDto;
 
+import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -85,6 +86,16 @@ public class WebhookDeliveryStorageTest {
     assertThat(dto.getErrorStacktrace()).contains("java.io.IOException", "fail to connect");
   }
 
+  @Test
+  public void persist_deliveries_in_batch() {
+    when(uuidFactory.create()).thenReturn("D1", "D2");
+
+    underTest.persist(asList(newBuilderTemplate().build(), newBuilderTemplate().setHttpStatus(500).build()));
+
+    assertThat(selectAllDeliveryUuids(dbTester, dbSession)).containsOnly("D1", "D2");
+    assertThat(dbClient.webhookDeliveryDao().selectByUuid(dbSession, "D2").get().getHttpStatus()).isEqualTo(500);
+  }
+
   @Test
   public void purge_deletes_records_older_than_one_month_on_the_project() {
     when(system.now()).thenReturn(NOW);
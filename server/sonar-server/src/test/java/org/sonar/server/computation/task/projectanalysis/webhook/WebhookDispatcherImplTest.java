@@ -0,0 +1,205 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.webhook;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import org.junit.Rule;
+import org.junit.Test;
+import org.sonar.api.utils.internal.TestSystem2;
+import org.sonar.api.utils.log.LogTester;
+import org.sonar.api.utils.log.LoggerLevel;
+import org.sonar.core.util.UuidFactoryFast;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.DbTester;
+import org.sonar.db.webhook.WebhookQueueDto;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.sonar.db.webhook.WebhookDbTesting.selectAllDeliveryUuids;
+import static org.sonar.db.webhook.WebhookDbTesting.selectAllQueueUuids;
+import static org.sonar.server.computation.task.projectanalysis.webhook.WebhookDispatcherImpl.MAX_ATTEMPTS;
+import static org.sonar.server.computation.task.projectanalysis.webhook.WebhookDispatcherImpl.retryDelay;
+
+public class WebhookDispatcherImplTest {
+
+  private static final long NOW = 1_500_000_000_000L;
+  private static final WebhookPayload PAYLOAD = new WebhookPayload("P1", "{json}");
+  private static final Webhook WEBHOOK_1 = new Webhook("P1_UUID", "TASK_1", "First", "http://url1");
+  private static final Webhook WEBHOOK_2 = new Webhook("P1_UUID", "TASK_1", "Second", "http://url2");
+
+  private final TestSystem2 system = new TestSystem2().setNow(NOW);
+
+  @Rule
+  public DbTester dbTester = DbTester.create(system);
+  @Rule
+  public LogTester logTester = new LogTester().setLevel(LoggerLevel.DEBUG);
+
+  private DbClient dbClient = dbTester.getDbClient();
+  private DbSession dbSession = dbTester.getSession();
+  private TestWebhookCaller caller = new TestWebhookCaller();
+  private ScheduledExecutorService executorService = mock(ScheduledExecutorService.class);
+  private WebhookDeliveryStorage deliveryStorage = new WebhookDeliveryStorage(dbClient, system, UuidFactoryFast.getInstance());
+  private WebhookDispatcherImpl underTest = new WebhookDispatcherImpl(dbClient, system, UuidFactoryFast.getInstance(), caller,
+    deliveryStorage, executorService);
+
+  @Test
+  public void enqueue_persists_calls_and_wakes_up_dispatcher_without_sending_them() {
+    underTest.enqueue(asList(WEBHOOK_1, WEBHOOK_2), PAYLOAD);
+
+    List<WebhookQueueDto> calls = selectQueue();
+    assertThat(calls).extracting(WebhookQueueDto::getName).containsOnly("First", "Second");
+    assertThat(calls).extracting(WebhookQueueDto::getUrl).containsOnly("http://url1", "http://url2");
+    assertThat(calls).extracting(WebhookQueueDto::getComponentUuid).containsOnly("P1_UUID");
+    assertThat(calls).extracting(WebhookQueueDto::getCeTaskUuid).containsOnly("TASK_1");
+    assertThat(calls).extracting(WebhookQueueDto::getProjectKey).containsOnly("P1");
+    assertThat(calls).extracting(WebhookQueueDto::getPayload).containsOnly("{json}");
+    assertThat(calls).extracting(WebhookQueueDto::getAttempts).containsOnly(0);
+    assertThat(calls).extracting(WebhookQueueDto::getNextAttemptAt).containsOnly(NOW);
+    assertThat(caller.countSent()).isEqualTo(0);
+    verify(executorService).execute(any(Runnable.class));
+  }
+
+  @Test
+  public void enqueue_does_nothing_if_no_webhooks() {
+    underTest.enqueue(emptyList(), PAYLOAD);
+
+    assertThat(selectQueue()).isEmpty();
+    verifyZeroInteractions(executorService);
+  }
+
+  @Test
+  public void successful_calls_are_persisted_then_removed_from_queue() {
+    underTest.enqueue(asList(WEBHOOK_1, WEBHOOK_2), PAYLOAD);
+    caller.enqueueSuccess(NOW, 200, 1_234);
+    caller.enqueueSuccess(NOW, 204, 1_234);
+
+    underTest.processQueue();
+    assertThat(caller.countSent()).isEqualTo(2);
+    // sent calls are kept in queue until responses are persisted
+    assertThat(selectQueue()).extracting(WebhookQueueDto::getAttempts).containsOnly(1);
+
+    underTest.processQueue();
+    assertThat(selectQueue()).isEmpty();
+    assertThat(selectAllDeliveryUuids(dbTester, dbSession)).hasSize(2);
+    assertThat(logTester.logs(LoggerLevel.DEBUG)).contains("Sent webhook 'First' | url=http://url1 | time=1234ms | status=200");
+  }
+
+  @Test
+  public void failed_calls_are_persisted_then_retried_with_backoff() {
+    underTest.enqueue(asList(WEBHOOK_1), PAYLOAD);
+    caller.enqueueFailure(NOW, new IOException("Fail to connect"));
+
+    underTest.processQueue();
+    underTest.processQueue();
+
+    WebhookQueueDto call = selectQueue().get(0);
+    assertThat(call.getAttempts()).isEqualTo(1);
+    assertThat(call.getNextAttemptAt()).isEqualTo(NOW + retryDelay(1));
+    assertThat(selectAllDeliveryUuids(dbTester, dbSession)).hasSize(1);
+    assertThat(logTester.logs(LoggerLevel.DEBUG)).contains("Failed to send webhook 'First' | url=http://url1 | message=Fail to connect");
+
+    // not due yet
+    underTest.processQueue();
+    assertThat(caller.countSent()).isEqualTo(1);
+
+    system.setNow(NOW + retryDelay(1));
+    caller.enqueueSuccess(NOW, 200, 1_234);
+    underTest.processQueue();
+    underTest.processQueue();
+    assertThat(caller.countSent()).isEqualTo(2);
+    assertThat(selectQueue()).isEmpty();
+    assertThat(selectAllDeliveryUuids(dbTester, dbSession)).hasSize(2);
+  }
+
+  @Test
+  public void server_errors_and_throttling_are_retried() {
+    underTest.enqueue(asList(WEBHOOK_1, WEBHOOK_2), PAYLOAD);
+    caller.enqueueSuccess(NOW, 503, 10);
+    caller.enqueueSuccess(NOW, 429, 10);
+
+    underTest.processQueue();
+    underTest.processQueue();
+
+    assertThat(selectQueue()).hasSize(2);
+  }
+
+  @Test
+  public void client_errors_are_not_retried() {
+    underTest.enqueue(asList(WEBHOOK_1), PAYLOAD);
+    caller.enqueueSuccess(NOW, 404, 10);
+
+    underTest.processQueue();
+    underTest.processQueue();
+
+    assertThat(selectQueue()).isEmpty();
+    assertThat(selectAllDeliveryUuids(dbTester, dbSession)).hasSize(1);
+  }
+
+  @Test
+  public void give_up_after_max_attempts() {
+    underTest.enqueue(asList(WEBHOOK_1), PAYLOAD);
+
+    for (int i = 1; i <= MAX_ATTEMPTS; i++) {
+      assertThat(selectQueue()).hasSize(1);
+      caller.enqueueSuccess(NOW, 500, 10);
+      underTest.processQueue();
+      underTest.processQueue();
+      system.setNow(system.now() + retryDelay(i));
+    }
+
+    assertThat(caller.countSent()).isEqualTo(MAX_ATTEMPTS);
+    assertThat(selectQueue()).isEmpty();
+    assertThat(selectAllDeliveryUuids(dbTester, dbSession)).hasSize(MAX_ATTEMPTS);
+  }
+
+  @Test
+  public void calls_whose_response_is_lost_are_sent_again_after_timeout() {
+    underTest.enqueue(asList(WEBHOOK_1), PAYLOAD);
+    caller.enqueueSuccess(NOW, 200, 10);
+    underTest.processQueue();
+
+    // Compute Engine restarts before response is persisted
+    WebhookDispatcherImpl restarted = new WebhookDispatcherImpl(dbClient, system, UuidFactoryFast.getInstance(), caller,
+      deliveryStorage, executorService);
+    restarted.processQueue();
+    assertThat(caller.countSent()).isEqualTo(1);
+
+    system.setNow(NOW + 10L * 60 * 1000);
+    caller.enqueueSuccess(NOW, 200, 10);
+    restarted.processQueue();
+    restarted.processQueue();
+
+    assertThat(caller.countSent()).isEqualTo(2);
+    assertThat(selectQueue()).isEmpty();
+  }
+
+  private List<WebhookQueueDto> selectQueue() {
+    assertThat(selectAllQueueUuids(dbTester, dbSession)).doesNotHaveDuplicates();
+    return dbClient.webhookQueueDao().selectDue(dbSession, Long.MAX_VALUE, 100);
+  }
+}
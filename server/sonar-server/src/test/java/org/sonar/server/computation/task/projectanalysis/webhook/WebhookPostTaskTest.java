@@ -19,17 +19,16 @@
  */
 package org.sonar.server.computation.task.projectanalysis.webhook;
 
-import java.io.IOException;
 import java.util.Date;
+import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import org.junit.Rule;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.sonar.api.ce.posttask.CeTask;
 import org.sonar.api.ce.posttask.PostProjectAnalysisTaskTester;
 import org.sonar.api.config.internal.MapSettings;
-import org.sonar.api.utils.log.LogTester;
-import org.sonar.api.utils.log.LoggerLevel;
 import org.sonar.server.computation.task.projectanalysis.component.ConfigurationRepository;
 import org.sonar.server.computation.task.projectanalysis.component.TestSettingsRepository;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
@@ -37,7 +36,6 @@ import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolde
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.sonar.api.ce.posttask.PostProjectAnalysisTaskTester.newCeTaskBuilder;
@@ -47,17 +45,13 @@ import static org.sonar.server.computation.task.projectanalysis.component.Report
 
 public class WebhookPostTaskTest {
 
-  private static final long NOW = 1_500_000_000_000L;
   private static final String PROJECT_UUID = "P1_UUID";
 
-  @Rule
-  public LogTester logTester = new LogTester().setLevel(LoggerLevel.DEBUG);
-
   @Rule
   public TreeRootHolderRule rootHolder = new TreeRootHolderRule().setRoot(DUMB_PROJECT);
 
   private final MapSettings settings = new MapSettings();
-  private final TestWebhookCaller caller = new TestWebhookCaller();
+  private final WebhookDispatcher dispatcher = mock(WebhookDispatcher.class);
   private final WebhookPayloadFactory payloadFactory = new TestWebhookPayloadFactory();
   private final WebhookDeliveryStorage deliveryStorage = mock(WebhookDeliveryStorage.class);
 
@@ -65,45 +59,51 @@ public class WebhookPostTaskTest {
   public void do_nothing_if_no_webhooks() {
     execute();
 
-    assertThat(caller.countSent()).isEqualTo(0);
-    assertThat(logTester.logs(LoggerLevel.DEBUG)).isEmpty();
-    verifyZeroInteractions(deliveryStorage);
+    verifyZeroInteractions(dispatcher, deliveryStorage);
   }
 
   @Test
-  public void send_global_webhooks() {
+  public void enqueue_global_webhooks() {
     settings.setProperty("sonar.webhooks.global", "1,2");
     settings.setProperty("sonar.webhooks.global.1.name", "First");
     settings.setProperty("sonar.webhooks.global.1.url", "http://url1");
     settings.setProperty("sonar.webhooks.global.2.name", "Second");
     settings.setProperty("sonar.webhooks.global.2.url", "http://url2");
-    caller.enqueueSuccess(NOW, 200, 1_234);
-    caller.enqueueFailure(NOW, new IOException("Fail to connect"));
 
     execute();
 
-    assertThat(caller.countSent()).isEqualTo(2);
-    assertThat(logTester.logs(LoggerLevel.DEBUG)).contains("Sent webhook 'First' | url=http://url1 | time=1234ms | status=200");
-    assertThat(logTester.logs(LoggerLevel.DEBUG)).contains("Failed to send webhook 'Second' | url=http://url2 | message=Fail to connect");
-    verify(deliveryStorage, times(2)).persist(any(WebhookDelivery.class));
+    List<Webhook> webhooks = verifyEnqueued();
+    assertThat(webhooks).extracting(Webhook::getName).containsExactly("First", "Second");
+    assertThat(webhooks).extracting(Webhook::getUrl).containsExactly("http://url1", "http://url2");
+    assertThat(webhooks).extracting(Webhook::getComponentUuid).containsOnly(PROJECT_UUID);
+    assertThat(webhooks).extracting(Webhook::getCeTaskUuid).containsOnly("#1");
     verify(deliveryStorage).purge(PROJECT_UUID);
   }
 
   @Test
-  public void send_project_webhooks() {
+  public void enqueue_project_webhooks() {
     settings.setProperty("sonar.webhooks.project", "1");
     settings.setProperty("sonar.webhooks.project.1.name", "First");
     settings.setProperty("sonar.webhooks.project.1.url", "http://url1");
-    caller.enqueueSuccess(NOW, 200, 1_234);
 
     execute();
 
-    assertThat(caller.countSent()).isEqualTo(1);
-    assertThat(logTester.logs(LoggerLevel.DEBUG)).contains("Sent webhook 'First' | url=http://url1 | time=1234ms | status=200");
-    verify(deliveryStorage).persist(any(WebhookDelivery.class));
+    assertThat(verifyEnqueued()).extracting(Webhook::getName).containsExactly("First");
     verify(deliveryStorage).purge(PROJECT_UUID);
   }
 
+  @Test
+  public void ignore_webhooks_without_url() {
+    settings.setProperty("sonar.webhooks.project", "1,2");
+    settings.setProperty("sonar.webhooks.project.1.name", "First");
+    settings.setProperty("sonar.webhooks.project.2.name", "Second");
+    settings.setProperty("sonar.webhooks.project.2.url", "http://url2");
+
+    execute();
+
+    assertThat(verifyEnqueued()).extracting(Webhook::getName).containsExactly("Second");
+  }
+
   @Test
   public void process_only_the_10_first_global_webhooks() {
     testMaxWebhooks("sonar.webhooks.global");
@@ -119,19 +119,24 @@ public class WebhookPostTaskTest {
       .forEach(i -> {
         settings.setProperty(property + "." + i + ".name", "First");
         settings.setProperty(property + "." + i + ".url", "http://url");
-        caller.enqueueSuccess(NOW, 200, 1_234);
       });
     settings.setProperty(property, IntStream.range(1, 15).mapToObj(String::valueOf).collect(Collectors.joining(",")));
 
     execute();
 
-    assertThat(caller.countSent()).isEqualTo(10);
-    assertThat(logTester.logs(LoggerLevel.DEBUG).stream().filter(log -> log.contains("Sent"))).hasSize(10);
+    assertThat(verifyEnqueued()).hasSize(10);
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<Webhook> verifyEnqueued() {
+    ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+    verify(dispatcher).enqueue(captor.capture(), any(WebhookPayload.class));
+    return captor.getValue();
   }
 
   private void execute() {
     ConfigurationRepository settingsRepository = new TestSettingsRepository(settings.asConfig());
-    WebhookPostTask task = new WebhookPostTask(rootHolder, settingsRepository, payloadFactory, caller, deliveryStorage);
+    WebhookPostTask task = new WebhookPostTask(rootHolder, settingsRepository, payloadFactory, dispatcher, deliveryStorage);
 
     PostProjectAnalysisTaskTester.of(task)
       .at(new Date())
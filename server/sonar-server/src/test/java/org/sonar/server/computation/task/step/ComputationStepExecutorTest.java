@@ -19,8 +19,14 @@
  */
 package org.sonar.server.computation.task.step;
 
+import com.google.common.collect.ImmutableSet;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -32,9 +38,11 @@ import org.sonar.server.computation.task.ChangeLogLevel;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.fail;
 import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
@@ -152,6 +160,94 @@ public class ComputationStepExecutorTest {
     new ComputationStepExecutor(mockComputationSteps(computationStep1), listener).execute();
   }
 
+  @Test
+  public void execute_runs_ConcurrentComputationSteps_which_do_not_conflict_at_the_same_time() {
+    CountDownLatch bothStarted = new CountDownLatch(2);
+    Runnable waitForOtherStep = () -> {
+      bothStarted.countDown();
+      awaitUninterruptibly(bothStarted);
+    };
+    TestConcurrentStep step1 = new TestConcurrentStep("step1", ImmutableSet.of(String.class), Collections.emptySet(), waitForOtherStep);
+    TestConcurrentStep step2 = new TestConcurrentStep("step2", ImmutableSet.of(String.class), Collections.emptySet(), waitForOtherStep);
+
+    new ComputationStepExecutor(mockComputationSteps(computationStep1, step1, step2, computationStep2), listener).execute();
+
+    assertThat(step1.executed).isTrue();
+    assertThat(step2.executed).isTrue();
+    verify(listener).finished(true);
+  }
+
+  @Test
+  public void execute_runs_conflicting_ConcurrentComputationSteps_in_order() {
+    List<String> executions = Collections.synchronizedList(new ArrayList<>());
+    TestConcurrentStep writer = new TestConcurrentStep("writer", Collections.emptySet(), ImmutableSet.of(String.class), () -> {
+      sleep();
+      executions.add("writer");
+    });
+    TestConcurrentStep reader = new TestConcurrentStep("reader", ImmutableSet.of(String.class), Collections.emptySet(), () -> executions.add("reader"));
+    TestConcurrentStep other = new TestConcurrentStep("other", ImmutableSet.of(Integer.class), Collections.emptySet(), () -> executions.add("other"));
+
+    new ComputationStepExecutor(mockComputationSteps(writer, reader, other)).execute();
+
+    assertThat(executions).containsOnly("writer", "reader", "other");
+    assertThat(executions.indexOf("writer")).isLessThan(executions.indexOf("reader"));
+  }
+
+  @Test
+  public void execute_runs_ComputationStep_after_preceding_ConcurrentComputationSteps() {
+    List<String> executions = Collections.synchronizedList(new ArrayList<>());
+    TestConcurrentStep step1 = new TestConcurrentStep("step1", Collections.emptySet(), Collections.emptySet(), () -> {
+      sleep();
+      executions.add("step1");
+    });
+    TestConcurrentStep step2 = new TestConcurrentStep("step2", Collections.emptySet(), Collections.emptySet(), () -> executions.add("step2"));
+    doAnswer(invocation -> executions.add("step3")).when(computationStep3).execute();
+
+    new ComputationStepExecutor(mockComputationSteps(step1, step2, computationStep3)).execute();
+
+    assertThat(executions).hasSize(3);
+    assertThat(executions.get(2)).isEqualTo("step3");
+  }
+
+  @Test
+  public void execute_throws_exception_of_failing_ConcurrentComputationStep_as_is_and_does_not_run_following_steps() {
+    RuntimeException toBeThrown = new RuntimeException("simulating failing concurrent step");
+    TestConcurrentStep failing = new TestConcurrentStep("failing", Collections.emptySet(), ImmutableSet.of(String.class), () -> {
+      throw toBeThrown;
+    });
+    TestConcurrentStep dependent = new TestConcurrentStep("dependent", ImmutableSet.of(String.class), Collections.emptySet(), () -> {
+    });
+
+    try {
+      new ComputationStepExecutor(mockComputationSteps(failing, dependent, computationStep1), listener).execute();
+      fail("exception toBeThrown should have been raised");
+    } catch (RuntimeException e) {
+      assertThat(e).isSameAs(toBeThrown);
+      assertThat(dependent.executed).isFalse();
+      verify(computationStep1, never()).execute();
+      verify(listener).finished(false);
+    }
+  }
+
+  private static void awaitUninterruptibly(CountDownLatch latch) {
+    try {
+      if (!latch.await(10, TimeUnit.SECONDS)) {
+        throw new IllegalStateException("Steps were not executed concurrently");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static void sleep() {
+    try {
+      Thread.sleep(50);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
   private static ComputationSteps mockComputationSteps(ComputationStep... computationSteps) {
     ComputationSteps steps = mock(ComputationSteps.class);
     when(steps.instances()).thenReturn(Arrays.asList(computationSteps));
@@ -163,4 +259,40 @@ public class ComputationStepExecutorTest {
     when(mock.getDescription()).thenReturn(desc);
     return mock;
   }
+
+  private static class TestConcurrentStep implements ConcurrentComputationStep {
+    private final String description;
+    private final Set<Class<?>> reads;
+    private final Set<Class<?>> writes;
+    private final Runnable execution;
+    private volatile boolean executed = false;
+
+    private TestConcurrentStep(String description, Set<Class<?>> reads, Set<Class<?>> writes, Runnable execution) {
+      this.description = description;
+      this.reads = reads;
+      this.writes = writes;
+      this.execution = execution;
+    }
+
+    @Override
+    public Set<Class<?>> reads() {
+      return reads;
+    }
+
+    @Override
+    public Set<Class<?>> writes() {
+      return writes;
+    }
+
+    @Override
+    public void execute() {
+      execution.run();
+      executed = true;
+    }
+
+    @Override
+    public String getDescription() {
+      return description;
+    }
+  }
 }
@@ -49,6 +49,53 @@ public class BulkIndexerConcurrentRequestCalculationTest {
       .isEqualTo(18);
   }
 
+  @Test
+  public void adaptive_indexing_starts_with_one_concurrent_request() {
+    assertConcurrentRequests(BulkIndexer.Size.ADAPTIVE, cores(4))
+      .isEqualTo(1);
+    assertThat(BulkIndexer.Size.ADAPTIVE.createHandler(cores(4)).getMaxConcurrentRequests()).isEqualTo(1);
+    assertThat(BulkIndexer.Size.ADAPTIVE.createHandler(cores(96)).getMaxConcurrentRequests()).isEqualTo(19);
+  }
+
+  @Test
+  public void adaptive_indexing_increases_bulk_size_then_concurrency_when_elasticsearch_is_fast() {
+    BulkIndexer.SizeHandler handler = BulkIndexer.Size.ADAPTIVE.createHandler(cores(16));
+    long initialBytes = handler.getFlushBytes();
+
+    fastBulks(handler, BulkIndexer.AdaptiveSizeHandler.STABLE_REQUESTS);
+    assertThat(handler.getFlushBytes()).isEqualTo(initialBytes * 3 / 2);
+    assertThat(handler.getConcurrentRequests()).isEqualTo(1);
+
+    fastBulks(handler, 100 * BulkIndexer.AdaptiveSizeHandler.STABLE_REQUESTS);
+    assertThat(handler.getFlushBytes()).isEqualTo(BulkIndexer.AdaptiveSizeHandler.MAX_FLUSH_BYTES);
+    assertThat(handler.getConcurrentRequests()).isEqualTo(3);
+  }
+
+  @Test
+  public void adaptive_indexing_backs_off_when_elasticsearch_rejects_or_is_slow() {
+    BulkIndexer.SizeHandler handler = BulkIndexer.Size.ADAPTIVE.createHandler(cores(16));
+    fastBulks(handler, 100 * BulkIndexer.AdaptiveSizeHandler.STABLE_REQUESTS);
+
+    handler.onBulk(10L, true);
+    assertThat(handler.getFlushBytes()).isEqualTo(BulkIndexer.AdaptiveSizeHandler.MAX_FLUSH_BYTES / 2);
+    assertThat(handler.getConcurrentRequests()).isEqualTo(1);
+
+    handler.onBulk(3 * BulkIndexer.AdaptiveSizeHandler.TARGET_LATENCY_MS, false);
+    assertThat(handler.getFlushBytes()).isEqualTo(BulkIndexer.AdaptiveSizeHandler.MAX_FLUSH_BYTES / 2 * 3 / 4);
+
+    for (int i = 0; i < 100; i++) {
+      handler.onBulk(10L, true);
+    }
+    assertThat(handler.getFlushBytes()).isEqualTo(BulkIndexer.AdaptiveSizeHandler.MIN_FLUSH_BYTES);
+    assertThat(handler.getConcurrentRequests()).isEqualTo(1);
+  }
+
+  private static void fastBulks(BulkIndexer.SizeHandler handler, int count) {
+    for (int i = 0; i < count; i++) {
+      handler.onBulk(10L, false);
+    }
+  }
+
   private AbstractIntegerAssert<?> assertConcurrentRequests(BulkIndexer.Size size, BulkIndexer.Runtime2 runtime2) {
     return assertThat(size.createHandler(runtime2).getConcurrentRequests());
   }
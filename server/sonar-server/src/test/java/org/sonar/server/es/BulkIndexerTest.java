@@ -29,6 +29,7 @@ import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.ExpectedException;
 import org.sonar.api.utils.internal.TestSystem2;
 import org.sonar.db.DbTester;
 import org.sonar.server.es.BulkIndexer.Size;
@@ -46,6 +47,8 @@ public class BulkIndexerTest {
   public EsTester esTester = new EsTester(new FakeIndexDefinition().setReplicas(1));
   @Rule
   public DbTester dbTester = DbTester.create(testSystem2);
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
 
   @Test
   public void index_nothing() {
@@ -96,6 +99,56 @@ public class BulkIndexerTest {
     assertThat(replicas()).isEqualTo(1);
   }
 
+  @Test
+  public void adaptive_indexing() {
+    assertThat(replicas()).isEqualTo(1);
+
+    BulkIndexer indexer = new BulkIndexer(esTester.client(), INDEX_TYPE_FAKE, Size.ADAPTIVE);
+    indexer.start();
+    assertThat(replicas()).isEqualTo(0);
+
+    // requests are sent concurrently with the thread adding requests
+    for (int i = 0; i < 1_000; i++) {
+      indexer.add(newIndexRequest(i));
+    }
+    IndexingResult result = indexer.stop();
+
+    assertThat(result.isSuccess()).isTrue();
+    assertThat(result.getSuccess()).isEqualTo(1_000);
+    assertThat(result.getDurationMs()).isGreaterThanOrEqualTo(0L);
+    assertThat(count()).isEqualTo(1_000);
+    assertThat(replicas()).isEqualTo(1);
+  }
+
+  @Test
+  public void settings_are_restored_by_the_last_large_indexing_of_an_index() {
+    BulkIndexer.startLargeIndexing(esTester.client(), INDEX);
+    assertThat(replicas()).isEqualTo(0);
+
+    BulkIndexer indexer1 = new BulkIndexer(esTester.client(), INDEX_TYPE_FAKE, Size.LARGE);
+    BulkIndexer indexer2 = new BulkIndexer(esTester.client(), INDEX_TYPE_FAKE, Size.ADAPTIVE);
+    indexer1.start();
+    indexer2.start();
+    indexer1.add(newIndexRequest(1));
+    indexer2.add(newIndexRequest(2));
+    indexer1.stop();
+    assertThat(replicas()).isEqualTo(0);
+    indexer2.stop();
+    assertThat(replicas()).isEqualTo(0);
+
+    BulkIndexer.stopLargeIndexing(esTester.client(), INDEX);
+    assertThat(replicas()).isEqualTo(1);
+    assertThat(count()).isEqualTo(2);
+  }
+
+  @Test
+  public void fail_to_stop_large_indexing_which_is_not_started() {
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Large indexing of index fakes is not started");
+
+    BulkIndexer.stopLargeIndexing(esTester.client(), INDEX);
+  }
+
   @Test
   public void bulk_delete() throws Exception {
     int max = 500;
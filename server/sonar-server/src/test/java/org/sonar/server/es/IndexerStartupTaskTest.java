@@ -19,24 +19,46 @@
  */
 package org.sonar.server.es;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
 import org.junit.Rule;
 import org.junit.Test;
 import org.mockito.Mockito;
 import org.sonar.api.config.internal.MapSettings;
+import org.sonar.api.resources.Qualifiers;
 import org.sonar.api.utils.System2;
 import org.sonar.db.DbTester;
+import org.sonar.db.component.ComponentDto;
+import org.sonar.server.property.InternalProperties;
+import org.sonar.server.property.MapInternalProperties;
 
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.sonar.db.component.ComponentTesting.newPrivateProjectDto;
 import static org.sonar.server.es.FakeIndexDefinition.INDEX_TYPE_FAKE;
+import static org.sonar.server.es.IndexerStartupTask.ROOTS_PER_SHARD;
 
 public class IndexerStartupTaskTest {
 
+  private static final String CHECKPOINT_KEY = InternalProperties.ES_INDEX_INITIALIZING_PREFIX + INDEX_TYPE_FAKE.format();
+
   private System2 system2 = System2.INSTANCE;
   private MapSettings settings = new MapSettings();
+  private InternalProperties internalProperties = new MapInternalProperties();
 
   @Rule
   public DbTester db = DbTester.create(system2);
@@ -76,6 +98,135 @@ public class IndexerStartupTaskTest {
     verifyNoMoreInteractions(indexer);
   }
 
+  @Test
+  public void sharded_indexer_indexes_all_root_components_by_shards() {
+    List<String> rootUuids = insertProjects(ROOTS_PER_SHARD * 2 + 1);
+    List<String> indexedUuids = new ArrayList<>();
+    ShardedStartupIndexer indexer = createShardedIndexer(indexedUuids);
+
+    emulateStartup(indexer);
+
+    verify(indexer, never()).indexOnStartup(Mockito.anySetOf(IndexType.class));
+    verify(indexer, Mockito.times(3)).indexOnStartup(eq(ImmutableSet.of(INDEX_TYPE_FAKE)), anyListOf(String.class));
+    assertThat(indexedUuids).containsOnlyElementsOf(rootUuids).hasSameSizeAs(rootUuids);
+    // checkpoint is removed once type is initialized
+    assertThat(internalProperties.read(CHECKPOINT_KEY).orElse("")).isEmpty();
+
+    ShardedStartupIndexer indexer2 = createShardedIndexer(new ArrayList<>());
+    emulateStartup(indexer2);
+    verify(indexer2).getIndexTypes();
+    verifyNoMoreInteractions(indexer2);
+  }
+
+  @Test
+  public void sharded_indexer_indexes_only_enabled_root_components_with_its_qualifiers() {
+    List<String> rootUuids = insertProjects(2);
+    db.components().insertComponent(newPrivateProjectDto(db.getDefaultOrganization()).setEnabled(false));
+    db.components().insertView();
+    List<String> indexedUuids = new ArrayList<>();
+
+    emulateStartup(createShardedIndexer(indexedUuids));
+
+    assertThat(indexedUuids).containsOnlyElementsOf(rootUuids).hasSameSizeAs(rootUuids);
+  }
+
+  @Test
+  public void refresh_is_disabled_until_all_shards_are_indexed() {
+    insertProjects(ROOTS_PER_SHARD + 1);
+    es.client().nativeClient().admin().indices().prepareUpdateSettings(INDEX_TYPE_FAKE.getIndex())
+      .setSettings(ImmutableMap.of("index.refresh_interval", "1s")).get();
+    List<String> refreshIntervals = new ArrayList<>();
+    ShardedStartupIndexer indexer = createShardedIndexer(new ArrayList<>());
+    doAnswer(invocation -> {
+      synchronized (refreshIntervals) {
+        refreshIntervals.add(refreshInterval());
+      }
+      return null;
+    }).when(indexer).indexOnStartup(Mockito.anySetOf(IndexType.class), anyListOf(String.class));
+
+    emulateStartup(indexer);
+
+    assertThat(refreshIntervals).containsExactly("-1", "-1");
+    assertThat(refreshInterval()).isEqualTo("1s");
+  }
+
+  @Test
+  public void resume_indexing_of_sharded_indexer_after_failure() {
+    List<String> rootUuids = insertProjects(ROOTS_PER_SHARD * 3).stream().sorted().collect(toList());
+    settings.setProperty(IndexerStartupTask.PROPERTY_THREADS, 1);
+    List<String> indexedUuids = new ArrayList<>();
+    ShardedStartupIndexer failingIndexer = createShardedIndexer(indexedUuids);
+    doThrow(new IllegalStateException("Boom")).when(failingIndexer).indexOnStartup(eq(ImmutableSet.of(INDEX_TYPE_FAKE)), eq(rootUuids.subList(ROOTS_PER_SHARD, 2 * ROOTS_PER_SHARD)));
+
+    try {
+      emulateStartup(failingIndexer);
+      fail("An IllegalStateException should have been raised");
+    } catch (IllegalStateException e) {
+      assertThat(e.getCause()).hasMessage("Boom");
+    }
+    assertThat(internalProperties.read(CHECKPOINT_KEY).get()).endsWith("," + rootUuids.get(ROOTS_PER_SHARD - 1));
+
+    indexedUuids.clear();
+    emulateStartup(createShardedIndexer(indexedUuids));
+
+    assertThat(indexedUuids).containsExactlyElementsOf(rootUuids.subList(ROOTS_PER_SHARD, rootUuids.size()));
+  }
+
+  @Test
+  public void ignore_checkpoint_of_another_index() {
+    List<String> rootUuids = insertProjects(3);
+    internalProperties.write(CHECKPOINT_KEY, "another_index_uuid," + rootUuids.stream().sorted().findFirst().get());
+    List<String> indexedUuids = new ArrayList<>();
+
+    emulateStartup(createShardedIndexer(indexedUuids));
+
+    assertThat(indexedUuids).containsOnlyElementsOf(rootUuids).hasSameSizeAs(rootUuids);
+  }
+
+  @Test
+  public void index_in_background_if_async() {
+    settings.setProperty(IndexerStartupTask.PROPERTY_ASYNC, true);
+    StartupIndexer indexer = createIndexer();
+    IndexerStartupTask underTest = new IndexerStartupTask(db.getDbClient(), es.client(), settings.asConfig(), internalProperties, indexer);
+
+    CompletableFuture<Void> indexing = underTest.execute();
+
+    indexing.join();
+    verify(indexer).indexOnStartup(Mockito.eq(ImmutableSet.of(INDEX_TYPE_FAKE)));
+    assertThat(underTest.isIndexing()).isFalse();
+  }
+
+  @Test
+  public void stay_indexing_if_background_indexing_fails() {
+    settings.setProperty(IndexerStartupTask.PROPERTY_ASYNC, true);
+    StartupIndexer indexer = createIndexer();
+    doThrow(new IllegalStateException("Boom")).when(indexer).indexOnStartup(Mockito.anySetOf(IndexType.class));
+    IndexerStartupTask underTest = new IndexerStartupTask(db.getDbClient(), es.client(), settings.asConfig(), internalProperties, indexer);
+
+    CompletableFuture<Void> indexing = underTest.execute();
+
+    assertThat(indexing.handle((result, failure) -> failure).join()).isNotNull();
+    assertThat(underTest.isIndexing()).isTrue();
+  }
+
+  @Test
+  public void indexing_is_synchronous_by_default() {
+    StartupIndexer indexer = createIndexer();
+    IndexerStartupTask underTest = new IndexerStartupTask(db.getDbClient(), es.client(), settings.asConfig(), internalProperties, indexer);
+
+    CompletableFuture<Void> indexing = underTest.execute();
+
+    assertThat(indexing.isDone()).isTrue();
+    assertThat(underTest.isIndexing()).isFalse();
+  }
+
+  private List<String> insertProjects(int count) {
+    return IntStream.range(0, count)
+      .mapToObj(i -> db.components().insertPrivateProject())
+      .map(ComponentDto::uuid)
+      .collect(toList());
+  }
+
   private void insertDocumentIntoIndex() {
     es.putDocuments(INDEX_TYPE_FAKE, new FakeDoc());
   }
@@ -86,7 +237,25 @@ public class IndexerStartupTaskTest {
     return indexer;
   }
 
+  private ShardedStartupIndexer createShardedIndexer(List<String> indexedUuids) {
+    ShardedStartupIndexer indexer = mock(ShardedStartupIndexer.class);
+    doReturn(ImmutableSet.of(INDEX_TYPE_FAKE)).when(indexer).getIndexTypes();
+    doReturn(ImmutableSet.of(Qualifiers.PROJECT)).when(indexer).getRootQualifiers();
+    doAnswer(invocation -> {
+      synchronized (indexedUuids) {
+        indexedUuids.addAll((List<String>) invocation.getArguments()[1]);
+      }
+      return null;
+    }).when(indexer).indexOnStartup(Mockito.anySetOf(IndexType.class), anyListOf(String.class));
+    return indexer;
+  }
+
+  private String refreshInterval() {
+    return es.client().nativeClient().admin().indices().prepareGetSettings(INDEX_TYPE_FAKE.getIndex()).get()
+      .getSetting(INDEX_TYPE_FAKE.getIndex(), "index.refresh_interval");
+  }
+
   private void emulateStartup(StartupIndexer indexer) {
-    new IndexerStartupTask(es.client(), settings.asConfig(), indexer).execute();
+    new IndexerStartupTask(db.getDbClient(), es.client(), settings.asConfig(), internalProperties, indexer).execute();
   }
 }
@@ -0,0 +1,90 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import javax.servlet.FilterChain;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+public class StartupIndexingFilterTest {
+
+  private IndexerStartupTask indexerStartupTask = mock(IndexerStartupTask.class);
+  private HttpServletRequest request = mock(HttpServletRequest.class);
+  private HttpServletResponse response = mock(HttpServletResponse.class);
+  private FilterChain chain = mock(FilterChain.class);
+  private StringWriter output = new StringWriter();
+
+  private StartupIndexingFilter underTest = new StartupIndexingFilter(indexerStartupTask);
+
+  @Before
+  public void setUp() throws Exception {
+    when(response.getWriter()).thenReturn(new PrintWriter(output));
+  }
+
+  @Test
+  public void do_get_pattern() {
+    assertThat(underTest.doGetPattern().matches("/api/issues/do_transition")).isTrue();
+    assertThat(underTest.doGetPattern().matches("/api/authentication/login")).isFalse();
+    assertThat(underTest.doGetPattern().matches("/api/system/restart")).isFalse();
+    assertThat(underTest.doGetPattern().matches("/batch/project")).isFalse();
+  }
+
+  @Test
+  public void reject_POST_requests_while_indexing() throws Exception {
+    when(indexerStartupTask.isIndexing()).thenReturn(true);
+    when(request.getMethod()).thenReturn("POST");
+
+    underTest.doFilter(request, response, chain);
+
+    verify(response).setStatus(503);
+    verifyZeroInteractions(chain);
+    assertThat(output.toString()).contains("Server is indexing data");
+  }
+
+  @Test
+  public void accept_GET_requests_while_indexing() throws Exception {
+    when(indexerStartupTask.isIndexing()).thenReturn(true);
+    when(request.getMethod()).thenReturn("GET");
+
+    underTest.doFilter(request, response, chain);
+
+    verify(chain).doFilter(request, response);
+  }
+
+  @Test
+  public void accept_POST_requests_when_indexing_is_done() throws Exception {
+    when(indexerStartupTask.isIndexing()).thenReturn(false);
+    when(request.getMethod()).thenReturn("POST");
+
+    underTest.doFilter(request, response, chain);
+
+    verify(chain).doFilter(request, response);
+  }
+}
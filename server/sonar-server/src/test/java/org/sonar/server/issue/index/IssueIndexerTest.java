@@ -104,6 +104,17 @@ public class IssueIndexerTest {
     assertThatIndexHasOnly(issue1, issue2);
   }
 
+  @Test
+  public void indexOnStartup_with_root_uuids_adds_issues_of_these_roots_only() {
+    IssueDto issue1 = db.issues().insertIssue(organization);
+    IssueDto issue2 = db.issues().insertIssue(organization);
+    db.issues().insertIssue(organization);
+
+    underTest.indexOnStartup(emptySet(), asList(issue1.getProjectUuid(), issue2.getProjectUuid()));
+
+    assertThatIndexHasOnly(issue1, issue2);
+  }
+
   @Test
   public void verify_indexed_fields() {
     RuleDefinitionDto rule = db.rules().insert();
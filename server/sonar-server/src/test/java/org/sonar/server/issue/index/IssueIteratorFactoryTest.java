@@ -28,6 +28,7 @@ import org.sonar.api.rule.RuleKey;
 import org.sonar.api.utils.System2;
 import org.sonar.db.DbTester;
 
+import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class IssueIteratorFactoryTest {
@@ -130,6 +131,14 @@ public class IssueIteratorFactoryTest {
     assertThat(issuesByKey).hasSize(2);
   }
 
+  @Test
+  public void iterator_over_issues_from_projects() {
+    dbTester.prepareDbUnit(getClass(), "many_projects.xml");
+
+    assertThat(issuesByKey(factory -> factory.createForProjects(asList("THE_PROJECT_1", "THE_PROJECT_2")))).hasSize(3);
+    assertThat(issuesByKey(factory -> factory.createForProjects(asList("THE_PROJECT_2", "UNKNOWN")))).hasSize(1);
+  }
+
   @Test
   public void extract_directory_path() {
     dbTester.prepareDbUnit(getClass(), "extract_directory_path.xml");
@@ -37,6 +37,7 @@ import org.sonar.server.es.EsTester;
 import org.sonar.server.es.IndexingResult;
 import org.sonar.server.es.ProjectIndexer;
 
+import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.emptySet;
 import static java.util.Collections.singletonList;
@@ -81,6 +82,17 @@ public class ProjectMeasuresIndexerTest {
     assertThatIndexContainsOnly(project1, project2, project3);
   }
 
+  @Test
+  public void indexOnStartup_with_root_uuids_indexes_these_projects_only() {
+    ComponentDto project1 = db.components().insertPrivateProject();
+    ComponentDto project2 = db.components().insertPrivateProject();
+    db.components().insertPrivateProject();
+
+    underTest.indexOnStartup(emptySet(), asList(project1.uuid(), project2.uuid()));
+
+    assertThatIndexContainsOnly(project1, project2);
+  }
+
   /**
    * Provisioned projects don't have analysis yet
    */
@@ -21,9 +21,11 @@ package org.sonar.server.notification;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
+import java.io.IOException;
 import java.io.InvalidClassException;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import org.junit.Before;
@@ -41,6 +43,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.only;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
@@ -97,30 +100,54 @@ public class DefaultNotificationManagerTest {
     Notification notification = new Notification("test");
     NotificationQueueDto dto = NotificationQueueDto.toNotificationQueueDto(notification);
     List<NotificationQueueDto> dtos = Arrays.asList(dto);
-    when(notificationQueueDao.selectOldest(1)).thenReturn(dtos);
+    when(notificationQueueDao.selectOldest(10)).thenReturn(dtos);
 
-    assertThat(manager.getFromQueue()).isNotNull();
+    assertThat(manager.getFromQueue(10)).containsExactly(notification);
 
     InOrder inOrder = inOrder(notificationQueueDao);
-    inOrder.verify(notificationQueueDao).selectOldest(1);
+    inOrder.verify(notificationQueueDao).selectOldest(10);
     inOrder.verify(notificationQueueDao).delete(dtos);
   }
 
+  @Test
+  public void shouldGetEmptyListWhenQueueIsEmpty() {
+    when(notificationQueueDao.selectOldest(10)).thenReturn(Collections.emptyList());
+
+    assertThat(manager.getFromQueue(10)).isEmpty();
+
+    verify(notificationQueueDao, never()).delete(any(List.class));
+  }
+
   // SONAR-4739
   @Test
   public void shouldNotFailWhenUnableToDeserialize() throws Exception {
     NotificationQueueDto dto1 = mock(NotificationQueueDto.class);
     when(dto1.toNotification()).thenThrow(new InvalidClassException("Pouet"));
     List<NotificationQueueDto> dtos = Arrays.asList(dto1);
-    when(notificationQueueDao.selectOldest(1)).thenReturn(dtos);
+    when(notificationQueueDao.selectOldest(1)).thenReturn(dtos, Collections.emptyList(), dtos, Collections.emptyList());
 
     manager = spy(manager);
-    assertThat(manager.getFromQueue()).isNull();
-    assertThat(manager.getFromQueue()).isNull();
+    assertThat(manager.getFromQueue(1)).isEmpty();
+    assertThat(manager.getFromQueue(1)).isEmpty();
 
     verify(manager, times(1)).logDeserializationIssue();
   }
 
+  @Test
+  public void shouldSkipNotificationsWhichCanNotBeRead() throws Exception {
+    Notification notification = new Notification("test");
+    NotificationQueueDto unreadable = mock(NotificationQueueDto.class);
+    when(unreadable.toNotification()).thenThrow(new IOException("Pouet"));
+    List<NotificationQueueDto> unreadableBatch = Arrays.asList(unreadable, unreadable);
+    List<NotificationQueueDto> batch = Arrays.asList(unreadable, NotificationQueueDto.toNotificationQueueDto(notification));
+    when(notificationQueueDao.selectOldest(2)).thenReturn(unreadableBatch, batch);
+
+    assertThat(manager.getFromQueue(2)).containsExactly(notification);
+
+    verify(notificationQueueDao).delete(unreadableBatch);
+    verify(notificationQueueDao).delete(batch);
+  }
+
   @Test
   public void shouldFindNoRecipient() {
     assertThat(manager.findSubscribedRecipientsForDispatcher(dispatcher, "uuid_45").asMap().entrySet()).hasSize(0);
@@ -19,8 +19,15 @@
  */
 package org.sonar.server.notification;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Sets;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import org.junit.Test;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
@@ -32,8 +39,13 @@ import org.sonar.api.notifications.NotificationChannel;
 import org.sonar.db.DbClient;
 import org.sonar.db.property.PropertiesDao;
 
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyMap;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.same;
 import static org.mockito.Mockito.doAnswer;
@@ -43,6 +55,7 @@ import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
 
 public class NotificationDaemonTest {
   private static String CREATOR_SIMON = "simon";
@@ -69,7 +82,7 @@ public class NotificationDaemonTest {
     when(commentOnIssueCreatedByMe.getType()).thenReturn("issue-changes");
     when(qualityGateChange.getKey()).thenReturn("QGateChange");
     when(qualityGateChange.getType()).thenReturn("qgate-changes");
-    when(manager.getFromQueue()).thenReturn(notification).thenReturn(null);
+    when(manager.getFromQueue(anyInt())).thenReturn(singletonList(notification)).thenReturn(emptyList());
 
     MapSettings settings = new MapSettings(new PropertyDefinitions(NotificationDaemon.class)).setProperty("sonar.notifications.delay", 1L);
 
@@ -175,7 +188,7 @@ public class NotificationDaemonTest {
   @Test
   public void shouldNotStopWhenException() {
     setUpMocks();
-    when(manager.getFromQueue()).thenThrow(new RuntimeException("Unexpected exception")).thenReturn(notification).thenReturn(null);
+    when(manager.getFromQueue(anyInt())).thenThrow(new RuntimeException("Unexpected exception")).thenReturn(singletonList(notification)).thenReturn(emptyList());
     doAnswer(addUser(ASSIGNEE_SIMON, emailChannel)).when(commentOnIssueAssignedToMe).dispatch(same(notification), any(NotificationDispatcher.Context.class));
     doAnswer(addUser(CREATOR_SIMON, emailChannel)).when(commentOnIssueCreatedByMe).dispatch(same(notification), any(NotificationDispatcher.Context.class));
 
@@ -217,7 +230,7 @@ public class NotificationDaemonTest {
   public void shouldLogEvery10Minutes() {
     setUpMocks();
     // Emulate 2 notifications in DB
-    when(manager.getFromQueue()).thenReturn(notification).thenReturn(notification).thenReturn(null);
+    when(manager.getFromQueue(anyInt())).thenReturn(singletonList(notification)).thenReturn(singletonList(notification)).thenReturn(emptyList());
     when(manager.count()).thenReturn(1L).thenReturn(0L);
     underTest = spy(underTest);
     // Emulate processing of each notification take 10 min to have a log each time
@@ -228,6 +241,61 @@ public class NotificationDaemonTest {
     underTest.stop();
   }
 
+  @Test
+  public void deliver_notifications_of_a_user_at_once_to_batch_channel() {
+    setUpMocks();
+    NotificationChannel batchChannel = mock(NotificationChannel.class, withSettings().extraInterfaces(BatchNotificationChannel.class));
+    Notification otherNotification = mock(Notification.class);
+    doAnswer(addUser(ASSIGNEE_SIMON, batchChannel)).when(commentOnIssueAssignedToMe).dispatch(any(Notification.class), any(NotificationDispatcher.Context.class));
+
+    service.deliver(asList(notification, otherNotification));
+
+    verify((BatchNotificationChannel) batchChannel).deliverAll(ImmutableMap.of(ASSIGNEE_SIMON, asList(notification, otherNotification)));
+    verify(batchChannel, never()).deliver(any(Notification.class), anyString());
+  }
+
+  @Test
+  public void deliver_notifications_to_many_users_in_parallel_if_channel_is_batch() {
+    setUpMocks();
+    NotificationChannel batchChannel = mock(NotificationChannel.class, withSettings().extraInterfaces(BatchNotificationChannel.class));
+    when(batchChannel.getKey()).thenReturn("batch");
+    List<String> users = IntStream.range(0, 25).mapToObj(i -> "user" + i).collect(Collectors.toList());
+    Set<String> deliveredUsers = ConcurrentHashMap.newKeySet();
+    Set<String> deliveryThreads = ConcurrentHashMap.newKeySet();
+    doAnswer(invocation -> {
+      users.forEach(user -> ((NotificationDispatcher.Context) invocation.getArguments()[1]).addUser(user, batchChannel));
+      return null;
+    }).when(commentOnIssueAssignedToMe).dispatch(same(notification), any(NotificationDispatcher.Context.class));
+    doAnswer(invocation -> {
+      deliveredUsers.addAll(((Map<String, ?>) invocation.getArguments()[0]).keySet());
+      return deliveryThreads.add(Thread.currentThread().getName());
+    }).when((BatchNotificationChannel) batchChannel).deliverAll(anyMap());
+
+    service.deliver(notification);
+    service.stop();
+
+    assertThat(deliveredUsers).containsOnlyElementsOf(users).hasSameSizeAs(users);
+    assertThat(deliveryThreads).isNotEmpty().allMatch(name -> name.startsWith("sq-notification-delivery-batch-"));
+  }
+
+  @Test
+  public void deliver_notifications_to_many_users_in_calling_thread_if_channel_is_not_batch() {
+    setUpMocks();
+    List<String> users = IntStream.range(0, 25).mapToObj(i -> "user" + i).collect(Collectors.toList());
+    Set<String> deliveryThreads = ConcurrentHashMap.newKeySet();
+    doAnswer(invocation -> {
+      users.forEach(user -> ((NotificationDispatcher.Context) invocation.getArguments()[1]).addUser(user, emailChannel));
+      return null;
+    }).when(commentOnIssueAssignedToMe).dispatch(same(notification), any(NotificationDispatcher.Context.class));
+    doAnswer(invocation -> deliveryThreads.add(Thread.currentThread().getName()))
+      .when(emailChannel).deliver(same(notification), anyString());
+
+    service.deliver(notification);
+
+    users.forEach(user -> verify(emailChannel).deliver(notification, user));
+    assertThat(deliveryThreads).containsOnly(Thread.currentThread().getName());
+  }
+
   @Test
   public void hasProjectSubscribersForType() {
     setUpMocks();
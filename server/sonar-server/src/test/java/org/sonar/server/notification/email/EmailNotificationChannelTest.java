@@ -19,6 +19,7 @@
  */
 package org.sonar.server.notification.email;
 
+import com.google.common.collect.ImmutableMap;
 import java.util.List;
 import javax.mail.internet.MimeMessage;
 import org.apache.commons.mail.EmailException;
@@ -28,13 +29,21 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.sonar.api.config.EmailSettings;
+import org.sonar.api.notifications.Notification;
+import org.sonar.api.user.UserFinder;
+import org.sonar.core.user.DefaultUser;
 import org.sonar.plugins.emailnotifications.api.EmailMessage;
+import org.sonar.plugins.emailnotifications.api.EmailTemplate;
 import org.subethamail.wiser.Wiser;
 import org.subethamail.wiser.WiserMessage;
 
+import static java.util.Arrays.asList;
 import static junit.framework.Assert.fail;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class EmailNotificationChannelTest {
@@ -169,6 +178,29 @@ public class EmailNotificationChannelTest {
     underTest.deliver(emailMessage);
   }
 
+  @Test
+  public void shouldSendAllNotificationsOfUsers() throws Exception {
+    configure();
+    UserFinder userFinder = mock(UserFinder.class);
+    when(userFinder.findByLogin("simon")).thenReturn(new DefaultUser().setLogin("simon").setEmail("simon@nowhere"));
+    when(userFinder.findByLogin("evgeny")).thenReturn(new DefaultUser().setLogin("evgeny"));
+    EmailTemplate template = mock(EmailTemplate.class);
+    when(template.format(any(Notification.class)))
+      .thenAnswer(invocation -> new EmailMessage().setSubject("Foo").setMessage(((Notification) invocation.getArguments()[0]).getType()));
+    underTest = new EmailNotificationChannel(configuration, new EmailTemplate[] {template}, userFinder);
+
+    underTest.deliverAll(ImmutableMap.of(
+      "simon", asList(new Notification("first"), new Notification("second")),
+      "evgeny", asList(new Notification("third"))));
+
+    List<WiserMessage> messages = smtpServer.getMessages();
+    assertThat(messages).hasSize(2);
+    assertThat(messages).extracting(WiserMessage::getEnvelopeReceiver).containsOnly("simon@nowhere");
+    assertThat((String) messages.get(0).getMimeMessage().getContent()).startsWith("first");
+    assertThat((String) messages.get(1).getMimeMessage().getContent()).startsWith("second");
+    verify(userFinder, times(1)).findByLogin("simon");
+  }
+
   @Test
   public void shouldSendTestEmailWithSTARTTLS() {
     smtpServer.getServer().setEnableTLS(true);
@@ -0,0 +1,58 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.monitoring;
+
+import java.util.Map;
+import java.util.Optional;
+import org.junit.Test;
+import org.sonar.server.user.UserSessionCache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+public class UserSessionCacheMonitorTest {
+
+  private UserSessionCache cache = new UserSessionCache();
+  private UserSessionCacheMonitor underTest = new UserSessionCacheMonitor(cache);
+
+  @Test
+  public void name_is_not_empty() {
+    assertThat(underTest.name()).isNotEmpty();
+  }
+
+  @Test
+  public void attributes_contain_statistics_of_cache() {
+    cache.getActiveUser("john", Optional::empty);
+    cache.getActiveUser("john", Optional::empty);
+    cache.getActiveUser("john", Optional::empty);
+    cache.getActiveUser("jane", Optional::empty);
+
+    Map<String, Object> attributes = underTest.attributes();
+
+    assertThat(attributes).contains(
+      entry("Users Size", 2L),
+      entry("Users Hits", 2L),
+      entry("Users Misses", 2L),
+      entry("Users Hit Rate (%)", 50L),
+      entry("Users Evictions", 0L),
+      entry("Project Permissions Size", 0L),
+      entry("Project Permissions Hits", 0L));
+  }
+}
@@ -0,0 +1,64 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.platformlevel;
+
+import java.util.concurrent.CompletableFuture;
+import org.junit.Rule;
+import org.junit.Test;
+import org.sonar.api.utils.log.LogTester;
+import org.sonar.api.utils.log.LoggerLevel;
+import org.sonar.server.app.ProcessCommandWrapper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+public class PlatformLevelStartupTest {
+
+  @Rule
+  public LogTester logTester = new LogTester();
+
+  private ProcessCommandWrapper processCommandWrapper = mock(ProcessCommandWrapper.class);
+
+  @Test
+  public void notify_operational_when_indexing_is_done() {
+    CompletableFuture<Void> indexing = new CompletableFuture<>();
+
+    PlatformLevelStartup.notifyOperationalWhenIndexed(indexing, processCommandWrapper);
+    verifyZeroInteractions(processCommandWrapper);
+
+    indexing.complete(null);
+    verify(processCommandWrapper).notifyOperational();
+    assertThat(logTester.logs(LoggerLevel.WARN)).isEmpty();
+  }
+
+  @Test
+  public void notify_operational_when_indexing_fails() {
+    CompletableFuture<Void> indexing = new CompletableFuture<>();
+
+    PlatformLevelStartup.notifyOperationalWhenIndexed(indexing, processCommandWrapper);
+    indexing.completeExceptionally(new IllegalStateException("Fail to index"));
+
+    verify(processCommandWrapper).notifyOperational();
+    assertThat(logTester.logs(LoggerLevel.WARN))
+      .containsOnly("Server is operational although indexing failed. Types which are not indexed will be indexed at next startup.");
+  }
+}
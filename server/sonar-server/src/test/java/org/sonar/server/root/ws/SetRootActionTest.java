@@ -19,6 +19,7 @@
  */
 package org.sonar.server.root.ws;
 
+import java.util.Optional;
 import javax.annotation.Nullable;
 import org.junit.Rule;
 import org.junit.Test;
@@ -33,6 +34,7 @@ import org.sonar.db.user.UserTesting;
 import org.sonar.server.exceptions.ForbiddenException;
 import org.sonar.server.exceptions.NotFoundException;
 import org.sonar.server.tester.UserSessionRule;
+import org.sonar.server.user.UserSessionCache;
 import org.sonar.server.ws.TestRequest;
 import org.sonar.server.ws.WsActionTester;
 
@@ -50,7 +52,8 @@ public class SetRootActionTest {
 
   private UserDao userDao = dbTester.getDbClient().userDao();
   private DbSession dbSession = dbTester.getSession();
-  private SetRootAction underTest = new SetRootAction(userSessionRule, dbTester.getDbClient());
+  private UserSessionCache userSessionCache = new UserSessionCache();
+  private SetRootAction underTest = new SetRootAction(userSessionRule, dbTester.getDbClient(), userSessionCache);
   private WsActionTester wsTester = new WsActionTester(underTest);
 
   @Test
@@ -117,6 +120,19 @@ public class SetRootActionTest {
     assertThat(userDao.selectByLogin(dbSession, otherUser.getLogin()).isRoot()).isFalse();
   }
 
+  @Test
+  public void execute_invalidates_cached_user() {
+    UserDto user = UserTesting.newUserDto(SOME_LOGIN, "name", "email");
+    userDao.insert(dbSession, user);
+    dbSession.commit();
+    userSessionCache.getActiveUser(SOME_LOGIN, () -> Optional.of(user));
+    logInAsRoot();
+
+    executeRequest(SOME_LOGIN);
+
+    assertThat(userSessionCache.getActiveUser(SOME_LOGIN, () -> Optional.of(userDao.selectByLogin(dbSession, SOME_LOGIN))).get().isRoot()).isTrue();
+  }
+
   @Test
   public void execute_has_no_effect_when_user_is_already_root() {
     UserDto otherUser = UserTesting.newUserDto();
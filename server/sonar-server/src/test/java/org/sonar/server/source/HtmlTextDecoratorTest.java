@@ -43,6 +43,18 @@ public class HtmlTextDecoratorTest {
     assertThat(htmlOutput).containsOnly("<span class=\"k\">package</span> org.sonar.core.source;");
   }
 
+  @Test
+  public void should_decorate_first_line_only() {
+    DecorationDataHolder decorationData = new DecorationDataHolder();
+    decorationData.loadSyntaxHighlightingData("0,2,cppd;6,9,k;");
+
+    HtmlTextDecorator htmlTextDecorator = new HtmlTextDecorator();
+
+    assertThat(htmlTextDecorator.decorateFirstLineWithHtml("/* a <b> & c" + LF_END_OF_LINE + "int", decorationData))
+      .isEqualTo("<span class=\"cppd\">/*</span> a &lt;<span class=\"k\">b&gt; </span>&amp; c");
+    assertThat(htmlTextDecorator.decorateFirstLineWithHtml("", new DecorationDataHolder())).isEmpty();
+  }
+
   @Test
   public void should_decorate_multiple_lines_characters_range() {
 
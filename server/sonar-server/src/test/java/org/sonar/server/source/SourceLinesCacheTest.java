@@ -0,0 +1,94 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.source;
+
+import java.util.List;
+import java.util.stream.IntStream;
+import org.junit.Test;
+import org.sonar.db.protobuf.DbFileSources;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SourceLinesCacheTest {
+
+  private SourceLinesCache underTest = new SourceLinesCache();
+
+  @Test
+  public void get_returns_null_if_data_hash_is_not_cached() {
+    assertThat(underTest.get("hash", 10)).isNull();
+  }
+
+  @Test
+  public void get_returns_lines_only_if_they_have_been_decoded_up_to_requested_line() {
+    underTest.put("hash", newLines(5), 5);
+
+    assertThat(underTest.get("hash", 3)).hasSize(5);
+    assertThat(underTest.get("hash", 5)).hasSize(5);
+    assertThat(underTest.get("hash", 6)).isNull();
+  }
+
+  @Test
+  public void get_returns_all_lines_if_end_of_file_has_been_reached() {
+    underTest.put("hash", newLines(5), 10);
+
+    assertThat(underTest.get("hash", Integer.MAX_VALUE)).hasSize(5);
+  }
+
+  @Test
+  public void put_replaces_lines_of_same_data_hash() {
+    underTest.put("hash", newLines(5), 5);
+    underTest.put("hash", newLines(8), Integer.MAX_VALUE);
+
+    assertThat(underTest.get("hash", 20)).hasSize(8);
+  }
+
+  @Test
+  public void evict_least_recently_used_entries_when_max_size_is_reached() {
+    List<DbFileSources.Line> lines = newLines(10);
+    long size = lines.stream().mapToLong(DbFileSources.Line::getSerializedSize).sum();
+    underTest = new SourceLinesCache(2 * size);
+
+    underTest.put("hash1", lines, Integer.MAX_VALUE);
+    underTest.put("hash2", lines, Integer.MAX_VALUE);
+    underTest.get("hash1", 1);
+    underTest.put("hash3", lines, Integer.MAX_VALUE);
+
+    assertThat(underTest.get("hash1", 1)).isNotNull();
+    assertThat(underTest.get("hash2", 1)).isNull();
+    assertThat(underTest.get("hash3", 1)).isNotNull();
+  }
+
+  @Test
+  public void do_not_cache_lines_bigger_than_max_size() {
+    List<DbFileSources.Line> lines = newLines(10);
+    underTest = new SourceLinesCache(1);
+
+    underTest.put("hash", lines, Integer.MAX_VALUE);
+
+    assertThat(underTest.get("hash", 1)).isNull();
+  }
+
+  private static List<DbFileSources.Line> newLines(int count) {
+    return IntStream.rangeClosed(1, count)
+      .mapToObj(i -> DbFileSources.Line.newBuilder().setLine(i).setSource("line " + i).build())
+      .collect(toList());
+  }
+}
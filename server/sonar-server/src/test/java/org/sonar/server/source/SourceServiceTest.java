@@ -54,7 +54,7 @@ public class SourceServiceTest {
   @Before
   public void injectFakeLines() throws IOException {
     FileSourceDto dto = new FileSourceDto();
-    dto.setFileUuid(FILE_UUID).setProjectUuid("PROJECT_UUID");
+    dto.setFileUuid(FILE_UUID).setProjectUuid("PROJECT_UUID").setDataHash("HASH_1");
     dto.setSourceData(FileSourceTesting.newFakeData(10).build());
     dbTester.getDbClient().fileSourceDao().insert(dbTester.getSession(), dto);
     dbTester.commit();
@@ -114,10 +114,30 @@ public class SourceServiceTest {
     assertThat(lines.get()).isEmpty();
   }
 
+  @Test
+  public void getLines_uses_decoded_lines_as_long_as_data_hash_does_not_change() throws Exception {
+    underTest.getLines(dbTester.getSession(), FILE_UUID, 1, 5);
+    updateSource(FileSourceTesting.newFakeData(10).setLines(4, DbFileSources.Line.newBuilder().setLine(5).setSource("UPDATED")), "HASH_1");
+
+    assertThat(underTest.getLinesAsRawText(dbTester.getSession(), FILE_UUID, 5, 5).get()).containsExactly("SOURCE_5");
+    // lines which have not been decoded yet are read from db
+    assertThat(underTest.getLinesAsRawText(dbTester.getSession(), FILE_UUID, 5, 6).get()).containsExactly("UPDATED", "SOURCE_6");
+
+    updateSource(FileSourceTesting.newFakeData(10).setLines(5, DbFileSources.Line.newBuilder().setLine(6).setSource("UPDATED_AGAIN")), "HASH_2");
+
+    assertThat(underTest.getLinesAsRawText(dbTester.getSession(), FILE_UUID, 5, 6).get()).containsExactly("SOURCE_5", "UPDATED_AGAIN");
+  }
+
   @Test
   public void getLines_file_does_not_exist() throws Exception {
     Optional<Iterable<DbFileSources.Line>> lines = underTest.getLines(dbTester.getSession(), "FILE_DOES_NOT_EXIST", 1, 10);
     assertThat(lines.isPresent()).isFalse();
   }
 
+  private void updateSource(DbFileSources.Data.Builder data, String dataHash) {
+    FileSourceDto dto = dbTester.getDbClient().fileSourceDao().selectSourceByFileUuid(dbTester.getSession(), FILE_UUID);
+    dto.setSourceData(data.build()).setDataHash(dataHash);
+    dbTester.getDbClient().fileSourceDao().update(dbTester.getSession(), dto);
+    dbTester.commit();
+  }
 }
@@ -389,6 +389,22 @@ public class ServerUserSessionTest {
     assertThat(hasComponentPermissionByDtoOrUuid(underTest, UserRole.ISSUE_ADMIN, publicProject)).isFalse();
   }
 
+  @Test
+  public void project_permissions_are_shared_by_sessions_until_cache_is_invalidated() {
+    db.users().insertProjectPermissionOnUser(user, UserRole.ADMIN, privateProject);
+    UserSessionCache userSessionCache = new UserSessionCache();
+
+    // feed the cache
+    assertThat(newUserSession(user, userSessionCache).hasComponentPermission(UserRole.ADMIN, privateProject)).isTrue();
+
+    db.users().deletePermissionFromUser(privateProject, user, UserRole.ADMIN);
+    assertThat(newUserSession(user, userSessionCache).hasComponentPermission(UserRole.ADMIN, privateProject)).isTrue();
+    assertThat(newAnonymousSession().hasComponentPermission(UserRole.ADMIN, privateProject)).isFalse();
+
+    userSessionCache.invalidatePermissions();
+    assertThat(newUserSession(user, userSessionCache).hasComponentPermission(UserRole.ADMIN, privateProject)).isFalse();
+  }
+
   private boolean hasComponentPermissionByDtoOrUuid(UserSession underTest, String permission, ComponentDto component) {
     return new Random().nextBoolean() ? underTest.hasComponentPermission(permission, component) : underTest.hasComponentUuidPermission(permission, component.uuid());
   }
@@ -513,7 +529,11 @@ public class ServerUserSessionTest {
   }
 
   private ServerUserSession newUserSession(@Nullable UserDto userDto) {
-    return new ServerUserSession(dbClient, organizationFlags, defaultOrganizationProvider, userDto);
+    return newUserSession(userDto, new UserSessionCache());
+  }
+
+  private ServerUserSession newUserSession(@Nullable UserDto userDto, UserSessionCache userSessionCache) {
+    return new ServerUserSession(dbClient, organizationFlags, defaultOrganizationProvider, userSessionCache, userDto);
   }
 
   private ServerUserSession newAnonymousSession() {
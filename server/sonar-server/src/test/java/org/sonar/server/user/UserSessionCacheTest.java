@@ -0,0 +1,220 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.user;
+
+import com.google.common.base.Ticker;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.After;
+import org.junit.Test;
+import org.sonar.db.user.UserDto;
+
+import static com.google.common.collect.ImmutableSet.of;
+import static com.google.common.util.concurrent.Uninterruptibles.awaitUninterruptibly;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.sonar.db.user.UserTesting.newUserDto;
+
+public class UserSessionCacheTest {
+
+  private AtomicLong nanos = new AtomicLong();
+  private UserSessionCache underTest = new UserSessionCache(new Ticker() {
+    @Override
+    public long read() {
+      return nanos.get();
+    }
+  });
+  private AtomicInteger loads = new AtomicInteger();
+  private ExecutorService executor = Executors.newSingleThreadExecutor();
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void active_user_is_loaded_once() {
+    UserDto user = newUserDto();
+
+    assertThat(getActiveUser("john", user)).containsSame(user);
+    assertThat(getActiveUser("john", newUserDto())).containsSame(user);
+
+    assertThat(loads.get()).isEqualTo(1);
+    assertThat(underTest.getUserStats().hitCount()).isEqualTo(1);
+    assertThat(underTest.getUserStats().missCount()).isEqualTo(1);
+    assertThat(underTest.getUserSize()).isEqualTo(1);
+  }
+
+  @Test
+  public void missing_user_is_cached() {
+    assertThat(getActiveUser("john", null)).isEmpty();
+    assertThat(getActiveUser("john", null)).isEmpty();
+
+    assertThat(loads.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void invalidateUser_drops_only_the_specified_user() {
+    getActiveUser("john", newUserDto());
+    getActiveUser("jane", newUserDto());
+
+    underTest.invalidateUser("john");
+    getActiveUser("john", newUserDto());
+    getActiveUser("jane", newUserDto());
+
+    assertThat(loads.get()).isEqualTo(3);
+  }
+
+  @Test
+  public void entries_expire() {
+    getActiveUser("john", newUserDto());
+    getProjectPermissions(10, "P1", of("user"));
+
+    nanos.addAndGet(TimeUnit.SECONDS.toNanos(UserSessionCache.TTL_IN_SECONDS));
+    getActiveUser("john", newUserDto());
+    getProjectPermissions(10, "P1", of("user"));
+
+    assertThat(loads.get()).isEqualTo(4);
+  }
+
+  @Test
+  public void project_permissions_are_cached_by_user_and_project() {
+    assertThat(getProjectPermissions(10, "P1", of("user"))).containsOnly("user");
+    assertThat(getProjectPermissions(10, "P1", of("admin"))).containsOnly("user");
+    assertThat(getProjectPermissions(11, "P1", of("admin"))).containsOnly("admin");
+    assertThat(getProjectPermissions(null, "P1", of("codeviewer"))).containsOnly("codeviewer");
+    assertThat(getProjectPermissions(null, "P1", of("admin"))).containsOnly("codeviewer");
+    assertThat(getProjectPermissions(10, "P2", of("admin"))).containsOnly("admin");
+
+    assertThat(loads.get()).isEqualTo(4);
+    assertThat(underTest.getProjectPermissionSize()).isEqualTo(4);
+    assertThat(underTest.getProjectPermissionStats().hitRate()).isEqualTo(2d / 6);
+  }
+
+  @Test
+  public void invalidatePermissions_drops_all_project_permissions() {
+    getProjectPermissions(10, "P1", of("user"));
+    getProjectPermissions(null, "P2", of("user"));
+    getActiveUser("john", newUserDto());
+
+    underTest.invalidatePermissions();
+
+    assertThat(underTest.getProjectPermissionSize()).isEqualTo(0);
+    assertThat(underTest.getUserSize()).isEqualTo(1);
+  }
+
+  @Test
+  public void failure_of_loader_is_propagated_and_not_cached() {
+    try {
+      underTest.getActiveUser("john", () -> {
+        throw new IllegalStateException("BOOM");
+      });
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("BOOM");
+    }
+
+    assertThat(getActiveUser("john", null)).isEmpty();
+    assertThat(loads.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void user_loaded_while_it_is_invalidated_is_not_cached() throws Exception {
+    UserDto staleUser = newUserDto();
+    CountDownLatch loading = new CountDownLatch(1);
+    CountDownLatch invalidated = new CountDownLatch(1);
+    Future<Optional<UserDto>> inFlight = executor.submit(() -> underTest.getActiveUser("john", () -> {
+      loads.incrementAndGet();
+      loading.countDown();
+      awaitUninterruptibly(invalidated);
+      return Optional.of(staleUser);
+    }));
+
+    loading.await(10, TimeUnit.SECONDS);
+    underTest.invalidateUser("john");
+    invalidated.countDown();
+
+    assertThat(inFlight.get(10, TimeUnit.SECONDS)).containsSame(staleUser);
+    UserDto user = newUserDto();
+    assertThat(getActiveUser("john", user)).containsSame(user);
+    assertThat(loads.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void project_permissions_loaded_while_permissions_are_invalidated_are_not_cached() throws Exception {
+    CountDownLatch loading = new CountDownLatch(1);
+    CountDownLatch invalidated = new CountDownLatch(1);
+    Future<Set<String>> inFlight = executor.submit(() -> underTest.getProjectPermissions(10, "P1", () -> {
+      loads.incrementAndGet();
+      loading.countDown();
+      awaitUninterruptibly(invalidated);
+      return of("admin");
+    }));
+
+    loading.await(10, TimeUnit.SECONDS);
+    underTest.invalidatePermissions();
+    invalidated.countDown();
+
+    assertThat(inFlight.get(10, TimeUnit.SECONDS)).containsOnly("admin");
+    assertThat(getProjectPermissions(10, "P1", of("user"))).containsOnly("user");
+    assertThat(loads.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void values_loaded_before_invalidation_of_other_cache_are_cached() throws Exception {
+    CountDownLatch loading = new CountDownLatch(1);
+    CountDownLatch invalidated = new CountDownLatch(1);
+    Future<Set<String>> inFlight = executor.submit(() -> underTest.getProjectPermissions(10, "P1", () -> {
+      loads.incrementAndGet();
+      loading.countDown();
+      awaitUninterruptibly(invalidated);
+      return of("admin");
+    }));
+
+    loading.await(10, TimeUnit.SECONDS);
+    underTest.invalidateUser("john");
+    invalidated.countDown();
+
+    assertThat(inFlight.get(10, TimeUnit.SECONDS)).containsOnly("admin");
+    assertThat(getProjectPermissions(10, "P1", of("user"))).containsOnly("admin");
+    assertThat(loads.get()).isEqualTo(1);
+  }
+
+  private Optional<UserDto> getActiveUser(String login, UserDto loaded) {
+    return underTest.getActiveUser(login, () -> {
+      loads.incrementAndGet();
+      return Optional.ofNullable(loaded);
+    });
+  }
+
+  private Set<String> getProjectPermissions(Integer userId, String projectUuid, Set<String> loaded) {
+    return underTest.getProjectPermissions(userId, projectUuid, () -> {
+      loads.incrementAndGet();
+      return loaded;
+    });
+  }
+}
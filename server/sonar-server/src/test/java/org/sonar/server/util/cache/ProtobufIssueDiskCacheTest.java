@@ -0,0 +1,151 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.util.cache;
+
+import java.util.Date;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rules.RuleType;
+import org.sonar.api.utils.Duration;
+import org.sonar.api.utils.System2;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.core.issue.DefaultIssueComment;
+import org.sonar.core.issue.FieldDiffs;
+import org.sonar.core.util.CloseableIterator;
+import org.sonar.db.protobuf.DbCommons;
+import org.sonar.db.protobuf.DbIssues;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.junit.Assert.fail;
+
+public class ProtobufIssueDiskCacheTest {
+
+  private static final Date DATE = new Date(1_500_000_000_000L);
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void write_and_read() throws Exception {
+    ProtobufIssueDiskCache cache = new ProtobufIssueDiskCache(temp.newFile(), System2.INSTANCE);
+    try (CloseableIterator<DefaultIssue> traverse = cache.traverse()) {
+      assertThat(traverse).isEmpty();
+    }
+
+    cache.newAppender()
+      .append(newIssue("A", "FILE_1"))
+      .append(newIssue("B", "FILE_1"))
+      .close();
+    cache.newAppender()
+      .append(newIssue("C", "FILE_2"))
+      .close();
+    try (CloseableIterator<DefaultIssue> traverse = cache.traverse()) {
+      assertThat(traverse).extracting(DefaultIssue::key).containsExactly("A", "B", "C");
+    }
+  }
+
+  @Test
+  public void keep_all_fields_of_issue() throws Exception {
+    DbIssues.Locations locations = DbIssues.Locations.newBuilder()
+      .setTextRange(DbCommons.TextRange.newBuilder().setStartLine(3).setEndLine(5))
+      .build();
+    DefaultIssue issue = newIssue("A", "FILE_1")
+      .setType(RuleType.VULNERABILITY)
+      .setComponentKey("PROJECT:file1")
+      .setModuleUuid("MODULE")
+      .setModuleUuidPath(".MODULE.")
+      .setProjectUuid("PROJECT")
+      .setProjectKey("PROJECT")
+      .setRuleKey(RuleKey.of("squid", "S001"))
+      .setLanguage("java")
+      .setSeverity("MAJOR")
+      .setManualSeverity(true)
+      .setMessage("the message")
+      .setLine(10)
+      .setGap(2.5)
+      .setEffort(Duration.create(30L))
+      .setStatus("RESOLVED")
+      .setResolution("FIXED")
+      .setAssignee("john")
+      .setChecksum("abc")
+      .setAttribute("jira", "SONAR-1")
+      .setAuthorLogin("simon")
+      .setTags(asList("t1", "t2"))
+      .setLocations(locations)
+      .setCreationDate(DATE)
+      .setUpdateDate(DATE)
+      .setCloseDate(DATE)
+      .setNew(false)
+      .setBeingClosed(true)
+      .setOnDisabledRule(true)
+      .setChanged(true)
+      .setSendNotifications(true)
+      .setSelectedAt(1_000L);
+    issue.addComment(new DefaultIssueComment().setKey("C1").setIssueKey("A").setUserLogin("john").setMarkdownText("hello")
+      .setCreatedAt(DATE).setUpdatedAt(DATE).setNew(true));
+    issue.setCurrentChange(new FieldDiffs().setIssueKey("A").setUserLogin("john").setCreationDate(DATE)
+      .setDiff("severity", "MINOR", "MAJOR")
+      .setDiff("assignee", null, "john")
+      .setDiff("effort", 10L, 30L)
+      .setDiff("type", RuleType.BUG, RuleType.VULNERABILITY));
+
+    ProtobufIssueDiskCache cache = new ProtobufIssueDiskCache(temp.newFile(), System2.INSTANCE);
+    cache.newAppender().append(issue).close();
+
+    DefaultIssue read;
+    try (CloseableIterator<DefaultIssue> traverse = cache.traverse()) {
+      read = traverse.next();
+    }
+    assertThat(read).isEqualToIgnoringGivenFields(issue, "attributes", "comments", "tags", "currentChange", "changes");
+    assertThat(read.attributes()).containsOnly(entry("jira", "SONAR-1"));
+    assertThat(read.tags()).containsExactly("t1", "t2");
+    assertThat(read.comments()).hasSize(1);
+    DefaultIssueComment comment = (DefaultIssueComment) read.comments().get(0);
+    assertThat(comment.key()).isEqualTo("C1");
+    assertThat(comment.markdownText()).isEqualTo("hello");
+    assertThat(comment.createdAt()).isEqualTo(DATE);
+    assertThat(comment.isNew()).isTrue();
+    assertThat(read.currentChange().toString()).isEqualTo(issue.currentChange().toString());
+    assertThat(read.currentChange().userLogin()).isEqualTo("john");
+    assertThat(read.currentChange().get("assignee").oldValue()).isNull();
+    assertThat(read.currentChange().get("effort").oldValue()).isEqualTo(10L);
+    assertThat(read.currentChange().get("effort").newValue()).isEqualTo(30L);
+    assertThat(read.currentChange().get("type").newValue()).isEqualTo(RuleType.VULNERABILITY);
+    assertThat(read.changes()).containsExactly(read.currentChange());
+  }
+
+  @Test
+  public void fail_if_file_is_not_writable() throws Exception {
+    try {
+      new ProtobufIssueDiskCache(temp.newFolder(), System2.INSTANCE);
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessageContaining("Fail to write into file");
+    }
+  }
+
+  private static DefaultIssue newIssue(String key, String componentUuid) {
+    return new DefaultIssue().setKey(key).setComponentUuid(componentUuid);
+  }
+}
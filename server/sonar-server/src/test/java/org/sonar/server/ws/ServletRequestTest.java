@@ -75,6 +75,14 @@ public class ServletRequestTest {
     assertThat(underTest.getMediaType()).isEqualTo(MediaTypes.PROTOBUF);
   }
 
+  @Test
+  public void read_header_from_source() {
+    when(source.getHeader(HttpHeaders.IF_NONE_MATCH)).thenReturn("\"abc\"");
+
+    assertThat(underTest.header(HttpHeaders.IF_NONE_MATCH)).hasValue("\"abc\"");
+    assertThat(underTest.header(HttpHeaders.ETAG)).isEmpty();
+  }
+
   @Test
   public void has_param_from_source() {
     when(source.getParameterMap()).thenReturn(ImmutableMap.of("param", new String[] {"value"}));
@@ -19,15 +19,14 @@
  */
 package org.sonar.core.issue.tracking;
 
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.Multimap;
-import java.util.Collection;
-import java.util.Objects;
-import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import org.apache.commons.lang.StringUtils;
-import org.sonar.api.batch.ScannerSide;
 import org.sonar.api.batch.InstantiationStrategy;
-import org.sonar.api.rule.RuleKey;
+import org.sonar.api.batch.ScannerSide;
 
 @InstantiationStrategy(InstantiationStrategy.PER_BATCH)
 @ScannerSide
@@ -35,22 +34,26 @@ public class Tracker<RAW extends Trackable, BASE extends Trackable> {
 
   public Tracking<RAW, BASE> track(Input<RAW> rawInput, Input<BASE> baseInput) {
     Tracking<RAW, BASE> tracking = new Tracking<>(rawInput, baseInput);
+    if (tracking.isComplete()) {
+      return tracking;
+    }
+    TrackingIndex<RAW, BASE> index = new TrackingIndex<>(rawInput.getIssues(), baseInput.getIssues());
 
     // 1. match issues with same rule, same line and same line hash, but not necessarily with same message
-    match(tracking, LineAndLineHashKeyFactory.INSTANCE);
+    index.match(tracking, SearchKey.LINE_AND_LINE_HASH);
 
     // 2. detect code moves by comparing blocks of codes
     detectCodeMoves(rawInput, baseInput, tracking);
 
     // 3. match issues with same rule, same message and same line hash
-    match(tracking, LineHashAndMessageKeyFactory.INSTANCE);
+    index.match(tracking, SearchKey.LINE_HASH_AND_MESSAGE);
 
     // 4. match issues with same rule, same line and same message
-    match(tracking, LineAndMessageKeyFactory.INSTANCE);
+    index.match(tracking, SearchKey.LINE_AND_MESSAGE);
 
     // 5. match issues with same rule and same line hash but different line and different message.
     // See SONAR-2812
-    match(tracking, LineHashKeyFactory.INSTANCE);
+    index.match(tracking, SearchKey.LINE_HASH);
 
     return tracking;
   }
@@ -61,189 +64,160 @@ public class Tracker<RAW extends Trackable, BASE extends Trackable> {
     }
   }
 
-  private void match(Tracking<RAW, BASE> tracking, SearchKeyFactory factory) {
-    if (tracking.isComplete()) {
-      return;
-    }
+  /**
+   * Fields compared by each matching pass, in addition to the rule.
+   */
+  private enum SearchKey {
+    LINE_AND_LINE_HASH(true, true, false),
+    LINE_HASH_AND_MESSAGE(false, true, true),
+    LINE_AND_MESSAGE(true, false, true),
+    LINE_HASH(false, true, false);
 
-    Multimap<SearchKey, BASE> baseSearch = ArrayListMultimap.create();
-    for (BASE base : tracking.getUnmatchedBases()) {
-      baseSearch.put(factory.create(base), base);
-    }
+    private final boolean line;
+    private final boolean lineHash;
+    private final boolean message;
 
-    for (RAW raw : tracking.getUnmatchedRaws()) {
-      SearchKey rawKey = factory.create(raw);
-      Collection<BASE> bases = baseSearch.get(rawKey);
-      if (!bases.isEmpty()) {
-        // TODO taking the first one. Could be improved if there are more than 2 issues on the same line.
-        // Message could be checked to take the best one.
-        BASE match = bases.iterator().next();
-        tracking.match(raw, match);
-        baseSearch.remove(rawKey, match);
-      }
+    SearchKey(boolean line, boolean lineHash, boolean message) {
+      this.line = line;
+      this.lineHash = lineHash;
+      this.message = message;
     }
   }
 
-  private interface SearchKey {
-  }
-
-  private interface SearchKeyFactory {
-    SearchKey create(Trackable trackable);
-  }
-
-  private static class LineAndLineHashKey implements SearchKey {
-    private final RuleKey ruleKey;
-    private final String lineHash;
-    private final Integer line;
-
-    LineAndLineHashKey(Trackable trackable) {
-      this.ruleKey = trackable.getRuleKey();
-      this.line = trackable.getLine();
-      this.lineHash = StringUtils.defaultString(trackable.getLineHash(), "");
-    }
-
-    @Override
-    public boolean equals(@Nonnull Object o) {
-      if (this == o) {
-        return true;
+  /**
+   * Fields of raw and base issues, built once and shared by all the matching passes. Rule keys, line hashes and
+   * messages are replaced by ids so that comparing two issues only compares ints.
+   */
+  private static final class TrackingIndex<RAW extends Trackable, BASE extends Trackable> {
+    private static final int NO_LINE = Integer.MIN_VALUE;
+    private static final int EMPTY = -1;
+
+    private final Map<Object, Integer> ids = new HashMap<>();
+    private final List<RAW> raws;
+    private final List<BASE> bases;
+    private final IssueFields rawFields;
+    private final IssueFields baseFields;
+
+    private TrackingIndex(Iterable<RAW> raws, Iterable<BASE> bases) {
+      this.raws = toList(raws);
+      this.bases = toList(bases);
+      this.rawFields = new IssueFields(this.raws);
+      this.baseFields = new IssueFields(this.bases);
+    }
+
+    private static <T> List<T> toList(Iterable<T> trackables) {
+      List<T> list = new ArrayList<>();
+      trackables.forEach(list::add);
+      return list;
+    }
+
+    private int idOf(Object value) {
+      return ids.computeIfAbsent(value, k -> ids.size());
+    }
+
+    /**
+     * Matches each unmatched raw issue with the first unmatched base issue which has the same key. Unmatched base
+     * issues are chained by key in an open addressing table, in their original order, so that matching a base issue
+     * removes the head of its chain.
+     */
+    private void match(Tracking<RAW, BASE> tracking, SearchKey key) {
+      if (tracking.isComplete()) {
+        return;
       }
-      LineAndLineHashKey that = (LineAndLineHashKey) o;
-      // start with most discriminant field
-      return Objects.equals(line, that.line)
-        && lineHash.equals(that.lineHash)
-        && ruleKey.equals(that.ruleKey);
-    }
-
-    @Override
-    public int hashCode() {
-      int result = ruleKey.hashCode();
-      result = 31 * result + lineHash.hashCode();
-      result = 31 * result + (line != null ? line.hashCode() : 0);
-      return result;
-    }
-  }
-
-  private enum LineAndLineHashKeyFactory implements SearchKeyFactory {
-    INSTANCE;
-    @Override
-    public SearchKey create(Trackable t) {
-      return new LineAndLineHashKey(t);
-    }
-  }
-
-  private static class LineHashAndMessageKey implements SearchKey {
-    private final RuleKey ruleKey;
-    private final String message;
-    private final String lineHash;
-
-    LineHashAndMessageKey(Trackable trackable) {
-      this.ruleKey = trackable.getRuleKey();
-      this.message = trackable.getMessage();
-      this.lineHash = StringUtils.defaultString(trackable.getLineHash(), "");
-    }
 
-    @Override
-    public boolean equals(@Nonnull Object o) {
-      if (this == o) {
-        return true;
+      int mask = tableSize(bases.size()) - 1;
+      // index of the first base issue having the key of the slot, used to compare keys
+      int[] slotKeys = new int[mask + 1];
+      // index of the first unmatched base issue of the slot
+      int[] slotHeads = new int[mask + 1];
+      int[] nextBases = new int[bases.size()];
+      Arrays.fill(slotKeys, EMPTY);
+      for (int b = bases.size() - 1; b >= 0; b--) {
+        if (tracking.containsUnmatchedBase(bases.get(b))) {
+          int slot = findSlot(slotKeys, mask, key, baseFields, b);
+          if (slotKeys[slot] == EMPTY) {
+            slotKeys[slot] = b;
+            slotHeads[slot] = EMPTY;
+          }
+          nextBases[b] = slotHeads[slot];
+          slotHeads[slot] = b;
+        }
       }
-      LineHashAndMessageKey that = (LineHashAndMessageKey) o;
-      // start with most discriminant field
-      return lineHash.equals(that.lineHash)
-        && message.equals(that.message)
-        && ruleKey.equals(that.ruleKey);
-    }
-
-    @Override
-    public int hashCode() {
-      int result = ruleKey.hashCode();
-      result = 31 * result + message.hashCode();
-      result = 31 * result + lineHash.hashCode();
-      return result;
-    }
-  }
-
-  private enum LineHashAndMessageKeyFactory implements SearchKeyFactory {
-    INSTANCE;
-    @Override
-    public SearchKey create(Trackable t) {
-      return new LineHashAndMessageKey(t);
-    }
-  }
-
-  private static class LineAndMessageKey implements SearchKey {
-    private final RuleKey ruleKey;
-    private final String message;
-    private final Integer line;
-
-    LineAndMessageKey(Trackable trackable) {
-      this.ruleKey = trackable.getRuleKey();
-      this.message = trackable.getMessage();
-      this.line = trackable.getLine();
-    }
 
-    @Override
-    public boolean equals(@Nonnull Object o) {
-      if (this == o) {
-        return true;
+      for (int r = 0; r < raws.size(); r++) {
+        RAW raw = raws.get(r);
+        if (tracking.baseFor(raw) == null) {
+          int slot = findSlot(slotKeys, mask, key, rawFields, r);
+          int b = slotKeys[slot] == EMPTY ? EMPTY : slotHeads[slot];
+          if (b != EMPTY) {
+            // TODO taking the first one. Could be improved if there are more than 2 issues on the same line.
+            // Message could be checked to take the best one.
+            tracking.match(raw, bases.get(b));
+            slotHeads[slot] = nextBases[b];
+          }
+        }
       }
-      LineAndMessageKey that = (LineAndMessageKey) o;
-      // start with most discriminant field
-      return Objects.equals(line, that.line)
-        && message.equals(that.message)
-        && ruleKey.equals(that.ruleKey);
-    }
-
-    @Override
-    public int hashCode() {
-      int result = ruleKey.hashCode();
-      result = 31 * result + message.hashCode();
-      result = 31 * result + (line != null ? line.hashCode() : 0);
-      return result;
     }
-  }
-
-  private enum LineAndMessageKeyFactory implements SearchKeyFactory {
-    INSTANCE;
-    @Override
-    public SearchKey create(Trackable t) {
-      return new LineAndMessageKey(t);
-    }
-  }
-
-  private static class LineHashKey implements SearchKey {
-    private final RuleKey ruleKey;
-    private final String lineHash;
 
-    LineHashKey(Trackable trackable) {
-      this.ruleKey = trackable.getRuleKey();
-      this.lineHash = StringUtils.defaultString(trackable.getLineHash(), "");
+    private int findSlot(int[] slotKeys, int mask, SearchKey key, IssueFields fields, int index) {
+      int slot = fields.hash(key, index) & mask;
+      while (slotKeys[slot] != EMPTY && !fields.sameKey(key, index, baseFields, slotKeys[slot])) {
+        slot = (slot + 1) & mask;
+      }
+      return slot;
     }
 
-    @Override
-    public boolean equals(@Nonnull Object o) {
-      if (this == o) {
-        return true;
+    private static int tableSize(int size) {
+      int tableSize = 16;
+      while (tableSize < 2 * size) {
+        tableSize <<= 1;
+      }
+      return tableSize;
+    }
+
+    private final class IssueFields {
+      private final int[] rules;
+      private final int[] lines;
+      private final int[] lineHashes;
+      private final int[] messages;
+
+      private IssueFields(List<? extends Trackable> trackables) {
+        int size = trackables.size();
+        this.rules = new int[size];
+        this.lines = new int[size];
+        this.lineHashes = new int[size];
+        this.messages = new int[size];
+        for (int i = 0; i < size; i++) {
+          Trackable trackable = trackables.get(i);
+          Integer line = trackable.getLine();
+          rules[i] = idOf(trackable.getRuleKey());
+          lines[i] = line == null ? NO_LINE : line;
+          lineHashes[i] = idOf(StringUtils.defaultString(trackable.getLineHash(), ""));
+          messages[i] = idOf(trackable.getMessage());
+        }
       }
-      LineHashKey that = (LineHashKey) o;
-      // start with most discriminant field
-      return lineHash.equals(that.lineHash)
-        && ruleKey.equals(that.ruleKey);
-    }
 
-    @Override
-    public int hashCode() {
-      int result = ruleKey.hashCode();
-      result = 31 * result + lineHash.hashCode();
-      return result;
-    }
-  }
+      private int hash(SearchKey key, int i) {
+        int result = rules[i];
+        if (key.line) {
+          result = 31 * result + lines[i];
+        }
+        if (key.lineHash) {
+          result = 31 * result + lineHashes[i];
+        }
+        if (key.message) {
+          result = 31 * result + messages[i];
+        }
+        int spread = result * 0x9E3779B9;
+        return spread ^ (spread >>> 16);
+      }
 
-  private enum LineHashKeyFactory implements SearchKeyFactory {
-    INSTANCE;
-    @Override
-    public SearchKey create(Trackable t) {
-      return new LineHashKey(t);
+      private boolean sameKey(SearchKey key, int i, IssueFields other, int j) {
+        return rules[i] == other.rules[j]
+          && (!key.line || lines[i] == other.lines[j])
+          && (!key.lineHash || lineHashes[i] == other.lineHashes[j])
+          && (!key.message || messages[i] == other.messages[j]);
+      }
     }
   }
 }
@@ -183,6 +183,52 @@ public class TrackerTest {
     assertThat(tracking.getUnmatchedBases()).containsOnly(base);
   }
 
+  @Test
+  public void issues_with_same_key_are_matched_in_order() {
+    FakeInput baseInput = new FakeInput("H1");
+    Issue base1 = baseInput.createIssueOnLine(1, RULE_SYSTEM_PRINT, "msg");
+    Issue base2 = baseInput.createIssueOnLine(1, RULE_SYSTEM_PRINT, "msg");
+    Issue base3 = baseInput.createIssueOnLine(1, RULE_SYSTEM_PRINT, "msg");
+
+    FakeInput rawInput = new FakeInput("H1");
+    Issue raw1 = rawInput.createIssueOnLine(1, RULE_SYSTEM_PRINT, "msg");
+    Issue raw2 = rawInput.createIssueOnLine(1, RULE_SYSTEM_PRINT, "msg");
+
+    Tracking<Issue, Issue> tracking = tracker.track(rawInput, baseInput);
+    assertThat(tracking.baseFor(raw1)).isSameAs(base1);
+    assertThat(tracking.baseFor(raw2)).isSameAs(base2);
+    assertThat(tracking.getUnmatchedBases()).containsOnly(base3);
+  }
+
+  @Test
+  public void match_thousands_of_issues() {
+    int lines = 5_000;
+    String[] hashes = new String[lines];
+    for (int i = 0; i < lines; i++) {
+      hashes[i] = "H" + i;
+    }
+    FakeInput baseInput = new FakeInput(hashes);
+    FakeInput rawInput = new FakeInput(hashes);
+    List<Issue> raws = new ArrayList<>();
+    List<Issue> bases = new ArrayList<>();
+    for (int line = 1; line <= lines; line++) {
+      bases.add(baseInput.createIssueOnLine(line, RULE_SYSTEM_PRINT, "msg" + line));
+      bases.add(baseInput.createIssueOnLine(line, RULE_UNUSED_LOCAL_VARIABLE, "msg"));
+      // message changed
+      raws.add(rawInput.createIssueOnLine(line, RULE_SYSTEM_PRINT, "new msg" + line));
+      raws.add(rawInput.createIssueOnLine(line, RULE_UNUSED_LOCAL_VARIABLE, "msg"));
+    }
+    Issue newRaw = rawInput.createIssue(RULE_USE_DIAMOND, "msg");
+
+    Tracking<Issue, Issue> tracking = tracker.track(rawInput, baseInput);
+
+    for (int i = 0; i < raws.size(); i++) {
+      assertThat(tracking.baseFor(raws.get(i))).isSameAs(bases.get(i));
+    }
+    assertThat(tracking.baseFor(newRaw)).isNull();
+    assertThat(tracking.getUnmatchedBases()).isEmpty();
+  }
+
   @Test
   public void do_not_fail_if_raw_line_does_not_exist() {
     FakeInput baseInput = new FakeInput();
@@ -0,0 +1,473 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.duplications.index;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+import javax.annotation.Nullable;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.block.ByteArray;
+import org.sonar.duplications.index.PackedMemoryCloneIndex.ResourceBlocks;
+import org.sonar.duplications.utils.FastStringComparator;
+
+/**
+ * Provides an index which keeps blocks out of the Java heap.
+ * <p>
+ * Blocks are packed in fixed size records, stored in pages of direct memory, so that the heap only holds
+ * the identifiers of resources. Unlike {@link PackedMemoryCloneIndex}, records are never moved: once all blocks are
+ * inserted, the index is built by a counting sort, which groups positions of records by bucket of block hash and
+ * by resource. Hash of blocks are computed in parallel. {@link #getBySequenceHash(ByteArray)} then only
+ * scans the bucket of the requested hash, which contains about one block per distinct hash.
+ * </p>
+ * <p>
+ * Note that this implementation does not support deletion.
+ * </p>
+ * <p>
+ * Once all blocks are inserted and index is built, {@link #getBySequenceHash(ByteArray)} can be called concurrently.
+ * </p>
+ * <p>
+ * {@link #close()} drops the direct memory of the index, so that it is released by the next garbage collection, even
+ * if the index itself is still referenced.
+ * </p>
+ */
+public class OffHeapCloneIndex extends AbstractCloneIndex implements AutoCloseable {
+
+  private static final int BLOCK_INTS = 6;
+
+  /**
+   * Minimal number of records processed by a task when hashes are computed in parallel.
+   */
+  private static final int MIN_RECORDS_PER_TASK = 1 << 14;
+
+  private final int hashInts;
+
+  private final int blockInts;
+
+  /**
+   * Records of blocks, in order of insertion.
+   */
+  private final OffHeapIntArray blockData;
+
+  private final List<String> resourceIds = new ArrayList<>();
+  private final Map<String, Integer> resourceIndexById = new HashMap<>();
+
+  /**
+   * Current number of blocks in index.
+   */
+  private int size;
+
+  /**
+   * Indicates that index requires to be built to perform queries.
+   */
+  private boolean built;
+
+  private boolean closed;
+
+  private int bucketMask;
+  private OffHeapIntArray bucketStarts;
+  private OffHeapIntArray blocksByBucket;
+  private int[] resourceStarts;
+  private OffHeapIntArray blocksByResource;
+  private int[] sortedResourceIndexes;
+
+  public OffHeapCloneIndex() {
+    this(8);
+  }
+
+  /**
+   * @param hashBytes size of hash in bytes
+   */
+  public OffHeapCloneIndex(int hashBytes) {
+    this.hashInts = hashBytes / 4;
+    this.blockInts = hashInts + BLOCK_INTS;
+    this.blockData = new OffHeapIntArray();
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Blocks are returned in their order of insertion.
+   * </p>
+   */
+  @Override
+  public Collection<Block> getByResourceId(String resourceId) {
+    ensureBuilt();
+
+    Integer resourceIndex = resourceIndexById.get(resourceId);
+    if (resourceIndex == null) {
+      return Collections.emptyList();
+    }
+    return getBlocksOfResource(resourceIndex);
+  }
+
+  private List<Block> getBlocksOfResource(int resourceIndex) {
+    String resourceId = resourceIds.get(resourceIndex);
+    int end = resourceStarts[resourceIndex + 1];
+    List<Block> result = new ArrayList<>(end - resourceStarts[resourceIndex]);
+    for (int i = resourceStarts[resourceIndex]; i < end; i++) {
+      result.add(createBlock(blocksByResource.get(i), resourceId, null));
+    }
+    return result;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Collection<Block> getBySequenceHash(ByteArray sequenceHash) {
+    ensureBuilt();
+
+    int[] hash = sequenceHash.toIntArray();
+    checkHashSize(hash.length);
+
+    int bucket = bucketOf(hash) & bucketMask;
+    int end = bucketStarts.get(bucket + 1);
+    List<Block> result = new ArrayList<>();
+    for (int i = bucketStarts.get(bucket); i < end; i++) {
+      int index = blocksByBucket.get(i);
+      if (hasHash(index, hash)) {
+        // extract block (note that there is no need to extract hash)
+        int resourceIndex = blockData.get((long) index * blockInts + hashInts + BLOCK_INTS - 1);
+        result.add(createBlock(index, resourceIds.get(resourceIndex), sequenceHash));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * <strong>Note that this implementation allows insertion of two blocks with same index for one resource.</strong>
+   * </p>
+   */
+  @Override
+  public void insert(Block block) {
+    ensureOpen();
+    int[] hash = block.getBlockHash().toIntArray();
+    checkHashSize(hash.length);
+    built = false;
+
+    long offset = (long) size * blockInts;
+    blockData.ensureCapacity(offset + blockInts);
+    for (int i = 0; i < hashInts; i++) {
+      blockData.set(offset++, hash[i]);
+    }
+    blockData.set(offset++, block.getIndexInFile());
+    blockData.set(offset++, block.getStartLine());
+    blockData.set(offset++, block.getEndLine());
+    blockData.set(offset++, block.getStartUnit());
+    blockData.set(offset++, block.getEndUnit());
+    blockData.set(offset, resourceIndexOf(block.getResourceId()));
+
+    size++;
+  }
+
+  private int resourceIndexOf(String resourceId) {
+    Integer resourceIndex = resourceIndexById.get(resourceId);
+    if (resourceIndex == null) {
+      resourceIndex = resourceIds.size();
+      resourceIds.add(resourceId);
+      resourceIndexById.put(resourceId, resourceIndex);
+    }
+    return resourceIndex;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Iterator<ResourceBlocks> iterator() {
+    ensureBuilt();
+    return new ResourceIterator();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int noResources() {
+    ensureBuilt();
+    return sortedResourceIndexes.length;
+  }
+
+  private void checkHashSize(int length) {
+    if (length != hashInts) {
+      throw new IllegalArgumentException("Expected " + hashInts + " ints in hash, but got " + length);
+    }
+  }
+
+  private Block createBlock(int index, String resourceId, @Nullable ByteArray byteHash) {
+    long offset = (long) index * blockInts;
+    ByteArray blockHash;
+
+    if (byteHash == null) {
+      int[] hash = new int[hashInts];
+      for (int j = 0; j < hashInts; j++) {
+        hash[j] = blockData.get(offset++);
+      }
+      blockHash = new ByteArray(hash);
+    } else {
+      blockHash = byteHash;
+      offset += hashInts;
+    }
+
+    int indexInFile = blockData.get(offset++);
+    int firstLineNumber = blockData.get(offset++);
+    int lastLineNumber = blockData.get(offset++);
+    int startUnit = blockData.get(offset++);
+    int endUnit = blockData.get(offset);
+
+    return Block.builder()
+      .setResourceId(resourceId)
+      .setBlockHash(blockHash)
+      .setIndexInFile(indexInFile)
+      .setLines(firstLineNumber, lastLineNumber)
+      .setUnit(startUnit, endUnit)
+      .build();
+  }
+
+  private boolean hasHash(int index, int[] hash) {
+    long offset = (long) index * blockInts;
+    for (int k = 0; k < hashInts; k++, offset++) {
+      if (blockData.get(offset) != hash[k]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Spreads the bits of the hash of a block, which are already well distributed, so that any mask of its lower bits
+   * can be used as a bucket.
+   */
+  private static int bucketOf(int[] hash) {
+    int h = 0;
+    for (int value : hash) {
+      h = 31 * h + value;
+    }
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    h ^= h >>> 16;
+    return h;
+  }
+
+  private int bucketOf(int index) {
+    int[] hash = new int[hashInts];
+    long offset = (long) index * blockInts;
+    for (int k = 0; k < hashInts; k++) {
+      hash[k] = blockData.get(offset + k);
+    }
+    return bucketOf(hash) & bucketMask;
+  }
+
+  /**
+   * Builds the index, if necessary.
+   */
+  private void ensureBuilt() {
+    ensureOpen();
+    if (built) {
+      return;
+    }
+    freeGroups();
+
+    CompletableFuture<Void> groupByResource = CompletableFuture.runAsync(this::groupByResource);
+    groupByBucket();
+    groupByResource.join();
+
+    built = true;
+  }
+
+  /**
+   * Counting sort of blocks by bucket of hash. Buckets are computed in parallel, then blocks are distributed
+   * backwards, so that blocks of a bucket keep their order of insertion.
+   */
+  private void groupByBucket() {
+    int bucketCount = Integer.highestOneBit(Math.max(size, 1) * 2 - 1);
+    bucketMask = bucketCount - 1;
+
+    OffHeapIntArray buckets = new OffHeapIntArray();
+    buckets.ensureCapacity(size);
+    int tasks = Math.max(1, size / MIN_RECORDS_PER_TASK);
+    IntStream.range(0, tasks).parallel().forEach(task -> {
+      int end = task == tasks - 1 ? size : ((task + 1) * (size / tasks));
+      for (int i = task * (size / tasks); i < end; i++) {
+        buckets.set(i, bucketOf(i));
+      }
+    });
+
+    bucketStarts = new OffHeapIntArray();
+    bucketStarts.ensureCapacity(bucketCount + 1L);
+    for (int i = 0; i < size; i++) {
+      int bucket = buckets.get(i);
+      bucketStarts.set(bucket + 1L, bucketStarts.get(bucket + 1L) + 1);
+    }
+    // accumulate ends of buckets, which are moved back to their starts while blocks are distributed
+    for (int bucket = 1; bucket <= bucketCount; bucket++) {
+      bucketStarts.set(bucket, bucketStarts.get(bucket) + bucketStarts.get(bucket - 1L));
+    }
+    blocksByBucket = new OffHeapIntArray();
+    blocksByBucket.ensureCapacity(size);
+    for (int i = size - 1; i >= 0; i--) {
+      long bucketEnd = buckets.get(i) + 1L;
+      int position = bucketStarts.get(bucketEnd) - 1;
+      bucketStarts.set(bucketEnd, position);
+      blocksByBucket.set(position, i);
+    }
+    // end of each bucket has been moved back to its start, one position too far: shift them back
+    for (int bucket = 0; bucket < bucketCount; bucket++) {
+      bucketStarts.set(bucket, bucketStarts.get(bucket + 1L));
+    }
+    bucketStarts.set(bucketCount, size);
+    buckets.free();
+  }
+
+  /**
+   * Counting sort of blocks by resource, which keeps blocks of a resource in their order of insertion.
+   */
+  private void groupByResource() {
+    int resourceCount = resourceIds.size();
+    int[] starts = new int[resourceCount + 1];
+    for (int i = 0; i < size; i++) {
+      starts[resourceIndexAt(i) + 1]++;
+    }
+    for (int r = 0; r < resourceCount; r++) {
+      starts[r + 1] += starts[r];
+    }
+    int[] positions = starts.clone();
+    OffHeapIntArray blocks = new OffHeapIntArray();
+    blocks.ensureCapacity(size);
+    for (int i = 0; i < size; i++) {
+      blocks.set(positions[resourceIndexAt(i)]++, i);
+    }
+
+    resourceStarts = starts;
+    blocksByResource = blocks;
+    sortedResourceIndexes = IntStream.range(0, resourceCount)
+      .filter(r -> starts[r + 1] > starts[r])
+      .boxed()
+      .sorted((r1, r2) -> FastStringComparator.INSTANCE.compare(resourceIds.get(r1), resourceIds.get(r2)))
+      .mapToInt(Integer::intValue)
+      .toArray();
+  }
+
+  /**
+   * Drops the direct memory of the index, which can not be used anymore.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    built = false;
+    blockData.free();
+    freeGroups();
+  }
+
+  private void ensureOpen() {
+    if (closed) {
+      throw new IllegalStateException("Index is closed");
+    }
+  }
+
+  /**
+   * Releases the groups of blocks, which are computed again when the index is built.
+   */
+  private void freeGroups() {
+    for (OffHeapIntArray group : new OffHeapIntArray[] {bucketStarts, blocksByBucket, blocksByResource}) {
+      if (group != null) {
+        group.free();
+      }
+    }
+    bucketStarts = null;
+    blocksByBucket = null;
+    blocksByResource = null;
+  }
+
+  private int resourceIndexAt(int index) {
+    return blockData.get((long) index * blockInts + hashInts + BLOCK_INTS - 1);
+  }
+
+  private class ResourceIterator implements Iterator<ResourceBlocks> {
+    private int index = 0;
+
+    @Override
+    public boolean hasNext() {
+      return index < sortedResourceIndexes.length;
+    }
+
+    @Override
+    public ResourceBlocks next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      int resourceIndex = sortedResourceIndexes[index];
+      index++;
+      return new ResourceBlocks(resourceIds.get(resourceIndex), getBlocksOfResource(resourceIndex));
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  /**
+   * Growable array of ints, stored in pages of direct memory. Reads and writes use absolute positions, so that
+   * distinct elements can be accessed concurrently.
+   */
+  private static final class OffHeapIntArray {
+    private static final int PAGE_SHIFT = 16;
+    private static final int PAGE_INTS = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_INTS - 1;
+
+    private final List<IntBuffer> pages = new ArrayList<>();
+
+    void ensureCapacity(long capacity) {
+      while ((long) pages.size() << PAGE_SHIFT < capacity) {
+        pages.add(ByteBuffer.allocateDirect(PAGE_INTS * 4).asIntBuffer());
+      }
+    }
+
+    /**
+     * Direct memory of pages is released once they are garbage collected
+     */
+    void free() {
+      pages.clear();
+    }
+
+    int get(long index) {
+      return pages.get((int) (index >>> PAGE_SHIFT)).get((int) (index & PAGE_MASK));
+    }
+
+    void set(long index, int value) {
+      pages.get((int) (index >>> PAGE_SHIFT)).put((int) (index & PAGE_MASK), value);
+    }
+  }
+}
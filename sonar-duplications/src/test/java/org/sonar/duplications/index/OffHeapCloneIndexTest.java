@@ -0,0 +1,253 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.duplications.index;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.block.ByteArray;
+import org.sonar.duplications.index.PackedMemoryCloneIndex.ResourceBlocks;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OffHeapCloneIndexTest {
+
+  private OffHeapCloneIndex index;
+
+  @Before
+  public void setUp() {
+    index = new OffHeapCloneIndex();
+  }
+
+  @Test
+  public void test() {
+    index.insert(newBlock("a", 1));
+    index.insert(newBlock("a", 2));
+    index.insert(newBlock("b", 1));
+    index.insert(newBlock("c", 1));
+    index.insert(newBlock("d", 1));
+    index.insert(newBlock("e", 1));
+    index.insert(newBlock("e", 2));
+    index.insert(newBlock("e", 3));
+
+    assertThat(index.noResources()).isEqualTo(5);
+    assertThat(index.getBySequenceHash(new ByteArray(1L))).hasSize(5);
+    assertThat(index.getBySequenceHash(new ByteArray(2L))).hasSize(2);
+    assertThat(index.getBySequenceHash(new ByteArray(3L))).hasSize(1);
+    assertThat(index.getBySequenceHash(new ByteArray(4L))).isEmpty();
+    assertThat(index.getByResourceId("a")).hasSize(2);
+    assertThat(index.getByResourceId("b")).hasSize(1);
+    assertThat(index.getByResourceId("e")).hasSize(3);
+    assertThat(index.getByResourceId("does not exist")).isEmpty();
+  }
+
+  @Test
+  public void empty_index() {
+    assertThat(index.noResources()).isZero();
+    assertThat(index.getBySequenceHash(new ByteArray(1L))).isEmpty();
+    assertThat(index.getByResourceId("a")).isEmpty();
+    assertThat(index.iterator().hasNext()).isFalse();
+  }
+
+  @Test
+  public void should_restore_blocks() {
+    Block block = Block.builder()
+      .setResourceId("a")
+      .setBlockHash(new ByteArray(42L))
+      .setIndexInFile(3)
+      .setLines(10, 15)
+      .setUnit(20, 40)
+      .build();
+    index.insert(block);
+
+    Block found = index.getByResourceId("a").iterator().next();
+    assertThat(found).isEqualTo(block);
+    assertThat(found.getResourceId()).isEqualTo("a");
+    assertThat(found.getBlockHash()).isEqualTo(new ByteArray(42L));
+    assertThat(found.getStartLine()).isEqualTo(10);
+    assertThat(found.getEndLine()).isEqualTo(15);
+    assertThat(found.getStartUnit()).isEqualTo(20);
+    assertThat(found.getEndUnit()).isEqualTo(40);
+  }
+
+  /**
+   * When: query by a hash value.
+   * Expected: all blocks should have same hash, which presented in the form of the same object.
+   */
+  @Test
+  public void should_construct_blocks_with_normalized_hash() {
+    index.insert(newBlock("a", 1));
+    index.insert(newBlock("b", 1));
+    index.insert(newBlock("c", 1));
+    ByteArray requestedHash = new ByteArray(1L);
+    Collection<Block> blocks = index.getBySequenceHash(requestedHash);
+    assertThat(blocks).hasSize(3);
+    for (Block block : blocks) {
+      assertThat(block.getBlockHash()).isSameAs(requestedHash);
+    }
+  }
+
+  @Test
+  public void iterate() {
+    index.insert(newBlock("a", 1));
+    index.insert(newBlock("c", 1));
+    index.insert(newBlock("b", 1));
+    index.insert(newBlock("c", 2));
+    index.insert(newBlock("a", 2));
+
+    Iterator<ResourceBlocks> it = index.iterator();
+
+    List<ResourceBlocks> resourcesBlocks = new ArrayList<>();
+    while (it.hasNext()) {
+      resourcesBlocks.add(it.next());
+    }
+
+    assertThat(resourcesBlocks).extracting(ResourceBlocks::resourceId).containsExactly("a", "b", "c");
+    assertThat(resourcesBlocks.get(0).blocks()).hasSize(2);
+    assertThat(resourcesBlocks.get(1).blocks()).hasSize(1);
+    assertThat(resourcesBlocks.get(2).blocks()).hasSize(2);
+  }
+
+  @Test
+  public void should_rebuild_index_when_blocks_are_inserted_after_a_query() {
+    index.insert(newBlock("a", 1));
+    assertThat(index.getBySequenceHash(new ByteArray(1L))).hasSize(1);
+
+    index.insert(newBlock("b", 1));
+
+    assertThat(index.getBySequenceHash(new ByteArray(1L))).extracting(Block::getResourceId).containsExactly("a", "b");
+    assertThat(index.noResources()).isEqualTo(2);
+  }
+
+  /**
+   * Enough blocks are inserted to use several pages of memory and several tasks to build the index.
+   */
+  @Test
+  public void should_find_same_blocks_as_PackedMemoryCloneIndex() {
+    CloneIndex reference = new PackedMemoryCloneIndex();
+    Random random = new Random(42);
+    for (int i = 0; i < 100_000; i++) {
+      Block block = newBlock("resource" + random.nextInt(500), random.nextInt(20_000));
+      reference.insert(block);
+      index.insert(block);
+    }
+
+    assertThat(index.noResources()).isEqualTo(reference.noResources());
+    for (long hash = 0; hash < 20_000; hash += 7) {
+      ByteArray sequenceHash = new ByteArray(hash);
+      assertThat(index.getBySequenceHash(sequenceHash)).containsOnlyElementsOf(reference.getBySequenceHash(sequenceHash))
+        .hasSameSizeAs(reference.getBySequenceHash(sequenceHash));
+    }
+    for (int i = 0; i < 500; i += 11) {
+      assertThat(index.getByResourceId("resource" + i)).hasSameSizeAs(reference.getByResourceId("resource" + i));
+    }
+    Iterator<ResourceBlocks> expected = reference.iterator();
+    Iterator<ResourceBlocks> actual = index.iterator();
+    while (expected.hasNext()) {
+      assertThat(actual.next().resourceId()).isEqualTo(expected.next().resourceId());
+    }
+    assertThat(actual.hasNext()).isFalse();
+  }
+
+  /**
+   * Given: index, which accepts blocks with 4-byte hash.
+   * Expected: exception during insertion of block with 8-byte hash.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void attempt_to_insert_hash_of_incorrect_size() {
+    CloneIndex index = new OffHeapCloneIndex(4);
+    index.insert(newBlock("a", 1));
+  }
+
+  /**
+   * Given: index, which accepts blocks with 4-byte hash.
+   * Expected: exception during search by 8-byte hash.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void attempt_to_find_hash_of_incorrect_size() {
+    CloneIndex index = new OffHeapCloneIndex(4);
+    index.getBySequenceHash(new ByteArray(1L));
+  }
+
+  @Test
+  public void close_drops_direct_memory() throws InterruptedException {
+    // memory of the indexes of previous tests
+    long initialMemory = directMemoryUsedAfterGc(0L);
+    for (int i = 0; i < 100_000; i++) {
+      index.insert(newBlock("a" + (i % 100), i));
+    }
+    assertThat(index.getBySequenceHash(new ByteArray(1L))).hasSize(1);
+    assertThat(directMemoryUsed()).isGreaterThan(initialMemory);
+
+    index.close();
+
+    // index is still referenced, but its buffers are not
+    assertThat(directMemoryUsedAfterGc(initialMemory)).isLessThanOrEqualTo(initialMemory);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void attempt_to_insert_when_closed() {
+    index.close();
+    index.insert(newBlock("a", 1));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void attempt_to_query_when_closed() {
+    index.insert(newBlock("a", 1));
+    assertThat(index.getBySequenceHash(new ByteArray(1L))).hasSize(1);
+    index.close();
+    index.getBySequenceHash(new ByteArray(1L));
+  }
+
+  /**
+   * Direct memory is released asynchronously, once buffers are garbage collected
+   */
+  private static long directMemoryUsedAfterGc(long expected) throws InterruptedException {
+    for (int i = 0; i < 50 && directMemoryUsed() > expected; i++) {
+      System.gc();
+      Thread.sleep(100L);
+    }
+    return directMemoryUsed();
+  }
+
+  private static long directMemoryUsed() {
+    return ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+      .filter(pool -> "direct".equals(pool.getName()))
+      .mapToLong(BufferPoolMXBean::getMemoryUsed)
+      .sum();
+  }
+
+  private static Block newBlock(String resourceId, long hash) {
+    return Block.builder()
+      .setResourceId(resourceId)
+      .setBlockHash(new ByteArray(hash))
+      .setIndexInFile(1)
+      .setLines(1, 2)
+      .build();
+  }
+
+}
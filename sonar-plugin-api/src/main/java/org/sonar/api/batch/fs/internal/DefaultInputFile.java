@@ -25,11 +25,15 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.apache.commons.io.ByteOrderMark;
@@ -49,6 +53,7 @@ public class DefaultInputFile extends DefaultInputComponent implements InputFile
   private final DefaultIndexedFile indexedFile;
   private final String contents;
   private final Consumer<DefaultInputFile> metadataGenerator;
+  private final Function<DefaultInputFile, String> contentsCache;
 
   private Status status;
   private Charset charset;
@@ -56,20 +61,37 @@ public class DefaultInputFile extends DefaultInputComponent implements InputFile
   private boolean publish;
 
   public DefaultInputFile(DefaultIndexedFile indexedFile, Consumer<DefaultInputFile> metadataGenerator) {
-    this(indexedFile, metadataGenerator, null);
+    this(indexedFile, metadataGenerator, f -> null, null);
+  }
+
+  /**
+   * @param contentsCache returns the decoded content of the file if it is still in memory, else {@code null}
+   * @since 6.6
+   */
+  public DefaultInputFile(DefaultIndexedFile indexedFile, Consumer<DefaultInputFile> metadataGenerator, Function<DefaultInputFile, String> contentsCache) {
+    this(indexedFile, metadataGenerator, contentsCache, null);
   }
 
   // For testing
   public DefaultInputFile(DefaultIndexedFile indexedFile, Consumer<DefaultInputFile> metadataGenerator, @Nullable String contents) {
+    this(indexedFile, metadataGenerator, f -> null, contents);
+  }
+
+  private DefaultInputFile(DefaultIndexedFile indexedFile, Consumer<DefaultInputFile> metadataGenerator, Function<DefaultInputFile, String> contentsCache,
+    @Nullable String contents) {
     super(indexedFile.batchId());
     this.indexedFile = indexedFile;
     this.metadataGenerator = metadataGenerator;
+    this.contentsCache = contentsCache;
     this.metadata = null;
     this.publish = false;
     this.contents = contents;
   }
 
-  public void checkMetadata() {
+  /**
+   * Synchronized because sensors can be executed concurrently
+   */
+  public synchronized void checkMetadata() {
     if (metadata == null) {
       metadataGenerator.accept(this);
     }
@@ -83,8 +105,9 @@ public class DefaultInputFile extends DefaultInputComponent implements InputFile
 
   @Override
   public String contents() throws IOException {
-    if (contents != null) {
-      return contents;
+    String decoded = decodedContents();
+    if (decoded != null) {
+      return decoded;
     } else {
       ByteArrayOutputStream result = new ByteArrayOutputStream();
       try (InputStream inputStream = inputStream()) {
@@ -98,6 +121,26 @@ public class DefaultInputFile extends DefaultInputComponent implements InputFile
     }
   }
 
+  /**
+   * Reader on the content of the file decoded with {@link #charset()}. Unlike {@link #inputStream()}, the file is
+   * not read again if its content is still in memory.
+   *
+   * @since 6.6
+   */
+  public Reader reader() throws IOException {
+    String decoded = decodedContents();
+    return decoded != null ? new StringReader(decoded) : new InputStreamReader(inputStream(), charset());
+  }
+
+  @CheckForNull
+  private String decodedContents() {
+    if (contents != null) {
+      return contents;
+    }
+    checkMetadata();
+    return contentsCache.apply(this);
+  }
+
   /**
    * @since 6.3
    */
@@ -19,7 +19,6 @@
  */
 package org.sonar.api.batch.fs.internal;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -47,6 +46,7 @@ import org.sonar.api.batch.fs.internal.charhandler.LineOffsetCounter;
 public class FileMetadata {
   private static final char LINE_FEED = '\n';
   private static final char CARRIAGE_RETURN = '\r';
+  private static final int BUFFER_SIZE = 8192;
 
   /**
    * Compute hash of a file ignoring line ends differences.
@@ -91,57 +91,114 @@ public class FileMetadata {
   }
 
   public static void readFile(InputStream stream, Charset encoding, String filePath, CharHandler[] handlers) {
-    try (Reader reader = new BufferedReader(new InputStreamReader(stream, encoding))) {
+    try (Reader reader = new InputStreamReader(stream, encoding)) {
       read(reader, handlers);
     } catch (IOException e) {
       throw new IllegalStateException(String.format("Fail to read file '%s' with encoding '%s'", filePath, encoding), e);
     }
   }
 
+  /**
+   * Same as {@link #readMetadata(InputStream, Charset, String, CharHandler)} on content which has already been decoded.
+   *
+   * @since 6.6
+   */
+  public Metadata readMetadata(String content, Charset encoding, String filePath, @Nullable CharHandler otherHandler) {
+    LineCounter lineCounter = new LineCounter(filePath, encoding);
+    FileHashComputer fileHashComputer = new FileHashComputer(filePath);
+    LineOffsetCounter lineOffsetCounter = new LineOffsetCounter();
+    CharHandler[] handlers = otherHandler == null ? new CharHandler[] {lineCounter, fileHashComputer, lineOffsetCounter}
+      : new CharHandler[] {lineCounter, fileHashComputer, lineOffsetCounter, otherHandler};
+
+    EolDispatcher dispatcher = new EolDispatcher(handlers);
+    char[] buffer = new char[BUFFER_SIZE];
+    int length = content.length();
+    for (int start = 0; start < length; start += BUFFER_SIZE) {
+      int end = Math.min(start + BUFFER_SIZE, length);
+      content.getChars(start, end, buffer, 0);
+      dispatcher.handle(buffer, end - start);
+    }
+    dispatcher.eof();
+    return new Metadata(lineCounter.lines(), lineCounter.nonBlankLines(), fileHashComputer.getHash(), lineOffsetCounter.getOriginalLineOffsets(),
+      lineOffsetCounter.getLastValidOffset());
+  }
+
   private static void read(Reader reader, CharHandler[] handlers) throws IOException {
-    char c;
-    int i = reader.read();
-    boolean afterCR = false;
-    while (i != -1) {
-      c = (char) i;
-      if (afterCR) {
-        for (CharHandler handler : handlers) {
-          if (c == CARRIAGE_RETURN) {
-            handler.newLine();
-            handler.handleAll(c);
-          } else if (c == LINE_FEED) {
+    EolDispatcher dispatcher = new EolDispatcher(handlers);
+    char[] buffer = new char[BUFFER_SIZE];
+    int read;
+    while ((read = reader.read(buffer)) != -1) {
+      dispatcher.handle(buffer, read);
+    }
+    dispatcher.eof();
+  }
+
+  /**
+   * Dispatches chars read by chunks to the handlers. Sequences of chars without end of line are handled at once,
+   * end of lines are handled one by one. CR, LF and CRLF are all considered as a single end of line.
+   */
+  private static class EolDispatcher {
+    private final CharHandler[] handlers;
+    private boolean afterCR = false;
+
+    private EolDispatcher(CharHandler[] handlers) {
+      this.handlers = handlers;
+    }
+
+    void handle(char[] buffer, int length) {
+      int start = 0;
+      for (int i = 0; i < length; i++) {
+        char c = buffer[i];
+        if (c != LINE_FEED && c != CARRIAGE_RETURN) {
+          if (afterCR) {
+            newLine();
+            afterCR = false;
+          }
+          continue;
+        }
+        handleSequence(buffer, start, i);
+        start = i + 1;
+        if (c == LINE_FEED) {
+          for (CharHandler handler : handlers) {
             handler.handleAll(c);
             handler.newLine();
-          } else {
-            handler.newLine();
-            handler.handleIgnoreEoL(c);
+          }
+          afterCR = false;
+        } else {
+          if (afterCR) {
+            newLine();
+          }
+          for (CharHandler handler : handlers) {
             handler.handleAll(c);
           }
+          afterCR = true;
         }
-        afterCR = c == CARRIAGE_RETURN;
-      } else if (c == LINE_FEED) {
-        for (CharHandler handler : handlers) {
-          handler.handleAll(c);
-          handler.newLine();
-        }
-      } else if (c == CARRIAGE_RETURN) {
-        afterCR = true;
-        for (CharHandler handler : handlers) {
-          handler.handleAll(c);
-        }
-      } else {
+      }
+      handleSequence(buffer, start, length);
+    }
+
+    private void handleSequence(char[] buffer, int start, int end) {
+      if (end > start) {
         for (CharHandler handler : handlers) {
-          handler.handleIgnoreEoL(c);
-          handler.handleAll(c);
+          handler.handleIgnoreEoL(buffer, start, end - start);
+          handler.handleAll(buffer, start, end - start);
         }
       }
-      i = reader.read();
     }
-    for (CharHandler handler : handlers) {
-      if (afterCR) {
+
+    private void newLine() {
+      for (CharHandler handler : handlers) {
         handler.newLine();
       }
-      handler.eof();
+    }
+
+    void eof() {
+      for (CharHandler handler : handlers) {
+        if (afterCR) {
+          handler.newLine();
+        }
+        handler.eof();
+      }
     }
   }
 
@@ -154,8 +211,16 @@ public class FileMetadata {
    * Compute a MD5 hash of each line of the file after removing of all blank chars
    */
   public static void computeLineHashesForIssueTracking(InputFile f, LineHashConsumer consumer) {
+    CharHandler[] handlers = {new LineHashComputer(consumer, f.file())};
     try {
-      readFile(f.inputStream(), f.charset(), f.absolutePath(), new CharHandler[] {new LineHashComputer(consumer, f.file())});
+      if (f instanceof DefaultInputFile) {
+        // content may already be decoded in memory
+        try (Reader reader = ((DefaultInputFile) f).reader()) {
+          read(reader, handlers);
+        }
+      } else {
+        readFile(f.inputStream(), f.charset(), f.absolutePath(), handlers);
+      }
     } catch (IOException e) {
       throw new IllegalStateException("Failed to compute line hashes for " + f.absolutePath(), e);
     }
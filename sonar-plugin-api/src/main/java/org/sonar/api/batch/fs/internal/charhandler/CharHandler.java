@@ -24,9 +24,33 @@ public abstract class CharHandler {
   public void handleAll(char c) {
   }
 
+  /**
+   * Handles a sequence of chars which contains no end of line. By default, each char is handled one after the
+   * other by {@link #handleAll(char)}. Override to process the whole sequence at once.
+   *
+   * @since 6.6
+   */
+  public void handleAll(char[] chars, int offset, int length) {
+    for (int i = offset; i < offset + length; i++) {
+      handleAll(chars[i]);
+    }
+  }
+
   public void handleIgnoreEoL(char c) {
   }
 
+  /**
+   * Same as {@link #handleAll(char[], int, int)} for {@link #handleIgnoreEoL(char)}. It is always called before
+   * {@link #handleAll(char[], int, int)} with the same sequence.
+   *
+   * @since 6.6
+   */
+  public void handleIgnoreEoL(char[] chars, int offset, int length) {
+    for (int i = offset; i < offset + length; i++) {
+      handleIgnoreEoL(chars[i]);
+    }
+  }
+
   public void newLine() {
   }
 
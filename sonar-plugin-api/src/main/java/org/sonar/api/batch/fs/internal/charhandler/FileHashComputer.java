@@ -53,6 +53,11 @@ public class FileHashComputer extends CharHandler {
     sb.append(c);
   }
 
+  @Override
+  public void handleIgnoreEoL(char[] chars, int offset, int length) {
+    sb.append(chars, offset, length);
+  }
+
   @Override
   public void newLine() {
     sb.append(LINE_FEED);
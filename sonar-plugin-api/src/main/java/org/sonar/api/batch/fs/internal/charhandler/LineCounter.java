@@ -49,6 +49,16 @@ public class LineCounter extends CharHandler {
     }
   }
 
+  @Override
+  public void handleAll(char[] chars, int offset, int length) {
+    if (alreadyLoggedInvalidCharacter) {
+      return;
+    }
+    for (int i = offset; i < offset + length; i++) {
+      handleAll(chars[i]);
+    }
+  }
+
   @Override
   public void newLine() {
     lines++;
@@ -65,6 +75,13 @@ public class LineCounter extends CharHandler {
     }
   }
 
+  @Override
+  public void handleIgnoreEoL(char[] chars, int offset, int length) {
+    for (int i = offset; blankLine && i < offset + length; i++) {
+      handleIgnoreEoL(chars[i]);
+    }
+  }
+
   @Override
   public void eof() {
     if (!blankLine) {
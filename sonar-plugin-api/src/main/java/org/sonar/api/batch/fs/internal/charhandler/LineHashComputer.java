@@ -54,6 +54,16 @@ public class LineHashComputer extends CharHandler {
     }
   }
 
+  @Override
+  public void handleIgnoreEoL(char[] chars, int offset, int length) {
+    for (int i = offset; i < offset + length; i++) {
+      char c = chars[i];
+      if (!Character.isWhitespace(c)) {
+        sb.append(c);
+      }
+    }
+  }
+
   @Override
   public void newLine() {
     processBuffer();
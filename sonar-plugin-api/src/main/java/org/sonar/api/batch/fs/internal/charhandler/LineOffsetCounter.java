@@ -33,6 +33,11 @@ public class LineOffsetCounter extends CharHandler {
     currentOriginalOffset++;
   }
 
+  @Override
+  public void handleAll(char[] chars, int offset, int length) {
+    currentOriginalOffset += length;
+  }
+
   @Override
   public void newLine() {
     if (currentOriginalOffset > Integer.MAX_VALUE) {
@@ -96,4 +96,17 @@ public interface SensorDescriptor {
    * @since 6.5
    */
   SensorDescriptor onlyWhenConfiguration(Predicate<Configuration> predicate);
+
+  /**
+   * This sensor can be executed concurrently with other thread-safe sensors, when parallel execution of sensors
+   * is enabled by the property "sonar.scanner.parallelSensors". The sensor must not rely on the
+   * data saved by other sensors, nor on the order of execution of sensors.
+   * <p>
+   * The default implementation does nothing, so that the implementations of this interface which are not
+   * provided by the platform are not broken. The sensor is then executed sequentially.
+   * @since 6.6
+   */
+  default SensorDescriptor threadSafe() {
+    return this;
+  }
 }
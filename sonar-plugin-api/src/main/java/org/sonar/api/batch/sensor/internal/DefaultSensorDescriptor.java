@@ -37,6 +37,7 @@ public class DefaultSensorDescriptor implements SensorDescriptor {
   private String[] ruleRepositories = new String[0];
   private boolean global = false;
   private Predicate<Configuration> configurationPredicate;
+  private boolean threadSafe = false;
 
   public String name() {
     return name;
@@ -63,6 +64,10 @@ public class DefaultSensorDescriptor implements SensorDescriptor {
     return global;
   }
 
+  public boolean isThreadSafe() {
+    return threadSafe;
+  }
+
   @Override
   public DefaultSensorDescriptor name(String name) {
     this.name = name;
@@ -120,4 +125,10 @@ public class DefaultSensorDescriptor implements SensorDescriptor {
     return this;
   }
 
+  @Override
+  public SensorDescriptor threadSafe() {
+    this.threadSafe = true;
+    return this;
+  }
+
 }
@@ -20,6 +20,7 @@
 package org.sonar.api.notifications;
 
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import javax.annotation.CheckForNull;
@@ -32,7 +33,9 @@ import javax.annotation.Nullable;
  * When creating a new notification, it is strongly advised to give a default message that can be  used by channels
  * that don't want to specifically format messages for different notification types. You can use
  * {@link Notification#setDefaultMessage(String)} for that purpose.
- * 
+ * <p>
+ * Notifications which are queued for delivery keep only their type and their fields (see {@link #getFieldValues()}):
+ * channels receive them as plain {@link Notification}s, even if they were created as instances of a subclass.
  *
  * @since 2.10
  */
@@ -115,6 +118,19 @@ public class Notification implements Serializable {
     return fields.get(field);
   }
 
+  /**
+   * Returns all the fields of this notification, including the default message. Values can be {@code null}.
+   * <p>
+   * Only the type and the fields of a notification are kept when it is queued for delivery. The notification is then
+   * restored as a plain {@link Notification}, so the state and the behavior of subclasses are lost.
+   *
+   * @return an unmodifiable view of the fields, by name
+   * @since 6.6
+   */
+  public Map<String, String> getFieldValues() {
+    return Collections.unmodifiableMap(fields);
+  }
+
   @Override
   public boolean equals(Object obj) {
     if (!(obj instanceof Notification)) {
@@ -34,6 +34,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.util.stream.Collectors;
+import org.apache.commons.io.IOUtils;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -137,6 +138,16 @@ public class DefaultInputFileTest {
     assertThat(f1.hashCode()).isEqualTo(f1a.hashCode());
   }
 
+  @Test
+  public void read_content_from_cache_when_available() throws Exception {
+    Metadata metadata = new Metadata(1, 1, "", new int[] {0}, 3);
+    DefaultInputFile file = new DefaultInputFile(new DefaultIndexedFile("ABCDE", Paths.get("module"), "src/Foo.php", null),
+      f -> f.setMetadata(metadata).setCharset(StandardCharsets.UTF_8), f -> "foo");
+
+    assertThat(file.contents()).isEqualTo("foo");
+    assertThat(IOUtils.toString(file.reader())).isEqualTo("foo");
+  }
+
   @Test
   public void test_toString() throws Exception {
     DefaultInputFile file = new DefaultInputFile(new DefaultIndexedFile("ABCDE", Paths.get("module"), "src/Foo.php", null), (f) -> mock(Metadata.class));
@@ -27,6 +27,7 @@ import java.nio.charset.StandardCharsets;
 import javax.annotation.Nullable;
 import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -63,6 +64,25 @@ public class FileMetadataTest {
     assertThat(metadata.lastValidOffset()).isEqualTo(0);
   }
 
+  @Test
+  public void read_decoded_content_with_end_of_lines_across_chunks() throws Exception {
+    // CRLF split between the first two chunks of 8192 chars, CR alone at the end of the second one
+    String content = StringUtils.repeat("a", 8191) + "\r\nb\n" + StringUtils.repeat(" ", 8188) + "\rc";
+    File tempFile = temp.newFile();
+    FileUtils.write(tempFile, content, StandardCharsets.UTF_8, true);
+
+    Metadata fromContent = new FileMetadata().readMetadata(content, StandardCharsets.UTF_8, tempFile.getName(), null);
+    Metadata fromStream = new FileMetadata().readMetadata(new FileInputStream(tempFile), StandardCharsets.UTF_8, tempFile.getName());
+
+    for (Metadata metadata : new Metadata[] {fromContent, fromStream}) {
+      assertThat(metadata.lines()).isEqualTo(4);
+      assertThat(metadata.nonBlankLines()).isEqualTo(3);
+      assertThat(metadata.hash()).isEqualTo(md5Hex(StringUtils.repeat("a", 8191) + "\nb\n" + StringUtils.repeat(" ", 8188) + "\nc"));
+      assertThat(metadata.originalLineOffsets()).containsExactly(0, 8193, 8195, 16384);
+      assertThat(metadata.lastValidOffset()).isEqualTo(16385);
+    }
+  }
+
   @Test
   public void windows_without_latest_eol() throws Exception {
     File tempFile = temp.newFile();
@@ -37,8 +37,10 @@ public class DefaultAnalysisMode extends AbstractAnalysisMode {
 
   private static final Logger LOG = LoggerFactory.getLogger(DefaultAnalysisMode.class);
   private static final String KEY_SCAN_ALL = "sonar.scanAllFiles";
+  public static final String KEY_INCREMENTAL = "sonar.incremental";
 
   private boolean scanAllFiles;
+  private boolean incremental;
 
   public DefaultAnalysisMode(GlobalProperties globalProps, AnalysisProperties props) {
     init(globalProps.properties(), props.properties());
@@ -48,6 +50,15 @@ public class DefaultAnalysisMode extends AbstractAnalysisMode {
     return scanAllFiles;
   }
 
+  /**
+   * In incremental mode, only the files which changed since the previous analysis are analyzed and published.
+   * Unchanged files are published without their data, which is copied from the previous analysis by the Compute Engine.
+   * Only supported in publish mode.
+   */
+  public boolean isIncremental() {
+    return incremental;
+  }
+
   private void init(Map<String, String> globalProps, Map<String, String> analysisProps) {
     // make sure analysis is consistent with global properties
     boolean globalPreview = isIssues(globalProps);
@@ -65,8 +76,9 @@ public class DefaultAnalysisMode extends AbstractAnalysisMode {
     validate(mode);
     issues = CoreProperties.ANALYSIS_MODE_ISSUES.equals(mode) || CoreProperties.ANALYSIS_MODE_PREVIEW.equals(mode);
     mediumTestMode = "true".equals(getPropertyWithFallback(analysisProps, globalProps, MEDIUM_TEST_ENABLED));
+    incremental = !issues && "true".equals(getPropertyWithFallback(analysisProps, globalProps, KEY_INCREMENTAL));
     String scanAllStr = getPropertyWithFallback(analysisProps, globalProps, KEY_SCAN_ALL);
-    scanAllFiles = !issues || "true".equals(scanAllStr);
+    scanAllFiles = !incremental && (!issues || "true".equals(scanAllStr));
   }
 
   public void printMode() {
@@ -74,6 +86,8 @@ public class DefaultAnalysisMode extends AbstractAnalysisMode {
       LOG.info("Preview mode");
     } else if (issues) {
       LOG.info("Issues mode");
+    } else if (incremental) {
+      LOG.info("Incremental mode");
     } else {
       LOG.info("Publish mode");
     }
@@ -21,7 +21,9 @@ package org.sonar.scanner.cpd;
 
 import static com.google.common.collect.FluentIterable.from;
 
+import java.util.ArrayDeque;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
@@ -30,9 +32,12 @@ import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
+import javax.annotation.CheckForNull;
+
 import org.sonar.api.batch.fs.InputComponent;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputComponent;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.duplications.block.Block;
@@ -40,6 +45,7 @@ import org.sonar.duplications.detector.suffixtree.SuffixTreeCloneDetectionAlgori
 import org.sonar.duplications.index.CloneGroup;
 import org.sonar.duplications.index.ClonePart;
 import org.sonar.duplications.index.PackedMemoryCloneIndex.ResourceBlocks;
+import org.sonar.scanner.analysis.DefaultAnalysisMode;
 import org.sonar.scanner.cpd.index.SonarCpdBlockIndex;
 import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.scanner.protocol.output.ScannerReport.Duplicate;
@@ -51,6 +57,7 @@ import org.sonar.scanner.util.ProgressReport;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * Runs on the root module, at the end of the project analysis.
@@ -69,11 +76,14 @@ public class CpdExecutor {
   private final InputComponentStore componentStore;
   private final ProgressReport progressReport;
   private final CpdSettings settings;
+  private final DefaultAnalysisMode analysisMode;
   private int count;
   private int total;
 
-  public CpdExecutor(CpdSettings settings, SonarCpdBlockIndex index, ReportPublisher publisher, InputComponentStore inputComponentCache) {
+  public CpdExecutor(CpdSettings settings, SonarCpdBlockIndex index, ReportPublisher publisher, InputComponentStore inputComponentCache,
+    DefaultAnalysisMode analysisMode) {
     this.settings = settings;
+    this.analysisMode = analysisMode;
     this.index = index;
     this.publisher = publisher;
     this.componentStore = inputComponentCache;
@@ -86,19 +96,39 @@ public class CpdExecutor {
 
   @VisibleForTesting
   void execute(long timeout) {
-    total = index.noResources();
+    loadUnchangedFiles();
+    total = index.noResources() - index.noUnchangedFiles();
     int filesWithoutBlocks = index.noIndexedFiles() - total;
     if (filesWithoutBlocks > 0) {
       LOG.info("{} {} had no CPD blocks", filesWithoutBlocks, pluralize(filesWithoutBlocks));
     }
+    int threads = Math.max(1, settings.getThreads());
     progressReport.start(String.format("Calculating CPD for %d %s", total, pluralize(total)));
-    ExecutorService executorService = Executors.newSingleThreadExecutor();
+    ExecutorService executorService = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().setNameFormat("CpdExecutor-%d").build());
     try {
       Iterator<ResourceBlocks> it = index.iterator();
+      // at most one file per thread is submitted at a time, so that detection of a file starts as soon as it is
+      // submitted (timeout applies to computation only) and results are saved in the order of the index
+      Deque<FileDetection> pending = new ArrayDeque<>(threads);
 
       while (it.hasNext()) {
         ResourceBlocks resourceBlocks = it.next();
-        runCpdAnalysis(executorService, resourceBlocks.resourceId(), resourceBlocks.blocks(), timeout);
+        if (index.isUnchanged(resourceBlocks.resourceId())) {
+          continue;
+        }
+        FileDetection detection = submit(executorService, resourceBlocks.resourceId(), resourceBlocks.blocks());
+        if (detection != null) {
+          pending.add(detection);
+        } else {
+          count++;
+        }
+        if (pending.size() >= threads) {
+          complete(pending.poll(), timeout);
+          count++;
+        }
+      }
+      while (!pending.isEmpty()) {
+        complete(pending.poll(), timeout);
         count++;
       }
       progressReport.stop("CPD calculation finished");
@@ -106,8 +136,29 @@ public class CpdExecutor {
       progressReport.stop("");
       throw e;
     } finally {
-      executorService.shutdown();
+      executorService.shutdownNow();
+      index.close();
+    }
+  }
+
+  /**
+   * Files left unchanged by an incremental analysis are not tokenized by sensors. Their blocks are loaded from the
+   * previous analysis so that their duplications with changed files are detected.
+   */
+  private void loadUnchangedFiles() {
+    if (!analysisMode.isIncremental()) {
+      return;
+    }
+    int missing = 0;
+    for (InputFile inputFile : componentStore.allFiles()) {
+      if (inputFile.status() == InputFile.Status.SAME && !index.isIndexed(inputFile) && !index.insertUnchanged((DefaultInputFile) inputFile)) {
+        missing++;
+      }
+    }
+    if (missing > 0) {
+      LOG.debug("No CPD blocks of previous analysis for {} unchanged {}", missing, pluralize(missing));
     }
+    index.pruneSavedBlocks(componentStore.allFiles());
   }
 
   private static String pluralize(int files) {
@@ -116,23 +167,37 @@ public class CpdExecutor {
 
   @VisibleForTesting
   void runCpdAnalysis(ExecutorService executorService, String componentKey, final Collection<Block> fileBlocks, long timeout) {
+    FileDetection detection = submit(executorService, componentKey, fileBlocks);
+    if (detection != null) {
+      complete(detection, timeout);
+    }
+  }
+
+  @CheckForNull
+  private FileDetection submit(ExecutorService executorService, String componentKey, Collection<Block> fileBlocks) {
     DefaultInputComponent component = (DefaultInputComponent) componentStore.getByKey(componentKey);
     if (component == null) {
       LOG.error("Resource not found in component store: {}. Skipping CPD computation for it", componentKey);
-      return;
+      return null;
     }
 
     InputFile inputFile = (InputFile) component;
     LOG.debug("Detection of duplications for {}", inputFile.absolutePath());
+    Future<List<CloneGroup>> futureResult = executorService.submit(() -> SuffixTreeCloneDetectionAlgorithm.detect(index, fileBlocks));
+    return new FileDetection(component, futureResult, System.currentTimeMillis());
+  }
+
+  private void complete(FileDetection detection, long timeout) {
+    InputFile inputFile = (InputFile) detection.component;
     progressReport.message(String.format("%d/%d - current file: %s", count, total, inputFile.absolutePath()));
 
     List<CloneGroup> duplications;
-    Future<List<CloneGroup>> futureResult = executorService.submit(() -> SuffixTreeCloneDetectionAlgorithm.detect(index, fileBlocks));
     try {
-      duplications = futureResult.get(timeout, TimeUnit.MILLISECONDS);
+      long remaining = Math.max(0L, detection.submittedAt + timeout - System.currentTimeMillis());
+      duplications = detection.result.get(remaining, TimeUnit.MILLISECONDS);
     } catch (TimeoutException e) {
       LOG.warn("Timeout during detection of duplications for " + inputFile.absolutePath());
-      futureResult.cancel(true);
+      detection.result.cancel(true);
       return;
     } catch (Exception e) {
       throw new IllegalStateException("Fail during detection of duplication for " + inputFile.absolutePath(), e);
@@ -147,7 +212,7 @@ public class CpdExecutor {
       filtered = duplications;
     }
 
-    saveDuplications(component, filtered);
+    saveDuplications(detection.component, filtered);
   }
 
   @VisibleForTesting
@@ -206,4 +271,16 @@ public class CpdExecutor {
     }
     return dupBuilder.build();
   }
+
+  private static class FileDetection {
+    private final DefaultInputComponent component;
+    private final Future<List<CloneGroup>> result;
+    private final long submittedAt;
+
+    private FileDetection(DefaultInputComponent component, Future<List<CloneGroup>> result, long submittedAt) {
+      this.component = component;
+      this.result = result;
+      this.submittedAt = submittedAt;
+    }
+  }
 }
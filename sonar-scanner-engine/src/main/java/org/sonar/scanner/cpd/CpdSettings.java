@@ -26,6 +26,8 @@ import org.sonar.api.config.Configuration;
 import org.sonar.duplications.block.BlockChunker;
 
 public class CpdSettings {
+  static final String THREADS_PROPERTY = "sonar.cpd.threads";
+
   private final Configuration settings;
   private final String branch;
 
@@ -49,4 +51,11 @@ public class CpdSettings {
   int getMinimumTokens(String languageKey) {
     return settings.getInt("sonar.cpd." + languageKey + ".minimumTokens").orElse(100);
   }
+
+  /**
+   * Number of threads used to detect duplications. Files are processed sequentially by default.
+   */
+  int getThreads() {
+    return Math.max(1, settings.getInt(THREADS_PROPERTY).orElse(1));
+  }
 }
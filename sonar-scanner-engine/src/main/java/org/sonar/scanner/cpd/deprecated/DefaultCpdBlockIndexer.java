@@ -22,7 +22,7 @@ package org.sonar.scanner.cpd.deprecated;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Lists;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.Reader;
 import java.util.List;
 import org.sonar.api.CoreProperties;
 import org.sonar.api.batch.CpdMapping;
@@ -86,10 +86,11 @@ public class DefaultCpdBlockIndexer extends CpdBlockIndexer {
     for (InputFile inputFile : sourceFiles) {
       if (!index.isIndexed(inputFile)) {
         LOG.debug("Populating index from {}", inputFile.absolutePath());
-        String resourceEffectiveKey = ((DefaultInputFile) inputFile).key();
+        DefaultInputFile defaultInputFile = (DefaultInputFile) inputFile;
+        String resourceEffectiveKey = defaultInputFile.key();
         List<Block> blocks;
-        try (InputStreamReader isr = new InputStreamReader(inputFile.inputStream(), inputFile.charset())) {
-          blocks = bridge.chunk(resourceEffectiveKey, inputFile.absolutePath(), isr);
+        try (Reader reader = defaultInputFile.reader()) {
+          blocks = bridge.chunk(resourceEffectiveKey, inputFile.absolutePath(), reader);
         } catch (IOException e) {
           throw new IllegalStateException("Unable to read content of file " + inputFile.absolutePath(), e);
         }
@@ -22,8 +22,6 @@ package org.sonar.scanner.cpd.deprecated;
 import com.google.common.collect.Lists;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.Reader;
 import java.util.List;
 import org.sonar.api.CoreProperties;
@@ -86,12 +84,12 @@ public class JavaCpdBlockIndexer extends CpdBlockIndexer {
 
     for (InputFile inputFile : sourceFiles) {
       LOG.debug("Populating index from {}", inputFile);
-      String resourceEffectiveKey = ((DefaultInputFile) inputFile).key();
+      DefaultInputFile defaultInputFile = (DefaultInputFile) inputFile;
+      String resourceEffectiveKey = defaultInputFile.key();
 
       List<Statement> statements;
 
-      try (InputStream is = inputFile.inputStream();
-        Reader reader = new InputStreamReader(is, inputFile.charset())) {
+      try (Reader reader = defaultInputFile.reader()) {
         statements = statementChunker.chunk(tokenChunker.chunk(reader));
       } catch (FileNotFoundException e) {
         throw new IllegalStateException("Cannot find file " + inputFile.file(), e);
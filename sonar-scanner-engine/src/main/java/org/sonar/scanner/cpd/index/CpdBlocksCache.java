@@ -0,0 +1,195 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.cpd.index;
+
+import com.google.common.hash.Hashing;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+import org.picocontainer.Startable;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.batch.fs.internal.InputModuleHierarchy;
+import org.sonar.api.config.Configuration;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.core.util.FileUtils;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.block.ByteArray;
+import org.sonar.scanner.analysis.DefaultAnalysisMode;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Keeps the CPD blocks of the analyzed files in the working directory, so that the files left unchanged by an
+ * incremental analysis, which are not tokenized, can still be part of the duplication detection.
+ * <p>
+ * Blocks are saved by incremental analyses, and by the other publish analyses only when {@link #CACHE_BLOCKS_PROPERTY}
+ * is enabled, typically for the full analyses of a project which is then analyzed incrementally. Blocks of a file are
+ * only reused if the hash of its content and the CPD settings of its language did not change since they were saved.
+ * The cache is cleared by analyses which are not incremental, and the blocks of the files which do not exist anymore
+ * are deleted by incremental analyses.
+ * </p>
+ */
+public class CpdBlocksCache implements Startable {
+  public static final String DIR_NAME = "cpd-blocks";
+  public static final String CACHE_BLOCKS_PROPERTY = "sonar.cpd.cacheBlocks";
+  private static final Logger LOG = Loggers.get(CpdBlocksCache.class);
+  private static final int VERSION = 2;
+
+  private final Path dir;
+  private final DefaultAnalysisMode analysisMode;
+  private final Configuration settings;
+
+  public CpdBlocksCache(InputModuleHierarchy moduleHierarchy, DefaultAnalysisMode analysisMode, Configuration settings) {
+    this.dir = moduleHierarchy.root().getWorkDir().toPath().resolve(DIR_NAME);
+    this.analysisMode = analysisMode;
+    this.settings = settings;
+  }
+
+  @Override
+  public void start() {
+    if (!analysisMode.isIssues() && !analysisMode.isIncremental()) {
+      FileUtils.deleteQuietly(dir.toFile());
+    }
+  }
+
+  @Override
+  public void stop() {
+    // nothing to do
+  }
+
+  private boolean isSavingBlocks() {
+    return !analysisMode.isIssues() && (analysisMode.isIncremental() || settings.getBoolean(CACHE_BLOCKS_PROPERTY).orElse(false));
+  }
+
+  public void put(DefaultInputFile inputFile, Collection<Block> blocks) {
+    String fileHash = inputFile.hash();
+    if (!isSavingBlocks() || fileHash == null) {
+      return;
+    }
+    try {
+      Files.createDirectories(dir);
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(fileOf(inputFile))))) {
+        out.writeInt(VERSION);
+        out.writeUTF(inputFile.key());
+        out.writeUTF(fileHash);
+        out.writeUTF(settingsFingerprint(inputFile));
+        out.writeInt(blocks.size());
+        for (Block block : blocks) {
+          byte[] hash = block.getBlockHash().getBytes();
+          out.writeInt(hash.length);
+          out.write(hash);
+          out.writeInt(block.getIndexInFile());
+          out.writeInt(block.getStartLine());
+          out.writeInt(block.getEndLine());
+          out.writeInt(block.getStartUnit());
+          out.writeInt(block.getEndUnit());
+        }
+      }
+    } catch (IOException e) {
+      LOG.warn("Failed to save CPD blocks of " + inputFile.relativePath(), e);
+    }
+  }
+
+  /**
+   * @return the blocks saved by a previous analysis for the current content of the file and the current CPD settings,
+   * or {@code null} if there are none or if the analysis is not incremental
+   */
+  @CheckForNull
+  public List<Block> get(DefaultInputFile inputFile) {
+    String fileHash = inputFile.hash();
+    if (!analysisMode.isIncremental() || fileHash == null) {
+      return null;
+    }
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(fileOf(inputFile))))) {
+      if (in.readInt() != VERSION || !inputFile.key().equals(in.readUTF()) || !fileHash.equals(in.readUTF())
+        || !settingsFingerprint(inputFile).equals(in.readUTF())) {
+        return null;
+      }
+      int count = in.readInt();
+      List<Block> blocks = new ArrayList<>(count);
+      Block.Builder builder = Block.builder().setResourceId(inputFile.key());
+      for (int i = 0; i < count; i++) {
+        byte[] hash = new byte[in.readInt()];
+        in.readFully(hash);
+        blocks.add(builder
+          .setBlockHash(new ByteArray(hash))
+          .setIndexInFile(in.readInt())
+          .setLines(in.readInt(), in.readInt())
+          .setUnit(in.readInt(), in.readInt())
+          .build());
+      }
+      return blocks;
+    } catch (NoSuchFileException e) {
+      return null;
+    } catch (IOException e) {
+      LOG.warn("Failed to read CPD blocks of " + inputFile.relativePath(), e);
+      return null;
+    }
+  }
+
+  /**
+   * Deletes the blocks of the files which are not part of the project anymore. Only incremental analyses need to do
+   * so, as the other ones clear the cache at startup.
+   */
+  public void prune(Iterable<InputFile> existingFiles) {
+    if (!analysisMode.isIncremental() || !Files.isDirectory(dir)) {
+      return;
+    }
+    Set<String> existingNames = new HashSet<>();
+    existingFiles.forEach(inputFile -> existingNames.add(fileNameOf(inputFile.key())));
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, entry -> !existingNames.contains(entry.getFileName().toString()))) {
+      for (Path entry : stream) {
+        Files.deleteIfExists(entry);
+      }
+    } catch (IOException e) {
+      LOG.warn("Failed to delete CPD blocks of removed files", e);
+    }
+  }
+
+  /**
+   * Settings which change the blocks of a file, or the duplications detected from them.
+   */
+  private String settingsFingerprint(InputFile inputFile) {
+    String prefix = "sonar.cpd." + inputFile.language();
+    return settings.get(prefix + ".minimumLines").orElse("") + "," + settings.get(prefix + ".minimumTokens").orElse("");
+  }
+
+  private Path fileOf(DefaultInputFile inputFile) {
+    return dir.resolve(fileNameOf(inputFile.key()));
+  }
+
+  private static String fileNameOf(String fileKey) {
+    return Hashing.sha1().hashString(fileKey, UTF_8).toString();
+  }
+}
@@ -22,9 +22,11 @@ package org.sonar.scanner.cpd.index;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+import org.picocontainer.Startable;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.api.utils.log.Logger;
@@ -32,25 +34,28 @@ import org.sonar.api.utils.log.Loggers;
 import org.sonar.duplications.block.Block;
 import org.sonar.duplications.block.ByteArray;
 import org.sonar.duplications.index.AbstractCloneIndex;
-import org.sonar.duplications.index.CloneIndex;
-import org.sonar.duplications.index.PackedMemoryCloneIndex;
+import org.sonar.duplications.index.OffHeapCloneIndex;
 import org.sonar.duplications.index.PackedMemoryCloneIndex.ResourceBlocks;
 import org.sonar.scanner.cpd.CpdSettings;
 import org.sonar.scanner.protocol.output.FileStructure;
 import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.scanner.report.ReportPublisher;
 
-public class SonarCpdBlockIndex extends AbstractCloneIndex {
+public class SonarCpdBlockIndex extends AbstractCloneIndex implements Startable {
   private static final Logger LOG = Loggers.get(SonarCpdBlockIndex.class);
-  private final CloneIndex mem = new PackedMemoryCloneIndex();
+  private final OffHeapCloneIndex mem = new OffHeapCloneIndex();
   private final ReportPublisher publisher;
   // Files already tokenized
   private final Set<InputFile> indexedFiles = new HashSet<>();
+  // Keys of files left unchanged by an incremental analysis, which blocks are loaded from the cache
+  private final Set<String> unchangedFiles = new HashSet<>();
   private final CpdSettings settings;
+  private final CpdBlocksCache cache;
 
-  public SonarCpdBlockIndex(ReportPublisher publisher, CpdSettings settings) {
+  public SonarCpdBlockIndex(ReportPublisher publisher, CpdSettings settings, CpdBlocksCache cache) {
     this.publisher = publisher;
     this.settings = settings;
+    this.cache = cache;
   }
 
   public void insert(InputFile inputFile, Collection<Block> blocks) {
@@ -76,9 +81,45 @@ public class SonarCpdBlockIndex extends AbstractCloneIndex {
     if (blocks.isEmpty()) {
       LOG.debug("Not enough content in '{}' to have CPD blocks, it will not be part of the duplication detection", inputFile.relativePath());
     }
+    cache.put((DefaultInputFile) inputFile, blocks);
     indexedFiles.add(inputFile);
   }
 
+  /**
+   * Inserts the blocks saved by a previous analysis for a file left unchanged by an incremental analysis, so that its
+   * duplications with the changed files are detected. Its own duplications are not computed again.
+   *
+   * @return {@code false} if no block is available for the file
+   */
+  public boolean insertUnchanged(DefaultInputFile inputFile) {
+    List<Block> blocks = cache.get(inputFile);
+    if (blocks == null) {
+      return false;
+    }
+    for (Block block : blocks) {
+      mem.insert(block);
+    }
+    if (!blocks.isEmpty()) {
+      unchangedFiles.add(inputFile.key());
+    }
+    return true;
+  }
+
+  /**
+   * Deletes the saved blocks of the files which are not part of the project anymore.
+   */
+  public void pruneSavedBlocks(Iterable<InputFile> existingFiles) {
+    cache.prune(existingFiles);
+  }
+
+  public boolean isUnchanged(String resourceKey) {
+    return unchangedFiles.contains(resourceKey);
+  }
+
+  public int noUnchangedFiles() {
+    return unchangedFiles.size();
+  }
+
   public int noIndexedFiles() {
     return indexedFiles.size();
   }
@@ -116,4 +157,24 @@ public class SonarCpdBlockIndex extends AbstractCloneIndex {
     return mem.noResources();
   }
 
+  /**
+   * Drops the memory of the blocks, including the ones loaded for unchanged files. Index can not be used anymore.
+   */
+  public void close() {
+    mem.close();
+  }
+
+  @Override
+  public void start() {
+    // nothing to do
+  }
+
+  /**
+   * Memory is also dropped if the analysis stops before duplications are detected
+   */
+  @Override
+  public void stop() {
+    close();
+  }
+
 }
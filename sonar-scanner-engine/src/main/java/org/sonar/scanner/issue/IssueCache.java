@@ -35,6 +35,7 @@ public class IssueCache {
   private final Storage<TrackedIssue> cache;
 
   public IssueCache(Storages caches) {
+    caches.registerValueCopier(TrackedIssue.class, TrackedIssue::copy);
     cache = caches.createCache("issues");
   }
 
@@ -65,6 +65,8 @@ public class IssueTransition {
       localIssueTracking.init();
     }
 
+    // issues are read while the report is still being written
+    reportPublisher.getWriter().flush();
     ScannerReportReader reader = new ScannerReportReader(reportPublisher.getReportDir());
     int nbComponents = inputComponentStore.all().size();
 
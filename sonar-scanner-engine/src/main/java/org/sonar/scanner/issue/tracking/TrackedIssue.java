@@ -225,6 +225,29 @@ public class TrackedIssue implements Trackable, Serializable {
     return this;
   }
 
+  /**
+   * Copy of the issue as restored from disk by storages, so without the hashes of its file
+   */
+  public TrackedIssue copy() {
+    TrackedIssue copy = new TrackedIssue();
+    copy.ruleKey = ruleKey;
+    copy.key = key;
+    copy.severity = severity;
+    copy.startLine = startLine;
+    copy.startLineOffset = startLineOffset;
+    copy.endLine = endLine;
+    copy.endLineOffset = endLineOffset;
+    copy.gap = gap;
+    copy.isNew = isNew;
+    copy.creationDate = creationDate == null ? null : new Date(creationDate.getTime());
+    copy.resolution = resolution;
+    copy.status = status;
+    copy.assignee = assignee;
+    copy.componentKey = componentKey;
+    copy.message = message;
+    return copy;
+  }
+
   @Override
   public int hashCode() {
     final int PRIME = 31;
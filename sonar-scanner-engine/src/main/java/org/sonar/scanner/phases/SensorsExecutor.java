@@ -20,33 +20,54 @@
 package org.sonar.scanner.phases;
 
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.sonar.api.batch.ScannerSide;
 import org.sonar.api.batch.Sensor;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.batch.fs.internal.DefaultInputModule;
 import org.sonar.api.batch.fs.internal.InputModuleHierarchy;
+import org.sonar.api.config.Configuration;
 import org.sonar.api.resources.Project;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
 import org.sonar.scanner.bootstrap.ScannerExtensionDictionnary;
 import org.sonar.scanner.events.EventBus;
 import org.sonar.scanner.sensor.SensorStrategy;
+import org.sonar.scanner.sensor.SensorWrapper;
 
 @ScannerSide
 public class SensorsExecutor {
+  /**
+   * When true, consecutive sensors declared as thread-safe are executed concurrently. Other sensors are
+   * still executed alone, in the same order.
+   */
+  public static final String PARALLEL_SENSORS_PROPERTY = "sonar.scanner.parallelSensors";
+
+  private static final Logger LOG = Loggers.get(SensorsExecutor.class);
+
   private final ScannerExtensionDictionnary selector;
   private final DefaultInputModule module;
   private final EventBus eventBus;
   private final SensorStrategy strategy;
   private final boolean isRoot;
+  private final boolean parallel;
 
-  public SensorsExecutor(ScannerExtensionDictionnary selector, DefaultInputModule module, InputModuleHierarchy hierarchy, EventBus eventBus, SensorStrategy strategy) {
+  public SensorsExecutor(ScannerExtensionDictionnary selector, DefaultInputModule module, InputModuleHierarchy hierarchy, EventBus eventBus, SensorStrategy strategy,
+    Configuration settings) {
     this.selector = selector;
     this.module = module;
     this.eventBus = eventBus;
     this.strategy = strategy;
     this.isRoot = hierarchy.isRoot(module);
+    this.parallel = settings.getBoolean(PARALLEL_SENSORS_PROPERTY).orElse(false);
   }
 
   public void execute(SensorContext context) {
@@ -78,14 +99,87 @@ public class SensorsExecutor {
   }
 
   private void execute(SensorContext context, Collection<Sensor> sensors) {
+    List<Sensor> threadSafeSensors = new ArrayList<>();
     for (Sensor sensor : sensors) {
-      executeSensor(context, sensor);
+      if (parallel && isThreadSafe(sensor)) {
+        threadSafeSensors.add(sensor);
+      } else {
+        executeConcurrently(context, threadSafeSensors);
+        threadSafeSensors.clear();
+        executeSensor(context, sensor);
+      }
+    }
+    executeConcurrently(context, threadSafeSensors);
+  }
+
+  private static boolean isThreadSafe(Sensor sensor) {
+    return sensor instanceof SensorWrapper && ((SensorWrapper) sensor).isThreadSafe();
+  }
+
+  private void executeConcurrently(SensorContext context, List<Sensor> sensors) {
+    if (sensors.size() <= 1) {
+      sensors.forEach(sensor -> executeSensor(context, sensor));
+      return;
+    }
+    // sensors also wait for I/O, so at least two of them are executed concurrently
+    int threads = Math.min(sensors.size(), Math.max(2, Runtime.getRuntime().availableProcessors()));
+    LOG.debug("Execute {} sensors on {} threads", sensors.size(), threads);
+    ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+      .setNameFormat("SensorsExecutor-%d")
+      .setDaemon(true)
+      .build());
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (Sensor sensor : sensors) {
+        futures.add(executor.submit(() -> executeSensor(context, sensor)));
+      }
+      // wait for all the sensors, then fail with the error of the first one in execution order
+      RuntimeException failure = null;
+      for (Future<?> future : futures) {
+        failure = firstFailure(failure, future);
+      }
+      if (failure != null) {
+        throw failure;
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static RuntimeException firstFailure(RuntimeException failure, Future<?> future) {
+    try {
+      future.get();
+      return failure;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return failure != null ? failure : new IllegalStateException("Interrupted while executing sensors", e);
+    } catch (ExecutionException e) {
+      if (failure != null) {
+        return failure;
+      }
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        return (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      return new IllegalStateException(cause);
     }
   }
 
   private void executeSensor(SensorContext context, Sensor sensor) {
-    eventBus.fireEvent(new SensorExecutionEvent(sensor, true));
+    fireEvent(new SensorExecutionEvent(sensor, true));
     sensor.analyse(new Project(module), context);
-    eventBus.fireEvent(new SensorExecutionEvent(sensor, false));
+    fireEvent(new SensorExecutionEvent(sensor, false));
+  }
+
+  /**
+   * Event handlers are not expected to be thread-safe
+   */
+  private void fireEvent(SensorExecutionEvent event) {
+    synchronized (eventBus) {
+      eventBus.fireEvent(event);
+    }
   }
 }
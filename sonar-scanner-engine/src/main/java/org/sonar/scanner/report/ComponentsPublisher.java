@@ -37,8 +37,10 @@ import org.sonar.api.batch.fs.internal.DefaultInputModule;
 import org.sonar.api.batch.fs.internal.InputComponentTree;
 import org.sonar.api.batch.fs.internal.InputModuleHierarchy;
 import org.sonar.core.util.CloseableIterator;
+import org.sonar.scanner.analysis.DefaultAnalysisMode;
 import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.scanner.protocol.output.ScannerReport.Component.ComponentType;
+import org.sonar.scanner.protocol.output.ScannerReport.Component.FileStatus;
 import org.sonar.scanner.protocol.output.ScannerReport.ComponentLink;
 import org.sonar.scanner.protocol.output.ScannerReport.ComponentLink.ComponentLinkType;
 import org.sonar.scanner.protocol.output.ScannerReport.Issue;
@@ -52,16 +54,19 @@ public class ComponentsPublisher implements ReportPublisherStep {
 
   private InputComponentTree componentTree;
   private InputModuleHierarchy moduleHierarchy;
+  private DefaultAnalysisMode analysisMode;
   private ScannerReportReader reader;
   private ScannerReportWriter writer;
 
-  public ComponentsPublisher(InputModuleHierarchy moduleHierarchy, InputComponentTree inputComponentTree) {
+  public ComponentsPublisher(InputModuleHierarchy moduleHierarchy, InputComponentTree inputComponentTree, DefaultAnalysisMode analysisMode) {
     this.moduleHierarchy = moduleHierarchy;
     this.componentTree = inputComponentTree;
+    this.analysisMode = analysisMode;
   }
 
   @Override
   public void publish(ScannerReportWriter writer) {
+    writer.flush();
     this.reader = new ScannerReportReader(writer.getFileStructure().root());
     this.writer = writer;
     recursiveWriteComponent((DefaultInputComponent) moduleHierarchy.root());
@@ -114,6 +119,9 @@ public class ComponentsPublisher implements ReportPublisherStep {
       if (lang != null) {
         builder.setLanguage(lang);
       }
+      if (analysisMode.isIncremental()) {
+        builder.setStatus(FileStatus.valueOf(file.status().name()));
+      }
     }
 
     String path = getPath(component);
@@ -138,13 +146,18 @@ public class ComponentsPublisher implements ReportPublisherStep {
         }
       }
     } else if (component instanceof DefaultInputFile) {
-      // skip files not marked for publishing
+      // skip files not marked for publishing, unless they are unchanged files of an incremental analysis: they are not
+      // analyzed but must be kept in the report for their data to be copied from the previous analysis
       DefaultInputFile inputFile = (DefaultInputFile) component;
-      return !inputFile.publish();
+      return !inputFile.publish() && !isUnchangedInIncrementalMode(inputFile);
     }
     return false;
   }
 
+  private boolean isUnchangedInIncrementalMode(DefaultInputFile inputFile) {
+    return analysisMode.isIncremental() && inputFile.status() == InputFile.Status.SAME;
+  }
+
   private static void writeVersion(DefaultInputModule module, ScannerReport.Component.Builder builder) {
     ProjectDefinition def = module.definition();
     String version = getVersion(def);
@@ -105,6 +105,9 @@ public class ReportPublisher implements Startable {
 
   @Override
   public void stop() {
+    if (writer != null) {
+      writer.close();
+    }
     if (!shouldKeepReport()) {
       deleteQuietly(reportDir);
     }
@@ -143,6 +146,7 @@ public class ReportPublisher implements Startable {
       for (ReportPublisherStep publisher : publishers) {
         publisher.publish(writer);
       }
+      writer.close();
       long stopTime = System.currentTimeMillis();
       LOG.info("Analysis report generated in {}ms, dir size={}", stopTime - startTime, FileUtils.byteCountToDisplaySize(FileUtils.sizeOfDirectory(reportDir)));
 
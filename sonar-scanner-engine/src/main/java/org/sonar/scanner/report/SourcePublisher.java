@@ -23,8 +23,6 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import org.apache.commons.io.IOUtils;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
@@ -45,8 +43,7 @@ public class SourcePublisher implements ReportPublisherStep {
       File iofile = writer.getSourceFile(inputFile.batchId());
 
       try (FileOutputStream output = new FileOutputStream(iofile);
-        InputStream in = inputFile.inputStream();
-        BufferedReader reader = new BufferedReader(new InputStreamReader(in, inputFile.charset()))) {
+        BufferedReader reader = new BufferedReader(inputFile.reader())) {
         writeSource(reader, output, inputFile.lines());
       } catch (IOException e) {
         throw new IllegalStateException("Unable to store file source in the report", e);
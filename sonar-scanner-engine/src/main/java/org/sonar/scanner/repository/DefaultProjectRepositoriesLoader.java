@@ -19,44 +19,108 @@
  */
 package org.sonar.scanner.repository;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Throwables;
 import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.Table;
+import com.google.common.hash.Hashing;
+import com.google.common.net.HttpHeaders;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.ExtensionRegistryLite;
+import com.google.protobuf.WireFormat;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.Date;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.sonar.api.CoreProperties;
 import org.sonar.api.utils.MessageException;
+import org.sonar.home.cache.FileCache;
+import org.sonar.scanner.bootstrap.GlobalProperties;
 import org.sonar.scanner.bootstrap.ScannerWsClient;
 import org.sonar.scanner.util.ScannerUtils;
 import org.sonarqube.ws.WsBatch;
 import org.sonarqube.ws.WsBatch.WsProjectResponse;
 import org.sonarqube.ws.WsBatch.WsProjectResponse.FileDataByPath;
+import org.sonarqube.ws.WsBatch.WsProjectResponse.FileDataChunk;
 import org.sonarqube.ws.WsBatch.WsProjectResponse.Settings;
 import org.sonarqube.ws.client.GetRequest;
 import org.sonarqube.ws.client.HttpException;
 import org.sonarqube.ws.client.WsResponse;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Loads the project repository from the server. The last response is kept in the user cache along with its ETag, which
+ * is sent with the next request, so that the server does not send it again if it did not change.
+ * <p>
+ * Responses are cached per server, request and login, and expire after {@link #CACHE_MAX_AGE_DAYS} days. Responses
+ * which contain secured settings are not cached, as the cache is not encrypted.
+ */
 public class DefaultProjectRepositoriesLoader implements ProjectRepositoriesLoader {
   private static final Logger LOG = LoggerFactory.getLogger(DefaultProjectRepositoriesLoader.class);
   private static final String BATCH_PROJECT_URL = "/batch/project.protobuf";
-  private ScannerWsClient wsClient;
+  private static final String CACHE_DIR_NAME = "project-repositories";
+  private static final int CACHE_VERSION = 1;
+  static final int CACHE_MAX_AGE_DAYS = 7;
+  private static final String SECURED_SUFFIX = ".secured";
+  private final ScannerWsClient wsClient;
+  private final Path cacheDir;
+  @Nullable
+  private final String login;
+
+  public DefaultProjectRepositoriesLoader(ScannerWsClient wsClient, FileCache fileCache, GlobalProperties properties) {
+    this(wsClient, fileCache.getDir().toPath().resolve(CACHE_DIR_NAME), properties.property(CoreProperties.LOGIN));
+  }
 
-  public DefaultProjectRepositoriesLoader(ScannerWsClient wsClient) {
+  @VisibleForTesting
+  DefaultProjectRepositoriesLoader(ScannerWsClient wsClient, Path cacheDir, @Nullable String login) {
     this.wsClient = wsClient;
+    this.cacheDir = cacheDir;
+    this.login = login;
   }
 
   @Override
   public ProjectRepositories load(String projectKey, boolean issuesMode) {
-    GetRequest request = new GetRequest(getUrl(projectKey, issuesMode));
-    try (WsResponse response = wsClient.call(request)) {
-      InputStream is = response.contentStream();
-      return processStream(is, projectKey);
+    String url = getUrl(projectKey, issuesMode);
+    // the response depends on the permissions of the user
+    Path cacheFile = cacheDir.resolve(Hashing.sha1().hashString(wsClient.baseUrl() + url + "\n" + StringUtils.defaultString(login), UTF_8).toString());
+    GetRequest request = new GetRequest(url);
+    CachedResponse cached = openCachedResponse(cacheFile);
+    try (WsResponse response = wsClient.call(request.setHeader(HttpHeaders.IF_NONE_MATCH, cached == null ? null : cached.etag))) {
+      if (response.code() == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+        LOG.debug("Project repository not modified - using the cached one");
+        return processStream(cached.data, projectKey);
+      }
+      closeQuietly(cached);
+      Optional<String> etag = response.header(HttpHeaders.ETAG);
+      if (!etag.isPresent()) {
+        deleteQuietly(cacheFile);
+        return processStream(response.contentStream(), projectKey);
+      }
+      return processAndSaveResponse(response.contentStream(), etag.get(), cacheFile, projectKey);
     } catch (RuntimeException e) {
+      closeQuietly(cached);
       if (shouldThrow(e)) {
         throw e;
       }
@@ -66,6 +130,124 @@ public class DefaultProjectRepositoriesLoader implements ProjectRepositoriesLoad
     }
   }
 
+  @CheckForNull
+  private static CachedResponse openCachedResponse(Path cacheFile) {
+    DataInputStream in = null;
+    try {
+      if (isExpired(cacheFile)) {
+        deleteQuietly(cacheFile);
+        return null;
+      }
+      in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile)));
+      if (in.readInt() == CACHE_VERSION) {
+        return new CachedResponse(in.readUTF(), in);
+      }
+    } catch (NoSuchFileException e) {
+      // nothing cached
+    } catch (IOException e) {
+      LOG.debug("Failed to read cached project repository " + cacheFile, e);
+    }
+    IOUtils.closeQuietly(in);
+    return null;
+  }
+
+  private static boolean isExpired(Path cacheFile) throws IOException {
+    long age = System.currentTimeMillis() - Files.getLastModifiedTime(cacheFile).toMillis();
+    return age > TimeUnit.DAYS.toMillis(CACHE_MAX_AGE_DAYS);
+  }
+
+  /**
+   * Copies the response to a temporary file of the cache and reads it from there. The file replaces the cached
+   * response only if the response does not contain secured settings, so that concurrent analyses never read a
+   * partial response and secured settings are never kept on disk.
+   */
+  private ProjectRepositories processAndSaveResponse(InputStream response, String etag, Path cacheFile, String projectKey) {
+    Path tempFile;
+    try {
+      Files.createDirectories(cacheDir);
+      tempFile = Files.createTempFile(cacheDir, "response", ".tmp");
+    } catch (IOException e) {
+      LOG.debug("Failed to create cache of project repository in " + cacheDir, e);
+      return processStream(response, projectKey);
+    }
+    try {
+      try (InputStream in = response;
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+        out.writeInt(CACHE_VERSION);
+        out.writeUTF(etag);
+        IOUtils.copyLarge(in, (OutputStream) out);
+      } catch (IOException e) {
+        throw new IllegalStateException("Failed to read project repository", e);
+      }
+      CachedResponse saved = openCachedResponse(tempFile);
+      if (saved == null) {
+        throw new IllegalStateException("Failed to read project repository from " + cacheDir);
+      }
+      ProjectRepositories repositories = processStream(saved.data, projectKey);
+      if (hasSecuredSettings(repositories)) {
+        deleteQuietly(cacheFile);
+      } else {
+        moveToCache(tempFile, cacheFile);
+        deleteExpiredResponses();
+      }
+      return repositories;
+    } finally {
+      deleteQuietly(tempFile);
+    }
+  }
+
+  private static boolean hasSecuredSettings(ProjectRepositories repositories) {
+    return repositories.settingsByModule().columnKeySet().stream().anyMatch(key -> key.endsWith(SECURED_SUFFIX));
+  }
+
+  private static void moveToCache(Path tempFile, Path cacheFile) {
+    try {
+      Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      // for example if the cached response is being read by another analysis on Windows
+      LOG.debug("Failed to cache project repository in " + cacheFile, e);
+    }
+  }
+
+  /**
+   * Responses of the projects which are not analyzed anymore would otherwise be kept forever
+   */
+  private void deleteExpiredResponses() {
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(cacheDir)) {
+      for (Path file : stream) {
+        if (isExpired(file)) {
+          deleteQuietly(file);
+        }
+      }
+    } catch (IOException e) {
+      LOG.debug("Failed to delete expired project repositories from " + cacheDir, e);
+    }
+  }
+
+  private static void deleteQuietly(Path file) {
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      // ignored
+    }
+  }
+
+  private static void closeQuietly(@Nullable CachedResponse cached) {
+    if (cached != null) {
+      IOUtils.closeQuietly(cached.data);
+    }
+  }
+
+  private static class CachedResponse {
+    private final String etag;
+    private final InputStream data;
+
+    private CachedResponse(String etag, InputStream data) {
+      this.etag = etag;
+      this.data = data;
+    }
+  }
+
   private static String getUrl(String projectKey, boolean issuesMode) {
     StringBuilder builder = new StringBuilder();
 
@@ -74,6 +256,7 @@ public class DefaultProjectRepositoriesLoader implements ProjectRepositoriesLoad
     if (issuesMode) {
       builder.append("&issues_mode=true");
     }
+    builder.append("&streamed=true");
     return builder.toString();
   }
 
@@ -91,27 +274,39 @@ public class DefaultProjectRepositoriesLoader implements ProjectRepositoriesLoad
     return false;
   }
 
+  /**
+   * File data are streamed by chunks (field {@code fileDataChunks}), which are read and converted one after the other,
+   * so that the whole response is never loaded in memory.
+   */
   private static ProjectRepositories processStream(InputStream is, String projectKey) {
     try {
-      WsProjectResponse response = WsProjectResponse.parseFrom(is);
-
       Table<String, String, FileData> fileDataTable = HashBasedTable.create();
       Table<String, String, String> settings = HashBasedTable.create();
 
+      CodedInputStream input = CodedInputStream.newInstance(is);
+      ByteString.Output otherFields = ByteString.newOutput();
+      CodedOutputStream otherFieldsOutput = CodedOutputStream.newInstance(otherFields);
+      int tag;
+      while ((tag = input.readTag()) != 0) {
+        if (WireFormat.getTagFieldNumber(tag) == WsProjectResponse.FILEDATACHUNKS_FIELD_NUMBER) {
+          FileDataChunk chunk = input.readMessage(FileDataChunk.parser(), ExtensionRegistryLite.getEmptyRegistry());
+          addFileData(fileDataTable, chunk.getFileDataByModuleAndPath());
+        } else {
+          input.skipField(tag, otherFieldsOutput);
+        }
+        // the limit applies to the whole stream, but only a single chunk is kept in memory
+        input.resetSizeCounter();
+      }
+      otherFieldsOutput.flush();
+      WsProjectResponse response = WsProjectResponse.parseFrom(otherFields.toByteString());
+
       Map<String, Settings> settingsByModule = response.getSettingsByModule();
       for (Map.Entry<String, Settings> e1 : settingsByModule.entrySet()) {
         for (Map.Entry<String, String> e2 : e1.getValue().getSettings().entrySet()) {
           settings.put(e1.getKey(), e2.getKey(), e2.getValue());
         }
       }
-
-      Map<String, FileDataByPath> fileDataByModuleAndPath = response.getFileDataByModuleAndPath();
-      for (Map.Entry<String, FileDataByPath> e1 : fileDataByModuleAndPath.entrySet()) {
-        for (Map.Entry<String, WsBatch.WsProjectResponse.FileData> e2 : e1.getValue().getFileDataByPath().entrySet()) {
-          FileData fd = new FileData(e2.getValue().getHash(), e2.getValue().getRevision());
-          fileDataTable.put(e1.getKey(), e2.getKey(), fd);
-        }
-      }
+      addFileData(fileDataTable, response.getFileDataByModuleAndPath());
 
       return new ProjectRepositories(settings, fileDataTable, new Date(response.getLastAnalysisDate()));
     } catch (IOException e) {
@@ -120,4 +315,13 @@ public class DefaultProjectRepositoriesLoader implements ProjectRepositoriesLoad
       IOUtils.closeQuietly(is);
     }
   }
+
+  private static void addFileData(Table<String, String, FileData> fileDataTable, Map<String, FileDataByPath> fileDataByModuleAndPath) {
+    for (Map.Entry<String, FileDataByPath> e1 : fileDataByModuleAndPath.entrySet()) {
+      for (Map.Entry<String, WsBatch.WsProjectResponse.FileData> e2 : e1.getValue().getFileDataByPath().entrySet()) {
+        FileData fd = new FileData(e2.getValue().getHash(), e2.getValue().getRevision());
+        fileDataTable.put(e1.getKey(), e2.getKey(), fd);
+      }
+    }
+  }
 }
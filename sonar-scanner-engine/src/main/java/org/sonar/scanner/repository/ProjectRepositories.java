@@ -69,6 +69,10 @@ public class ProjectRepositories {
     return settingsByModule.row(moduleKey);
   }
 
+  public Table<String, String, String> settingsByModule() {
+    return settingsByModule;
+  }
+
   @CheckForNull
   public FileData fileData(String projectKeyWithBranch, String path) {
     return fileDataByModuleAndPath.get(projectKeyWithBranch, path);
@@ -27,6 +27,7 @@ import java.util.Iterator;
 
 import org.sonar.api.batch.fs.internal.InputModuleHierarchy;
 import org.sonar.core.util.FileUtils;
+import org.sonar.scanner.cpd.index.CpdBlocksCache;
 import org.sonar.home.cache.DirectoryLock;
 
 public class WorkDirectoryCleaner {
@@ -53,6 +54,10 @@ public class WorkDirectoryCleaner {
   }
 
   private DirectoryStream<Path> list() throws IOException {
-    return Files.newDirectoryStream(workDir, entry -> !DirectoryLock.LOCK_FILE_NAME.equals(entry.getFileName().toString()));
+    // CPD blocks are kept for the next incremental analyses
+    return Files.newDirectoryStream(workDir, entry -> {
+      String fileName = entry.getFileName().toString();
+      return !DirectoryLock.LOCK_FILE_NAME.equals(fileName) && !CpdBlocksCache.DIR_NAME.equals(fileName);
+    });
   }
 }
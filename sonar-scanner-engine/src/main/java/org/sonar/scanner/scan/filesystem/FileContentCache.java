@@ -0,0 +1,88 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.scan.filesystem;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.annotation.CheckForNull;
+import org.sonar.api.batch.ScannerSide;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+
+/**
+ * Decoded content of the files, kept in memory once their metadata are computed so that the sensors, CPD and the
+ * publishing of sources don't read and decode the files again. The least recently used files are evicted once the
+ * total number of chars exceeds the limit.
+ */
+@ScannerSide
+public class FileContentCache {
+  /**
+   * 64MB of heap
+   */
+  static final long DEFAULT_MAX_CHARS = 32L * 1024 * 1024;
+
+  private final long maxChars;
+  private final long maxFileChars;
+  private final Map<DefaultInputFile, String> contentByFile = new LinkedHashMap<>(16, 0.75f, true);
+  private long chars = 0;
+
+  public FileContentCache() {
+    this(DEFAULT_MAX_CHARS);
+  }
+
+  FileContentCache(long maxChars) {
+    this.maxChars = maxChars;
+    // a single big file must not evict all the others
+    this.maxFileChars = maxChars / 16;
+  }
+
+  /**
+   * Whether a file of the given size in bytes can be kept in memory. A char is encoded on at least one byte, so
+   * that the size of the file is an upper bound of the number of chars.
+   */
+  public boolean accepts(long fileSize) {
+    return fileSize <= maxFileChars;
+  }
+
+  public synchronized void put(DefaultInputFile inputFile, String content) {
+    if (content.length() > maxFileChars) {
+      return;
+    }
+    String previous = contentByFile.put(inputFile, content);
+    if (previous != null) {
+      chars -= previous.length();
+    }
+    chars += content.length();
+    Iterator<String> it = contentByFile.values().iterator();
+    while (chars > maxChars && it.hasNext()) {
+      chars -= it.next().length();
+      it.remove();
+    }
+  }
+
+  @CheckForNull
+  public synchronized String get(DefaultInputFile inputFile) {
+    return contentByFile.get(inputFile);
+  }
+
+  synchronized long chars() {
+    return chars;
+  }
+}
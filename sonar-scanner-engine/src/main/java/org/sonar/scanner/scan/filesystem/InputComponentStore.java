@@ -47,6 +47,8 @@ import org.sonar.api.scan.filesystem.PathResolver;
 /**
  * Store of all files and dirs. This cache is shared amongst all project modules. Inclusion and
  * exclusion patterns are already applied.
+ * Components are added while indexing files, before execution of sensors. The store is then only read, so
+ * it can be used by sensors executed concurrently.
  */
 @ScannerSide
 public class InputComponentStore {
@@ -38,6 +38,7 @@ public class MeasureCache {
 
   public MeasureCache(Storages caches, MetricFinder metricFinder) {
     caches.registerValueCoder(DefaultMeasure.class, new MeasureValueCoder(metricFinder));
+    caches.registerValueCopier(DefaultMeasure.class, MeasureValueCoder::copy);
     cache = caches.createCache("measures");
   }
 
@@ -53,4 +53,13 @@ class MeasureValueCoder implements ValueCoder {
       .forMetric(metric)
       .withValue((Serializable) value.get());
   }
+
+  /**
+   * Copy of measure with the same fields as the measure decoded by {@link #get(Value, Class, CoderContext)}
+   */
+  static DefaultMeasure copy(DefaultMeasure measure) {
+    return new DefaultMeasure()
+      .forMetric(measure.metric())
+      .withValue(measure.value());
+  }
 }
@@ -49,7 +49,18 @@ import com.google.common.base.Joiner;
     project = false,
     module = false,
     global = false,
-    type = PropertyType.BOOLEAN)
+    type = PropertyType.BOOLEAN),
+  @Property(
+    key = ScmConfiguration.BLAME_THREADS_KEY,
+    defaultValue = "" + ScmConfiguration.DEFAULT_BLAME_THREADS,
+    name = "Number of threads used to collect blame information",
+    description = "Files to blame are split into as many groups as threads, each group being blamed concurrently by the SCM provider. "
+      + "Only increase this value if the SCM provider supports concurrent blame commands.",
+    category = CoreProperties.CATEGORY_SCM,
+    project = false,
+    module = false,
+    global = false,
+    type = PropertyType.INTEGER)
 })
 @InstantiationStrategy(InstantiationStrategy.PER_BATCH)
 @ScannerSide
@@ -57,6 +68,8 @@ public final class ScmConfiguration implements Startable {
   private static final Logger LOG = Loggers.get(ScmConfiguration.class);
 
   public static final String FORCE_RELOAD_KEY = "sonar.scm.forceReloadAll";
+  public static final String BLAME_THREADS_KEY = "sonar.scm.blameThreads";
+  public static final int DEFAULT_BLAME_THREADS = 1;
 
   private final Configuration settings;
   private final Map<String, ScmProvider> providerPerKey = new LinkedHashMap<>();
@@ -146,6 +159,14 @@ public final class ScmConfiguration implements Startable {
     return settings.getBoolean(FORCE_RELOAD_KEY).orElse(false);
   }
 
+  public int blameThreads() {
+    int threads = settings.getInt(BLAME_THREADS_KEY).orElse(DEFAULT_BLAME_THREADS);
+    if (threads < 1) {
+      throw new IllegalArgumentException("Property " + BLAME_THREADS_KEY + " must be a positive number, but was " + threads);
+    }
+    return threads;
+  }
+
   @Override
   public void stop() {
     // Nothing to do
@@ -0,0 +1,310 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.UnaryOperator;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+/**
+ * <p>
+ * Storage of values in a sorted map on heap. Keys are sorted as in {@link PersistitStorage}: first by type,
+ * then by value. As a consequence, elements of keys must be {@link Comparable}.
+ * </p>
+ * <p>
+ * As in {@link PersistitStorage}, values are copied when they are put and when they are read, so that
+ * changing a value after it has been put or read does not change the stored value.
+ * </p>
+ */
+class MemoryStorage<V> implements Storage<V> {
+
+  /**
+   * Greater than any element of key, used to delimit the keys starting with a given prefix
+   */
+  private static final Object AFTER = new Object();
+
+  private final NavigableMap<Object[], V> map = new TreeMap<>(KeyComparator.INSTANCE);
+  private final UnaryOperator<V> copier;
+
+  MemoryStorage(UnaryOperator<V> copier) {
+    this.copier = copier;
+  }
+
+  int size() {
+    return map.size();
+  }
+
+  @Override
+  public Storage<V> put(Object key, V value) {
+    return put(new Object[] {key}, value);
+  }
+
+  @Override
+  public Storage<V> put(Object firstKey, Object secondKey, V value) {
+    return put(new Object[] {firstKey, secondKey}, value);
+  }
+
+  @Override
+  public Storage<V> put(Object firstKey, Object secondKey, Object thirdKey, V value) {
+    return put(new Object[] {firstKey, secondKey, thirdKey}, value);
+  }
+
+  @Override
+  public Storage<V> put(Object[] key, V value) {
+    for (Object element : key) {
+      checkComparable(element);
+    }
+    map.put(key.clone(), copier.apply(value));
+    return this;
+  }
+
+  private static void checkComparable(@Nullable Object element) {
+    if (element != null && !(element instanceof Comparable)) {
+      throw new IllegalArgumentException("Elements of keys must be comparable, but got element of type " + element.getClass().getName());
+    }
+  }
+
+  @CheckForNull
+  private V copy(@Nullable V value) {
+    return value == null ? null : copier.apply(value);
+  }
+
+  @Override
+  @CheckForNull
+  public V get(Object key) {
+    return get(new Object[] {key});
+  }
+
+  @Override
+  @CheckForNull
+  public V get(Object firstKey, Object secondKey) {
+    return get(new Object[] {firstKey, secondKey});
+  }
+
+  @Override
+  @CheckForNull
+  public V get(Object firstKey, Object secondKey, Object thirdKey) {
+    return get(new Object[] {firstKey, secondKey, thirdKey});
+  }
+
+  @Override
+  @CheckForNull
+  public V get(Object[] key) {
+    return copy(map.get(key));
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return map.containsKey(new Object[] {key});
+  }
+
+  @Override
+  public boolean containsKey(Object firstKey, Object secondKey) {
+    return map.containsKey(new Object[] {firstKey, secondKey});
+  }
+
+  @Override
+  public boolean containsKey(Object firstKey, Object secondKey, Object thirdKey) {
+    return map.containsKey(new Object[] {firstKey, secondKey, thirdKey});
+  }
+
+  @Override
+  public boolean containsKey(Object[] key) {
+    return map.containsKey(key);
+  }
+
+  @Override
+  public boolean remove(Object key) {
+    return remove(new Object[] {key});
+  }
+
+  @Override
+  public boolean remove(Object firstKey, Object secondKey) {
+    return remove(new Object[] {firstKey, secondKey});
+  }
+
+  @Override
+  public boolean remove(Object firstKey, Object secondKey, Object thirdKey) {
+    return remove(new Object[] {firstKey, secondKey, thirdKey});
+  }
+
+  @Override
+  public boolean remove(Object[] key) {
+    return map.remove(key) != null;
+  }
+
+  @Override
+  public Storage<V> clear(Object key) {
+    return clear(new Object[] {key});
+  }
+
+  @Override
+  public Storage<V> clear(Object firstKey, Object secondKey) {
+    return clear(new Object[] {firstKey, secondKey});
+  }
+
+  @Override
+  public Storage<V> clear(Object firstKey, Object secondKey, Object thirdKey) {
+    return clear(new Object[] {firstKey, secondKey, thirdKey});
+  }
+
+  @Override
+  public Storage<V> clear(Object[] key) {
+    withPrefix(key).clear();
+    return this;
+  }
+
+  @Override
+  public void clear() {
+    map.clear();
+  }
+
+  @Override
+  @SuppressWarnings("rawtypes")
+  public Set keySet(Object key) {
+    return keysAtDepth(new Object[] {key});
+  }
+
+  @Override
+  @SuppressWarnings("rawtypes")
+  public Set keySet(Object firstKey, Object secondKey) {
+    return keysAtDepth(new Object[] {firstKey, secondKey});
+  }
+
+  @Override
+  public Set<Object> keySet() {
+    return keysAtDepth(new Object[0]);
+  }
+
+  private Set<Object> keysAtDepth(Object[] prefix) {
+    Set<Object> keys = new LinkedHashSet<>();
+    for (Object[] key : withPrefix(prefix).keySet()) {
+      if (key.length > prefix.length) {
+        keys.add(key[prefix.length]);
+      }
+    }
+    return keys;
+  }
+
+  @Override
+  public Iterable<V> values(Object firstKey, Object secondKey) {
+    return values(new Object[] {firstKey, secondKey});
+  }
+
+  @Override
+  public Iterable<V> values(Object firstKey) {
+    return values(new Object[] {firstKey});
+  }
+
+  @Override
+  public Iterable<V> values() {
+    return values(new Object[0]);
+  }
+
+  /**
+   * Values are listed when iteration starts, so that storage can be updated during iteration.
+   */
+  private Iterable<V> values(Object[] prefix) {
+    return () -> {
+      List<V> values = new ArrayList<>();
+      for (Map.Entry<Object[], V> entry : withPrefix(prefix).entrySet()) {
+        if (entry.getKey().length > prefix.length) {
+          values.add(copier.apply(entry.getValue()));
+        }
+      }
+      return Collections.unmodifiableList(values).iterator();
+    };
+  }
+
+  @Override
+  public Iterable<Entry<V>> entries() {
+    return entries(new Object[0]);
+  }
+
+  @Override
+  public Iterable<Entry<V>> entries(Object firstKey) {
+    return entries(new Object[] {firstKey});
+  }
+
+  private Iterable<Entry<V>> entries(Object[] prefix) {
+    return () -> {
+      List<Entry<V>> entries = new ArrayList<>();
+      for (Map.Entry<Object[], V> entry : withPrefix(prefix).entrySet()) {
+        if (entry.getKey().length > prefix.length) {
+          entries.add(new Entry<>(entry.getKey().clone(), copier.apply(entry.getValue())));
+        }
+      }
+      return Collections.unmodifiableList(entries).iterator();
+    };
+  }
+
+  private NavigableMap<Object[], V> withPrefix(Object[] prefix) {
+    if (prefix.length == 0) {
+      return map;
+    }
+    Object[] upperBound = Arrays.copyOf(prefix, prefix.length + 1);
+    upperBound[prefix.length] = AFTER;
+    return map.subMap(prefix, true, upperBound, false);
+  }
+
+  private enum KeyComparator implements Comparator<Object[]> {
+    INSTANCE;
+
+    @Override
+    public int compare(Object[] o1, Object[] o2) {
+      int length = Math.min(o1.length, o2.length);
+      for (int i = 0; i < length; i++) {
+        int result = compareElements(o1[i], o2[i]);
+        if (result != 0) {
+          return result;
+        }
+      }
+      return Integer.compare(o1.length, o2.length);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compareElements(@CheckForNull Object o1, @CheckForNull Object o2) {
+      if (o1 == o2) {
+        return 0;
+      }
+      if (o1 == AFTER || o2 == null) {
+        return 1;
+      }
+      if (o2 == AFTER || o1 == null) {
+        return -1;
+      }
+      if (o1.getClass() != o2.getClass()) {
+        return o1.getClass().getName().compareTo(o2.getClass().getName());
+      }
+      checkComparable(o1);
+      return ((Comparable) o1).compareTo(o2);
+    }
+  }
+}
@@ -0,0 +1,224 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import java.util.Set;
+import java.util.function.Supplier;
+import javax.annotation.CheckForNull;
+
+/**
+ * Storage kept in memory until it contains more than a given number of entries. Entries are then moved
+ * to the storage provided by a factory, generally on disk, which is used for the rest of the analysis.
+ * <p>
+ * Iterables are bound to the current storage when iteration starts, so that they can be created before entries
+ * are moved.
+ * </p>
+ */
+class SpillingStorage<V> implements Storage<V> {
+
+  private final int maxMemoryEntries;
+  private final Supplier<Storage<V>> factory;
+  @CheckForNull
+  private MemoryStorage<V> memory;
+  private Storage<V> delegate;
+
+  SpillingStorage(MemoryStorage<V> memory, int maxMemoryEntries, Supplier<Storage<V>> factory) {
+    this.memory = memory;
+    this.delegate = memory;
+    this.maxMemoryEntries = maxMemoryEntries;
+    this.factory = factory;
+  }
+
+  boolean isInMemory() {
+    return memory != null;
+  }
+
+  private Storage<V> afterPut() {
+    if (memory != null && memory.size() > maxMemoryEntries) {
+      Storage<V> target = factory.get();
+      for (Entry<V> entry : memory.entries()) {
+        target.put(entry.key(), entry.value());
+      }
+      memory.clear();
+      memory = null;
+      delegate = target;
+    }
+    return this;
+  }
+
+  @Override
+  public Storage<V> put(Object key, V value) {
+    delegate.put(key, value);
+    return afterPut();
+  }
+
+  @Override
+  public Storage<V> put(Object firstKey, Object secondKey, V value) {
+    delegate.put(firstKey, secondKey, value);
+    return afterPut();
+  }
+
+  @Override
+  public Storage<V> put(Object firstKey, Object secondKey, Object thirdKey, V value) {
+    delegate.put(firstKey, secondKey, thirdKey, value);
+    return afterPut();
+  }
+
+  @Override
+  public Storage<V> put(Object[] key, V value) {
+    delegate.put(key, value);
+    return afterPut();
+  }
+
+  @Override
+  @CheckForNull
+  public V get(Object key) {
+    return delegate.get(key);
+  }
+
+  @Override
+  @CheckForNull
+  public V get(Object firstKey, Object secondKey) {
+    return delegate.get(firstKey, secondKey);
+  }
+
+  @Override
+  @CheckForNull
+  public V get(Object firstKey, Object secondKey, Object thirdKey) {
+    return delegate.get(firstKey, secondKey, thirdKey);
+  }
+
+  @Override
+  @CheckForNull
+  public V get(Object[] key) {
+    return delegate.get(key);
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return delegate.containsKey(key);
+  }
+
+  @Override
+  public boolean containsKey(Object firstKey, Object secondKey) {
+    return delegate.containsKey(firstKey, secondKey);
+  }
+
+  @Override
+  public boolean containsKey(Object firstKey, Object secondKey, Object thirdKey) {
+    return delegate.containsKey(firstKey, secondKey, thirdKey);
+  }
+
+  @Override
+  public boolean containsKey(Object[] key) {
+    return delegate.containsKey(key);
+  }
+
+  @Override
+  public boolean remove(Object key) {
+    return delegate.remove(key);
+  }
+
+  @Override
+  public boolean remove(Object firstKey, Object secondKey) {
+    return delegate.remove(firstKey, secondKey);
+  }
+
+  @Override
+  public boolean remove(Object firstKey, Object secondKey, Object thirdKey) {
+    return delegate.remove(firstKey, secondKey, thirdKey);
+  }
+
+  @Override
+  public boolean remove(Object[] key) {
+    return delegate.remove(key);
+  }
+
+  @Override
+  public Storage<V> clear(Object key) {
+    delegate.clear(key);
+    return this;
+  }
+
+  @Override
+  public Storage<V> clear(Object firstKey, Object secondKey) {
+    delegate.clear(firstKey, secondKey);
+    return this;
+  }
+
+  @Override
+  public Storage<V> clear(Object firstKey, Object secondKey, Object thirdKey) {
+    delegate.clear(firstKey, secondKey, thirdKey);
+    return this;
+  }
+
+  @Override
+  public Storage<V> clear(Object[] key) {
+    delegate.clear(key);
+    return this;
+  }
+
+  @Override
+  public void clear() {
+    delegate.clear();
+  }
+
+  @Override
+  @SuppressWarnings("rawtypes")
+  public Set keySet(Object key) {
+    return delegate.keySet(key);
+  }
+
+  @Override
+  @SuppressWarnings("rawtypes")
+  public Set keySet(Object firstKey, Object secondKey) {
+    return delegate.keySet(firstKey, secondKey);
+  }
+
+  @Override
+  public Set<Object> keySet() {
+    return delegate.keySet();
+  }
+
+  @Override
+  public Iterable<V> values(Object firstKey, Object secondKey) {
+    return () -> delegate.values(firstKey, secondKey).iterator();
+  }
+
+  @Override
+  public Iterable<V> values(Object firstKey) {
+    return () -> delegate.values(firstKey).iterator();
+  }
+
+  @Override
+  public Iterable<V> values() {
+    return () -> delegate.values().iterator();
+  }
+
+  @Override
+  public Iterable<Entry<V>> entries() {
+    return () -> delegate.entries().iterator();
+  }
+
+  @Override
+  public Iterable<Entry<V>> entries(Object firstKey) {
+    return () -> delegate.entries(firstKey).iterator();
+  }
+}
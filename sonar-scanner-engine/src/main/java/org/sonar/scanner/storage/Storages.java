@@ -20,6 +20,7 @@
 package org.sonar.scanner.storage;
 
 import com.google.common.base.Preconditions;
+import com.google.protobuf.MessageLite;
 import com.persistit.Exchange;
 import com.persistit.Persistit;
 import com.persistit.Value;
@@ -27,20 +28,38 @@ import com.persistit.Volume;
 import com.persistit.encoding.CoderManager;
 import com.persistit.encoding.ValueCoder;
 import com.persistit.exception.PersistitException;
+import java.io.Serializable;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+import org.apache.commons.lang.SerializationUtils;
 import org.picocontainer.Startable;
 import org.sonar.api.batch.ScannerSide;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
 
+/**
+ * Creates the storages of a project analysis, either backed by Persistit, kept in memory, or kept in memory
+ * until they are too big, depending on {@link StoragesManager#STORAGE_PROPERTY}.
+ */
 @ScannerSide
 public class Storages implements Startable {
+  private static final Logger LOG = Loggers.get(Storages.class);
+
   private final Map<String, Exchange> cacheMap = new HashMap<>();
+  private final Set<String> cacheNames = new HashSet<>();
+  private final Map<Class<?>, ValueCoder> valueCoders = new HashMap<>();
+  private final Map<Class<?>, UnaryOperator<Object>> valueCopiers = new HashMap<>();
+  private final StoragesManager storagesManager;
   private Persistit persistit;
   private Volume volume;
+  private boolean started;
 
   public Storages(StoragesManager storagesManager) {
-    persistit = storagesManager.persistit();
+    this.storagesManager = storagesManager;
     doStart();
   }
 
@@ -50,26 +69,93 @@ public class Storages implements Startable {
   }
 
   private void doStart() {
+    if (!storagesManager.isInMemory() && !storagesManager.isAuto()) {
+      startPersistit();
+    }
+    started = true;
+  }
+
+  private void startPersistit() {
     try {
+      persistit = storagesManager.persistit();
       persistit.flush();
       volume = persistit.createTemporaryVolume();
     } catch (Exception e) {
       throw new IllegalStateException("Fail to create a cache volume", e);
     }
+    CoderManager cm = persistit.getCoderManager();
+    valueCoders.forEach(cm::registerValueCoder);
   }
 
+  /**
+   * Registers the coder used by Persistit to serialize values of the given type
+   */
   public void registerValueCoder(Class<?> clazz, ValueCoder coder) {
-    CoderManager cm = persistit.getCoderManager();
-    cm.registerValueCoder(clazz, coder);
+    valueCoders.put(clazz, coder);
+    if (persistit != null) {
+      persistit.getCoderManager().registerValueCoder(clazz, coder);
+    }
+  }
+
+  /**
+   * Registers the function used to copy values of the given type when they are stored in memory. It is needed
+   * for the types of values which are not serializable and must return the same copy as the {@link ValueCoder}
+   * of the type, so that values do not depend on the storage.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> void registerValueCopier(Class<T> clazz, UnaryOperator<T> copier) {
+    valueCopiers.put(clazz, (UnaryOperator<Object>) copier);
   }
 
   public <V> Storage<V> createCache(String cacheName) {
-    Preconditions.checkState(volume != null && volume.isOpened(), "Caches are not initialized");
-    Preconditions.checkState(!cacheMap.containsKey(cacheName), "Cache is already created: %s", cacheName);
+    Preconditions.checkState(started, "Caches are not initialized");
+    Preconditions.checkState(cacheNames.add(cacheName), "Cache is already created: %s", cacheName);
+    if (storagesManager.isInMemory()) {
+      return newMemoryStorage();
+    }
+    if (storagesManager.isAuto()) {
+      int maxMemoryEntries = storagesManager.maxMemoryEntries();
+      return new SpillingStorage<>(newMemoryStorage(), maxMemoryEntries, () -> {
+        LOG.debug("Storage '{}' contains more than {} entries, it is moved to disk", cacheName, maxMemoryEntries);
+        return createPersistitCache(cacheName);
+      });
+    }
+    return createPersistitCache(cacheName);
+  }
+
+  @SuppressWarnings("unchecked")
+  private <V> MemoryStorage<V> newMemoryStorage() {
+    return new MemoryStorage<>(value -> (V) copy(value));
+  }
+
+  private Object copy(Object value) {
+    UnaryOperator<Object> copier = valueCopiers.get(value.getClass());
+    if (copier != null) {
+      return copier.apply(value);
+    }
+    if (isImmutable(value)) {
+      return value;
+    }
+    if (value instanceof Serializable) {
+      return SerializationUtils.clone((Serializable) value);
+    }
+    throw new IllegalArgumentException("Value of type " + value.getClass().getName() + " can not be stored: it is not serializable and no copier is registered");
+  }
+
+  private static boolean isImmutable(Object value) {
+    return value instanceof String || value instanceof Number && value.getClass().getName().startsWith("java.lang.")
+      || value instanceof Boolean || value instanceof Enum || value instanceof MessageLite;
+  }
+
+  private <V> Storage<V> createPersistitCache(String cacheName) {
+    if (volume == null) {
+      startPersistit();
+    }
+    Preconditions.checkState(volume.isOpened(), "Caches are not initialized");
     try {
       Exchange exchange = persistit.getExchange(volume, cacheName, true);
       exchange.setMaximumValueSize(Value.MAXIMUM_SIZE);
-      Storage<V> cache = new Storage<>(cacheName, exchange);
+      Storage<V> cache = new PersistitStorage<>(cacheName, exchange);
       cacheMap.put(cacheName, exchange);
       return cache;
     } catch (Exception e) {
@@ -79,6 +165,8 @@ public class Storages implements Startable {
 
   @Override
   public void stop() {
+    started = false;
+    cacheNames.clear();
     for (Entry<String, Exchange> e : cacheMap.entrySet()) {
       persistit.releaseExchange(e.getValue());
     }
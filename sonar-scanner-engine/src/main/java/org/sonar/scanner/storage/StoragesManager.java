@@ -24,10 +24,14 @@ import com.persistit.exception.PersistitException;
 import com.persistit.logging.Slf4jAdapter;
 import java.io.File;
 import java.util.Properties;
+import javax.annotation.CheckForNull;
+import org.apache.commons.lang.StringUtils;
 import org.picocontainer.Startable;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.batch.ScannerSide;
+import org.sonar.api.utils.MessageException;
 import org.sonar.api.utils.TempFolder;
+import org.sonar.scanner.bootstrap.GlobalProperties;
 
 import static org.sonar.core.util.FileUtils.deleteQuietly;
 
@@ -38,13 +42,66 @@ import static org.sonar.core.util.FileUtils.deleteQuietly;
  */
 @ScannerSide
 public class StoragesManager implements Startable {
+  /**
+   * Values are "persistit" (default), to always store data on disk, "auto", to keep data on heap until a storage
+   * contains more than {@link #MAX_MEMORY_ENTRIES_PROPERTY} entries and then move it to disk, or "memory", to always
+   * keep data on heap. The maximum number of entries applies to each storage, so "auto" and "memory" must only be
+   * enabled when the heap of the scanner can hold the data of several storages.
+   */
+  public static final String STORAGE_PROPERTY = "sonar.scanner.storage";
+  public static final String MAX_MEMORY_ENTRIES_PROPERTY = "sonar.scanner.storage.maxMemoryEntries";
+  static final String AUTO_STORAGE = "auto";
+  static final String PERSISTIT_STORAGE = "persistit";
+  static final String MEMORY_STORAGE = "memory";
+  static final int DEFAULT_MAX_MEMORY_ENTRIES = 100_000;
+
   private File tempDir;
   private Persistit persistit;
   private final TempFolder tempFolder;
+  private final String storage;
+  private final int maxMemoryEntries;
+  private boolean stopped;
+
+  public StoragesManager(TempFolder tempFolder, GlobalProperties properties) {
+    this(tempFolder, readStorage(properties), readMaxMemoryEntries(properties));
+  }
 
   public StoragesManager(TempFolder tempFolder) {
+    this(tempFolder, PERSISTIT_STORAGE, DEFAULT_MAX_MEMORY_ENTRIES);
+  }
+
+  private StoragesManager(TempFolder tempFolder, String storage, int maxMemoryEntries) {
     this.tempFolder = tempFolder;
-    initPersistit();
+    this.storage = storage;
+    this.maxMemoryEntries = maxMemoryEntries;
+    if (PERSISTIT_STORAGE.equals(storage)) {
+      initPersistit();
+    }
+  }
+
+  private static String readStorage(GlobalProperties properties) {
+    String storage = StringUtils.defaultIfBlank(properties.property(STORAGE_PROPERTY), PERSISTIT_STORAGE);
+    if (!AUTO_STORAGE.equals(storage) && !PERSISTIT_STORAGE.equals(storage) && !MEMORY_STORAGE.equals(storage)) {
+      throw MessageException.of(String.format("Unsupported value of property %s: '%s'. Supported values are: %s, %s, %s", STORAGE_PROPERTY, storage,
+        AUTO_STORAGE, PERSISTIT_STORAGE, MEMORY_STORAGE));
+    }
+    return storage;
+  }
+
+  private static int readMaxMemoryEntries(GlobalProperties properties) {
+    String value = properties.property(MAX_MEMORY_ENTRIES_PROPERTY);
+    if (StringUtils.isBlank(value)) {
+      return DEFAULT_MAX_MEMORY_ENTRIES;
+    }
+    try {
+      int maxEntries = Integer.parseInt(value.trim());
+      if (maxEntries >= 0) {
+        return maxEntries;
+      }
+    } catch (NumberFormatException e) {
+      // fail below
+    }
+    throw MessageException.of(String.format("Property %s must be a positive number, but was '%s'", MAX_MEMORY_ENTRIES_PROPERTY, value));
   }
 
   private void initPersistit() {
@@ -75,7 +132,8 @@ public class StoragesManager implements Startable {
   }
 
   @Override
-  public void stop() {
+  public synchronized void stop() {
+    stopped = true;
     if (persistit != null) {
       try {
         persistit.close(false);
@@ -92,7 +150,29 @@ public class StoragesManager implements Startable {
     return tempDir;
   }
 
-  Persistit persistit() {
+  boolean isInMemory() {
+    return MEMORY_STORAGE.equals(storage);
+  }
+
+  /**
+   * Storages are kept in memory until they reach {@link #maxMemoryEntries()}
+   */
+  boolean isAuto() {
+    return AUTO_STORAGE.equals(storage);
+  }
+
+  int maxMemoryEntries() {
+    return maxMemoryEntries;
+  }
+
+  /**
+   * @return {@code null} if storages are in memory. Persistit is started on first call when storage is "auto".
+   */
+  @CheckForNull
+  synchronized Persistit persistit() {
+    if (persistit == null && isAuto() && !stopped) {
+      initPersistit();
+    }
     return persistit;
   }
 }
@@ -105,6 +105,7 @@ public class DefaultAnalysisModeTest {
   public void default_publish_mode() {
     DefaultAnalysisMode mode = createMode(null);
     assertThat(mode.isPublish()).isTrue();
+    assertThat(mode.isIncremental()).isFalse();
     assertThat(mode.scanAllFiles()).isTrue();
   }
 
@@ -116,6 +117,29 @@ public class DefaultAnalysisModeTest {
     assertThat(mode.scanAllFiles()).isFalse();
   }
 
+  @Test
+  public void support_incremental_publish_mode() {
+    Map<String, String> props = new HashMap<>();
+    props.put(DefaultAnalysisMode.KEY_INCREMENTAL, "true");
+    props.put("sonar.scanAllFiles", "true");
+    DefaultAnalysisMode mode = new DefaultAnalysisMode(new GlobalProperties(new HashMap<>()), new AnalysisProperties(props));
+
+    assertThat(mode.isPublish()).isTrue();
+    assertThat(mode.isIncremental()).isTrue();
+    assertThat(mode.scanAllFiles()).isFalse();
+  }
+
+  @Test
+  public void incremental_is_ignored_in_issues_mode() {
+    Map<String, String> props = new HashMap<>();
+    props.put(CoreProperties.ANALYSIS_MODE, CoreProperties.ANALYSIS_MODE_ISSUES);
+    props.put(DefaultAnalysisMode.KEY_INCREMENTAL, "true");
+    DefaultAnalysisMode mode = new DefaultAnalysisMode(new GlobalProperties(props), new AnalysisProperties(props));
+
+    assertThat(mode.isIssues()).isTrue();
+    assertThat(mode.isIncremental()).isFalse();
+  }
+
   private static DefaultAnalysisMode createMode(@Nullable String mode) {
     return createMode(mode, mode);
   }
@@ -20,6 +20,7 @@
 package org.sonar.scanner.cpd;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -38,7 +39,9 @@ import org.junit.rules.TemporaryFolder;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputModule;
+import org.sonar.api.batch.fs.internal.InputModuleHierarchy;
 import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.config.internal.MapSettings;
 import org.sonar.api.scan.filesystem.PathResolver;
 import org.sonar.api.utils.log.LogTester;
 import org.sonar.api.utils.log.LoggerLevel;
@@ -47,6 +50,8 @@ import org.sonar.duplications.block.Block;
 import org.sonar.duplications.block.ByteArray;
 import org.sonar.duplications.index.CloneGroup;
 import org.sonar.duplications.index.ClonePart;
+import org.sonar.scanner.analysis.DefaultAnalysisMode;
+import org.sonar.scanner.cpd.index.CpdBlocksCache;
 import org.sonar.scanner.cpd.index.SonarCpdBlockIndex;
 import org.sonar.scanner.protocol.output.ScannerReport.Duplicate;
 import org.sonar.scanner.protocol.output.ScannerReport.Duplication;
@@ -69,27 +74,33 @@ public class CpdExecutorTest {
   private CpdSettings settings;
   private SonarCpdBlockIndex index;
   private ReportPublisher publisher;
-  private ScannerReportReader reader;
+  private File outputDir;
+  private ScannerReportWriter writer;
   private DefaultInputFile batchComponent1;
   private DefaultInputFile batchComponent2;
   private DefaultInputFile batchComponent3;
   private File baseDir;
   private InputComponentStore componentStore;
+  private DefaultAnalysisMode analysisMode = mock(DefaultAnalysisMode.class);
+  private CpdBlocksCache cache;
 
   @Before
   public void setUp() throws IOException {
-    File outputDir = temp.newFolder();
+    outputDir = temp.newFolder();
     baseDir = temp.newFolder();
 
     settings = mock(CpdSettings.class);
     publisher = mock(ReportPublisher.class);
-    when(publisher.getWriter()).thenReturn(new ScannerReportWriter(outputDir));
+    writer = new ScannerReportWriter(outputDir);
+    when(publisher.getWriter()).thenReturn(writer);
 
-    index = new SonarCpdBlockIndex(publisher, settings);
     DefaultInputModule inputModule = TestInputFileBuilder.newDefaultInputModule("foo", baseDir);
+    InputModuleHierarchy hierarchy = mock(InputModuleHierarchy.class, RETURNS_DEEP_STUBS);
+    when(hierarchy.root().getWorkDir()).thenReturn(temp.newFolder());
+    cache = new CpdBlocksCache(hierarchy, analysisMode, new MapSettings().asConfig());
+    index = new SonarCpdBlockIndex(publisher, settings, cache);
     componentStore = new InputComponentStore(new PathResolver(), inputModule);
-    executor = new CpdExecutor(settings, index, publisher, componentStore);
-    reader = new ScannerReportReader(outputDir);
+    executor = new CpdExecutor(settings, index, publisher, componentStore, analysisMode);
 
     batchComponent1 = createComponent("src/Foo.php", 5);
     batchComponent2 = createComponent("src/Foo2.php", 5);
@@ -108,7 +119,7 @@ public class CpdExecutorTest {
   @Test
   public void testNothingToSave() {
     executor.saveDuplications(batchComponent1, Collections.<CloneGroup>emptyList());
-    assertThat(reader.readComponentDuplications(batchComponent1.batchId())).hasSize(0);
+    assertThat(reader().readComponentDuplications(batchComponent1.batchId())).hasSize(0);
   }
 
   @Test
@@ -159,7 +170,7 @@ public class CpdExecutorTest {
     }
     executor.saveDuplications(batchComponent1, dups);
 
-    assertThat(reader.readComponentDuplications(batchComponent1.batchId())).hasSize(CpdExecutor.MAX_CLONE_GROUP_PER_FILE);
+    assertThat(reader().readComponentDuplications(batchComponent1.batchId())).hasSize(CpdExecutor.MAX_CLONE_GROUP_PER_FILE);
 
     assertThat(logTester.logs(LoggerLevel.WARN))
       .contains("Too many duplication groups on file " + batchComponent1 + ". Keep only the first " + CpdExecutor.MAX_CLONE_GROUP_PER_FILE + " groups.");
@@ -222,10 +233,114 @@ public class CpdExecutorTest {
         "Timeout during detection of duplications for .*Foo2.php");
   }
 
+  @Test
+  public void detect_duplications_of_files_in_parallel() {
+    when(settings.getThreads()).thenReturn(3);
+    List<DefaultInputFile> files = new ArrayList<>();
+    for (int i = 1; i <= 6; i++) {
+      DefaultInputFile component = createComponent("src/Bar" + i + ".php", 100);
+      List<Block> blocks = new ArrayList<>();
+      for (int j = 1; j <= 10; j++) {
+        blocks.add(Block.builder()
+          .setResourceId(component.key())
+          .setIndexInFile(j)
+          .setLines(j, j + 1)
+          .setUnit(j, j + 1)
+          .setBlockHash(new ByteArray(j * 31L))
+          .build());
+      }
+      index.insert((InputFile) component, blocks);
+      files.add(component);
+    }
+
+    executor.execute();
+
+    for (DefaultInputFile file : files) {
+      CloseableIterator<Duplication> dups = reader().readComponentDuplications(file.batchId());
+      assertThat(dups).hasSize(1);
+      dups.close();
+    }
+  }
+
+  @Test
+  public void detect_duplications_with_unchanged_files_in_incremental_mode() {
+    when(analysisMode.isIncremental()).thenReturn(true);
+    DefaultInputFile unchanged = new TestInputFileBuilder("foo", "src/Unchanged.php")
+      .setModuleBaseDir(baseDir.toPath())
+      .setLines(100)
+      .setStatus(InputFile.Status.SAME)
+      .setHash("hash")
+      .build();
+    componentStore.put(unchanged);
+    cache.put(unchanged, createBlocks(unchanged, 50));
+    DefaultInputFile unchangedWithoutBlocks = new TestInputFileBuilder("foo", "src/Other.php")
+      .setModuleBaseDir(baseDir.toPath())
+      .setStatus(InputFile.Status.SAME)
+      .build();
+    componentStore.put(unchangedWithoutBlocks);
+    index.insert(batchComponent1, createBlocks(batchComponent1, 1));
+
+    executor.execute();
+
+    Duplication[] duplications = readDuplications(1);
+    assertDuplication(duplications[0], 1, 11, 1);
+    assertDuplicate(duplications[0].getDuplicate(0), unchanged.batchId(), 50, 60);
+    assertThat(reader().readComponentDuplications(unchanged.batchId())).isEmpty();
+    assertThat(index.isUnchanged(unchanged.key())).isTrue();
+    assertThat(index.isUnchanged(unchangedWithoutBlocks.key())).isFalse();
+  }
+
+  @Test
+  public void blocks_of_removed_files_are_deleted_in_incremental_mode() {
+    when(analysisMode.isIncremental()).thenReturn(true);
+    DefaultInputFile removed = new TestInputFileBuilder("foo", "src/Removed.php").setHash("hash").build();
+    cache.put(removed, createBlocks(removed, 1));
+    DefaultInputFile unchanged = new TestInputFileBuilder("foo", "src/Unchanged.php")
+      .setModuleBaseDir(baseDir.toPath())
+      .setStatus(InputFile.Status.SAME)
+      .setHash("hash")
+      .build();
+    componentStore.put(unchanged);
+    cache.put(unchanged, createBlocks(unchanged, 1));
+
+    executor.execute();
+
+    assertThat(cache.get(removed)).isNull();
+    assertThat(cache.get(unchanged)).hasSize(10);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void index_is_closed_once_duplications_are_detected() {
+    index.insert(batchComponent1, createBlocks(batchComponent1, 1));
+
+    executor.execute();
+
+    index.getBySequenceHash(new ByteArray(31L));
+  }
+
+  private static List<Block> createBlocks(DefaultInputFile file, int firstLine) {
+    List<Block> blocks = new ArrayList<>();
+    for (int j = 0; j < 10; j++) {
+      blocks.add(Block.builder()
+        .setResourceId(file.key())
+        .setIndexInFile(j)
+        .setLines(firstLine + j, firstLine + j + 1)
+        .setUnit(j, j + 1)
+        .setBlockHash(new ByteArray((j + 1) * 31L))
+        .build());
+    }
+    return blocks;
+  }
+
+  private ScannerReportReader reader() {
+    writer.close();
+    return new ScannerReportReader(outputDir);
+  }
+
   private Duplication[] readDuplications(int expected) {
-    assertThat(reader.readComponentDuplications(batchComponent1.batchId())).hasSize(expected);
+    assertThat(reader().readComponentDuplications(batchComponent1.batchId())).hasSize(expected);
     Duplication[] duplications = new Duplication[expected];
-    CloseableIterator<Duplication> dups = reader.readComponentDuplications(batchComponent1.batchId());
+    CloseableIterator<Duplication> dups = reader().readComponentDuplications(batchComponent1.batchId());
 
     for (int i = 0; i < expected; i++) {
       duplications[i] = dups.next();
@@ -0,0 +1,201 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.cpd.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.batch.fs.internal.InputModuleHierarchy;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.config.internal.MapSettings;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.block.ByteArray;
+import org.sonar.scanner.analysis.DefaultAnalysisMode;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CpdBlocksCacheTest {
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private DefaultAnalysisMode analysisMode = mock(DefaultAnalysisMode.class);
+  private MapSettings settings = new MapSettings();
+  private File workDir;
+  private CpdBlocksCache underTest;
+
+  @Before
+  public void setUp() throws IOException {
+    workDir = temp.newFolder();
+    InputModuleHierarchy hierarchy = mock(InputModuleHierarchy.class, RETURNS_DEEP_STUBS);
+    when(hierarchy.root().getWorkDir()).thenReturn(workDir);
+    underTest = new CpdBlocksCache(hierarchy, analysisMode, settings.asConfig());
+    when(analysisMode.isIncremental()).thenReturn(true);
+  }
+
+  @Test
+  public void get_blocks_saved_by_previous_analysis_in_incremental_mode() {
+    DefaultInputFile file = file("hash");
+    List<Block> blocks = Arrays.asList(block(file, 0, 1), block(file, 1, 2));
+    underTest.put(file, blocks);
+
+    List<Block> cachedBlocks = underTest.get(file("hash"));
+
+    assertThat(cachedBlocks).containsExactlyElementsOf(blocks);
+    assertThat(cachedBlocks.get(1).getStartUnit()).isEqualTo(1);
+    assertThat(cachedBlocks.get(1).getEndUnit()).isEqualTo(2);
+  }
+
+  @Test
+  public void get_no_blocks_if_content_of_file_changed() {
+    DefaultInputFile file = file("hash");
+    underTest.put(file, Arrays.asList(block(file, 0, 1)));
+
+    assertThat(underTest.get(file("other_hash"))).isNull();
+  }
+
+  @Test
+  public void get_no_blocks_if_cpd_settings_of_language_changed() {
+    DefaultInputFile file = file("hash");
+    underTest.put(file, Arrays.asList(block(file, 0, 1)));
+
+    settings.setProperty("sonar.cpd.php.minimumTokens", "50");
+
+    assertThat(underTest.get(file)).isNull();
+  }
+
+  @Test
+  public void cpd_settings_of_other_languages_are_ignored() {
+    DefaultInputFile file = file("hash");
+    underTest.put(file, Arrays.asList(block(file, 0, 1)));
+
+    settings.setProperty("sonar.cpd.java.minimumLines", "5");
+
+    assertThat(underTest.get(file)).hasSize(1);
+  }
+
+  @Test
+  public void get_no_blocks_if_none_were_saved() {
+    assertThat(underTest.get(file("hash"))).isNull();
+  }
+
+  @Test
+  public void get_no_blocks_if_analysis_is_not_incremental() {
+    DefaultInputFile file = file("hash");
+    underTest.put(file, Arrays.asList(block(file, 0, 1)));
+    when(analysisMode.isIncremental()).thenReturn(false);
+
+    assertThat(underTest.get(file)).isNull();
+  }
+
+  @Test
+  public void blocks_are_not_saved_in_issues_mode() {
+    when(analysisMode.isIssues()).thenReturn(true);
+    DefaultInputFile file = file("hash");
+    underTest.put(file, Arrays.asList(block(file, 0, 1)));
+
+    assertThat(new File(workDir, CpdBlocksCache.DIR_NAME)).doesNotExist();
+  }
+
+  @Test
+  public void blocks_are_not_saved_by_analyses_which_are_not_incremental_by_default() {
+    when(analysisMode.isIncremental()).thenReturn(false);
+    DefaultInputFile file = file("hash");
+    underTest.put(file, Arrays.asList(block(file, 0, 1)));
+
+    assertThat(new File(workDir, CpdBlocksCache.DIR_NAME)).doesNotExist();
+  }
+
+  @Test
+  public void blocks_are_saved_by_analyses_which_are_not_incremental_if_enabled() {
+    when(analysisMode.isIncremental()).thenReturn(false);
+    settings.setProperty(CpdBlocksCache.CACHE_BLOCKS_PROPERTY, true);
+    DefaultInputFile file = file("hash");
+    underTest.put(file, Arrays.asList(block(file, 0, 1)));
+
+    when(analysisMode.isIncremental()).thenReturn(true);
+    assertThat(underTest.get(file)).hasSize(1);
+  }
+
+  @Test
+  public void prune_deletes_blocks_of_files_which_do_not_exist_anymore() {
+    DefaultInputFile file = file("hash");
+    DefaultInputFile removed = new TestInputFileBuilder("foo", "src/Removed.php").setHash("hash").build();
+    underTest.put(file, Arrays.asList(block(file, 0, 1)));
+    underTest.put(removed, Arrays.asList(block(removed, 0, 1)));
+
+    underTest.prune(Collections.singletonList(file));
+
+    assertThat(underTest.get(file)).hasSize(1);
+    assertThat(underTest.get(removed)).isNull();
+    assertThat(new File(workDir, CpdBlocksCache.DIR_NAME).list()).hasSize(1);
+  }
+
+  @Test
+  public void prune_does_nothing_if_no_blocks_were_saved() {
+    underTest.prune(Collections.singletonList(file("hash")));
+
+    assertThat(new File(workDir, CpdBlocksCache.DIR_NAME)).doesNotExist();
+  }
+
+  @Test
+  public void cache_is_cleared_at_startup_of_analyses_which_are_not_incremental() {
+    DefaultInputFile file = file("hash");
+    underTest.put(file, Arrays.asList(block(file, 0, 1)));
+    when(analysisMode.isIncremental()).thenReturn(false);
+
+    underTest.start();
+
+    assertThat(new File(workDir, CpdBlocksCache.DIR_NAME)).doesNotExist();
+  }
+
+  @Test
+  public void cache_is_kept_at_startup_of_incremental_analyses() {
+    DefaultInputFile file = file("hash");
+    underTest.put(file, Arrays.asList(block(file, 0, 1)));
+
+    underTest.start();
+
+    assertThat(underTest.get(file)).hasSize(1);
+  }
+
+  private static DefaultInputFile file(String hash) {
+    return new TestInputFileBuilder("foo", "src/Foo.php").setLanguage("php").setHash(hash).build();
+  }
+
+  private static Block block(DefaultInputFile file, int index, int line) {
+    return Block.builder()
+      .setResourceId(file.key())
+      .setBlockHash(new ByteArray(index * 31L))
+      .setIndexInFile(index)
+      .setLines(line, line + 1)
+      .setUnit(index, index + 1)
+      .build();
+  }
+}
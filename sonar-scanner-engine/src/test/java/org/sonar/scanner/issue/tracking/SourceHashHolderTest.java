@@ -64,6 +64,7 @@ public class SourceHashHolderTest {
     when(file.file()).thenReturn(ioFile);
     when(file.path()).thenReturn(ioFile.toPath());
     when(file.inputStream()).thenAnswer(i -> Files.newInputStream(ioFile.toPath()));
+    when(file.reader()).thenAnswer(i -> Files.newBufferedReader(ioFile.toPath(), StandardCharsets.UTF_8));
     when(file.lines()).thenReturn(1);
     when(file.charset()).thenReturn(StandardCharsets.UTF_8);
 
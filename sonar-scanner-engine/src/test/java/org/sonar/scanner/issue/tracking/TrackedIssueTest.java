@@ -19,7 +19,10 @@
  */
 package org.sonar.scanner.issue.tracking;
 
+import java.util.Date;
+import org.apache.commons.lang.SerializationUtils;
 import org.junit.Test;
+import org.sonar.api.rule.RuleKey;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -44,4 +47,30 @@ public class TrackedIssueTest {
     issue.setStartLine(1);
     assertThat(issue.getLineHash()).isEqualTo("hash1");
   }
+
+  @Test
+  public void copy_is_same_as_deserialized_issue() {
+    TrackedIssue issue = new TrackedIssue(FileHashes.create(new String[] {"hash1"}))
+      .setKey("key")
+      .setRuleKey(RuleKey.of("squid", "S001"))
+      .setComponentKey("foo:src/Foo.java")
+      .setMessage("message")
+      .setSeverity("MAJOR")
+      .setStartLine(1)
+      .setStartLineOffset(2)
+      .setEndLine(3)
+      .setEndLineOffset(4)
+      .setGap(5.0)
+      .setNew(true)
+      .setCreationDate(new Date(1_000L))
+      .setResolution("FIXED")
+      .setStatus("CLOSED")
+      .setAssignee("john");
+
+    TrackedIssue copy = issue.copy();
+
+    assertThat(copy).isNotSameAs(issue).isEqualToComparingFieldByField(SerializationUtils.clone(issue));
+    assertThat(copy.creationDate()).isNotSameAs(issue.creationDate());
+    assertThat(copy.getLineHash()).isNull();
+  }
 }
@@ -277,6 +277,65 @@ public class ScmMediumTest {
     assertThat(file2Scm).isNotNull();
   }
 
+  @Test
+  public void blame_files_in_parallel() throws IOException, URISyntaxException {
+
+    File baseDir = prepareProject();
+    File srcDir = new File(baseDir, "src");
+    for (int i = 0; i < 10; i++) {
+      FileUtils.write(new File(srcDir, "file" + i + ".xoo"), SAMPLE_XOO_CONTENT);
+      FileUtils.write(new File(srcDir, "file" + i + ".xoo.scm"),
+        // revision,author,dateTime
+        "1,foo" + i + ",2013-01-04\n" +
+          "2,bar" + i + ",2013-01-05\n");
+    }
+
+    tester.newTask()
+      .properties(ImmutableMap.<String, String>builder()
+        .put("sonar.task", "scan")
+        .put("sonar.projectBaseDir", baseDir.getAbsolutePath())
+        .put("sonar.projectKey", "com.foo.project")
+        .put("sonar.projectName", "Foo Project")
+        .put("sonar.projectVersion", "1.0-SNAPSHOT")
+        .put("sonar.projectDescription", "Description of Foo Project")
+        .put("sonar.sources", "src")
+        .put("sonar.scm.provider", "xoo")
+        .put("sonar.scm.blameThreads", "4")
+        .build())
+      .execute();
+
+    assertThat(getChangesets(baseDir, "src/sample.xoo").getChangesetIndexByLineList()).hasSize(5);
+    for (int i = 0; i < 10; i++) {
+      ScannerReport.Changesets fileScm = getChangesets(baseDir, "src/file" + i + ".xoo");
+      assertThat(fileScm.getChangesetIndexByLineList()).hasSize(2);
+      assertThat(fileScm.getChangeset(fileScm.getChangesetIndexByLine(0)).getAuthor()).isEqualTo("foo" + i);
+      assertThat(fileScm.getChangeset(fileScm.getChangesetIndexByLine(1)).getAuthor()).isEqualTo("bar" + i);
+    }
+    assertThat(logTester.logs()).containsSubsequence("11 files to be analyzed", "11/11 files analyzed");
+  }
+
+  @Test
+  public void fail_if_blame_threads_is_not_positive() throws IOException, URISyntaxException {
+    File baseDir = prepareProject();
+
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Property sonar.scm.blameThreads must be a positive number, but was 0");
+
+    tester.newTask()
+      .properties(ImmutableMap.<String, String>builder()
+        .put("sonar.task", "scan")
+        .put("sonar.projectBaseDir", baseDir.getAbsolutePath())
+        .put("sonar.projectKey", "com.foo.project")
+        .put("sonar.projectName", "Foo Project")
+        .put("sonar.projectVersion", "1.0-SNAPSHOT")
+        .put("sonar.projectDescription", "Description of Foo Project")
+        .put("sonar.sources", "src")
+        .put("sonar.scm.provider", "xoo")
+        .put("sonar.scm.blameThreads", "0")
+        .build())
+      .execute();
+  }
+
   @Test
   public void configureUsingScmURL() throws IOException, URISyntaxException {
 
@@ -20,13 +20,20 @@
 package org.sonar.scanner.phases;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
 
 import org.junit.Before;
 import org.junit.Rule;
@@ -38,10 +45,14 @@ import org.sonar.api.batch.bootstrap.ProjectDefinition;
 import org.sonar.api.batch.fs.internal.DefaultInputModule;
 import org.sonar.api.batch.fs.internal.InputModuleHierarchy;
 import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.batch.sensor.SensorDescriptor;
+import org.sonar.api.config.internal.MapSettings;
 import org.sonar.api.resources.Project;
 import org.sonar.scanner.bootstrap.ScannerExtensionDictionnary;
 import org.sonar.scanner.events.EventBus;
+import org.sonar.scanner.sensor.SensorOptimizer;
 import org.sonar.scanner.sensor.SensorStrategy;
+import org.sonar.scanner.sensor.SensorWrapper;
 
 public class SensorsExecutorTest {
   @Rule
@@ -55,6 +66,9 @@ public class SensorsExecutorTest {
 
   private TestSensor perModuleSensor = new TestSensor(strategy);
   private TestSensor globalSensor = new TestSensor(strategy);
+  private ScannerExtensionDictionnary selector;
+  private DefaultInputModule rootModule;
+  private InputModuleHierarchy hierarchy;
 
   static class TestSensor implements Sensor {
     final SensorStrategy strategy;
@@ -95,8 +109,11 @@ public class SensorsExecutorTest {
     InputModuleHierarchy hierarchy = mock(InputModuleHierarchy.class);
     when(hierarchy.isRoot(rootModule)).thenReturn(true);
 
-    rootModuleExecutor = new SensorsExecutor(selector, rootModule, hierarchy, mock(EventBus.class), strategy);
-    subModuleExecutor = new SensorsExecutor(selector, subModule, hierarchy, mock(EventBus.class), strategy);
+    this.selector = selector;
+    this.rootModule = rootModule;
+    this.hierarchy = hierarchy;
+    rootModuleExecutor = new SensorsExecutor(selector, rootModule, hierarchy, mock(EventBus.class), strategy, new MapSettings().asConfig());
+    subModuleExecutor = new SensorsExecutor(selector, subModule, hierarchy, mock(EventBus.class), strategy, new MapSettings().asConfig());
   }
 
   @Test
@@ -117,4 +134,96 @@ public class SensorsExecutorTest {
     assertThat(globalSensor.called).isTrue();
     assertThat(globalSensor.global).isTrue();
   }
+
+  @Test
+  public void execute_thread_safe_sensors_concurrently_if_enabled() {
+    CyclicBarrier barrier = new CyclicBarrier(2);
+    List<String> executed = Collections.synchronizedList(new ArrayList<>());
+    List<Sensor> sensors = Arrays.asList(
+      newSensor("first", false, executed, null),
+      newSensor("concurrent1", true, executed, barrier),
+      newSensor("concurrent2", true, executed, barrier),
+      newSensor("last", false, executed, null));
+    when(selector.selectSensors(any(DefaultInputModule.class), eq(false))).thenReturn(sensors);
+
+    newExecutor(true).execute(context);
+
+    assertThat(executed).hasSize(4);
+    assertThat(executed.get(0)).isEqualTo("first");
+    assertThat(executed.subList(1, 3)).containsOnly("concurrent1", "concurrent2");
+    assertThat(executed.get(3)).isEqualTo("last");
+  }
+
+  @Test
+  public void execute_thread_safe_sensors_in_order_if_not_enabled() {
+    List<String> executed = Collections.synchronizedList(new ArrayList<>());
+    List<Sensor> sensors = Arrays.asList(
+      newSensor("concurrent1", true, executed, null),
+      newSensor("concurrent2", true, executed, null),
+      newSensor("concurrent3", true, executed, null));
+    when(selector.selectSensors(any(DefaultInputModule.class), eq(false))).thenReturn(sensors);
+
+    newExecutor(false).execute(context);
+
+    assertThat(executed).containsExactly("concurrent1", "concurrent2", "concurrent3");
+  }
+
+  @Test
+  public void fail_with_error_of_concurrent_sensor_once_all_are_finished() {
+    List<String> executed = Collections.synchronizedList(new ArrayList<>());
+    org.sonar.api.batch.sensor.Sensor failing = new org.sonar.api.batch.sensor.Sensor() {
+      @Override
+      public void describe(SensorDescriptor descriptor) {
+        descriptor.name("failing").threadSafe();
+      }
+
+      @Override
+      public void execute(org.sonar.api.batch.sensor.SensorContext context) {
+        throw new IllegalStateException("Fail to analyse");
+      }
+    };
+    List<Sensor> sensors = Arrays.asList(
+      new SensorWrapper(failing, mock(org.sonar.api.batch.sensor.SensorContext.class), mock(SensorOptimizer.class)),
+      newSensor("concurrent", true, executed, null));
+    when(selector.selectSensors(any(DefaultInputModule.class), eq(false))).thenReturn(sensors);
+
+    try {
+      newExecutor(true).execute(context);
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Fail to analyse");
+    }
+    assertThat(executed).containsExactly("concurrent");
+  }
+
+  private SensorsExecutor newExecutor(boolean parallel) {
+    MapSettings settings = new MapSettings().setProperty(SensorsExecutor.PARALLEL_SENSORS_PROPERTY, parallel);
+    return new SensorsExecutor(selector, rootModule, hierarchy, mock(EventBus.class), strategy, settings.asConfig());
+  }
+
+  private static Sensor newSensor(String name, boolean threadSafe, List<String> executed, @Nullable CyclicBarrier barrier) {
+    org.sonar.api.batch.sensor.Sensor sensor = new org.sonar.api.batch.sensor.Sensor() {
+      @Override
+      public void describe(SensorDescriptor descriptor) {
+        descriptor.name(name);
+        if (threadSafe) {
+          descriptor.threadSafe();
+        }
+      }
+
+      @Override
+      public void execute(org.sonar.api.batch.sensor.SensorContext context) {
+        if (barrier != null) {
+          // blocks until the other sensor is executed concurrently
+          try {
+            barrier.await(10, TimeUnit.SECONDS);
+          } catch (Exception e) {
+            throw new IllegalStateException(e);
+          }
+        }
+        executed.add(name);
+      }
+    };
+    return new SensorWrapper(sensor, mock(org.sonar.api.batch.sensor.SensorContext.class), mock(SensorOptimizer.class));
+  }
 }
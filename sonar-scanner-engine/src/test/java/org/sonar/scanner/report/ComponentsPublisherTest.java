@@ -28,6 +28,7 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.sonar.api.CoreProperties;
 import org.sonar.api.batch.bootstrap.ProjectDefinition;
+import org.sonar.api.batch.fs.InputFile.Status;
 import org.sonar.api.batch.fs.InputFile.Type;
 import org.sonar.api.batch.fs.internal.DefaultInputDir;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
@@ -36,6 +37,7 @@ import org.sonar.api.batch.fs.internal.InputModuleHierarchy;
 import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
 import org.sonar.api.utils.DateUtils;
 import org.sonar.scanner.ProjectAnalysisInfo;
+import org.sonar.scanner.analysis.DefaultAnalysisMode;
 import org.sonar.scanner.protocol.output.FileStructure;
 import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.scanner.protocol.output.ScannerReport.Component;
@@ -56,6 +58,7 @@ public class ComponentsPublisherTest {
   private InputModuleHierarchy moduleHierarchy;
   private File outputDir;
   private ScannerReportWriter writer;
+  private DefaultAnalysisMode analysisMode = mock(DefaultAnalysisMode.class);
 
   @Before
   public void setUp() throws IOException {
@@ -108,7 +111,7 @@ public class ComponentsPublisherTest {
     DefaultInputFile testFile = new TestInputFileBuilder("module1", "test/FooTest.java", 7).setType(Type.TEST).setLines(4).build();
     tree.index(testFile, dir);
 
-    ComponentsPublisher publisher = new ComponentsPublisher(moduleHierarchy, tree);
+    ComponentsPublisher publisher = new ComponentsPublisher(moduleHierarchy, tree, analysisMode);
     publisher.publish(writer);
 
     assertThat(writer.hasComponentData(FileStructure.Domain.COMPONENT, 1)).isTrue();
@@ -123,6 +126,7 @@ public class ComponentsPublisherTest {
     // no such reference
     assertThat(writer.hasComponentData(FileStructure.Domain.COMPONENT, 8)).isFalse();
 
+    writer.close();
     ScannerReportReader reader = new ScannerReportReader(outputDir);
     Component rootProtobuf = reader.readComponent(1);
     assertThat(rootProtobuf.getKey()).isEqualTo("foo");
@@ -136,6 +140,34 @@ public class ComponentsPublisherTest {
     assertThat(module1Protobuf.getVersion()).isEqualTo("1.0");
   }
 
+  @Test
+  public void add_unchanged_files_with_their_status_in_incremental_mode() {
+    when(analysisMode.isIncremental()).thenReturn(true);
+    ProjectDefinition rootDef = ProjectDefinition.create().setKey("foo");
+    DefaultInputModule root = new DefaultInputModule(rootDef, 1);
+    moduleHierarchy = mock(InputModuleHierarchy.class);
+    when(moduleHierarchy.root()).thenReturn(root);
+
+    DefaultInputDir dir = new DefaultInputDir("foo", "src", 2);
+    tree.index(dir, root);
+    DefaultInputFile unchangedFile = new TestInputFileBuilder("foo", "src/Same.java", 3).setLines(2).setPublish(false).setStatus(Status.SAME).build();
+    tree.index(unchangedFile, dir);
+    DefaultInputFile changedFile = new TestInputFileBuilder("foo", "src/Changed.java", 4).setLines(2).setPublish(true).setStatus(Status.CHANGED).build();
+    tree.index(changedFile, dir);
+    DefaultInputFile notPublishedFile = new TestInputFileBuilder("foo", "src/make", 5).setLines(2).setPublish(false).setStatus(Status.ADDED).build();
+    tree.index(notPublishedFile, dir);
+
+    ComponentsPublisher publisher = new ComponentsPublisher(moduleHierarchy, tree, analysisMode);
+    publisher.publish(writer);
+    writer.close();
+
+    ScannerReportReader reader = new ScannerReportReader(outputDir);
+    assertThat(reader.readComponent(3).getStatus()).isEqualTo(Component.FileStatus.SAME);
+    assertThat(reader.readComponent(4).getStatus()).isEqualTo(Component.FileStatus.CHANGED);
+    assertThat(writer.hasComponentData(FileStructure.Domain.COMPONENT, 5)).isFalse();
+    assertThat(reader.readComponent(2).getChildRefList()).containsOnly(3, 4);
+  }
+
   @Test
   public void should_skip_dir_without_published_files() {
     ProjectAnalysisInfo projectAnalysisInfo = mock(ProjectAnalysisInfo.class);
@@ -174,7 +206,7 @@ public class ComponentsPublisherTest {
     DefaultInputFile file3 = new TestInputFileBuilder("module1", "src2/Foo3.java", 7).setPublish(false).setLines(2).build();
     tree.index(file3, dir3);
 
-    ComponentsPublisher publisher = new ComponentsPublisher(moduleHierarchy, tree);
+    ComponentsPublisher publisher = new ComponentsPublisher(moduleHierarchy, tree, analysisMode);
     publisher.publish(writer);
 
     assertThat(writer.hasComponentData(FileStructure.Domain.COMPONENT, 1)).isTrue();
@@ -222,7 +254,7 @@ public class ComponentsPublisherTest {
     DefaultInputFile testFile = new TestInputFileBuilder("module1", "test/FooTest.java", 6).setType(Type.TEST).setLines(4).build();
     tree.index(testFile, dir);
 
-    ComponentsPublisher publisher = new ComponentsPublisher(moduleHierarchy, tree);
+    ComponentsPublisher publisher = new ComponentsPublisher(moduleHierarchy, tree, analysisMode);
     publisher.publish(writer);
 
     assertThat(writer.hasComponentData(FileStructure.Domain.COMPONENT, 1)).isTrue();
@@ -235,6 +267,7 @@ public class ComponentsPublisherTest {
     // no such reference
     assertThat(writer.hasComponentData(FileStructure.Domain.COMPONENT, 7)).isFalse();
 
+    writer.close();
     ScannerReportReader reader = new ScannerReportReader(outputDir);
     Component rootProtobuf = reader.readComponent(1);
     assertThat(rootProtobuf.getKey()).isEqualTo("foo");
@@ -283,8 +316,9 @@ public class ComponentsPublisherTest {
     DefaultInputFile file = new TestInputFileBuilder("module1", "src/Foo.java", 4).setLines(2).build();
     tree.index(file, dir);
 
-    ComponentsPublisher publisher = new ComponentsPublisher(moduleHierarchy, tree);
+    ComponentsPublisher publisher = new ComponentsPublisher(moduleHierarchy, tree, analysisMode);
     publisher.publish(writer);
+    writer.close();
 
     ScannerReportReader reader = new ScannerReportReader(outputDir);
     Component rootProtobuf = reader.readComponent(1);
@@ -82,6 +82,7 @@ public class CoveragePublisherTest {
     ScannerReportWriter writer = new ScannerReportWriter(outputDir);
 
     publisher.publish(writer);
+    writer.close();
 
     try (CloseableIterator<LineCoverage> it = new ScannerReportReader(outputDir).readComponentCoverage(inputFile.batchId())) {
       assertThat(it.next()).isEqualTo(LineCoverage.newBuilder()
@@ -88,6 +88,7 @@ public class MeasuresPublisherTest {
     when(measureCache.byComponentKey(inputFile.key())).thenReturn(asList(measure, stringMeasure));
 
     publisher.publish(writer);
+    writer.close();
     ScannerReportReader reader = new ScannerReportReader(outputDir);
 
     assertThat(reader.readComponentMeasures(inputModule.batchId())).hasSize(0);
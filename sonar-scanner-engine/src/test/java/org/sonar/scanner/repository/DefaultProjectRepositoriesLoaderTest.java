@@ -19,41 +19,57 @@
  */
 package org.sonar.scanner.repository;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.io.Resources;
+import com.google.protobuf.CodedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
 import org.sonar.api.utils.MessageException;
 import org.sonar.scanner.WsTestUtil;
 import org.sonar.scanner.bootstrap.ScannerWsClient;
 import org.sonarqube.ws.WsBatch.WsProjectResponse;
 import org.sonarqube.ws.client.HttpException;
+import org.sonarqube.ws.client.MockWsResponse;
 import org.sonarqube.ws.client.WsRequest;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class DefaultProjectRepositoriesLoaderTest {
   private final static String PROJECT_KEY = "foo?";
   @Rule
   public ExpectedException thrown = ExpectedException.none();
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
 
   private DefaultProjectRepositoriesLoader loader;
   private ScannerWsClient wsClient;
+  private Path cacheDir;
 
   @Before
   public void prepare() throws IOException {
     wsClient = mock(ScannerWsClient.class);
     InputStream is = mockData();
-    WsTestUtil.mockStream(wsClient, "/batch/project.protobuf?key=foo%3F", is);
-    loader = new DefaultProjectRepositoriesLoader(wsClient);
+    WsTestUtil.mockStream(wsClient, "/batch/project.protobuf?key=foo%3F&streamed=true", is);
+    cacheDir = temp.newFolder().toPath();
+    loader = new DefaultProjectRepositoriesLoader(wsClient, cacheDir, null);
   }
 
   @Test
@@ -67,7 +83,7 @@ public class DefaultProjectRepositoriesLoaderTest {
   public void parsingError() throws IOException {
     InputStream is = mock(InputStream.class);
     when(is.read()).thenThrow(IOException.class);
-    WsTestUtil.mockStream(wsClient, "/batch/project.protobuf?key=foo%3F", is);
+    WsTestUtil.mockStream(wsClient, "/batch/project.protobuf?key=foo%3F&streamed=true", is);
     loader.load(PROJECT_KEY, false);
   }
 
@@ -93,10 +109,10 @@ public class DefaultProjectRepositoriesLoaderTest {
   @Test
   public void passIssuesModeParameter() {
     loader.load(PROJECT_KEY, false);
-    WsTestUtil.verifyCall(wsClient, "/batch/project.protobuf?key=foo%3F");
+    WsTestUtil.verifyCall(wsClient, "/batch/project.protobuf?key=foo%3F&streamed=true");
 
     loader.load(PROJECT_KEY, true);
-    WsTestUtil.verifyCall(wsClient, "/batch/project.protobuf?key=foo%3F&issues_mode=true");
+    WsTestUtil.verifyCall(wsClient, "/batch/project.protobuf?key=foo%3F&issues_mode=true&streamed=true");
   }
 
   @Test
@@ -107,7 +123,7 @@ public class DefaultProjectRepositoriesLoaderTest {
   @Test
   public void passAndEncodeProjectKeyParameter() {
     loader.load(PROJECT_KEY, false);
-    WsTestUtil.verifyCall(wsClient, "/batch/project.protobuf?key=foo%3F");
+    WsTestUtil.verifyCall(wsClient, "/batch/project.protobuf?key=foo%3F&streamed=true");
   }
 
   private InputStream mockData() throws IOException {
@@ -122,7 +138,7 @@ public class DefaultProjectRepositoriesLoaderTest {
   @Test
   public void readRealResponse() throws IOException {
     InputStream is = getTestResource("project.protobuf");
-    WsTestUtil.mockStream(wsClient, "/batch/project.protobuf?key=org.sonarsource.github%3Asonar-github-plugin&issues_mode=true", is);
+    WsTestUtil.mockStream(wsClient, "/batch/project.protobuf?key=org.sonarsource.github%3Asonar-github-plugin&issues_mode=true&streamed=true", is);
 
     ProjectRepositories proj = loader.load("org.sonarsource.github:sonar-github-plugin", true);
     FileData fd = proj.fileData("org.sonarsource.github:sonar-github-plugin",
@@ -132,6 +148,146 @@ public class DefaultProjectRepositoriesLoaderTest {
     assertThat(fd.hash()).isEqualTo("edb6b3b9ab92d8dc53ba90ab86cd422e");
   }
 
+  @Test
+  public void readStreamedResponse() throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    WsProjectResponse.Builder header = WsProjectResponse.newBuilder().setLastAnalysisDate(1_000L);
+    header.getMutableSettingsByModule().put("module", WsProjectResponse.Settings.newBuilder().putAllSettings(ImmutableMap.of("sonar.foo", "bar")).build());
+    header.build().writeTo(os);
+    CodedOutputStream output = CodedOutputStream.newInstance(os);
+    for (int i = 0; i < 3; i++) {
+      WsProjectResponse.FileDataChunk.Builder chunk = WsProjectResponse.FileDataChunk.newBuilder();
+      chunk.getMutableFileDataByModuleAndPath().put("module", WsProjectResponse.FileDataByPath.newBuilder()
+        .putAllFileDataByPath(ImmutableMap.of("src/File" + i + ".java", WsProjectResponse.FileData.newBuilder().setHash("hash" + i).setRevision("rev" + i).build()))
+        .build());
+      output.writeMessage(WsProjectResponse.FILEDATACHUNKS_FIELD_NUMBER, chunk.build());
+    }
+    output.flush();
+    WsTestUtil.mockStream(wsClient, "/batch/project.protobuf?key=foo%3F&streamed=true", new ByteArrayInputStream(os.toByteArray()));
+
+    ProjectRepositories proj = loader.load(PROJECT_KEY, false);
+
+    assertThat(proj.settings("module")).containsOnly(entry("sonar.foo", "bar"));
+    assertThat(proj.lastAnalysisDate().getTime()).isEqualTo(1_000L);
+    for (int i = 0; i < 3; i++) {
+      assertThat(proj.fileData("module", "src/File" + i + ".java").hash()).isEqualTo("hash" + i);
+      assertThat(proj.fileData("module", "src/File" + i + ".java").revision()).isEqualTo("rev" + i);
+    }
+  }
+
+  @Test
+  public void send_etag_of_cached_response_and_use_it_if_not_modified() throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    WsProjectResponse.Builder response = WsProjectResponse.newBuilder().setLastAnalysisDate(1_000L);
+    response.getMutableSettingsByModule().put("module", WsProjectResponse.Settings.newBuilder().putAllSettings(ImmutableMap.of("sonar.foo", "bar")).build());
+    response.build().writeTo(os);
+    when(wsClient.call(any(WsRequest.class)))
+      .thenReturn(new MockWsResponse().setContent(os.toByteArray()).setHeader("ETag", "\"v1\""))
+      .thenReturn(new MockWsResponse().setCode(HttpURLConnection.HTTP_NOT_MODIFIED));
+
+    ProjectRepositories first = loader.load(PROJECT_KEY, false);
+    ProjectRepositories second = loader.load(PROJECT_KEY, false);
+
+    ArgumentCaptor<WsRequest> requests = ArgumentCaptor.forClass(WsRequest.class);
+    verify(wsClient, times(2)).call(requests.capture());
+    assertThat(requests.getAllValues().get(0).getHeaders().getValue("If-None-Match")).isEmpty();
+    assertThat(requests.getAllValues().get(1).getHeaders().getValue("If-None-Match")).hasValue("\"v1\"");
+    assertThat(first.settings("module")).containsOnly(entry("sonar.foo", "bar"));
+    assertThat(second.settings("module")).containsOnly(entry("sonar.foo", "bar"));
+    assertThat(second.lastAnalysisDate().getTime()).isEqualTo(1_000L);
+  }
+
+  @Test
+  public void replace_cached_response_if_modified() throws IOException {
+    ByteArrayOutputStream v1 = new ByteArrayOutputStream();
+    WsProjectResponse.newBuilder().setLastAnalysisDate(1_000L).build().writeTo(v1);
+    ByteArrayOutputStream v2 = new ByteArrayOutputStream();
+    WsProjectResponse.newBuilder().setLastAnalysisDate(2_000L).build().writeTo(v2);
+    when(wsClient.call(any(WsRequest.class)))
+      .thenReturn(new MockWsResponse().setContent(v1.toByteArray()).setHeader("ETag", "\"v1\""))
+      .thenReturn(new MockWsResponse().setContent(v2.toByteArray()).setHeader("ETag", "\"v2\""))
+      .thenReturn(new MockWsResponse().setCode(HttpURLConnection.HTTP_NOT_MODIFIED));
+
+    assertThat(loader.load(PROJECT_KEY, false).lastAnalysisDate().getTime()).isEqualTo(1_000L);
+    assertThat(loader.load(PROJECT_KEY, false).lastAnalysisDate().getTime()).isEqualTo(2_000L);
+    assertThat(loader.load(PROJECT_KEY, false).lastAnalysisDate().getTime()).isEqualTo(2_000L);
+
+    ArgumentCaptor<WsRequest> requests = ArgumentCaptor.forClass(WsRequest.class);
+    verify(wsClient, times(3)).call(requests.capture());
+    assertThat(requests.getAllValues().get(2).getHeaders().getValue("If-None-Match")).hasValue("\"v2\"");
+  }
+
+  @Test
+  public void do_not_send_etag_of_response_cached_for_other_mode() throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    WsProjectResponse.newBuilder().build().writeTo(os);
+    when(wsClient.call(any(WsRequest.class)))
+      .thenReturn(new MockWsResponse().setContent(os.toByteArray()).setHeader("ETag", "\"v1\""))
+      .thenReturn(new MockWsResponse().setContent(os.toByteArray()));
+
+    loader.load(PROJECT_KEY, false);
+    loader.load(PROJECT_KEY, true);
+
+    ArgumentCaptor<WsRequest> requests = ArgumentCaptor.forClass(WsRequest.class);
+    verify(wsClient, times(2)).call(requests.capture());
+    assertThat(requests.getAllValues().get(1).getHeaders().getValue("If-None-Match")).isEmpty();
+  }
+
+  @Test
+  public void do_not_cache_response_with_secured_settings() throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    WsProjectResponse.Builder response = WsProjectResponse.newBuilder();
+    response.getMutableSettingsByModule().put("module", WsProjectResponse.Settings.newBuilder().putAllSettings(ImmutableMap.of("sonar.foo.secured", "secret")).build());
+    response.build().writeTo(os);
+    when(wsClient.call(any(WsRequest.class)))
+      .thenReturn(new MockWsResponse().setContent(os.toByteArray()).setHeader("ETag", "\"v1\""))
+      .thenReturn(new MockWsResponse().setContent(os.toByteArray()).setHeader("ETag", "\"v1\""));
+
+    assertThat(loader.load(PROJECT_KEY, false).settings("module")).containsOnly(entry("sonar.foo.secured", "secret"));
+    assertThat(cacheDir.toFile().list()).isEmpty();
+    loader.load(PROJECT_KEY, false);
+
+    ArgumentCaptor<WsRequest> requests = ArgumentCaptor.forClass(WsRequest.class);
+    verify(wsClient, times(2)).call(requests.capture());
+    assertThat(requests.getAllValues().get(1).getHeaders().getValue("If-None-Match")).isEmpty();
+  }
+
+  @Test
+  public void do_not_send_etag_of_response_cached_for_other_login() throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    WsProjectResponse.newBuilder().build().writeTo(os);
+    when(wsClient.call(any(WsRequest.class)))
+      .thenReturn(new MockWsResponse().setContent(os.toByteArray()).setHeader("ETag", "\"v1\""))
+      .thenReturn(new MockWsResponse().setContent(os.toByteArray()));
+
+    loader.load(PROJECT_KEY, false);
+    new DefaultProjectRepositoriesLoader(wsClient, cacheDir, "john").load(PROJECT_KEY, false);
+
+    ArgumentCaptor<WsRequest> requests = ArgumentCaptor.forClass(WsRequest.class);
+    verify(wsClient, times(2)).call(requests.capture());
+    assertThat(requests.getAllValues().get(1).getHeaders().getValue("If-None-Match")).isEmpty();
+  }
+
+  @Test
+  public void do_not_send_etag_of_expired_response() throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    WsProjectResponse.newBuilder().build().writeTo(os);
+    when(wsClient.call(any(WsRequest.class)))
+      .thenReturn(new MockWsResponse().setContent(os.toByteArray()).setHeader("ETag", "\"v1\""))
+      .thenReturn(new MockWsResponse().setContent(os.toByteArray()));
+
+    loader.load(PROJECT_KEY, false);
+    File[] cached = cacheDir.toFile().listFiles();
+    assertThat(cached).hasSize(1);
+    assertThat(cached[0].setLastModified(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(DefaultProjectRepositoriesLoader.CACHE_MAX_AGE_DAYS + 1))).isTrue();
+    loader.load(PROJECT_KEY, false);
+
+    ArgumentCaptor<WsRequest> requests = ArgumentCaptor.forClass(WsRequest.class);
+    verify(wsClient, times(2)).call(requests.capture());
+    assertThat(requests.getAllValues().get(1).getHeaders().getValue("If-None-Match")).isEmpty();
+    assertThat(cached[0]).doesNotExist();
+  }
+
   private InputStream getTestResource(String name) throws IOException {
     return Resources.asByteSource(this.getClass().getResource(this.getClass().getSimpleName() + "/" + name))
       .openBufferedStream();
@@ -33,6 +33,7 @@ import org.junit.rules.TemporaryFolder;
 import org.sonar.api.batch.fs.internal.DefaultInputModule;
 import org.sonar.api.batch.fs.internal.InputModuleHierarchy;
 import org.sonar.home.cache.DirectoryLock;
+import org.sonar.scanner.cpd.index.CpdBlocksCache;
 
 public class WorkDirectoryCleanerTest {
   private WorkDirectoryCleaner cleaner;
@@ -50,6 +51,10 @@ public class WorkDirectoryCleanerTest {
     File lock = new File(temp.getRoot(), DirectoryLock.LOCK_FILE_NAME);
     lock.createNewFile();
 
+    File cpdBlocks = new File(temp.getRoot(), CpdBlocksCache.DIR_NAME);
+    cpdBlocks.mkdir();
+    new File(cpdBlocks, "blocks").createNewFile();
+
     // mock project
     InputModuleHierarchy hierarchy = mock(InputModuleHierarchy.class);
     DefaultInputModule root = mock(DefaultInputModule.class);
@@ -73,7 +78,8 @@ public class WorkDirectoryCleanerTest {
 
     assertThat(temp.getRoot()).exists();
     assertThat(lock).exists();
-    assertThat(temp.getRoot().list()).containsOnly(DirectoryLock.LOCK_FILE_NAME);
+    assertThat(temp.getRoot().list()).containsOnly(DirectoryLock.LOCK_FILE_NAME, CpdBlocksCache.DIR_NAME);
+    assertThat(new File(temp.getRoot(), CpdBlocksCache.DIR_NAME).list()).containsOnly("blocks");
   }
 
 }
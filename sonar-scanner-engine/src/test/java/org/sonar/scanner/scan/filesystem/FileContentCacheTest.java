@@ -0,0 +1,77 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.scan.filesystem;
+
+import org.junit.Test;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FileContentCacheTest {
+
+  private FileContentCache underTest = new FileContentCache(160);
+
+  private DefaultInputFile file1 = new TestInputFileBuilder("foo", "src/File1.java").build();
+  private DefaultInputFile file2 = new TestInputFileBuilder("foo", "src/File2.java").build();
+  private DefaultInputFile file3 = new TestInputFileBuilder("foo", "src/File3.java").build();
+
+  @Test
+  public void get_returns_null_if_file_is_not_cached() {
+    assertThat(underTest.get(file1)).isNull();
+  }
+
+  @Test
+  public void accepts_files_of_at_most_a_sixteenth_of_the_cache() {
+    assertThat(underTest.accepts(10)).isTrue();
+    assertThat(underTest.accepts(11)).isFalse();
+
+    underTest.put(file1, "12345678901");
+    assertThat(underTest.get(file1)).isNull();
+    assertThat(underTest.chars()).isEqualTo(0);
+  }
+
+  @Test
+  public void evict_least_recently_used_files_when_full() {
+    underTest.put(file1, "1234567890");
+    underTest.put(file2, "1234567890");
+    for (int i = 0; i < 14; i++) {
+      underTest.put(new TestInputFileBuilder("foo", "src/Other" + i + ".java").build(), "1234567890");
+    }
+    assertThat(underTest.chars()).isEqualTo(160);
+    assertThat(underTest.get(file1)).isNotNull();
+
+    underTest.put(file3, "1");
+
+    assertThat(underTest.get(file2)).isNull();
+    assertThat(underTest.get(file1)).isNotNull();
+    assertThat(underTest.get(file3)).isEqualTo("1");
+    assertThat(underTest.chars()).isEqualTo(151);
+  }
+
+  @Test
+  public void replace_content_of_file() {
+    underTest.put(file1, "foo");
+    underTest.put(file1, "ba");
+
+    assertThat(underTest.get(file1)).isEqualTo("ba");
+    assertThat(underTest.chars()).isEqualTo(2);
+  }
+}
@@ -24,6 +24,7 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Rule;
@@ -56,6 +57,7 @@ public class MetadataGeneratorTest {
   private DefaultModuleFileSystem fs;
 
   private FileMetadata metadata;
+  private FileContentCache contentCache = new FileContentCache(1024);
   private MetadataGenerator generator;
 
   @Before
@@ -63,7 +65,7 @@ public class MetadataGeneratorTest {
     MockitoAnnotations.initMocks(this);
     metadata = new FileMetadata();
     IssueExclusionsLoader issueExclusionsLoader = new IssueExclusionsLoader(mock(IssueExclusionPatternInitializer.class), mock(PatternMatcher.class));
-    generator = new MetadataGenerator(new DefaultInputModule("module"), statusDetection, metadata, issueExclusionsLoader);
+    generator = new MetadataGenerator(new DefaultInputModule("module"), statusDetection, metadata, issueExclusionsLoader, contentCache);
   }
 
   @Test
@@ -108,6 +110,28 @@ public class MetadataGeneratorTest {
     assertThat(inputFile.originalLineOffsets()).containsOnly(0, 4, 9);
   }
 
+  @Test
+  public void keep_decoded_content_of_small_files_in_cache() throws Exception {
+    Path tempFile = temp.newFile().toPath();
+    FileUtils.write(tempFile.toFile(), "\uFEFFfoo\nbar\r\nbaz", StandardCharsets.UTF_8, true);
+
+    DefaultInputFile inputFile = createInputFileWithMetadata(tempFile);
+
+    assertThat(contentCache.get(inputFile)).isEqualTo("foo\nbar\r\nbaz");
+    assertThat(inputFile.hash()).isEqualTo(md5Hex("foo\nbar\nbaz"));
+  }
+
+  @Test
+  public void do_not_keep_content_of_big_files_in_cache() throws Exception {
+    Path tempFile = temp.newFile().toPath();
+    FileUtils.write(tempFile.toFile(), StringUtils.repeat("foo\n", 100), StandardCharsets.UTF_8, true);
+
+    DefaultInputFile inputFile = createInputFileWithMetadata(tempFile);
+
+    assertThat(contentCache.get(inputFile)).isNull();
+    assertThat(inputFile.lines()).isEqualTo(101);
+  }
+
   @Test
   public void use_default_charset_if_detection_fails() throws IOException {
     Path tempFile = temp.newFile().toPath();
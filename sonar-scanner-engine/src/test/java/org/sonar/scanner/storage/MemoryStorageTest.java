@@ -0,0 +1,122 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import com.google.common.collect.ImmutableMap;
+import java.util.ArrayList;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.api.utils.TempFolder;
+import org.sonar.scanner.bootstrap.GlobalProperties;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Same tests as {@link StorageTest}, but on storages kept in memory
+ */
+public class MemoryStorageTest extends StorageTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Before
+  public void useMemoryStorages() {
+    caches.stop();
+    StoragesManager manager = new StoragesManager(mock(TempFolder.class),
+      new GlobalProperties(ImmutableMap.of(StoragesManager.STORAGE_PROPERTY, StoragesManager.MEMORY_STORAGE)));
+    caches = new Storages(manager);
+    caches.start();
+  }
+
+  @Test
+  public void storage_is_in_memory() {
+    assertThat(caches.<String>createCache("foo")).isInstanceOf(MemoryStorage.class);
+  }
+
+  @Test
+  public void keys_are_sorted_by_type_then_by_value() {
+    Storage<String> cache = caches.createCache("mixed");
+    cache.put(10, "ten");
+    cache.put("b", "b");
+    cache.put(2, "two");
+    cache.put("a", "a");
+
+    assertThat(cache.keySet()).containsExactly(2, 10, "a", "b");
+    assertThat(cache.values()).containsExactly("two", "ten", "a", "b");
+  }
+
+  @Test
+  public void storage_can_be_updated_while_iterating() {
+    Storage<String> cache = caches.createCache("capitals");
+    cache.put("europe", "france", "paris");
+    cache.put("europe", "italy", "rome");
+
+    for (String value : cache.values("europe")) {
+      cache.put("europe", "spain", "madrid");
+    }
+    assertThat(cache.values("europe")).containsExactly("paris", "rome", "madrid");
+  }
+
+  @Test
+  public void values_are_copied_when_put_and_read() {
+    Storage<ArrayList<String>> cache = caches.createCache("lists");
+    ArrayList<String> value = new ArrayList<>(asList("a", "b"));
+    cache.put("key", value);
+    value.add("c");
+    cache.get("key").add("d");
+    cache.values().iterator().next().add("e");
+    cache.entries().iterator().next().value().add("f");
+
+    assertThat(cache.get("key")).containsExactly("a", "b");
+  }
+
+  @Test
+  public void values_are_copied_with_registered_copier() {
+    caches.registerValueCopier(StringBuilder.class, sb -> new StringBuilder(sb.toString().toUpperCase()));
+    Storage<StringBuilder> cache = caches.createCache("builders");
+    cache.put("key", new StringBuilder("a"));
+
+    assertThat(cache.get("key").toString()).isEqualTo("A");
+  }
+
+  @Test
+  public void fail_to_put_value_which_can_not_be_copied() {
+    Storage<Object> cache = caches.createCache("objects");
+
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Value of type java.lang.Object can not be stored: it is not serializable and no copier is registered");
+
+    cache.put("key", new Object());
+  }
+
+  @Test
+  public void fail_to_put_key_which_is_not_comparable() {
+    Storage<String> cache = caches.createCache("objects");
+
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Elements of keys must be comparable, but got element of type java.lang.Object");
+
+    cache.put("key", new Object(), "value");
+  }
+}
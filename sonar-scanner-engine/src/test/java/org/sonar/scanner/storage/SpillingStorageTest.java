@@ -0,0 +1,77 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import com.google.common.collect.ImmutableMap;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.api.CoreProperties;
+import org.sonar.scanner.bootstrap.GlobalProperties;
+import org.sonar.scanner.bootstrap.GlobalTempFolderProvider;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Same tests as {@link StorageTest}, but on storages which are moved to disk when they contain more than 2 entries
+ */
+public class SpillingStorageTest extends StorageTest {
+
+  private StoragesManager manager;
+
+  @Before
+  public void useAutoStorages() {
+    caches.stop();
+    Map<String, String> props = ImmutableMap.of(CoreProperties.WORKING_DIRECTORY, temp.getRoot().getAbsolutePath(),
+      CoreProperties.GLOBAL_WORKING_DIRECTORY, temp.getRoot().getAbsolutePath(),
+      StoragesManager.STORAGE_PROPERTY, "auto",
+      StoragesManager.MAX_MEMORY_ENTRIES_PROPERTY, "2");
+    GlobalProperties globalProperties = new GlobalProperties(props);
+    manager = new StoragesManager(new GlobalTempFolderProvider().provide(globalProperties), globalProperties);
+    caches = new Storages(manager);
+    caches.start();
+  }
+
+  @After
+  public void stopManager() {
+    caches.stop();
+    caches = null;
+    manager.stop();
+  }
+
+  @Test
+  public void storage_is_moved_to_disk_when_it_contains_too_many_entries() {
+    SpillingStorage<String> cache = (SpillingStorage<String>) caches.<String>createCache("capitals");
+    Iterable<String> values = cache.values();
+    cache.put("italy", "rome");
+    cache.put("france", "paris");
+
+    assertThat(cache.isInMemory()).isTrue();
+    assertThat(manager.tempDir()).isNull();
+
+    cache.put("spain", "madrid");
+
+    assertThat(cache.isInMemory()).isFalse();
+    assertThat(manager.persistit().isInitialized()).isTrue();
+    assertThat(cache.keySet()).containsExactly("france", "italy", "spain");
+    assertThat(values).containsExactly("paris", "rome", "madrid");
+  }
+}
@@ -19,15 +19,33 @@
  */
 package org.sonar.scanner.storage;
 
+import com.google.common.collect.ImmutableMap;
 import java.io.File;
+import java.util.Map;
+import org.junit.Rule;
 import org.junit.Test;
-import org.sonar.scanner.index.AbstractCachesTest;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.CoreProperties;
+import org.sonar.api.utils.MessageException;
+import org.sonar.api.utils.TempFolder;
+import org.sonar.scanner.bootstrap.GlobalProperties;
+import org.sonar.scanner.bootstrap.GlobalTempFolderProvider;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+public class StoragesManagerTest {
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
 
-public class StoragesManagerTest extends AbstractCachesTest {
   @Test
   public void should_stop_and_clean_temp_dir() {
+    Map<String, String> props = ImmutableMap.of(CoreProperties.WORKING_DIRECTORY, temp.getRoot().getAbsolutePath(),
+      CoreProperties.GLOBAL_WORKING_DIRECTORY, temp.getRoot().getAbsolutePath());
+    StoragesManager cachesManager = new StoragesManager(new GlobalTempFolderProvider().provide(new GlobalProperties(props)));
+    cachesManager.start();
+
     File tempDir = cachesManager.tempDir();
     assertThat(tempDir).isDirectory().exists();
     assertThat(cachesManager.persistit()).isNotNull();
@@ -39,4 +57,64 @@ public class StoragesManagerTest extends AbstractCachesTest {
     assertThat(cachesManager.tempDir()).isNull();
     assertThat(cachesManager.persistit()).isNull();
   }
+
+  @Test
+  public void storages_are_on_disk_by_default() {
+    StoragesManager manager = new StoragesManager(new GlobalTempFolderProvider().provide(new GlobalProperties(ImmutableMap.of(
+      CoreProperties.GLOBAL_WORKING_DIRECTORY, temp.getRoot().getAbsolutePath()))),
+      new GlobalProperties(ImmutableMap.of()));
+
+    assertThat(manager.isAuto()).isFalse();
+    assertThat(manager.isInMemory()).isFalse();
+    assertThat(manager.persistit().isInitialized()).isTrue();
+    manager.stop();
+  }
+
+  @Test
+  public void do_not_start_persistit_when_storages_are_in_memory() {
+    StoragesManager manager = new StoragesManager(mock(TempFolder.class),
+      new GlobalProperties(ImmutableMap.of(StoragesManager.STORAGE_PROPERTY, "memory")));
+
+    assertThat(manager.isInMemory()).isTrue();
+    assertThat(manager.persistit()).isNull();
+    assertThat(manager.tempDir()).isNull();
+    manager.stop();
+  }
+
+  @Test
+  public void start_persistit_on_demand_when_storage_is_auto() {
+    StoragesManager manager = new StoragesManager(new GlobalTempFolderProvider().provide(new GlobalProperties(ImmutableMap.of(
+      CoreProperties.GLOBAL_WORKING_DIRECTORY, temp.getRoot().getAbsolutePath()))),
+      new GlobalProperties(ImmutableMap.of(StoragesManager.STORAGE_PROPERTY, "auto")));
+
+    assertThat(manager.isAuto()).isTrue();
+    assertThat(manager.maxMemoryEntries()).isEqualTo(StoragesManager.DEFAULT_MAX_MEMORY_ENTRIES);
+    assertThat(manager.tempDir()).isNull();
+    assertThat(manager.persistit().isInitialized()).isTrue();
+    assertThat(manager.tempDir()).isDirectory();
+
+    manager.stop();
+
+    assertThat(manager.persistit()).isNull();
+  }
+
+  @Test
+  public void fail_if_max_memory_entries_is_not_a_positive_number() {
+    try {
+      new StoragesManager(mock(TempFolder.class), new GlobalProperties(ImmutableMap.of(StoragesManager.MAX_MEMORY_ENTRIES_PROPERTY, "-1")));
+      fail();
+    } catch (MessageException e) {
+      assertThat(e).hasMessage("Property sonar.scanner.storage.maxMemoryEntries must be a positive number, but was '-1'");
+    }
+  }
+
+  @Test
+  public void fail_if_storage_is_not_supported() {
+    try {
+      new StoragesManager(mock(TempFolder.class), new GlobalProperties(ImmutableMap.of(StoragesManager.STORAGE_PROPERTY, "foo")));
+      fail();
+    } catch (MessageException e) {
+      assertThat(e).hasMessage("Unsupported value of property sonar.scanner.storage: 'foo'. Supported values are: auto, persistit, memory");
+    }
+  }
 }
@@ -30,26 +30,36 @@ import javax.annotation.concurrent.Immutable;
 public class FileStructure {
 
   public enum Domain {
-    ISSUES("issues-", Domain.PB),
-    COMPONENT("component-", Domain.PB),
-    MEASURES("measures-", Domain.PB),
-    DUPLICATIONS("duplications-", Domain.PB),
-    CPD_TEXT_BLOCKS("cpd-text-block-", Domain.PB),
-    SYNTAX_HIGHLIGHTINGS("syntax-highlightings-", Domain.PB),
-    CHANGESETS("changesets-", Domain.PB),
-    SYMBOLS("symbols-", Domain.PB),
-    COVERAGES("coverages-", Domain.PB),
-    TESTS("tests-", Domain.PB),
-    COVERAGE_DETAILS("coverage-details-", Domain.PB),
-    SOURCE("source-", ".txt");
+    ISSUES("issues-", Domain.PB, true),
+    COMPONENT("component-", Domain.PB, true),
+    MEASURES("measures-", Domain.PB, true),
+    DUPLICATIONS("duplications-", Domain.PB, true),
+    CPD_TEXT_BLOCKS("cpd-text-block-", Domain.PB, true),
+    SYNTAX_HIGHLIGHTINGS("syntax-highlightings-", Domain.PB, true),
+    CHANGESETS("changesets-", Domain.PB, true),
+    SYMBOLS("symbols-", Domain.PB, true),
+    COVERAGES("coverages-", Domain.PB, true),
+    TESTS("tests-", Domain.PB, false),
+    COVERAGE_DETAILS("coverage-details-", Domain.PB, false),
+    SOURCE("source-", ".txt", false);
 
     private static final String PB = ".pb";
     private final String filePrefix;
     private final String fileSuffix;
+    private final boolean segmented;
 
-    Domain(String filePrefix, String fileSuffix) {
+    Domain(String filePrefix, String fileSuffix, boolean segmented) {
       this.filePrefix = filePrefix;
       this.fileSuffix = fileSuffix;
+      this.segmented = segmented;
+    }
+
+    /**
+     * Data of segmented domains is written in a single file for all components, see {@link #segmentsFile(Domain)}.
+     * Other domains are written in one file per component, see {@link #fileFor(Domain, int)}.
+     */
+    public boolean isSegmented() {
+      return segmented;
     }
   }
 
@@ -78,6 +88,29 @@ public class FileStructure {
     return new File(dir, domain.filePrefix + componentRef + domain.fileSuffix);
   }
 
+  /**
+   * File containing the data of all the components for a segmented domain. Reports generated by
+   * versions prior to 6.6 do not contain such files but one file per component, see {@link #fileFor(Domain, int)}.
+   */
+  public File segmentsFile(Domain domain) {
+    checkSegmented(domain);
+    return new File(dir, domain.filePrefix + "segments" + domain.fileSuffix);
+  }
+
+  /**
+   * Index of {@link #segmentsFile(Domain)}
+   */
+  public File segmentsIndexFile(Domain domain) {
+    checkSegmented(domain);
+    return new File(dir, domain.filePrefix + "segments.idx");
+  }
+
+  private static void checkSegmented(Domain domain) {
+    if (!domain.segmented) {
+      throw new IllegalArgumentException("Domain is not segmented: " + domain);
+    }
+  }
+
   public File contextProperties() {
     return new File(dir, "context-props.pb");
   }
@@ -19,20 +19,21 @@
  */
 package org.sonar.scanner.protocol.output;
 
-import java.io.BufferedOutputStream;
+import java.io.Closeable;
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.OutputStream;
-
-import javax.annotation.concurrent.Immutable;
-
-import org.sonar.core.util.ContextException;
+import java.util.EnumMap;
+import java.util.Map;
 import org.sonar.core.util.Protobuf;
 
-@Immutable
-public class ScannerReportWriter {
+/**
+ * Data of the domains that are {@link FileStructure.Domain#isSegmented() segmented} are appended to a single file
+ * per domain. Writes are buffered, so {@link #flush()} must be called before reading the report while it is being
+ * written, and {@link #close()} must be called to complete the report and release the underlying files.
+ */
+public class ScannerReportWriter implements Closeable {
 
   private final FileStructure fileStructure;
+  private final Map<FileStructure.Domain, SegmentWriter> segmentWriters = new EnumMap<>(FileStructure.Domain.class);
 
   public ScannerReportWriter(File dir) {
     if (!dir.exists() && !dir.mkdirs()) {
@@ -46,6 +47,9 @@ public class ScannerReportWriter {
   }
 
   public boolean hasComponentData(FileStructure.Domain domain, int componentRef) {
+    if (domain.isSegmented()) {
+      return segmentWriter(domain).hasComponentData(componentRef);
+    }
     File file = fileStructure.fileFor(domain, componentRef);
     return file.exists() && file.isFile();
   }
@@ -64,66 +68,43 @@ public class ScannerReportWriter {
   }
 
   public File writeComponent(ScannerReport.Component component) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COMPONENT, component.getRef());
-    Protobuf.write(component, file);
-    return file;
+    return writeSegment(FileStructure.Domain.COMPONENT, component.getRef(), false, component::writeTo);
   }
 
   public File writeComponentIssues(int componentRef, Iterable<ScannerReport.Issue> issues) {
-    File file = fileStructure.fileFor(FileStructure.Domain.ISSUES, componentRef);
-    Protobuf.writeStream(issues, file, false);
-    return file;
+    return writeSegment(FileStructure.Domain.ISSUES, componentRef, false, out -> Protobuf.writeStream(issues, out));
   }
 
   public void appendComponentIssue(int componentRef, ScannerReport.Issue issue) {
-    File file = fileStructure.fileFor(FileStructure.Domain.ISSUES, componentRef);
-    try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file, true))) {
-      issue.writeDelimitedTo(out);
-    } catch (Exception e) {
-      throw ContextException.of("Unable to write issue", e).addContext("file", file);
-    }
+    writeSegment(FileStructure.Domain.ISSUES, componentRef, true, issue::writeDelimitedTo);
   }
 
   public File writeComponentMeasures(int componentRef, Iterable<ScannerReport.Measure> measures) {
-    File file = fileStructure.fileFor(FileStructure.Domain.MEASURES, componentRef);
-    Protobuf.writeStream(measures, file, false);
-    return file;
+    return writeSegment(FileStructure.Domain.MEASURES, componentRef, false, out -> Protobuf.writeStream(measures, out));
   }
 
   public File writeComponentChangesets(ScannerReport.Changesets changesets) {
-    File file = fileStructure.fileFor(FileStructure.Domain.CHANGESETS, changesets.getComponentRef());
-    Protobuf.write(changesets, file);
-    return file;
+    return writeSegment(FileStructure.Domain.CHANGESETS, changesets.getComponentRef(), false, changesets::writeTo);
   }
 
   public File writeComponentDuplications(int componentRef, Iterable<ScannerReport.Duplication> duplications) {
-    File file = fileStructure.fileFor(FileStructure.Domain.DUPLICATIONS, componentRef);
-    Protobuf.writeStream(duplications, file, false);
-    return file;
+    return writeSegment(FileStructure.Domain.DUPLICATIONS, componentRef, false, out -> Protobuf.writeStream(duplications, out));
   }
 
   public File writeCpdTextBlocks(int componentRef, Iterable<ScannerReport.CpdTextBlock> blocks) {
-    File file = fileStructure.fileFor(FileStructure.Domain.CPD_TEXT_BLOCKS, componentRef);
-    Protobuf.writeStream(blocks, file, false);
-    return file;
+    return writeSegment(FileStructure.Domain.CPD_TEXT_BLOCKS, componentRef, false, out -> Protobuf.writeStream(blocks, out));
   }
 
   public File writeComponentSymbols(int componentRef, Iterable<ScannerReport.Symbol> symbols) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SYMBOLS, componentRef);
-    Protobuf.writeStream(symbols, file, false);
-    return file;
+    return writeSegment(FileStructure.Domain.SYMBOLS, componentRef, false, out -> Protobuf.writeStream(symbols, out));
   }
 
   public File writeComponentSyntaxHighlighting(int componentRef, Iterable<ScannerReport.SyntaxHighlightingRule> syntaxHighlightingRules) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, componentRef);
-    Protobuf.writeStream(syntaxHighlightingRules, file, false);
-    return file;
+    return writeSegment(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, componentRef, false, out -> Protobuf.writeStream(syntaxHighlightingRules, out));
   }
 
   public File writeComponentCoverage(int componentRef, Iterable<ScannerReport.LineCoverage> coverageList) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COVERAGES, componentRef);
-    Protobuf.writeStream(coverageList, file, false);
-    return file;
+    return writeSegment(FileStructure.Domain.COVERAGES, componentRef, false, out -> Protobuf.writeStream(coverageList, out));
   }
 
   public File writeTests(int componentRef, Iterable<ScannerReport.Test> tests) {
@@ -148,4 +129,28 @@ public class ScannerReportWriter {
     return fileStructure.fileFor(FileStructure.Domain.SOURCE, componentRef);
   }
 
+  private File writeSegment(FileStructure.Domain domain, int componentRef, boolean append, SegmentWriter.Output output) {
+    segmentWriter(domain).write(componentRef, append, output);
+    return fileStructure.segmentsFile(domain);
+  }
+
+  private synchronized SegmentWriter segmentWriter(FileStructure.Domain domain) {
+    return segmentWriters.computeIfAbsent(domain, d -> new SegmentWriter(fileStructure.segmentsFile(d), fileStructure.segmentsIndexFile(d)));
+  }
+
+  /**
+   * Flushes the data of segmented domains, so that it can be read.
+   */
+  public synchronized void flush() {
+    segmentWriters.values().forEach(SegmentWriter::flush);
+  }
+
+  /**
+   * Flushes and releases the files of segmented domains. The writer can still be used after being closed.
+   */
+  @Override
+  public synchronized void close() {
+    segmentWriters.values().forEach(SegmentWriter::close);
+  }
+
 }
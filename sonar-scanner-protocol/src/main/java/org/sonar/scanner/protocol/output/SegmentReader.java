@@ -0,0 +1,131 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.protocol.output;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.CheckForNull;
+import org.sonar.core.util.ContextException;
+
+/**
+ * Reads the segments written by {@link SegmentWriter}. The index is loaded in memory, then each segment is read from
+ * its offset in the data file when the data of its component is requested.
+ * <p>
+ * The data file is opened only while reading a segment, so that the report can be deleted as soon as it is read.
+ */
+class SegmentReader {
+
+  private final File dataFile;
+  private final Map<Integer, List<Segment>> segmentsByComponentRef;
+
+  private SegmentReader(File dataFile, Map<Integer, List<Segment>> segmentsByComponentRef) {
+    this.dataFile = dataFile;
+    this.segmentsByComponentRef = segmentsByComponentRef;
+  }
+
+  static SegmentReader open(File dataFile, File indexFile) {
+    return new SegmentReader(dataFile, loadIndex(indexFile));
+  }
+
+  private static Map<Integer, List<Segment>> loadIndex(File indexFile) {
+    Map<Integer, List<Segment>> result = new HashMap<>();
+    try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+      while (true) {
+        int componentRef;
+        try {
+          componentRef = input.readInt();
+        } catch (EOFException e) {
+          return result;
+        }
+        boolean append = input.readBoolean();
+        Segment segment = new Segment(input.readLong(), input.readInt());
+        List<Segment> segments = result.computeIfAbsent(componentRef, k -> new ArrayList<>(1));
+        if (!append) {
+          segments.clear();
+        }
+        segments.add(segment);
+      }
+    } catch (IOException e) {
+      throw ContextException.of("Unable to read index of segments", e).addContext("file", indexFile);
+    }
+  }
+
+  boolean hasComponentData(int componentRef) {
+    return segmentsByComponentRef.containsKey(componentRef);
+  }
+
+  /**
+   * Returns the concatenation of the segments of the component, or {@code null} if the component has no data.
+   */
+  @CheckForNull
+  InputStream open(int componentRef) {
+    List<Segment> segments = segmentsByComponentRef.get(componentRef);
+    if (segments == null) {
+      return null;
+    }
+    if (segments.size() == 1) {
+      return open(segments.get(0));
+    }
+    List<InputStream> inputs = new ArrayList<>(segments.size());
+    for (Segment segment : segments) {
+      inputs.add(open(segment));
+    }
+    return new SequenceInputStream(Collections.enumeration(inputs));
+  }
+
+  private InputStream open(Segment segment) {
+    ByteBuffer buffer = ByteBuffer.allocate(segment.length);
+    try (FileChannel channel = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ)) {
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, segment.offset + buffer.position()) < 0) {
+          throw new EOFException("Segment ends after end of file");
+        }
+      }
+    } catch (IOException e) {
+      throw ContextException.of("Unable to read segment", e).addContext("file", dataFile).addContext("offset", segment.offset);
+    }
+    return new ByteArrayInputStream(buffer.array());
+  }
+
+  private static class Segment {
+    private final long offset;
+    private final int length;
+
+    Segment(long offset, int length) {
+      this.offset = offset;
+      this.length = length;
+    }
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.protocol.output;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.Set;
+import org.apache.commons.io.IOUtils;
+import org.sonar.core.util.ContextException;
+
+/**
+ * Writes the data of a {@link FileStructure.Domain} for all components in a single append-only file. Each write adds
+ * a segment to the data file and an entry (component ref, replace or append, offset, length) to the index file.
+ * <p>
+ * Both files are buffered. They must be flushed, or closed, before being read. Existing files are truncated on first
+ * write, then re-opened in append mode when written after being closed.
+ */
+class SegmentWriter implements Closeable {
+
+  private final File dataFile;
+  private final File indexFile;
+  private final Set<Integer> componentRefs = new HashSet<>();
+  private CountingOutputStream data;
+  private DataOutputStream index;
+  private boolean created = false;
+
+  SegmentWriter(File dataFile, File indexFile) {
+    this.dataFile = dataFile;
+    this.indexFile = indexFile;
+  }
+
+  @FunctionalInterface
+  interface Output {
+    void writeTo(OutputStream output) throws IOException;
+  }
+
+  synchronized boolean hasComponentData(int componentRef) {
+    return componentRefs.contains(componentRef);
+  }
+
+  /**
+   * @param append if {@code false}, the segments previously written for the component are replaced
+   */
+  synchronized void write(int componentRef, boolean append, Output output) {
+    try {
+      open();
+      long offset = data.count;
+      output.writeTo(data);
+      long length = data.count - offset;
+      if (length > Integer.MAX_VALUE) {
+        throw new IllegalStateException("Segment is too big: " + length + " bytes");
+      }
+      index.writeInt(componentRef);
+      index.writeBoolean(append);
+      index.writeLong(offset);
+      index.writeInt((int) length);
+      componentRefs.add(componentRef);
+    } catch (Exception e) {
+      throw ContextException.of("Unable to write segment", e).addContext("file", dataFile).addContext("componentRef", componentRef);
+    }
+  }
+
+  private void open() throws IOException {
+    if (data == null) {
+      long initialLength = created ? dataFile.length() : 0L;
+      data = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(dataFile, created)), initialLength);
+      index = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile, created)));
+      created = true;
+    }
+  }
+
+  /**
+   * Data is flushed before index, so that all the indexed segments can be read.
+   */
+  synchronized void flush() {
+    if (data == null) {
+      return;
+    }
+    try {
+      data.flush();
+      index.flush();
+    } catch (IOException e) {
+      throw ContextException.of("Unable to flush segments", e).addContext("file", dataFile);
+    }
+  }
+
+  @Override
+  public synchronized void close() {
+    flush();
+    IOUtils.closeQuietly(data);
+    IOUtils.closeQuietly(index);
+    data = null;
+    index = null;
+  }
+
+  private static class CountingOutputStream extends FilterOutputStream {
+    private long count;
+
+    CountingOutputStream(OutputStream out, long initialCount) {
+      super(out);
+      this.count = initialCount;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      count += len;
+    }
+  }
+}
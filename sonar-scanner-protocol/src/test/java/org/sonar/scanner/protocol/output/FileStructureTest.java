@@ -80,4 +80,24 @@ public class FileStructureTest {
     FileStructure structure = new FileStructure(dir);
     assertThat(structure.contextProperties()).exists().isFile().isEqualTo(file);
   }
+
+  @Test
+  public void locate_segments_files() throws Exception {
+    File dir = temp.newFolder();
+
+    FileStructure structure = new FileStructure(dir);
+    assertThat(structure.segmentsFile(FileStructure.Domain.ISSUES)).isEqualTo(new File(dir, "issues-segments.pb"));
+    assertThat(structure.segmentsIndexFile(FileStructure.Domain.ISSUES)).isEqualTo(new File(dir, "issues-segments.idx"));
+  }
+
+  @Test
+  public void fail_to_locate_segments_of_domain_written_per_component() throws Exception {
+    FileStructure structure = new FileStructure(temp.newFolder());
+    try {
+      structure.segmentsFile(FileStructure.Domain.SOURCE);
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertThat(e).hasMessage("Domain is not segmented: SOURCE");
+    }
+  }
 }
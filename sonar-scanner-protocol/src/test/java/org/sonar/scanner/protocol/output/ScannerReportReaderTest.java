@@ -30,6 +30,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.sonar.core.util.CloseableIterator;
+import org.sonar.core.util.Protobuf;
 import org.sonar.scanner.protocol.output.ScannerReport.Measure.StringValue;
 import org.sonar.scanner.protocol.output.ScannerReport.SyntaxHighlightingRule.HighlightingType;
 import org.sonar.scanner.protocol.output.ScannerReport.Test.TestStatus;
@@ -64,6 +65,7 @@ public class ScannerReportReaderTest {
       .setRootComponentRef(1)
       .setCrossProjectDuplicationActivated(true);
     writer.writeMetadata(metadata.build());
+    writer.close();
 
     ScannerReport.Metadata readMetadata = underTest.readMetadata();
     assertThat(readMetadata.getAnalysisDate()).isEqualTo(15000000L);
@@ -84,6 +86,7 @@ public class ScannerReportReaderTest {
       .setRef(1)
       .setPath("src/main/java/Foo.java");
     writer.writeComponent(component.build());
+    writer.close();
 
     assertThat(underTest.readComponent(1).getPath()).isEqualTo("src/main/java/Foo.java");
   }
@@ -99,6 +102,7 @@ public class ScannerReportReaderTest {
     ScannerReport.Issue issue = ScannerReport.Issue.newBuilder()
       .build();
     writer.writeComponentIssues(1, asList(issue));
+    writer.close();
 
     assertThat(underTest.readComponentIssues(1)).hasSize(1);
     assertThat(underTest.readComponentIssues(200)).isEmpty();
@@ -115,6 +119,7 @@ public class ScannerReportReaderTest {
     ScannerReport.Measure.Builder measure = ScannerReport.Measure.newBuilder()
       .setStringValue(StringValue.newBuilder().setValue("value_a"));
     writer.writeComponentMeasures(1, asList(measure.build()));
+    writer.close();
 
     assertThat(underTest.readComponentMeasures(1)).hasSize(1);
   }
@@ -131,6 +136,7 @@ public class ScannerReportReaderTest {
       .setComponentRef(1)
       .addChangeset(ScannerReport.Changesets.Changeset.newBuilder().setDate(123_456_789).setAuthor("jack.daniels").setRevision("123-456-789"));
     writer.writeComponentChangesets(scm.build());
+    writer.close();
 
     assertThat(underTest.readChangesets(1).getChangesetList()).hasSize(1);
     assertThat(underTest.readChangesets(1).getChangeset(0).getDate()).isEqualTo(123_456_789L);
@@ -163,6 +169,7 @@ public class ScannerReportReaderTest {
         .build())
       .build();
     writer.writeComponentDuplications(1, asList(duplication));
+    writer.close();
 
     ScannerReportReader sut = new ScannerReportReader(dir);
     assertThat(sut.readComponentDuplications(1)).hasSize(1);
@@ -189,6 +196,7 @@ public class ScannerReportReaderTest {
       .setEndTokenIndex(15)
       .build();
     writer.writeCpdTextBlocks(1, singletonList(duplicationBlock));
+    writer.close();
 
     ScannerReportReader sut = new ScannerReportReader(dir);
     assertThat(sut.readCpdTextBlocks(1)).hasSize(1);
@@ -216,6 +224,7 @@ public class ScannerReportReaderTest {
           .build())
         .setType(HighlightingType.ANNOTATION)
         .build()));
+    writer.close();
 
     try (CloseableIterator<ScannerReport.SyntaxHighlightingRule> it = underTest.readComponentSyntaxHighlighting(1)) {
       ScannerReport.SyntaxHighlightingRule syntaxHighlighting = it.next();
@@ -254,6 +263,7 @@ public class ScannerReportReaderTest {
         .setEndOffset(2)
         .build())
       .build()));
+    writer.close();
 
     underTest = new ScannerReportReader(dir);
     assertThat(underTest.readComponentSymbols(1)).hasSize(1);
@@ -286,6 +296,7 @@ public class ScannerReportReaderTest {
         .setHits(false)
         .setCoveredConditions(4)
         .build()));
+    writer.close();
 
     underTest = new ScannerReportReader(dir);
     try (CloseableIterator<ScannerReport.LineCoverage> it = new ScannerReportReader(dir).readComponentCoverage(1)) {
@@ -322,6 +333,7 @@ public class ScannerReportReaderTest {
         .setMsg("message")
         .setStatus(TestStatus.OK)
         .build()));
+    writer.close();
 
     try (InputStream inputStream = FileUtils.openInputStream(underTest.readTests(1))) {
       ScannerReport.Test testResult = ScannerReport.Test.parser().parseDelimitedFrom(inputStream);
@@ -347,6 +359,7 @@ public class ScannerReportReaderTest {
           .addAllCoveredLine(asList(1, 2, 3, 5, 7))
           .setFileRef(2))
         .build()));
+    writer.close();
 
     try (InputStream inputStream = FileUtils.openInputStream(underTest.readCoverageDetails(1))) {
       ScannerReport.CoverageDetail coverageDetail = ScannerReport.CoverageDetail.parser().parseDelimitedFrom(inputStream);
@@ -377,4 +390,18 @@ public class ScannerReportReaderTest {
   public void return_null_when_no_file_source() throws Exception {
     assertThat(underTest.readFileSource(UNKNOWN_COMPONENT_REF)).isNull();
   }
+
+  @Test
+  public void read_report_with_one_file_per_component() {
+    Protobuf.write(ScannerReport.Component.newBuilder().setRef(1).setPath("src/Foo.java").build(), new File(dir, "component-1.pb"));
+    Protobuf.writeStream(asList(ScannerReport.Issue.newBuilder().setMsg("the message").build()), new File(dir, "issues-1.pb"), false);
+    Protobuf.writeStream(asList(ScannerReport.LineCoverage.newBuilder().setLine(1).build()), new File(dir, "coverages-1.pb"), false);
+
+    assertThat(underTest.readComponent(1).getPath()).isEqualTo("src/Foo.java");
+    assertThat(underTest.readComponentIssues(1)).extracting(ScannerReport.Issue::getMsg).containsExactly("the message");
+    assertThat(underTest.readComponentIssues(2)).isEmpty();
+    assertThat(underTest.hasCoverage(1)).isTrue();
+    assertThat(underTest.hasCoverage(2)).isFalse();
+    assertThat(underTest.readChangesets(1)).isNull();
+  }
 }
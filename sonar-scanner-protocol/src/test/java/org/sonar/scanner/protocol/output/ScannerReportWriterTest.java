@@ -87,9 +87,8 @@ public class ScannerReportWriterTest {
     underTest.writeComponent(component.build());
 
     assertThat(underTest.hasComponentData(FileStructure.Domain.COMPONENT, 1)).isTrue();
-    File file = underTest.getFileStructure().fileFor(FileStructure.Domain.COMPONENT, 1);
-    assertThat(file).exists().isFile();
-    ScannerReport.Component read = Protobuf.read(file, ScannerReport.Component.parser());
+    assertThat(underTest.getFileStructure().segmentsFile(FileStructure.Domain.COMPONENT)).exists().isFile();
+    ScannerReport.Component read = readReport().readComponent(1);
     assertThat(read.getRef()).isEqualTo(1);
     assertThat(read.getChildRefList()).containsOnly(5, 42);
     assertThat(read.getName()).isEmpty();
@@ -109,9 +108,8 @@ public class ScannerReportWriterTest {
     underTest.writeComponentIssues(1, asList(issue));
 
     assertThat(underTest.hasComponentData(FileStructure.Domain.ISSUES, 1)).isTrue();
-    File file = underTest.getFileStructure().fileFor(FileStructure.Domain.ISSUES, 1);
-    assertThat(file).exists().isFile();
-    try (CloseableIterator<ScannerReport.Issue> read = Protobuf.readStream(file, ScannerReport.Issue.parser())) {
+    assertThat(underTest.getFileStructure().segmentsFile(FileStructure.Domain.ISSUES)).exists().isFile();
+    try (CloseableIterator<ScannerReport.Issue> read = readReport().readComponentIssues(1)) {
       assertThat(Iterators.size(read)).isEqualTo(1);
     }
   }
@@ -127,9 +125,8 @@ public class ScannerReportWriterTest {
     underTest.writeComponentMeasures(1, asList(measure));
 
     assertThat(underTest.hasComponentData(FileStructure.Domain.MEASURES, 1)).isTrue();
-    File file = underTest.getFileStructure().fileFor(FileStructure.Domain.MEASURES, 1);
-    assertThat(file).exists().isFile();
-    try (CloseableIterator<ScannerReport.Measure> read = Protobuf.readStream(file, ScannerReport.Measure.parser())) {
+    assertThat(underTest.getFileStructure().segmentsFile(FileStructure.Domain.MEASURES)).exists().isFile();
+    try (CloseableIterator<ScannerReport.Measure> read = readReport().readComponentMeasures(1)) {
       assertThat(Iterators.size(read)).isEqualTo(1);
     }
   }
@@ -150,9 +147,8 @@ public class ScannerReportWriterTest {
     underTest.writeComponentChangesets(scm);
 
     assertThat(underTest.hasComponentData(FileStructure.Domain.CHANGESETS, 1)).isTrue();
-    File file = underTest.getFileStructure().fileFor(FileStructure.Domain.CHANGESETS, 1);
-    assertThat(file).exists().isFile();
-    ScannerReport.Changesets read = Protobuf.read(file, ScannerReport.Changesets.parser());
+    assertThat(underTest.getFileStructure().segmentsFile(FileStructure.Domain.CHANGESETS)).exists().isFile();
+    ScannerReport.Changesets read = readReport().readChangesets(1);
     assertThat(read.getComponentRef()).isEqualTo(1);
     assertThat(read.getChangesetCount()).isEqualTo(1);
     assertThat(read.getChangesetList()).hasSize(1);
@@ -179,9 +175,8 @@ public class ScannerReportWriterTest {
     underTest.writeComponentDuplications(1, asList(duplication));
 
     assertThat(underTest.hasComponentData(FileStructure.Domain.DUPLICATIONS, 1)).isTrue();
-    File file = underTest.getFileStructure().fileFor(FileStructure.Domain.DUPLICATIONS, 1);
-    assertThat(file).exists().isFile();
-    try (CloseableIterator<ScannerReport.Duplication> duplications = Protobuf.readStream(file, ScannerReport.Duplication.parser())) {
+    assertThat(underTest.getFileStructure().segmentsFile(FileStructure.Domain.DUPLICATIONS)).exists().isFile();
+    try (CloseableIterator<ScannerReport.Duplication> duplications = readReport().readComponentDuplications(1)) {
       ScannerReport.Duplication dup = duplications.next();
       assertThat(dup.getOriginPosition()).isNotNull();
       assertThat(dup.getDuplicateList()).hasSize(1);
@@ -202,9 +197,8 @@ public class ScannerReportWriterTest {
     underTest.writeCpdTextBlocks(1, asList(duplicationBlock));
 
     assertThat(underTest.hasComponentData(FileStructure.Domain.CPD_TEXT_BLOCKS, 1)).isTrue();
-    File file = underTest.getFileStructure().fileFor(FileStructure.Domain.CPD_TEXT_BLOCKS, 1);
-    assertThat(file).exists().isFile();
-    try (CloseableIterator<ScannerReport.CpdTextBlock> duplicationBlocks = Protobuf.readStream(file, ScannerReport.CpdTextBlock.parser())) {
+    assertThat(underTest.getFileStructure().segmentsFile(FileStructure.Domain.CPD_TEXT_BLOCKS)).exists().isFile();
+    try (CloseableIterator<ScannerReport.CpdTextBlock> duplicationBlocks = readReport().readCpdTextBlocks(1)) {
       ScannerReport.CpdTextBlock duplicationBlockResult = duplicationBlocks.next();
       assertThat(duplicationBlockResult.getHash()).isEqualTo("abcdefghijklmnop");
       assertThat(duplicationBlockResult.getStartLine()).isEqualTo(1);
@@ -239,9 +233,8 @@ public class ScannerReportWriterTest {
 
     assertThat(underTest.hasComponentData(FileStructure.Domain.SYMBOLS, 1)).isTrue();
 
-    File file = underTest.getFileStructure().fileFor(FileStructure.Domain.SYMBOLS, 1);
-    assertThat(file).exists().isFile();
-    try (CloseableIterator<ScannerReport.Symbol> read = Protobuf.readStream(file, ScannerReport.Symbol.parser())) {
+    assertThat(underTest.getFileStructure().segmentsFile(FileStructure.Domain.SYMBOLS)).exists().isFile();
+    try (CloseableIterator<ScannerReport.Symbol> read = readReport().readComponentSymbols(1)) {
       assertThat(read).hasSize(1);
     }
   }
@@ -299,4 +292,63 @@ public class ScannerReportWriterTest {
 
     assertThat(underTest.hasComponentData(FileStructure.Domain.COVERAGE_DETAILS, 1)).isTrue();
   }
+
+  @Test
+  public void append_issues_of_different_components_in_the_same_file() {
+    underTest.appendComponentIssue(1, ScannerReport.Issue.newBuilder().setMsg("first").build());
+    underTest.appendComponentIssue(2, ScannerReport.Issue.newBuilder().setMsg("other").build());
+    underTest.appendComponentIssue(1, ScannerReport.Issue.newBuilder().setMsg("second").build());
+
+    assertThat(dir.list()).containsOnly("issues-segments.pb", "issues-segments.idx");
+    ScannerReportReader reader = readReport();
+    assertThat(reader.readComponentIssues(1)).extracting(ScannerReport.Issue::getMsg).containsExactly("first", "second");
+    assertThat(reader.readComponentIssues(2)).extracting(ScannerReport.Issue::getMsg).containsExactly("other");
+    assertThat(reader.readComponentIssues(3)).isEmpty();
+  }
+
+  @Test
+  public void write_replaces_data_previously_written_for_the_component() {
+    underTest.appendComponentIssue(1, ScannerReport.Issue.newBuilder().setMsg("appended").build());
+    underTest.writeComponentIssues(1, asList(ScannerReport.Issue.newBuilder().setMsg("written").build()));
+
+    assertThat(readReport().readComponentIssues(1)).extracting(ScannerReport.Issue::getMsg).containsExactly("written");
+  }
+
+  @Test
+  public void data_is_readable_once_flushed() {
+    underTest.appendComponentIssue(1, ScannerReport.Issue.newBuilder().setMsg("first").build());
+    assertThat(new ScannerReportReader(dir).readComponentIssues(1)).isEmpty();
+
+    underTest.flush();
+
+    assertThat(new ScannerReportReader(dir).readComponentIssues(1)).extracting(ScannerReport.Issue::getMsg).containsExactly("first");
+  }
+
+  @Test
+  public void write_after_close() {
+    underTest.appendComponentIssue(1, ScannerReport.Issue.newBuilder().setMsg("first").build());
+    underTest.close();
+    underTest.appendComponentIssue(1, ScannerReport.Issue.newBuilder().setMsg("second").build());
+    underTest.close();
+
+    assertThat(readReport().readComponentIssues(1)).extracting(ScannerReport.Issue::getMsg).containsExactly("first", "second");
+  }
+
+  @Test
+  public void existing_segments_are_replaced_by_new_writer() {
+    underTest.appendComponentIssue(1, ScannerReport.Issue.newBuilder().setMsg("previous analysis").build());
+    underTest.close();
+
+    underTest = new ScannerReportWriter(dir);
+    underTest.appendComponentIssue(2, ScannerReport.Issue.newBuilder().setMsg("new analysis").build());
+
+    ScannerReportReader reader = readReport();
+    assertThat(reader.readComponentIssues(1)).isEmpty();
+    assertThat(reader.readComponentIssues(2)).extracting(ScannerReport.Issue::getMsg).containsExactly("new analysis");
+  }
+
+  private ScannerReportReader readReport() {
+    underTest.flush();
+    return new ScannerReportReader(dir);
+  }
 }
@@ -26,6 +26,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -46,6 +47,8 @@ abstract class BaseRequest<SELF extends BaseRequest> implements WsRequest {
 
   private final DefaultParameters parameters = new DefaultParameters();
 
+  private final DefaultHeaders headers = new DefaultHeaders();
+
   BaseRequest(String path) {
     this.path = path;
   }
@@ -131,6 +134,41 @@ abstract class BaseRequest<SELF extends BaseRequest> implements WsRequest {
     return parameters;
   }
 
+  @Override
+  public Headers getHeaders() {
+    return headers;
+  }
+
+  /**
+   * Sets a HTTP header of the request. A {@code null} value removes the header.
+   *
+   * @since 6.6
+   */
+  public SELF setHeader(String name, @Nullable String value) {
+    checkArgument(!isNullOrEmpty(name), "a header name cannot be null");
+    if (value == null) {
+      headers.keyValues.remove(name);
+    } else {
+      headers.keyValues.put(name, value);
+    }
+    return (SELF) this;
+  }
+
+  private static class DefaultHeaders implements Headers {
+    // preserve insertion order
+    private final Map<String, String> keyValues = new LinkedHashMap<>();
+
+    @Override
+    public Optional<String> getValue(String name) {
+      return Optional.ofNullable(keyValues.get(name));
+    }
+
+    @Override
+    public Set<String> getNames() {
+      return keyValues.keySet();
+    }
+  }
+
   private static class DefaultParameters implements Parameters {
     // preserve insertion order
     private final ListMultimap<String, String> keyValues = LinkedListMultimap.create();
@@ -19,6 +19,8 @@
  */
 package org.sonarqube.ws.client;
 
+import java.util.Optional;
+
 import static java.net.HttpURLConnection.HTTP_NO_CONTENT;
 
 abstract class BaseResponse implements WsResponse {
@@ -38,6 +40,11 @@ abstract class BaseResponse implements WsResponse {
     return this;
   }
 
+  @Override
+  public Optional<String> header(String name) {
+    return Optional.empty();
+  }
+
   @Override
   public boolean hasContent() {
     return code() != HTTP_NO_CONTENT;
@@ -164,6 +164,8 @@ public class HttpConnector implements WsConnector {
     if (credentials != null) {
       okHttpRequestBuilder.header("Authorization", credentials);
     }
+    Headers headers = getRequest.getHeaders();
+    headers.getNames().forEach(name -> headers.getValue(name).ifPresent(value -> okHttpRequestBuilder.header(name, value)));
     return okHttpRequestBuilder;
   }
 
@@ -43,6 +43,11 @@ public interface WsRequest {
 
   Parameters getParameters();
 
+  /**
+   * @since 6.6
+   */
+  Headers getHeaders();
+
   enum Method {
     GET, POST
   }
@@ -54,6 +54,19 @@ public class BaseRequestTest {
     assertThat(underTest.getMediaType()).isEqualTo(MediaTypes.PROTOBUF);
   }
 
+  @Test
+  public void set_and_remove_headers() {
+    assertThat(underTest.getHeaders().getNames()).isEmpty();
+
+    underTest.setHeader("If-None-Match", "\"abc\"");
+    assertThat(underTest.getHeaders().getValue("If-None-Match")).hasValue("\"abc\"");
+    assertThat(underTest.getHeaders().getNames()).containsExactly("If-None-Match");
+
+    underTest.setHeader("If-None-Match", null);
+    assertThat(underTest.getHeaders().getValue("If-None-Match")).isEmpty();
+    assertThat(underTest.getHeaders().getNames()).isEmpty();
+  }
+
   @Test
   public void keep_order_of_params() {
     assertThat(underTest.getParams()).isEmpty();
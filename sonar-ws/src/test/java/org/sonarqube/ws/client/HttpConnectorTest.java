@@ -218,6 +218,20 @@ public class HttpConnectorTest {
     assertThat(recordedRequest.getHeader("User-Agent")).isEqualTo("Maven Plugin/2.3");
   }
 
+  @Test
+  public void send_headers_of_request_and_read_headers_of_response() throws Exception {
+    server.enqueue(new MockResponse().setResponseCode(304).setHeader("ETag", "\"abc\""));
+    underTest = HttpConnector.newBuilder().url(serverUrl).build();
+
+    WsResponse response = underTest.call(new GetRequest("api/batch/project").setHeader("If-None-Match", "\"abc\""));
+
+    assertThat(response.code()).isEqualTo(304);
+    assertThat(response.header("ETag")).hasValue("\"abc\"");
+    assertThat(response.header("X-Unknown")).isEmpty();
+    RecordedRequest recordedRequest = server.takeRequest();
+    assertThat(recordedRequest.getHeader("If-None-Match")).isEqualTo("\"abc\"");
+  }
+
   @Test
   public void fail_if_unknown_implementation_of_request() {
     underTest = HttpConnector.newBuilder().url(serverUrl).build();
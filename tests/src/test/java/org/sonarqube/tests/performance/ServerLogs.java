@@ -90,4 +90,26 @@ public class ServerLogs {
     return null;
   }
 
+  /**
+   * Requires logs of Compute Engine to be at level DEBUG:
+   * 2017.09.05 10:12:48 DEBUG ce[o.s.s.c.t.s.ComputationStepExecutor] Extract report | time=120ms
+   */
+  public static Long extractComputationStepTime(Orchestrator orchestrator, String stepDescription) throws IOException {
+    File report = orchestrator.getServer().getCeLogs();
+    List<String> logsLines = FileUtils.readLines(report, Charsets.UTF_8);
+    return extractComputationStepTime(logsLines, stepDescription);
+  }
+
+  static Long extractComputationStepTime(List<String> logs, String stepDescription) {
+    Pattern pattern = Pattern.compile(".*DEBUG.*\\] " + Pattern.quote(stepDescription) + " \\| time=(\\d+)ms.*");
+    for (int i = logs.size() - 1; i >= 0; i--) {
+      Matcher matcher = pattern.matcher(logs.get(i));
+      if (matcher.matches()) {
+        return Long.parseLong(matcher.group(1));
+      }
+    }
+
+    return null;
+  }
+
 }
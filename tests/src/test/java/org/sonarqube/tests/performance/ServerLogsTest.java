@@ -33,4 +33,15 @@ public class ServerLogsTest {
         .isEqualTo(1234L);
   }
 
+  @Test
+  public void extract_duration_of_computation_step() throws Exception {
+    assertThat(ServerLogs.extractComputationStepTime(Lists.newArrayList(
+      "2017.09.05 10:12:48 DEBUG ce[AV5QJ1vDb6dkYXs4bhPz][o.s.s.c.t.s.ComputationStepExecutor] Extract report | time=120ms",
+      "2017.09.05 10:12:48 DEBUG ce[AV5QJ1vDb6dkYXs4bhPz][o.s.s.c.t.s.ComputationStepExecutor] Build tree of components | time=45ms"), "Extract report"))
+        .isEqualTo(120L);
+    assertThat(ServerLogs.extractComputationStepTime(Lists.newArrayList(
+      "2017.09.05 10:12:48 DEBUG ce[AV5QJ1vDb6dkYXs4bhPz][o.s.s.c.t.s.ComputationStepExecutor] Build tree of components | time=45ms"), "Extract report"))
+        .isNull();
+  }
+
 }
@@ -34,6 +34,8 @@ import org.junit.rules.TemporaryFolder;
 import org.sonarqube.tests.performance.AbstractPerfTest;
 import org.sonarqube.tests.performance.ServerLogs;
 
+import static org.assertj.core.api.Assertions.assertThat;
+
 public class ComputeEnginePerfTest extends AbstractPerfTest {
   private static int MAX_HEAP_SIZE_IN_MEGA = 600;
 
@@ -64,6 +66,30 @@ public class ComputeEnginePerfTest extends AbstractPerfTest {
 
   @Test
   public void analyse_big_project() throws Exception {
+    analyseBigProject();
+
+    assertComputationDurationAround(350_000L);
+  }
+
+  /**
+   * The report is not unzipped before the computation steps start, only its compressed content is copied to disk
+   */
+  @Test
+  public void report_of_big_project_is_not_unzipped() throws Exception {
+    // durations of computation steps are logged at level DEBUG
+    orchestrator.getServer().adminWsClient().post("api/system/change_log_level", "level", "DEBUG");
+    try {
+      analyseBigProject();
+    } finally {
+      orchestrator.getServer().adminWsClient().post("api/system/change_log_level", "level", "INFO");
+    }
+
+    Long extractDuration = ServerLogs.extractComputationStepTime(orchestrator, "Extract report");
+    assertThat(extractDuration).as("duration of step 'Extract report' is logged").isNotNull();
+    assertDurationLessThan(extractDuration, 1_000L);
+  }
+
+  private static void analyseBigProject() {
     SonarScanner scanner = SonarScanner.create()
       .setProperties(
         "sonar.projectKey", "big-project",
@@ -74,8 +100,6 @@ public class ComputeEnginePerfTest extends AbstractPerfTest {
       .setProjectDir(bigProjectBaseDir);
 
     orchestrator.executeBuild(scanner);
-
-    assertComputationDurationAround(350_000L);
   }
 
   private void assertComputationDurationAround(long expectedDuration) throws IOException {